@@ -17,13 +17,17 @@
 package org.keycloak.connections.file;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.codehaus.jackson.JsonNode;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
 import org.keycloak.exportimport.Strategy;
@@ -31,14 +35,26 @@ import org.keycloak.exportimport.util.ExportUtils;
 import org.keycloak.exportimport.util.ImportUtils;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.ModelException;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.util.JsonSerialization;
 
 /**
- * This class dispenses a FileConnectionProvider to Keycloak sessions.  It
- * makes sure that only one InMemoryModel is provided for each session and it
- * handles thread contention for the file where the model is read or saved.
+ * This class dispenses a FileConnectionProvider to Keycloak sessions.  The
+ * InMemoryModel is read from the model file the first time a session needs
+ * it and is then shared by all sessions.  Only one thread uses the model at a
+ * time, other threads wait up to lockTimeout milliseconds for the sessions
+ * using it to end.
+ *
+ * The committed model is kept in memory as JSON per entity.  On commit the
+ * realms and users handed out to the session are exported, compared with
+ * the committed ones, and the changed entities are appended to a journal
+ * file next to the model file.  On rollback the realms that differ from the
+ * committed ones are read again.  Once the journal has
+ * journalCompactThreshold entries (and on shutdown) it is compacted into a
+ * new model file.  See ModelJournal.
  *
  * @author Stan Silvert ssilvert@redhat.com (C) 2015 Red Hat Inc.
  */
@@ -46,8 +62,19 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
 
     protected static final Logger logger = Logger.getLogger(DefaultFileConnectionProviderFactory.class);
 
-    private File kcdata;
+    private ModelJournal modelJournal;
+    private long lockTimeout;
+
+    // Reentrant, so sessions nested in a session on the same thread can use the model too
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    // guarded by lock
+    private final InMemoryModel model = new InMemoryModel();
     private final Map<KeycloakSession, FileConnectionProvider> allProviders = new HashMap<KeycloakSession, FileConnectionProvider>();
+    private boolean loaded;
+
+    // ids of realms discarded by a rollback, read again by the next session
+    private final Set<String> discardedRealms = new HashSet<String>();
 
     @Override
     public void init(Config.Scope config) {
@@ -64,89 +91,130 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
             directory = ".";
         }
 
-        kcdata = new File(directory, fileName);
+        File kcdata = new File(directory, fileName);
+        File journal = new File(directory, fileName + ".journal");
+        modelJournal = new ModelJournal(kcdata, journal, config.getInt("journalCompactThreshold", 100));
+        lockTimeout = config.getLong("lockTimeout", 30000L);
     }
 
     public void sessionClosed(KeycloakSession session) {
-        synchronized(allProviders) {
-            allProviders.remove(session);
-            //logger.info("Removed session " + session.hashCode());
-            //logger.info("sessionClosed: Session count=" + allModels.size());
-        }
+        // Changes of a session closed without ending its transaction are discarded
+        rollback(session);
     }
 
-    void readModelFile(KeycloakSession session) {
-        synchronized(allProviders) {
-            if (!kcdata.exists()) {
-                return;
+    private void readModelFile(KeycloakSession session, Collection<String> realmIds) {
+        LinkedList<String> ids = new LinkedList<String>();
+        for (String id : realmIds) {
+            // Ensure that master realm is imported first
+            if (Config.getAdminRealm().equals(id)) {
+                ids.addFirst(id);
+            } else {
+                ids.add(id);
             }
+        }
 
-            FileInputStream fis = null;
-            try {
-                fis = new FileInputStream(kcdata);
-                ImportUtils.importFromStream(session, JsonSerialization.mapper, fis, Strategy.IGNORE_EXISTING);
-            } catch (IOException ioe) {
-                logger.error("Unable to read model file " + kcdata.getAbsolutePath(), ioe);
-            } finally {
-                //logger.info("Read model file for session=" + session.hashCode());
-                try {
-                    if (fis != null) {
-                        fis.close();
-                    }
-                } catch (IOException e) {
-                    logger.error("Failed to close output stream.", e);
-                }
-            }
+        for (String id : ids) {
+            importRealm(session, id);
         }
     }
 
-    void writeModelFile(KeycloakSession session) {
-        synchronized(allProviders) {
-            FileOutputStream outStream = null;
-
-            try {
-                outStream = new FileOutputStream(kcdata);
-                exportModel(session, outStream);
-            } catch (IOException e) {
-                logger.error("Unable to write model file " + kcdata.getAbsolutePath(), e);
-            } finally {
-                //logger.info("Wrote model file for session=" + session.hashCode());
-                try {
-                    if (outStream != null) {
-                        outStream.close();
-                    }
-                } catch (IOException e) {
-                    logger.error("Failed to close output stream.", e);
-                }
-            }
+    private void importRealm(KeycloakSession session, String id) {
+        JsonNode json = modelJournal.getRealm(id);
+        if (json == null) {
+            return;
+        }
+
+        try {
+            RealmRepresentation realmRep = JsonSerialization.mapper.readValue(json, RealmRepresentation.class);
+            ImportUtils.importRealm(session, realmRep, Strategy.IGNORE_EXISTING);
+        } catch (IOException ioe) {
+            logger.error("Unable to read realm " + id, ioe);
         }
     }
 
-    private void exportModel(KeycloakSession session, FileOutputStream outStream) throws IOException {
-        List<RealmModel> realms = session.realms().getRealms();
-        List<RealmRepresentation> reps = new ArrayList<RealmRepresentation>();
-        for (RealmModel realm : realms) {
-            reps.add(ExportUtils.exportRealm(session, realm, true));
+    /**
+     * Exports the realms and users handed out to the session, for comparison with the committed model
+     *
+     * @return false if the export failed
+     */
+    private boolean export(KeycloakSession session, InMemoryModel.Loaded loaded, Map<String, JsonNode> realms, Map<String, Map<String, JsonNode>> users) {
+        // Copied, as exporting may hand out more realms and users to the session
+        Set<String> realmIds = new HashSet<String>(loaded.realms);
+        Map<String, Collection<String>> userIds = new HashMap<String, Collection<String>>();
+        for (Map.Entry<String, Set<String>> e : loaded.users.entrySet()) {
+            userIds.put(e.getKey(), new ArrayList<String>(e.getValue()));
         }
+        for (String realmId : new ArrayList<String>(loaded.allUsers)) {
+            userIds.put(realmId, new ArrayList<String>(model.peekUserIds(realmId)));
+        }
+
+        try {
+            for (String id : realmIds) {
+                RealmModel realm = model.peekRealm(id);
+                realms.put(id, realm != null ? toJson(ExportUtils.exportRealm(session, realm, false)) : null);
+            }
+
+            for (Map.Entry<String, Collection<String>> e : userIds.entrySet()) {
+                RealmModel realm = model.peekRealm(e.getKey());
+                if (realm == null) {
+                    continue;
+                }
+
+                Map<String, JsonNode> realmUsers = new HashMap<String, JsonNode>();
+                for (String userId : e.getValue()) {
+                    UserModel user = model.peekUser(realm.getId(), userId);
+                    realmUsers.put(userId, user != null ? toJson(ExportUtils.exportUser(session, realm, user)) : null);
+                }
+                users.put(realm.getId(), realmUsers);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Unable to export model", e);
+            return false;
+        }
+    }
 
-        JsonSerialization.prettyMapper.writeValue(outStream, reps);
+    private static JsonNode toJson(Object rep) throws IOException {
+        return JsonSerialization.mapper.readTree(JsonSerialization.writeValueAsString(rep));
     }
 
     @Override
     public FileConnectionProvider create(KeycloakSession session) {
-        synchronized (allProviders) {
-            FileConnectionProvider fcProvider = allProviders.get(session);
-            if (fcProvider == null) {
-                InMemoryModel model = new InMemoryModel();
-                fcProvider = new DefaultFileConnectionProvider(this, session, model);
-                allProviders.put(session, fcProvider);
-                session.getTransaction().enlist(fcProvider);
-                readModelFile(session);
-                //logger.info("Added session " + session.hashCode() + " total sessions=" + allModels.size());
+        try {
+            if (!lock.tryLock(lockTimeout, TimeUnit.MILLISECONDS)) {
+                throw new ModelException("Timed out waiting for the file model");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelException("Interrupted while waiting for the file model", e);
+        }
 
+        FileConnectionProvider fcProvider = allProviders.get(session);
+        if (fcProvider != null) {
+            // Already holds the lock for this session
+            lock.unlock();
             return fcProvider;
         }
+
+        fcProvider = new DefaultFileConnectionProvider(this, session, model);
+        allProviders.put(session, fcProvider);
+        model.begin(session);
+        session.getTransaction().enlist(fcProvider);
+
+        if (!loaded || !discardedRealms.isEmpty()) {
+            if (!loaded) {
+                loaded = true;
+                readModelFile(session, modelJournal.getRealmIds());
+            } else {
+                readDiscardedRealms(session);
+            }
+
+            // Nothing to compare with the committed model after reading it
+            model.end(session);
+            model.begin(session);
+        }
+
+        return fcProvider;
     }
 
     // commitCount is used for debugging.  This allows you to easily run a test
@@ -154,39 +222,80 @@ public class DefaultFileConnectionProviderFactory implements FileConnectionProvi
     //private static int commitCount = 0;
     void commit(KeycloakSession session) {
         //commitCount++;
-        synchronized (allProviders) {
-            // in case commit was somehow called twice on the same session
-            if (!allProviders.containsKey(session)) return;
-
-            try {
-                writeModelFile(session);
-            } finally {
-                allProviders.remove(session);
-                //logger.info("Removed session " + session.hashCode());
-                //logger.info("*** commitCount=" + commitCount);
-                //logger.info("commit(): Session count=" + allModels.size());
+        // in case commit was somehow called twice on the same session
+        if (!isActive(session)) return;
+
+        try {
+            Map<String, JsonNode> realms = new HashMap<String, JsonNode>();
+            Map<String, Map<String, JsonNode>> users = new HashMap<String, Map<String, JsonNode>>();
+            if (export(session, model.getLoaded(session), realms, users)) {
+                modelJournal.write(realms, users);
             }
+        } finally {
+            end(session);
+            //logger.info("*** commitCount=" + commitCount);
+        }
 
     //     if (commitCount == 16) {Thread.dumpStack();System.exit(0);}
-        }
     }
 
     void rollback(KeycloakSession session) {
-        synchronized (allProviders) {
-            allProviders.remove(session);
-            //logger.info("rollback(): Session count=" + allModels.size());
+        if (!isActive(session)) return;
+
+        try {
+            Map<String, JsonNode> realms = new HashMap<String, JsonNode>();
+            Map<String, Map<String, JsonNode>> users = new HashMap<String, Map<String, JsonNode>>();
+            export(session, model.getLoaded(session), realms, users);
+
+            // Realms are read again by a session that isn't ending, so the import can use the session's providers
+            for (String id : modelJournal.getChangedRealms(realms, users)) {
+                model.removeRealm(id);
+                discardedRealms.add(id);
+            }
+        } finally {
+            end(session);
+        }
+
+        KeycloakSession outer = model.getSession();
+        if (outer != null && !discardedRealms.isEmpty()) {
+            readDiscardedRealms(outer);
         }
     }
 
-    boolean isActive(KeycloakSession session) {
-        synchronized (allProviders) {
-            return allProviders.containsKey(session);
+    private void readDiscardedRealms(KeycloakSession session) {
+        Set<String> ids = new HashSet<String>(discardedRealms);
+        discardedRealms.clear();
+
+        Set<String> committed = modelJournal.getRealmIds();
+        ids.retainAll(committed);
+        readModelFile(session, ids);
+    }
+
+    private void end(KeycloakSession session) {
+        allProviders.remove(session);
+        model.end(session);
+
+        if (lock.isHeldByCurrentThread()) {
+            lock.unlock();
+        } else {
+            logger.warn("File model session ended on a different thread than it was started on");
         }
     }
 
+    boolean isActive(KeycloakSession session) {
+        return lock.isHeldByCurrentThread() && allProviders.containsKey(session);
+    }
+
     @Override
     public void close() {
-
+        lock.lock();
+        try {
+            if (modelJournal.getJournalEntries() > 0) {
+                modelJournal.compact();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
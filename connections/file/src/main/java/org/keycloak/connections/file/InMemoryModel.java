@@ -18,82 +18,306 @@
 package org.keycloak.connections.file;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 
 /**
- * This class provides an in-memory copy of the entire model for each
- * Keycloak session.  At the start of the session, the model is read
- * from JSON.  When the session's transaction ends, the model is written back
- * out.
+ * This class provides an in-memory copy of the entire model.  The model is
+ * read from JSON once and shared by all Keycloak sessions, one session (and
+ * the sessions it nests) at a time.  See DefaultFileConnectionProviderFactory.
+ *
+ * Users are indexed by username, email and federated identity, so lookups
+ * don't have to scan every user of the realm.  The username index is sorted,
+ * which gives the users in the order expected by paged queries.  Adapters
+ * must call the update methods when an indexed attribute changes.
+ *
+ * Realms and users handed out to a session are recorded, and compared with
+ * the committed model when the session's transaction ends, so adapters
+ * don't need to track their own changes.
  *
  * @author Stan Silvert ssilvert@redhat.com (C) 2015 Red Hat Inc.
  */
 public class InMemoryModel {
+
     private final Map<String, RealmModel> allRealms = new HashMap<String, RealmModel>();
 
-    //                realmId,    userId, userModel
-    private final Map<String, Map<String,UserModel>> allUsers = new HashMap<String, Map<String,UserModel>>();
+    //                realmId, users of the realm
+    private final Map<String, RealmUsers> allUsers = new HashMap<String, RealmUsers>();
 
-    public InMemoryModel() {
+    // sessions using the model, the last one is the current session
+    private final LinkedList<Loaded> sessions = new LinkedList<Loaded>();
+
+    /**
+     * @return session currently using this model, for adapters that need other providers
+     */
+    public KeycloakSession getSession() {
+        return sessions.isEmpty() ? null : sessions.getLast().session;
+    }
+
+    void begin(KeycloakSession session) {
+        sessions.add(new Loaded(session));
+    }
+
+    /**
+     * @return realms and users handed out to the session
+     */
+    Loaded end(KeycloakSession session) {
+        Iterator<Loaded> itr = sessions.descendingIterator();
+        while (itr.hasNext()) {
+            Loaded loaded = itr.next();
+            if (loaded.session == session) {
+                itr.remove();
+                return loaded;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return realms and users handed out to the session so far
+     */
+    Loaded getLoaded(KeycloakSession session) {
+        for (Loaded loaded : sessions) {
+            if (loaded.session == session) {
+                return loaded;
+            }
+        }
+        return null;
     }
 
     public void putRealm(String id, RealmModel realm) {
         allRealms.put(id, realm);
-        allUsers.put(id, new HashMap<String, UserModel>());
+        allUsers.put(id, new RealmUsers());
+        loadedRealm(id);
     }
 
     public RealmModel getRealm(String id) {
-        return allRealms.get(id);
+        RealmModel realm = allRealms.get(id);
+        if (realm != null) loadedRealm(id);
+        return realm;
     }
 
     public Collection<RealmModel> getRealms() {
-       return allRealms.values();
+        for (String id : allRealms.keySet()) {
+            loadedRealm(id);
+        }
+        return allRealms.values();
     }
 
     public RealmModel getRealmByName(String name) {
-        for (RealmModel realm : getRealms()) {
-            if (realm.getName().equals(name)) return realm;
+        for (RealmModel realm : allRealms.values()) {
+            if (realm.getName().equals(name)) {
+                loadedRealm(realm.getId());
+                return realm;
+            }
         }
 
         return null;
     }
 
     public boolean removeRealm(String id) {
+        loadedRealm(id);
         allUsers.remove(id);
         return (allRealms.remove(id) != null);
     }
 
-    protected Map<String, UserModel> realmUsers(String realmId) {
-        Map<String, UserModel> realmUsers = allUsers.get(realmId);
+    protected RealmUsers realmUsers(String realmId) {
+        RealmUsers realmUsers = allUsers.get(realmId);
         if (realmUsers == null) throw new NullPointerException("Realm users not found for id=" + realmId);
         return realmUsers;
     }
 
     public void putUser(String realmId, String userId, UserModel user) {
-        realmUsers(realmId).put(userId, user);
+        loadedUser(realmId, userId);
+        RealmUsers realmUsers = realmUsers(realmId);
+        UserModel existing = realmUsers.byId.put(userId, user);
+        if (existing != null) {
+            realmUsers.unindex(existing);
+        }
+        if (user.getUsername() != null) realmUsers.byUsername.put(user.getUsername(), user);
+        if (user.getEmail() != null) realmUsers.byEmail.put(user.getEmail(), user);
     }
 
     public UserModel getUser(String realmId, String userId) {
-        return realmUsers(realmId).get(userId);
+        return loadedUser(realmId, realmUsers(realmId).byId.get(userId));
+    }
+
+    public UserModel getUserByUsername(String realmId, String username) {
+        return loadedUser(realmId, realmUsers(realmId).byUsername.get(username));
+    }
+
+    public UserModel getUserByEmail(String realmId, String email) {
+        return loadedUser(realmId, realmUsers(realmId).byEmail.get(email));
+    }
+
+    public UserModel getUserByFederatedIdentity(String realmId, String identityProvider, String federatedUserId) {
+        return loadedUser(realmId, realmUsers(realmId).byFederatedIdentity.get(federatedIdentityKey(identityProvider, federatedUserId)));
     }
 
     public boolean hasUserWithUsername(String realmId, String username) {
-        for (UserModel user : getUsers(realmId)) {
-            if (user.getUsername().equals(username)) return true;
+        return realmUsers(realmId).byUsername.containsKey(username);
+    }
+
+    public boolean hasUserWithEmail(String realmId, String email) {
+        return realmUsers(realmId).byEmail.containsKey(email);
+    }
+
+    public void updateUsername(String realmId, String oldUsername, String newUsername, UserModel user) {
+        RealmUsers realmUsers = realmUsers(realmId);
+        if (oldUsername != null) realmUsers.byUsername.remove(oldUsername);
+        if (newUsername != null) realmUsers.byUsername.put(newUsername, user);
+    }
+
+    public void updateEmail(String realmId, String oldEmail, String newEmail, UserModel user) {
+        RealmUsers realmUsers = realmUsers(realmId);
+        if (oldEmail != null) realmUsers.byEmail.remove(oldEmail);
+        if (newEmail != null) realmUsers.byEmail.put(newEmail, user);
+    }
+
+    public void addFederatedIdentity(String realmId, String identityProvider, String federatedUserId, UserModel user) {
+        RealmUsers realmUsers = realmUsers(realmId);
+        String key = federatedIdentityKey(identityProvider, federatedUserId);
+        realmUsers.byFederatedIdentity.put(key, user);
+
+        Set<String> keys = realmUsers.federatedIdentityKeys.get(user.getId());
+        if (keys == null) {
+            keys = new HashSet<String>();
+            realmUsers.federatedIdentityKeys.put(user.getId(), keys);
         }
+        keys.add(key);
+    }
+
+    public void removeFederatedIdentity(String realmId, String identityProvider, String federatedUserId, UserModel user) {
+        RealmUsers realmUsers = realmUsers(realmId);
+        String key = federatedIdentityKey(identityProvider, federatedUserId);
+        realmUsers.byFederatedIdentity.remove(key);
 
-        return false;
+        Set<String> keys = realmUsers.federatedIdentityKeys.get(user.getId());
+        if (keys != null) {
+            keys.remove(key);
+        }
     }
 
+    /**
+     * @return users of the realm ordered by username
+     */
     public Collection<UserModel> getUsers(String realmId) {
-       return realmUsers(realmId).values();
+        RealmUsers realmUsers = realmUsers(realmId);
+        if (!sessions.isEmpty()) sessions.getLast().allUsers.add(realmId);
+        return realmUsers.byUsername.values();
+    }
+
+    public int getUsersCount(String realmId) {
+        return realmUsers(realmId).byId.size();
     }
 
     public boolean removeUser(String realmId, String userId) {
-        return (realmUsers(realmId).remove(userId) != null);
+        loadedUser(realmId, userId);
+        RealmUsers realmUsers = realmUsers(realmId);
+        UserModel user = realmUsers.byId.remove(userId);
+        if (user == null) return false;
+
+        realmUsers.unindex(user);
+        return true;
+    }
+
+    /**
+     * @return user of the realm by id, without recording it as handed out to the current session
+     */
+    UserModel peekUser(String realmId, String userId) {
+        RealmUsers realmUsers = allUsers.get(realmId);
+        return realmUsers != null ? realmUsers.byId.get(userId) : null;
+    }
+
+    /**
+     * @return realm by id, without recording it as handed out to the current session
+     */
+    RealmModel peekRealm(String id) {
+        return allRealms.get(id);
+    }
+
+    /**
+     * @return ids of the users of the realm, without recording them as handed out to the current session
+     */
+    Collection<String> peekUserIds(String realmId) {
+        RealmUsers realmUsers = allUsers.get(realmId);
+        return realmUsers != null ? realmUsers.byId.keySet() : Collections.<String>emptySet();
+    }
+
+    private void loadedRealm(String id) {
+        if (!sessions.isEmpty()) sessions.getLast().realms.add(id);
+    }
+
+    private void loadedUser(String realmId, String userId) {
+        if (sessions.isEmpty()) return;
+
+        Map<String, Set<String>> users = sessions.getLast().users;
+        Set<String> ids = users.get(realmId);
+        if (ids == null) {
+            ids = new HashSet<String>();
+            users.put(realmId, ids);
+        }
+        ids.add(userId);
+    }
+
+    private UserModel loadedUser(String realmId, UserModel user) {
+        if (user != null) loadedUser(realmId, user.getId());
+        return user;
+    }
+
+    private static String federatedIdentityKey(String identityProvider, String federatedUserId) {
+        return identityProvider + "/" + federatedUserId;
+    }
+
+    /**
+     * Realms and users handed out to a session, which may have been changed by it
+     */
+    static class Loaded {
+        final KeycloakSession session;
+
+        // ids of realms
+        final Set<String> realms = new HashSet<String>();
+
+        //               realmId, ids of users
+        final Map<String, Set<String>> users = new HashMap<String, Set<String>>();
+
+        // ids of realms where all users were handed out
+        final Set<String> allUsers = new HashSet<String>();
+
+        private Loaded(KeycloakSession session) {
+            this.session = session;
+        }
+    }
+
+    protected static class RealmUsers {
+        private final Map<String, UserModel> byId = new HashMap<String, UserModel>();
+        private final TreeMap<String, UserModel> byUsername = new TreeMap<String, UserModel>();
+        private final Map<String, UserModel> byEmail = new HashMap<String, UserModel>();
+        private final Map<String, UserModel> byFederatedIdentity = new HashMap<String, UserModel>();
+
+        //               userId, keys in byFederatedIdentity
+        private final Map<String, Set<String>> federatedIdentityKeys = new HashMap<String, Set<String>>();
+
+        private void unindex(UserModel user) {
+            if (user.getUsername() != null) byUsername.remove(user.getUsername());
+            if (user.getEmail() != null) byEmail.remove(user.getEmail());
+
+            Set<String> keys = federatedIdentityKeys.remove(user.getId());
+            if (keys != null) {
+                for (String key : keys) {
+                    byFederatedIdentity.remove(key);
+                }
+            }
+        }
     }
 
 }
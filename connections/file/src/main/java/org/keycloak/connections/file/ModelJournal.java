@@ -0,0 +1,529 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @author tags. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.keycloak.connections.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.jboss.logging.Logger;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * Committed realms, stored in a model file plus a journal of the changes
+ * made since the model file was written.  Changes are journaled per entity:
+ * realm settings, applications, OAuth clients, roles and users each get
+ * their own entry, holding the new JSON of the entity, or no value if the
+ * entity was removed.  A realm that wasn't committed before is journaled as
+ * a single entry holding the whole realm.  Once the journal has
+ * compactThreshold entries it is compacted into a new model file, written
+ * through a temporary file and rename.  A trailing entry left incomplete by
+ * a crash is ignored on load.
+ *
+ * Journal entries are single lines of JSON, keyed by realm id:
+ * <pre>
+ * {"id":realmId,"realm":{...}}                            whole realm
+ * {"id":realmId}                                          realm removed
+ * {"id":realmId,"settings":{...}}                         realm without applications, OAuth clients, roles and users
+ * {"id":realmId,"application":name,"value":{...}}
+ * {"id":realmId,"oauthClient":name,"value":{...}}
+ * {"id":realmId,"role":name,"value":{...}}                realm role
+ * {"id":realmId,"application":name,"role":name,"value":{...}}
+ * {"id":realmId,"user":userId,"value":{...}}
+ * </pre>
+ *
+ * Not thread safe, callers are expected to synchronize.
+ */
+public class ModelJournal {
+
+    protected static final Logger logger = Logger.getLogger(ModelJournal.class);
+
+    private static final List<String> ENTITY_FIELDS = Arrays.asList("applications", "oauthClients", "roles", "users");
+
+    private final File kcdata;
+    private final File journal;
+    private final int compactThreshold;
+
+    //               realmId, committed realm
+    private Map<String, CommittedRealm> realms;
+    private int journalEntries;
+
+    public ModelJournal(File kcdata, File journal, int compactThreshold) {
+        this.kcdata = kcdata;
+        this.journal = journal;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * @return ids of the committed realms, loaded from disk the first time this is called
+     */
+    public Set<String> getRealmIds() {
+        load();
+        return Collections.unmodifiableSet(realms.keySet());
+    }
+
+    /**
+     * @return committed realm including users, or null if there's no realm with the id
+     */
+    public JsonNode getRealm(String id) {
+        load();
+        CommittedRealm realm = realms.get(id);
+        return realm != null ? realm.toJson() : null;
+    }
+
+    public int getJournalEntries() {
+        return journalEntries;
+    }
+
+    /**
+     * Commits the changes made to realms and users.  Realms and users are
+     * compared to the committed ones, only the entities that differ are
+     * journaled.
+     *
+     * @param realms realms exported without users by realm id, null for removed realms
+     * @param users users by realm id and user id, null for removed users
+     * @return ids of realms with changes
+     */
+    public Set<String> write(Map<String, JsonNode> realms, Map<String, Map<String, JsonNode>> users) {
+        List<ObjectNode> entries = diff(realms, users);
+
+        List<String> lines = new ArrayList<String>(entries.size());
+        Set<String> changed = new LinkedHashSet<String>();
+        try {
+            for (ObjectNode entry : entries) {
+                lines.add(JsonSerialization.writeValueAsString(entry));
+            }
+        } catch (IOException e) {
+            logger.error("Unable to write model journal entry", e);
+            return changed;
+        }
+
+        for (ObjectNode entry : entries) {
+            apply(entry);
+            changed.add(entry.get("id").getTextValue());
+        }
+
+        if (lines.isEmpty()) {
+            return changed;
+        }
+
+        if (journalEntries + lines.size() >= compactThreshold) {
+            compact();
+        } else {
+            append(lines);
+        }
+        return changed;
+    }
+
+    /**
+     * @param realms realms exported without users by realm id, null for removed realms
+     * @param users users by realm id and user id, null for removed users
+     * @return ids of realms that differ from the committed ones
+     */
+    public Set<String> getChangedRealms(Map<String, JsonNode> realms, Map<String, Map<String, JsonNode>> users) {
+        Set<String> changed = new LinkedHashSet<String>();
+        for (ObjectNode entry : diff(realms, users)) {
+            changed.add(entry.get("id").getTextValue());
+        }
+        return changed;
+    }
+
+    /**
+     * Writes the committed realms to a new model file and removes the journal
+     */
+    public void compact() {
+        load();
+
+        File tmp = new File(kcdata.getAbsolutePath() + ".tmp");
+        FileOutputStream outStream = null;
+
+        try {
+            outStream = new FileOutputStream(tmp);
+            writeRealms(outStream);
+        } catch (IOException e) {
+            logger.error("Unable to write model file " + tmp.getAbsolutePath(), e);
+            return;
+        } finally {
+            try {
+                if (outStream != null) {
+                    outStream.close();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to close output stream.", e);
+            }
+        }
+
+        if (!tmp.renameTo(kcdata) && !(kcdata.delete() && tmp.renameTo(kcdata))) {
+            logger.error("Unable to replace model file " + kcdata.getAbsolutePath());
+            return;
+        }
+
+        if (journal.exists() && !journal.delete()) {
+            logger.error("Unable to delete model journal " + journal.getAbsolutePath());
+            return;
+        }
+        journalEntries = 0;
+    }
+
+    private List<ObjectNode> diff(Map<String, JsonNode> changedRealms, Map<String, Map<String, JsonNode>> changedUsers) {
+        load();
+
+        Set<String> ids = new LinkedHashSet<String>(changedRealms.keySet());
+        ids.addAll(changedUsers.keySet());
+
+        List<ObjectNode> entries = new ArrayList<ObjectNode>();
+        for (String id : ids) {
+            CommittedRealm committed = realms.get(id);
+            boolean removed = changedRealms.containsKey(id) && changedRealms.get(id) == null;
+            Map<String, JsonNode> users = changedUsers.containsKey(id) ? changedUsers.get(id) : Collections.<String, JsonNode>emptyMap();
+
+            if (removed) {
+                if (committed != null) {
+                    entries.add(entry(id));
+                }
+            } else if (committed == null) {
+                JsonNode realm = changedRealms.get(id);
+                if (realm != null) {
+                    ObjectNode entry = entry(id);
+                    entry.put("realm", withUsers(realm, users));
+                    entries.add(entry);
+                }
+            } else {
+                JsonNode realm = changedRealms.get(id);
+                if (realm != null) {
+                    diffRealm(id, committed, new CommittedRealm(realm), entries);
+                }
+                for (Map.Entry<String, JsonNode> user : users.entrySet()) {
+                    diffEntity(entry(id), "user", user.getKey(), committed.users.get(user.getKey()), user.getValue(), entries);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void diffRealm(String id, CommittedRealm committed, CommittedRealm realm, List<ObjectNode> entries) {
+        if (!realm.settings.equals(committed.settings)) {
+            ObjectNode entry = entry(id);
+            entry.put("settings", realm.settings);
+            entries.add(entry);
+        }
+
+        diffEntities(entry(id), "application", committed.applications, realm.applications, entries);
+        diffEntities(entry(id), "oauthClient", committed.oauthClients, realm.oauthClients, entries);
+        diffEntities(entry(id), "role", committed.roles, realm.roles, entries);
+
+        Set<String> applications = new LinkedHashSet<String>(committed.applicationRoles.keySet());
+        applications.addAll(realm.applicationRoles.keySet());
+        for (String application : applications) {
+            ObjectNode entry = entry(id);
+            entry.put("application", application);
+            diffEntities(entry, "role", get(committed.applicationRoles, application), get(realm.applicationRoles, application), entries);
+        }
+    }
+
+    private void diffEntities(ObjectNode key, String type, Map<String, JsonNode> committed, Map<String, JsonNode> current, List<ObjectNode> entries) {
+        Set<String> names = new LinkedHashSet<String>(committed.keySet());
+        names.addAll(current.keySet());
+        for (String name : names) {
+            diffEntity(key, type, name, committed.get(name), current.get(name), entries);
+        }
+    }
+
+    private void diffEntity(ObjectNode key, String type, String name, JsonNode committed, JsonNode current, List<ObjectNode> entries) {
+        if (committed == null ? current == null : committed.equals(current)) {
+            return;
+        }
+
+        ObjectNode entry = JsonSerialization.mapper.createObjectNode();
+        entry.putAll(key);
+        entry.put(type, name);
+        if (current != null) {
+            entry.put("value", current);
+        }
+        entries.add(entry);
+    }
+
+    private void apply(JsonNode entry) {
+        String id = entry.get("id").getTextValue();
+        JsonNode value = entry.get("value");
+
+        if (entry.has("realm")) {
+            realms.put(id, new CommittedRealm(entry.get("realm")));
+            return;
+        }
+
+        CommittedRealm realm = realms.get(id);
+        if (entry.size() == 1) {
+            realms.remove(id);
+        } else if (realm == null) {
+            logger.warn("Ignoring model journal entry for unknown realm " + id);
+        } else if (entry.has("settings")) {
+            realm.settings = (ObjectNode) entry.get("settings");
+        } else if (entry.has("user")) {
+            put(realm.users, entry.get("user").getTextValue(), value);
+        } else if (entry.has("role") && entry.has("application")) {
+            String application = entry.get("application").getTextValue();
+            Map<String, JsonNode> roles = realm.applicationRoles.get(application);
+            if (roles == null) {
+                roles = new LinkedHashMap<String, JsonNode>();
+                realm.applicationRoles.put(application, roles);
+            }
+            put(roles, entry.get("role").getTextValue(), value);
+            if (roles.isEmpty()) {
+                realm.applicationRoles.remove(application);
+            }
+        } else if (entry.has("role")) {
+            put(realm.roles, entry.get("role").getTextValue(), value);
+        } else if (entry.has("application")) {
+            put(realm.applications, entry.get("application").getTextValue(), value);
+        } else if (entry.has("oauthClient")) {
+            put(realm.oauthClients, entry.get("oauthClient").getTextValue(), value);
+        }
+    }
+
+    private void load() {
+        if (realms != null) {
+            return;
+        }
+
+        realms = new LinkedHashMap<String, CommittedRealm>();
+
+        if (kcdata.exists()) {
+            try {
+                JsonNode root = JsonSerialization.mapper.readTree(kcdata);
+                if (root.isArray()) {
+                    for (JsonNode realm : root) {
+                        realms.put(realmId(realm), new CommittedRealm(realm));
+                    }
+                } else if (root.isObject()) {
+                    realms.put(realmId(root), new CommittedRealm(root));
+                }
+            } catch (IOException ioe) {
+                logger.error("Unable to read model file " + kcdata.getAbsolutePath(), ioe);
+            }
+        }
+
+        journalEntries = 0;
+        if (journal.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().length() == 0) continue;
+
+                    JsonNode entry;
+                    try {
+                        entry = JsonSerialization.mapper.readTree(line);
+                    } catch (IOException e) {
+                        // Last entry may be incomplete if the server stopped while writing it
+                        logger.warn("Ignoring incomplete entry in model journal " + journal.getAbsolutePath());
+                        break;
+                    }
+
+                    apply(entry);
+                    journalEntries++;
+                }
+            } catch (IOException ioe) {
+                logger.error("Unable to read model journal " + journal.getAbsolutePath(), ioe);
+            } finally {
+                try {
+                    if (reader != null) {
+                        reader.close();
+                    }
+                } catch (IOException e) {
+                    logger.error("Failed to close journal reader.", e);
+                }
+            }
+
+            // Also drops an incomplete last entry, so entries appended later aren't lost behind it
+            compact();
+        }
+    }
+
+    private void append(List<String> entries) {
+        FileOutputStream outStream = null;
+        try {
+            outStream = new FileOutputStream(journal, true);
+            for (String entry : entries) {
+                outStream.write((entry + "\n").getBytes("UTF-8"));
+            }
+            outStream.flush();
+            journalEntries += entries.size();
+        } catch (IOException e) {
+            logger.error("Unable to write model journal " + journal.getAbsolutePath(), e);
+        } finally {
+            try {
+                if (outStream != null) {
+                    outStream.close();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to close output stream.", e);
+            }
+        }
+    }
+
+    private void writeRealms(OutputStream outStream) throws IOException {
+        List<JsonNode> nodes = new ArrayList<JsonNode>();
+        for (CommittedRealm realm : realms.values()) {
+            nodes.add(realm.toJson());
+        }
+
+        JsonSerialization.prettyMapper.writeValue(outStream, nodes);
+    }
+
+    private static ObjectNode entry(String id) {
+        ObjectNode entry = JsonSerialization.mapper.createObjectNode();
+        entry.put("id", id);
+        return entry;
+    }
+
+    private static JsonNode withUsers(JsonNode realm, Map<String, JsonNode> users) {
+        ObjectNode json = JsonSerialization.mapper.createObjectNode();
+        json.putAll((ObjectNode) realm);
+
+        ArrayNode array = JsonSerialization.mapper.createArrayNode();
+        for (JsonNode user : users.values()) {
+            if (user != null) {
+                array.add(user);
+            }
+        }
+        if (array.size() > 0) {
+            json.put("users", array);
+        }
+        return json;
+    }
+
+    private static void put(Map<String, JsonNode> entities, String name, JsonNode value) {
+        if (value != null) {
+            entities.put(name, value);
+        } else {
+            entities.remove(name);
+        }
+    }
+
+    private static Map<String, JsonNode> get(Map<String, Map<String, JsonNode>> map, String key) {
+        Map<String, JsonNode> value = map.get(key);
+        return value != null ? value : Collections.<String, JsonNode>emptyMap();
+    }
+
+    private static String realmId(JsonNode realm) {
+        JsonNode id = realm.get("id");
+        return id != null ? id.getTextValue() : realm.get("realm").getTextValue();
+    }
+
+    /**
+     * A realm split into its entities, so they can be compared and replaced
+     * individually
+     */
+    private static class CommittedRealm {
+
+        private ObjectNode settings;
+
+        //               name, entity
+        private final Map<String, JsonNode> applications = new LinkedHashMap<String, JsonNode>();
+        private final Map<String, JsonNode> oauthClients = new LinkedHashMap<String, JsonNode>();
+        private final Map<String, JsonNode> roles = new LinkedHashMap<String, JsonNode>();
+
+        //               application name, role name, role
+        private final Map<String, Map<String, JsonNode>> applicationRoles = new LinkedHashMap<String, Map<String, JsonNode>>();
+
+        //               userId, user
+        private final Map<String, JsonNode> users = new LinkedHashMap<String, JsonNode>();
+
+        private CommittedRealm(JsonNode realm) {
+            settings = JsonSerialization.mapper.createObjectNode();
+            settings.putAll((ObjectNode) realm);
+            settings.remove(ENTITY_FIELDS);
+
+            putAll(applications, realm.get("applications"), "name");
+            putAll(oauthClients, realm.get("oauthClients"), "name");
+            putAll(users, realm.get("users"), "id");
+
+            JsonNode roleReps = realm.get("roles");
+            if (roleReps != null) {
+                putAll(roles, roleReps.get("realm"), "name");
+
+                JsonNode appRoleReps = roleReps.get("application");
+                if (appRoleReps != null) {
+                    Iterator<Map.Entry<String, JsonNode>> itr = appRoleReps.getFields();
+                    while (itr.hasNext()) {
+                        Map.Entry<String, JsonNode> e = itr.next();
+                        Map<String, JsonNode> appRoles = new LinkedHashMap<String, JsonNode>();
+                        putAll(appRoles, e.getValue(), "name");
+                        applicationRoles.put(e.getKey(), appRoles);
+                    }
+                }
+            }
+        }
+
+        private JsonNode toJson() {
+            ObjectNode realm = JsonSerialization.mapper.createObjectNode();
+            realm.putAll(settings);
+
+            putArray(realm, "applications", applications);
+            putArray(realm, "oauthClients", oauthClients);
+
+            ObjectNode roleReps = JsonSerialization.mapper.createObjectNode();
+            putArray(roleReps, "realm", roles);
+            if (!applicationRoles.isEmpty()) {
+                ObjectNode appRoleReps = roleReps.putObject("application");
+                for (Map.Entry<String, Map<String, JsonNode>> e : applicationRoles.entrySet()) {
+                    appRoleReps.putArray(e.getKey()).addAll(e.getValue().values());
+                }
+            }
+            realm.put("roles", roleReps);
+
+            putArray(realm, "users", users);
+            return realm;
+        }
+
+        private static void putAll(Map<String, JsonNode> entities, JsonNode array, String key) {
+            if (array == null) {
+                return;
+            }
+
+            for (JsonNode entity : array) {
+                JsonNode name = entity.has(key) ? entity.get(key) : entity.get("username");
+                entities.put(name.getTextValue(), entity);
+            }
+        }
+
+        private static void putArray(ObjectNode json, String field, Map<String, JsonNode> entities) {
+            if (!entities.isEmpty()) {
+                json.putArray(field).addAll(entities.values());
+            }
+        }
+
+    }
+
+}
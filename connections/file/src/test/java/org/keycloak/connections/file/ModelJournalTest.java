@@ -0,0 +1,275 @@
+package org.keycloak.connections.file;
+
+import org.codehaus.jackson.JsonNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModelJournalTest {
+
+    private File dir;
+    private File kcdata;
+    private File journal;
+
+    @Before
+    public void before() throws IOException {
+        dir = File.createTempFile("keycloak-model", "");
+        dir.delete();
+        dir.mkdirs();
+
+        kcdata = new File(dir, "keycloak-model.json");
+        journal = new File(dir, "keycloak-model.json.journal");
+    }
+
+    @After
+    public void after() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void newRealmJournaledWhole() throws IOException {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("a", realm("a", 1, "app", 1)), users("a", "u1", user("u1", 1)));
+
+        List<String> entries = readJournal();
+        assertEquals(1, entries.size());
+        assertTrue(entries.get(0).contains("\"realm\""));
+
+        JsonNode loaded = new ModelJournal(kcdata, journal, 100).getRealm("a");
+        assertEquals(1, loaded.get("version").getIntValue());
+        assertEquals("app", loaded.get("applications").get(0).get("name").getTextValue());
+        assertEquals("u1", loaded.get("users").get(0).get("id").getTextValue());
+    }
+
+    @Test
+    public void changedEntitiesJournaled() throws IOException {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("a", realm("a", 1, "app", 1)), users("a", "u1", user("u1", 1), "u2", user("u2", 1)));
+
+        // Unchanged realm and user aren't journaled
+        modelJournal.write(realms("a", realm("a", 1, "app", 1)), users("a", "u1", user("u1", 1)));
+        assertEquals(1, modelJournal.getJournalEntries());
+
+        modelJournal.write(realms("a", realm("a", 1, "app", 2)), users("a", "u1", user("u1", 2)));
+        modelJournal.write(realms("a", realm("a", 2, "app", 2)), users("a", "u2", null));
+
+        List<String> entries = readJournal();
+        assertEquals(5, entries.size());
+        assertTrue(entries.get(1).contains("\"application\":\"app\""));
+        assertTrue(entries.get(2).contains("\"user\":\"u1\""));
+        assertTrue(entries.get(3).contains("\"settings\""));
+
+        JsonNode removed = JsonSerialization.mapper.readTree(entries.get(4));
+        assertEquals("u2", removed.get("user").getTextValue());
+        assertFalse(removed.has("value"));
+
+        JsonNode loaded = new ModelJournal(kcdata, journal, 100).getRealm("a");
+        assertEquals(2, loaded.get("version").getIntValue());
+        assertEquals(2, loaded.get("applications").get(0).get("version").getIntValue());
+        assertEquals(1, loaded.get("users").size());
+        assertEquals(2, loaded.get("users").get(0).get("version").getIntValue());
+    }
+
+    @Test
+    public void changedRolesJournaled() throws IOException {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("a", realmWithRoles("a", "user", "app", "view")), users());
+
+        modelJournal.write(realms("a", realmWithRoles("a", "admin", "app", "view")), users());
+
+        List<String> entries = readJournal();
+        assertEquals(3, entries.size());
+        assertTrue(entries.get(1).contains("\"role\":\"user\"") && !entries.get(1).contains("value"));
+        assertTrue(entries.get(2).contains("\"role\":\"admin\"") && entries.get(2).contains("value"));
+
+        modelJournal.write(realms("a", realmWithRoles("a", "admin", "app", "manage")), users());
+
+        entries = readJournal();
+        assertEquals(5, entries.size());
+        assertTrue(entries.get(3).contains("\"application\":\"app\",\"role\":\"view\""));
+        assertTrue(entries.get(4).contains("\"application\":\"app\",\"role\":\"manage\""));
+
+        JsonNode loaded = new ModelJournal(kcdata, journal, 100).getRealm("a");
+        assertEquals("admin", loaded.get("roles").get("realm").get(0).get("name").getTextValue());
+        assertEquals(1, loaded.get("roles").get("realm").size());
+        assertEquals("manage", loaded.get("roles").get("application").get("app").get(0).get("name").getTextValue());
+        assertEquals(1, loaded.get("roles").get("application").get("app").size());
+    }
+
+    @Test
+    public void removeRealm() {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("a", realm("a", 1, "app", 1), "b", realm("b", 1, "app", 1)), users());
+        modelJournal.write(realms("b", null), users("b", "u1", user("u1", 1)));
+
+        assertEquals(3, modelJournal.getJournalEntries());
+
+        ModelJournal loaded = new ModelJournal(kcdata, journal, 100);
+        assertEquals(Collections.singleton("a"), loaded.getRealmIds());
+        assertNull(loaded.getRealm("b"));
+    }
+
+    @Test
+    public void changedRealms() {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("a", realm("a", 1, "app", 1), "b", realm("b", 1, "app", 1)), users("a", "u1", user("u1", 1)));
+
+        assertTrue(modelJournal.getChangedRealms(realms("a", realm("a", 1, "app", 1)), users("a", "u1", user("u1", 1))).isEmpty());
+        assertEquals(Collections.singleton("a"), modelJournal.getChangedRealms(realms("b", realm("b", 1, "app", 1)), users("a", "u1", user("u1", 2))));
+        assertEquals(Collections.singleton("b"), modelJournal.getChangedRealms(realms("b", realm("b", 1, "app", 2)), users()));
+        assertEquals(Collections.singleton("c"), modelJournal.getChangedRealms(realms("c", realm("c", 1, "app", 1)), users()));
+
+        // Only compares, doesn't commit
+        assertEquals(2, modelJournal.getJournalEntries());
+    }
+
+    @Test
+    public void compactAtThreshold() {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 3);
+        modelJournal.write(realms("a", realm("a", 1, "app", 1)), users());
+        modelJournal.write(realms("b", realm("b", 1, "app", 1)), users());
+        assertTrue(journal.exists());
+        assertFalse(kcdata.exists());
+
+        modelJournal.write(realms("a", realm("a", 2, "app", 1)), users());
+        assertFalse(journal.exists());
+        assertTrue(kcdata.exists());
+        assertEquals(0, modelJournal.getJournalEntries());
+
+        modelJournal.write(realms("b", realm("b", 2, "app", 1)), users());
+        assertEquals(1, modelJournal.getJournalEntries());
+
+        ModelJournal loaded = new ModelJournal(kcdata, journal, 3);
+        assertEquals(2, loaded.getRealmIds().size());
+        assertEquals(2, loaded.getRealm("a").get("version").getIntValue());
+        assertEquals(2, loaded.getRealm("b").get("version").getIntValue());
+    }
+
+    @Test
+    public void removeUnknownRealmNotJournaled() {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("unknown", null), users());
+
+        assertEquals(0, modelJournal.getJournalEntries());
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void replayWholeRealmEntries() throws IOException {
+        // Journals written before entities were journaled individually hold whole realms
+        FileOutputStream out = new FileOutputStream(journal);
+        try {
+            out.write(("{\"id\":\"a\",\"realm\":" + realm("a", 1, "app", 1) + "}\n").getBytes("UTF-8"));
+            out.write(("{\"id\":\"a\",\"realm\":" + realm("a", 2, "app", 1) + "}\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        assertEquals(2, new ModelJournal(kcdata, journal, 100).getRealm("a").get("version").getIntValue());
+    }
+
+    @Test
+    public void recoverFromTornLastEntry() throws IOException {
+        ModelJournal modelJournal = new ModelJournal(kcdata, journal, 100);
+        modelJournal.write(realms("a", realm("a", 1, "app", 1)), users());
+        modelJournal.write(realms("a", realm("a", 2, "app", 1)), users());
+
+        FileOutputStream out = new FileOutputStream(journal, true);
+        try {
+            out.write("{\"id\":\"a\",\"settings\":{\"id\":\"a\",\"ver".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        ModelJournal recovered = new ModelJournal(kcdata, journal, 100);
+        assertEquals(2, recovered.getRealm("a").get("version").getIntValue());
+
+        // Journal is compacted on load, so later entries aren't appended after the incomplete one
+        assertFalse(journal.exists());
+        recovered.write(realms("a", realm("a", 3, "app", 1)), users());
+
+        assertEquals(3, new ModelJournal(kcdata, journal, 100).getRealm("a").get("version").getIntValue());
+    }
+
+    private List<String> readJournal() throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static Map<String, JsonNode> realms(Object... idsAndJson) {
+        Map<String, JsonNode> realms = new HashMap<String, JsonNode>();
+        for (int i = 0; i < idsAndJson.length; i += 2) {
+            realms.put((String) idsAndJson[i], json((String) idsAndJson[i + 1]));
+        }
+        return realms;
+    }
+
+    private static Map<String, Map<String, JsonNode>> users(Object... realmIdAndIdsAndJson) {
+        Map<String, Map<String, JsonNode>> users = new HashMap<String, Map<String, JsonNode>>();
+        if (realmIdAndIdsAndJson.length > 0) {
+            Map<String, JsonNode> realmUsers = new HashMap<String, JsonNode>();
+            for (int i = 1; i < realmIdAndIdsAndJson.length; i += 2) {
+                realmUsers.put((String) realmIdAndIdsAndJson[i], json((String) realmIdAndIdsAndJson[i + 1]));
+            }
+            users.put((String) realmIdAndIdsAndJson[0], realmUsers);
+        }
+        return users;
+    }
+
+    private static JsonNode json(String json) {
+        try {
+            return json != null ? JsonSerialization.mapper.readTree(json) : null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String realm(String id, int version, String app, int appVersion) {
+        return "{\"id\":\"" + id + "\",\"realm\":\"" + id + "\",\"version\":" + version + "," +
+                "\"applications\":[{\"name\":\"" + app + "\",\"version\":" + appVersion + "}]}";
+    }
+
+    private static String realmWithRoles(String id, String role, String app, String appRole) {
+        return "{\"id\":\"" + id + "\",\"realm\":\"" + id + "\"," +
+                "\"applications\":[{\"name\":\"" + app + "\"}]," +
+                "\"roles\":{\"realm\":[{\"name\":\"" + role + "\"}],\"application\":{\"" + app + "\":[{\"name\":\"" + appRole + "\"}]}}}";
+    }
+
+    private static String user(String id, int version) {
+        return "{\"id\":\"" + id + "\",\"username\":\"" + id + "\",\"version\":" + version + "}";
+    }
+
+}
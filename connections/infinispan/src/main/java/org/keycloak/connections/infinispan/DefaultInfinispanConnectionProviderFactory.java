@@ -1,5 +1,6 @@
 package org.keycloak.connections.infinispan;
 
+import org.infinispan.commons.marshall.AdvancedExternalizer;
 import org.infinispan.configuration.cache.CacheMode;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
@@ -12,6 +13,7 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 
 import javax.naming.InitialContext;
+import java.util.ServiceLoader;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -94,6 +96,11 @@ public class DefaultInfinispanConnectionProviderFactory implements InfinispanCon
         }
         gcb.globalJmxStatistics().allowDuplicateDomains(allowDuplicateJMXDomains);
 
+        // Externalizers for cached entities are registered by the modules that define them
+        for (AdvancedExternalizer externalizer : ServiceLoader.load(AdvancedExternalizer.class, getClass().getClassLoader())) {
+            gcb.serialization().addAdvancedExternalizer(externalizer);
+        }
+
         cacheManager = new DefaultCacheManager(gcb.build());
         containerManaged = false;
 
@@ -127,6 +134,12 @@ public class DefaultInfinispanConnectionProviderFactory implements InfinispanCon
         Configuration sessionCacheConfiguration = sessionConfigBuilder.build();
         cacheManager.defineConfiguration(InfinispanConnectionProvider.SESSION_CACHE_NAME, sessionCacheConfiguration);
         cacheManager.defineConfiguration(InfinispanConnectionProvider.LOGIN_FAILURE_CACHE_NAME, sessionCacheConfiguration);
+
+        ConfigurationBuilder workConfigBuilder = new ConfigurationBuilder();
+        if (clustered) {
+            workConfigBuilder.clustering().cacheMode(CacheMode.REPL_SYNC);
+        }
+        cacheManager.defineConfiguration(InfinispanConnectionProvider.WORK_CACHE_NAME, workConfigBuilder.build());
     }
 
 }
@@ -117,6 +117,24 @@ public class DefaultJpaConnectionProviderFactory implements JpaConnectionProvide
 
                         properties.put("hibernate.show_sql", config.getBoolean("showSql", false));
                         properties.put("hibernate.format_sql", config.getBoolean("formatSql", true));
+
+                        // Inserts and updates are only sent in JDBC batches where enabled through JpaBatchBuilder, such as when adding users in bulk
+                        properties.put("hibernate.jdbc.batch.builder", new JpaBatchBuilder(config.getInt("batchSize", 50)));
+
+                        // Load lazy collections for up to batchFetchSize owners with one statement, rather than one statement per owner
+                        properties.put("hibernate.default_batch_fetch_size", config.getInt("batchFetchSize", 50));
+
+                        // Entities marked as @Cacheable (realms, clients and roles) are only cached if the second-level cache is enabled
+                        if (config.getBoolean("secondLevelCache", false)) {
+                            properties.put("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+                            properties.put("hibernate.cache.use_second_level_cache", true);
+                            String regionFactory = config.get("cacheRegionFactory");
+                            if (regionFactory != null) {
+                                properties.put("hibernate.cache.region.factory_class", regionFactory);
+                            }
+                        } else {
+                            properties.put("javax.persistence.sharedCache.mode", "NONE");
+                        }
                     }
 
                     if (databaseSchema != null) {
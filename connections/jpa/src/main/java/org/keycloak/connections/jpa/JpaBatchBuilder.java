@@ -0,0 +1,43 @@
+package org.keycloak.connections.jpa;
+
+import org.hibernate.engine.jdbc.batch.internal.BatchBuilderImpl;
+import org.hibernate.engine.jdbc.batch.internal.BatchingBatch;
+import org.hibernate.engine.jdbc.batch.spi.Batch;
+import org.hibernate.engine.jdbc.batch.spi.BatchKey;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+
+/**
+ * Sends inserts and updates in JDBC batches only while batching is enabled for the current thread, for example while
+ * users are added in bulk. Statements from other sessions are sent one at a time as before.
+ */
+public class JpaBatchBuilder extends BatchBuilderImpl {
+
+    private static final ThreadLocal<Boolean> enabled = new ThreadLocal<Boolean>();
+
+    private final int batchSize;
+
+    public JpaBatchBuilder(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Enables batching for the current thread until {@link #disable()} is called. Statements are only sent in batches
+     * when they're flushed while batching is enabled.
+     */
+    public static void enable() {
+        enabled.set(Boolean.TRUE);
+    }
+
+    public static void disable() {
+        enabled.remove();
+    }
+
+    @Override
+    public Batch buildBatch(BatchKey key, JdbcCoordinator jdbcCoordinator) {
+        if (batchSize > 1 && enabled.get() != null) {
+            return new BatchingBatch(key, jdbcCoordinator, batchSize);
+        }
+        return super.buildBatch(key, jdbcCoordinator);
+    }
+
+}
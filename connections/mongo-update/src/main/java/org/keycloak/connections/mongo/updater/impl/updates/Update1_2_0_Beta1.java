@@ -41,6 +41,14 @@ public class Update1_2_0_Beta1 extends Update {
         addAccessCodeLoginTimeout();
         addNewAdminRoles();
         addDefaultProtocolMappers(session);
+        addEventIndexes();
+    }
+
+    private void addEventIndexes() {
+        ensureIndex("events", new String[]{"realmId", "time"}, false, false);
+        ensureIndex("events", new String[]{"realmId", "userId", "time"}, false, false);
+        ensureIndex("events", new String[]{"realmId", "clientId", "time"}, false, false);
+        ensureIndex("events", new String[]{"realmId", "type", "time"}, false, false);
     }
 
 
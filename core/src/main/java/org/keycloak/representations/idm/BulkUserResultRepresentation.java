@@ -0,0 +1,186 @@
+package org.keycloak.representations.idm;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Result of adding users in bulk. Users are added in chunks, if a chunk fails none of the users in it are added. Users
+ * that are invalid, for example with a password that doesn't match the password policy of the realm, are not added and
+ * reported in userErrors, the other users in the chunk are still added. If the users couldn't be read to the end, error
+ * and errorIndex are set and the users before errorIndex have been processed.
+ */
+public class BulkUserResultRepresentation {
+
+    protected int added;
+    protected int failed;
+    protected List<ChunkError> errors = new LinkedList<ChunkError>();
+    protected List<UserError> userErrors = new LinkedList<UserError>();
+    protected String error;
+    protected Integer errorIndex;
+
+    public int getAdded() {
+        return added;
+    }
+
+    public void setAdded(int added) {
+        this.added = added;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<ChunkError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ChunkError> errors) {
+        this.errors = errors;
+    }
+
+    public List<UserError> getUserErrors() {
+        return userErrors;
+    }
+
+    public void setUserErrors(List<UserError> userErrors) {
+        this.userErrors = userErrors;
+    }
+
+    /**
+     * Error that stopped reading the users, or null if all users were read
+     *
+     * @return
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Index of the user that couldn't be read, or null if all users were read
+     *
+     * @return
+     */
+    public Integer getErrorIndex() {
+        return errorIndex;
+    }
+
+    public void setErrorIndex(Integer errorIndex) {
+        this.errorIndex = errorIndex;
+    }
+
+    public static class ChunkError {
+
+        protected int offset;
+        protected int count;
+        protected String error;
+
+        public ChunkError() {
+        }
+
+        public ChunkError(int offset, int count, String error) {
+            this.offset = offset;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * Index of the first user in the chunk
+         *
+         * @return
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public void setOffset(int offset) {
+            this.offset = offset;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+    }
+
+    public static class UserError {
+
+        protected int index;
+        protected String username;
+        protected String error;
+        protected List<String> parameters;
+
+        public UserError() {
+        }
+
+        public UserError(int index, String username, String error, List<String> parameters) {
+            this.index = index;
+            this.username = username;
+            this.error = error;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Index of the user in the array of users
+         *
+         * @return
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        /**
+         * Error message, or message key for password policy errors
+         *
+         * @return
+         */
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        public void setParameters(List<String> parameters) {
+            this.parameters = parameters;
+        }
+
+    }
+
+}
@@ -22,6 +22,7 @@ public class CredentialRepresentation {
     protected String hashedSaltedValue;
     protected String salt;
     protected Integer hashIterations;
+    protected String algorithm;
     // only used when updating a credential.  Might set required action
     protected boolean temporary;
 
@@ -73,6 +74,14 @@ public class CredentialRepresentation {
         this.hashIterations = hashIterations;
     }
 
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
     public boolean isTemporary() {
         return temporary;
     }
@@ -8,6 +8,8 @@ import java.util.Map;
  */
 public class Event {
 
+    private String id;
+
     private long time;
 
     private EventType type;
@@ -26,6 +28,19 @@ public class Event {
 
     private Map<String, String> details;
 
+    /**
+     * Id assigned by the event store, or null if the event hasn't been stored
+     *
+     * @return
+     */
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public long getTime() {
         return time;
     }
@@ -100,6 +115,7 @@ public class Event {
 
     public Event clone() {
         Event clone = new Event();
+        clone.id = id;
         clone.time = time;
         clone.type = type;
         clone.realmId = realmId;
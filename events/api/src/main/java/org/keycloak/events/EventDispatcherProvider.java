@@ -0,0 +1,22 @@
+package org.keycloak.events;
+
+import org.keycloak.provider.Provider;
+
+/**
+ * Decides how events are delivered to the event store and event listeners. Listeners that are dispatched
+ * asynchronously receive events on a background thread, in a separate session and transaction from the request that
+ * created the event.
+ */
+public interface EventDispatcherProvider extends Provider {
+
+    /**
+     * Returns a listener that queues events for the provider, or null if events should be sent to the provider
+     * synchronously
+     *
+     * @param type EventStoreProvider or EventListenerProvider
+     * @param id id of the provider, or null for the default provider
+     * @return
+     */
+    EventListenerProvider getAsyncListener(Class<? extends EventListenerProvider> type, String id);
+
+}
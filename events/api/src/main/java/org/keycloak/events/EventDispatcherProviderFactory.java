@@ -0,0 +1,7 @@
+package org.keycloak.events;
+
+import org.keycloak.provider.ProviderFactory;
+
+public interface EventDispatcherProviderFactory extends ProviderFactory<EventDispatcherProvider> {
+
+}
@@ -0,0 +1,24 @@
+package org.keycloak.events;
+
+import org.keycloak.provider.Provider;
+import org.keycloak.provider.ProviderFactory;
+import org.keycloak.provider.Spi;
+
+public class EventDispatcherSpi implements Spi {
+
+    @Override
+    public String getName() {
+        return "eventsDispatcher";
+    }
+
+    @Override
+    public Class<? extends Provider> getProviderClass() {
+        return EventDispatcherProvider.class;
+    }
+
+    @Override
+    public Class<? extends ProviderFactory> getProviderFactoryClass() {
+        return EventDispatcherProviderFactory.class;
+    }
+
+}
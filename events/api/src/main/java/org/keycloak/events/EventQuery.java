@@ -19,6 +19,34 @@ public interface EventQuery {
 
     public EventQuery toDate(String toDate);
 
+    /**
+     * Only return events created at or after the given time
+     *
+     * @param fromTime time in milliseconds
+     * @return
+     */
+    public EventQuery fromTime(long fromTime);
+
+    /**
+     * Only return events created at or before the given time
+     *
+     * @param toTime time in milliseconds
+     * @return
+     */
+    public EventQuery toTime(long toTime);
+
+    /**
+     * Only return events that come after the given event. Events are returned newest first, ordered by time and then
+     * by id, so to page through a large number of events pass the time and id of the last event of the previous page.
+     * This is much faster than using firstResult, as the store doesn't have to skip all the events on the previous
+     * pages, and events with the same time are neither skipped nor repeated.
+     *
+     * @param time time of the last event on the previous page
+     * @param id id of the last event on the previous page
+     * @return
+     */
+    public EventQuery before(long time, String id);
+
     public EventQuery ipAddress(String ipAddress);
 
     public EventQuery firstResult(int result);
@@ -0,0 +1,10 @@
+package org.keycloak.events;
+
+/**
+ * Event listeners created by factories implementing this interface are always invoked on the request thread, within
+ * the transaction of the request that created the event. Use it for listeners that need to participate in the
+ * transaction, or that expect events to be delivered before the request completes.
+ */
+public interface SynchronousEventListenerProviderFactory extends EventListenerProviderFactory {
+
+}
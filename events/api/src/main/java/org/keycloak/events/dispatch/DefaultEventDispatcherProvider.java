@@ -0,0 +1,60 @@
+package org.keycloak.events.dispatch;
+
+import org.keycloak.events.Event;
+import org.keycloak.events.EventDispatcherProvider;
+import org.keycloak.events.EventListenerProvider;
+import org.keycloak.models.KeycloakSession;
+
+public class DefaultEventDispatcherProvider implements EventDispatcherProvider {
+
+    private final KeycloakSession session;
+    private final DefaultEventDispatcherProviderFactory factory;
+
+    public DefaultEventDispatcherProvider(KeycloakSession session, DefaultEventDispatcherProviderFactory factory) {
+        this.session = session;
+        this.factory = factory;
+    }
+
+    @Override
+    public EventListenerProvider getAsyncListener(Class<? extends EventListenerProvider> type, String id) {
+        EventQueue queue = factory.getQueue(type, id);
+        return queue != null ? new QueuedEventListener(session, queue) : null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static class QueuedEventListener implements EventListenerProvider {
+
+        private final KeycloakSession session;
+        private final EventQueue queue;
+
+        private QueuedEventListener(KeycloakSession session, EventQueue queue) {
+            this.session = session;
+            this.queue = queue;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            // The event builder may be reused after sending, so queue a copy
+            if (!queue.offer(event.clone())) {
+                EventListenerProvider provider = queue.getId() != null ? session.getProvider(queue.getType(), queue.getId()) : session.getProvider(queue.getType());
+                if (provider != null) {
+                    provider.onEvent(event);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return queue.getId() != null ? queue.getId() : "store";
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.keycloak.events.dispatch;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.events.EventDispatcherProvider;
+import org.keycloak.events.EventDispatcherProviderFactory;
+import org.keycloak.events.EventListenerProvider;
+import org.keycloak.events.EventStoreProvider;
+import org.keycloak.events.SynchronousEventListenerProviderFactory;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.provider.ProviderFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sends events to the event store and event listeners asynchronously. Each provider gets its own queue and workers
+ * (see {@link EventQueue}), so a slow listener doesn't delay the request or the other listeners.
+ *
+ * Listeners whose factory implements {@link SynchronousEventListenerProviderFactory}, or that are listed in
+ * synchronous (use "store" for the event store), are invoked on the request thread.
+ */
+public class DefaultEventDispatcherProviderFactory implements EventDispatcherProviderFactory {
+
+    private static final Logger log = Logger.getLogger(DefaultEventDispatcherProviderFactory.class);
+
+    private static final String STORE = "store";
+
+    private final ConcurrentMap<String, EventQueue> queues = new ConcurrentHashMap<String, EventQueue>();
+
+    private KeycloakSessionFactory sessionFactory;
+    private boolean async;
+    private int queueSize;
+    private int threads;
+    private int batchSize;
+    private OverflowPolicy overflow;
+    private long blockTimeout;
+    private Set<String> synchronous;
+    private volatile boolean closed;
+
+    @Override
+    public EventDispatcherProvider create(KeycloakSession session) {
+        return new DefaultEventDispatcherProvider(session, this);
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        async = config.getBoolean("async", true);
+        queueSize = config.getInt("queueSize", 10000);
+        threads = config.getInt("threads", 1);
+        batchSize = config.getInt("batchSize", 100);
+        overflow = OverflowPolicy.valueOf(config.get("overflow", OverflowPolicy.BLOCK.name()).toUpperCase().replace('-', '_'));
+        blockTimeout = config.getLong("blockTimeout", 5000L);
+
+        String[] synchronous = config.getArray("synchronous");
+        this.synchronous = synchronous != null ? new HashSet<String>(Arrays.asList(synchronous)) : Collections.<String>emptySet();
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        this.sessionFactory = factory;
+    }
+
+    /**
+     * Returns the queue for the provider, or null if the provider should be invoked synchronously
+     *
+     * @param type
+     * @param id
+     * @return
+     */
+    EventQueue getQueue(Class<? extends EventListenerProvider> type, String id) {
+        if (!async || closed) {
+            return null;
+        }
+
+        String key = type.equals(EventStoreProvider.class) ? STORE : id;
+        EventQueue queue = queues.get(key);
+        if (queue != null) {
+            return queue;
+        }
+
+        if (synchronous.contains(key)) {
+            return null;
+        }
+
+        ProviderFactory providerFactory = id != null ? sessionFactory.getProviderFactory(type, id) : sessionFactory.getProviderFactory(type);
+        if (providerFactory == null || providerFactory instanceof SynchronousEventListenerProviderFactory) {
+            return null;
+        }
+
+        synchronized (queues) {
+            queue = queues.get(key);
+            if (queue == null && !closed) {
+                queue = new EventQueue(sessionFactory, type, id, queueSize, threads, batchSize, overflow, blockTimeout);
+                queue.start();
+                queues.put(key, queue);
+
+                log.debugv("Started event dispatcher for {0} (overflow = {1})", key, overflow);
+            }
+            return queue;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (queues) {
+            closed = true;
+            for (EventQueue queue : queues.values()) {
+                queue.shutdown();
+            }
+            queues.clear();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return "default";
+    }
+
+}
@@ -0,0 +1,263 @@
+package org.keycloak.events.dispatch;
+
+import org.jboss.logging.Logger;
+import org.keycloak.events.Event;
+import org.keycloak.events.EventListenerProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.MetricsProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues events for a single event store or event listener provider. Events are split into a number of partitions by
+ * session id (or user id if the event has no session), each with its own bounded queue and worker thread, so events for
+ * the same session are delivered in the order they were created. This holds for all overflow policies except
+ * CALLER_RUNS, where an event that doesn't fit in the queue is sent by the caller before the events already queued.
+ * With BLOCK the caller waits up to blockTimeout (ms) for space in the queue, after that the event is sent by the caller
+ * as with CALLER_RUNS, so a stalled provider can't block requests indefinitely.
+ *
+ * Workers take up to batchSize events at a time and send them to a provider created in a new session. The session
+ * transaction is committed after the batch, so a store can write the whole batch in a single transaction.
+ */
+public class EventQueue {
+
+    private static final Logger log = Logger.getLogger(EventQueue.class);
+
+    private final KeycloakSessionFactory factory;
+    private final Class<? extends EventListenerProvider> type;
+    private final String id;
+    private final String name;
+    private final int batchSize;
+    private final OverflowPolicy overflow;
+    private final long blockTimeout;
+
+    private final BlockingQueue<Event>[] partitions;
+    private final Thread[] workers;
+    private final CountDownLatch shutdownLatch;
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong blockTimeouts = new AtomicLong();
+    private volatile boolean run = true;
+
+    @SuppressWarnings("unchecked")
+    public EventQueue(KeycloakSessionFactory factory, Class<? extends EventListenerProvider> type, String id, int queueSize, int threads, int batchSize, OverflowPolicy overflow, long blockTimeout) {
+        this.factory = factory;
+        this.type = type;
+        this.id = id;
+        this.name = id != null ? id : "store";
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.blockTimeout = blockTimeout;
+
+        this.partitions = new BlockingQueue[threads];
+        this.workers = new Thread[threads];
+        this.shutdownLatch = new CountDownLatch(threads);
+
+        int partitionSize = Math.max(1, queueSize / threads);
+        for (int i = 0; i < threads; i++) {
+            partitions[i] = new ArrayBlockingQueue<Event>(partitionSize);
+            workers[i] = new Thread(new Worker(partitions[i]), "Event Dispatcher " + name + " " + i);
+            workers[i].setDaemon(true);
+        }
+    }
+
+    public void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    public Class<? extends EventListenerProvider> getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public OverflowPolicy getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Adds the event to the queue
+     *
+     * @param event
+     * @return false if the event was not queued and should be sent by the caller
+     */
+    public boolean offer(Event event) {
+        if (!run) {
+            return false;
+        }
+
+        BlockingQueue<Event> queue = partitions[partition(event)];
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    if (queue.offer(event, blockTimeout, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                    blockTimedOut(event);
+                    return false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DISCARD:
+                if (!queue.offer(event)) {
+                    discarded(event);
+                }
+                return true;
+            case DISCARD_OLDEST:
+                while (!queue.offer(event)) {
+                    Event oldest = queue.poll();
+                    if (oldest != null) {
+                        discarded(oldest);
+                    }
+                }
+                return true;
+            default:
+                return queue.offer(event);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (BlockingQueue<Event> queue : partitions) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    /**
+     * @return number of events sent by the caller as the queue was still full after blockTimeout
+     */
+    public long getBlockTimeouts() {
+        return blockTimeouts.get();
+    }
+
+    /**
+     * Stops the workers after sending the events that are already queued, waiting up to 10 seconds
+     */
+    public void shutdown() {
+        run = false;
+        try {
+            if (!shutdownLatch.await(10, TimeUnit.SECONDS)) {
+                log.warnv("Event dispatcher for {0} stopped with {1} events not sent", name, size());
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int partition(Event event) {
+        if (partitions.length == 1) {
+            return 0;
+        }
+        String key = event.getSessionId() != null ? event.getSessionId() : event.getUserId();
+        return key != null ? (key.hashCode() & Integer.MAX_VALUE) % partitions.length : 0;
+    }
+
+    private void discarded(Event event) {
+        // Only log the first and then every 1000th discarded event to not flood the log when overloaded
+        long count = discarded.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            log.warnv("Event queue for {0} is full, discarded {1} events (last type={2}, realmId={3})", name, count, event.getType(), event.getRealmId());
+        }
+    }
+
+    private void blockTimedOut(Event event) {
+        long count = blockTimeouts.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            log.warnv("Event queue for {0} is full after waiting {1} ms, sent {2} events synchronously (last type={3}, realmId={4})", name, blockTimeout, count, event.getType(), event.getRealmId());
+        }
+    }
+
+    protected void send(List<Event> events) {
+        long start = System.nanoTime();
+        KeycloakSession session = factory.create();
+        try {
+            session.getTransaction().begin();
+
+            EventListenerProvider provider = id != null ? session.getProvider(type, id) : session.getProvider(type);
+            if (provider == null) {
+                log.errorv("Failed to send {0} events, provider {1} not found", events.size(), name);
+                session.getTransaction().rollback();
+                return;
+            }
+
+            for (Event event : events) {
+                try {
+                    provider.onEvent(event);
+                } catch (Throwable t) {
+                    log.error("Failed to send event to " + name, t);
+                }
+            }
+
+            session.getTransaction().commit();
+
+            MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+            if (metrics != null) {
+                metrics.record("events.dispatch." + name, System.nanoTime() - start);
+                metrics.add("events.dispatch." + name + ".count", events.size());
+                metrics.gauge("events.dispatch." + name + ".queue", size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to send " + events.size() + " events to " + name, e);
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Event> queue;
+
+        private Worker(BlockingQueue<Event> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            List<Event> batch = new ArrayList<Event>(batchSize);
+            try {
+                while (run || !queue.isEmpty()) {
+                    try {
+                        Event event = queue.poll(2, TimeUnit.SECONDS);
+                        if (event == null) {
+                            continue;
+                        }
+
+                        batch.add(event);
+                        queue.drainTo(batch, batchSize - 1);
+                        send(batch);
+                    } catch (InterruptedException e) {
+                        break;
+                    } finally {
+                        batch.clear();
+                    }
+                }
+            } finally {
+                shutdownLatch.countDown();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,30 @@
+package org.keycloak.events.dispatch;
+
+/**
+ * What to do with an event when the queue of a listener is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait until there is space in the queue. This is the default, as it keeps events in order without losing any. If
+     * there is still no space after the block timeout the event is sent synchronously, as with CALLER_RUNS.
+     */
+    BLOCK,
+
+    /**
+     * Discard the event
+     */
+    DISCARD,
+
+    /**
+     * Discard the oldest event in the queue
+     */
+    DISCARD_OLDEST,
+
+    /**
+     * Send the event synchronously on the thread that created it. The event may be delivered before events for the same
+     * session that are still queued.
+     */
+    CALLER_RUNS
+
+}
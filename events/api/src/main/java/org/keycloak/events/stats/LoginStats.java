@@ -0,0 +1,76 @@
+package org.keycloak.events.stats;
+
+import org.keycloak.events.EventType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Number of events by type and estimated number of distinct active users for a period. The period starts at time and
+ * lasts duration milliseconds.
+ */
+public class LoginStats {
+
+    private long time;
+    private long duration;
+    private String clientId;
+    private Map<String, Long> counts = new HashMap<String, Long>();
+    private long activeUsers;
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+        this.counts = counts;
+    }
+
+    public long getActiveUsers() {
+        return activeUsers;
+    }
+
+    public void setActiveUsers(long activeUsers) {
+        this.activeUsers = activeUsers;
+    }
+
+    public long getCount(EventType type) {
+        Long count = counts.get(type.toString());
+        return count != null ? count : 0;
+    }
+
+    public double getLoginFailureRate() {
+        long logins = getCount(EventType.LOGIN);
+        long errors = getCount(EventType.LOGIN_ERROR);
+        return logins + errors > 0 ? (double) errors / (logins + errors) : 0;
+    }
+
+    public void add(String type, long count) {
+        Long current = counts.get(type);
+        counts.put(type, current != null ? current + count : count);
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.keycloak.events.stats;
+
+import org.keycloak.events.EventListenerProvider;
+
+import java.util.List;
+
+/**
+ * Event listener that maintains pre-aggregated statistics of events, so dashboards don't have to query the raw events.
+ * Statistics are kept per realm, client and hour, and rolled up per day after a while.
+ *
+ * As statistics aren't kept for shorter periods, a period that starts or ends part way through an hour (or a day once
+ * rolled up) includes the whole hour or day. The time and duration of the returned statistics are the period that was
+ * actually counted.
+ */
+public interface LoginStatsProvider extends EventListenerProvider {
+
+    /**
+     * Returns statistics for each hour in the given period, oldest first. Hours without events are not included. Hours
+     * that have been rolled up are returned as one entry for the whole day.
+     *
+     * @param realmId
+     * @param clientId client to return statistics for, or null for all clients
+     * @param fromTime time in milliseconds
+     * @param toTime time in milliseconds
+     * @return
+     */
+    List<LoginStats> getHourlyStats(String realmId, String clientId, long fromTime, long toTime);
+
+    /**
+     * Returns statistics for the whole period. Active users is the (estimated) number of distinct users in the period,
+     * not the sum of the hourly active users.
+     *
+     * @param realmId
+     * @param clientId client to return statistics for, or null for all clients
+     * @param fromTime time in milliseconds
+     * @param toTime time in milliseconds
+     * @return
+     */
+    LoginStats getStats(String realmId, String clientId, long fromTime, long toTime);
+
+}
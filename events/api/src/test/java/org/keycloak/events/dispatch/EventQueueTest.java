@@ -0,0 +1,238 @@
+package org.keycloak.events.dispatch;
+
+import org.junit.After;
+import org.junit.Test;
+import org.keycloak.events.Event;
+import org.keycloak.events.EventListenerProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventQueueTest {
+
+    private MockEventQueue queue;
+
+    @After
+    public void after() {
+        if (queue != null) {
+            queue.release();
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void eventsForSessionInOrder() throws Exception {
+        queue = new MockEventQueue(1000, 4, 10, OverflowPolicy.BLOCK);
+        queue.release();
+        queue.start();
+
+        for (int i = 0; i < 100; i++) {
+            for (int s = 0; s < 10; s++) {
+                assertTrue(queue.offer(event("session-" + s, i)));
+            }
+        }
+
+        assertTrue(queue.waitForSent(1000));
+        assertInOrder(queue.sent);
+    }
+
+    @Test
+    public void blockWhenFull() throws Exception {
+        queue = new MockEventQueue(2, 1, 1, OverflowPolicy.BLOCK);
+        queue.start();
+
+        queue.offer(event("session", 0));
+        queue.awaitSending();
+
+        // Worker is blocked sending the first event, so the queue fills up
+        assertTrue(queue.offer(event("session", 1)));
+        assertTrue(queue.offer(event("session", 2)));
+
+        final CountDownLatch offered = new CountDownLatch(1);
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                queue.offer(event("session", 3));
+                offered.countDown();
+            }
+        };
+        caller.start();
+
+        assertFalse(offered.await(100, TimeUnit.MILLISECONDS));
+
+        queue.release();
+        assertTrue(offered.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.waitForSent(4));
+        assertInOrder(queue.sent);
+        assertEquals(0, queue.getDiscarded());
+    }
+
+    @Test
+    public void blockTimeout() throws Exception {
+        queue = new MockEventQueue(2, 1, 1, OverflowPolicy.BLOCK, 100);
+        queue.start();
+
+        queue.offer(event("session", 0));
+        queue.awaitSending();
+
+        assertTrue(queue.offer(event("session", 1)));
+        assertTrue(queue.offer(event("session", 2)));
+
+        // Worker is stalled, so the caller gives up waiting and sends the event itself
+        long start = System.currentTimeMillis();
+        assertFalse(queue.offer(event("session", 3)));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(1, queue.getBlockTimeouts());
+        assertEquals(0, queue.getDiscarded());
+
+        queue.release();
+        assertTrue(queue.waitForSent(3));
+        assertEquals("0,1,2", sequence(queue.sent));
+    }
+
+    @Test
+    public void discardWhenFull() throws Exception {
+        queue = new MockEventQueue(2, 1, 1, OverflowPolicy.DISCARD);
+        queue.start();
+
+        queue.offer(event("session", 0));
+        queue.awaitSending();
+
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(queue.offer(event("session", i)));
+        }
+        assertEquals(2, queue.getDiscarded());
+
+        queue.release();
+        assertTrue(queue.waitForSent(3));
+        assertEquals("0,1,2", sequence(queue.sent));
+    }
+
+    @Test
+    public void discardOldestWhenFull() throws Exception {
+        queue = new MockEventQueue(2, 1, 1, OverflowPolicy.DISCARD_OLDEST);
+        queue.start();
+
+        queue.offer(event("session", 0));
+        queue.awaitSending();
+
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(queue.offer(event("session", i)));
+        }
+        assertEquals(2, queue.getDiscarded());
+
+        queue.release();
+        assertTrue(queue.waitForSent(3));
+        assertEquals("0,3,4", sequence(queue.sent));
+    }
+
+    @Test
+    public void callerRunsWhenFull() throws Exception {
+        queue = new MockEventQueue(2, 1, 1, OverflowPolicy.CALLER_RUNS);
+        queue.start();
+
+        queue.offer(event("session", 0));
+        queue.awaitSending();
+
+        assertTrue(queue.offer(event("session", 1)));
+        assertTrue(queue.offer(event("session", 2)));
+        assertFalse(queue.offer(event("session", 3)));
+        assertEquals(0, queue.getDiscarded());
+    }
+
+    @Test
+    public void shutdownSendsQueuedEvents() throws Exception {
+        queue = new MockEventQueue(100, 2, 10, OverflowPolicy.BLOCK);
+        queue.release();
+        for (int i = 0; i < 50; i++) {
+            queue.offer(event("session-" + (i % 5), i));
+        }
+
+        queue.start();
+        queue.shutdown();
+
+        assertEquals(50, queue.sent.size());
+        assertFalse(queue.offer(event("session", 50)));
+    }
+
+    private static Event event(String sessionId, int sequence) {
+        Event event = new Event();
+        event.setSessionId(sessionId);
+        event.setTime(sequence);
+        return event;
+    }
+
+    private static void assertInOrder(List<Event> events) {
+        Map<String, Long> last = new HashMap<String, Long>();
+        for (Event event : events) {
+            Long previous = last.put(event.getSessionId(), event.getTime());
+            if (previous != null) {
+                assertTrue(previous < event.getTime());
+            }
+        }
+    }
+
+    private static String sequence(List<Event> events) {
+        StringBuilder sb = new StringBuilder();
+        for (Event event : events) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(event.getTime());
+        }
+        return sb.toString();
+    }
+
+    private static class MockEventQueue extends EventQueue {
+
+        private final List<Event> sent = new CopyOnWriteArrayList<Event>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private MockEventQueue(int queueSize, int threads, int batchSize, OverflowPolicy overflow) {
+            this(queueSize, threads, batchSize, overflow, 5000);
+        }
+
+        private MockEventQueue(int queueSize, int threads, int batchSize, OverflowPolicy overflow, long blockTimeout) {
+            super(null, EventListenerProvider.class, "mock", queueSize, threads, batchSize, overflow, blockTimeout);
+        }
+
+        @Override
+        protected void send(List<Event> events) {
+            sending.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.addAll(new ArrayList<Event>(events));
+        }
+
+        private void awaitSending() throws InterruptedException {
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+        }
+
+        private void release() {
+            release.countDown();
+        }
+
+        private boolean waitForSent(int count) throws InterruptedException {
+            long timeout = System.currentTimeMillis() + 5000;
+            while (sent.size() < count && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            return sent.size() == count;
+        }
+
+    }
+
+}
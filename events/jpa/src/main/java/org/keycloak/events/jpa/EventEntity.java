@@ -1,15 +1,26 @@
 package org.keycloak.events.jpa;
 
+import org.hibernate.annotations.Index;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
 /**
+ * Events are indexed by realm and time, with additional indexes for the filters supported by EventQuery. Expired events
+ * are removed with a range delete on the realm and time index.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 @Entity
 @Table(name="EVENT_ENTITY")
+@org.hibernate.annotations.Table(appliesTo = "EVENT_ENTITY", indexes = {
+        @Index(name = "IDX_EVENT_REALM_TIME", columnNames = { "REALM_ID", "EVENT_TIME" }),
+        @Index(name = "IDX_EVENT_REALM_USER", columnNames = { "REALM_ID", "USER_ID", "EVENT_TIME" }),
+        @Index(name = "IDX_EVENT_REALM_CLIENT", columnNames = { "REALM_ID", "CLIENT_ID", "EVENT_TIME" }),
+        @Index(name = "IDX_EVENT_REALM_TYPE", columnNames = { "REALM_ID", "TYPE", "EVENT_TIME" })
+})
 public class EventEntity {
 
     @Id
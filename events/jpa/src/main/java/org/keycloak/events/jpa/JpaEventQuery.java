@@ -93,6 +93,25 @@ public class JpaEventQuery implements EventQuery {
         return this;
     }
     
+    @Override
+    public EventQuery fromTime(long fromTime) {
+        predicates.add(cb.greaterThanOrEqualTo(root.<Long>get("time"), fromTime));
+        return this;
+    }
+
+    @Override
+    public EventQuery toTime(long toTime) {
+        predicates.add(cb.lessThanOrEqualTo(root.<Long>get("time"), toTime));
+        return this;
+    }
+
+    @Override
+    public EventQuery before(long time, String id) {
+        predicates.add(cb.or(cb.lessThan(root.<Long>get("time"), time),
+                cb.and(cb.equal(root.<Long>get("time"), time), cb.lessThan(root.<String>get("id"), id))));
+        return this;
+    }
+
     @Override
     public EventQuery ipAddress(String ipAddress) {
         predicates.add(cb.equal(root.get("ipAddress"), ipAddress));
@@ -117,7 +136,7 @@ public class JpaEventQuery implements EventQuery {
             cq.where(cb.and(predicates.toArray(new Predicate[predicates.size()])));
         }
 
-        cq.orderBy(cb.desc(root.get("time")));
+        cq.orderBy(cb.desc(root.get("time")), cb.desc(root.get("id")));
 
         TypedQuery<EventEntity> query = em.createQuery(cq);
 
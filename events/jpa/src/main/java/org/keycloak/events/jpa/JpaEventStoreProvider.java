@@ -86,6 +86,7 @@ public class JpaEventStoreProvider implements EventStoreProvider {
 
     static Event convert(EventEntity o) {
         Event e = new Event();
+        e.setId(o.getId());
         e.setTime(o.getTime());
         e.setType(EventType.valueOf(o.getType()));
         e.setRealmId(o.getRealmId());
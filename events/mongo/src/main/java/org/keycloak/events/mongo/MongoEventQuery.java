@@ -1,10 +1,11 @@
 package org.keycloak.events.mongo;
 
+import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
-import com.mongodb.BasicDBObjectBuilder;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 
+import org.bson.types.ObjectId;
 import org.keycloak.events.Event;
 import org.keycloak.events.EventQuery;
 import org.keycloak.events.EventType;
@@ -66,7 +67,7 @@ public class MongoEventQuery implements EventQuery {
         } catch (ParseException e) {
             e.printStackTrace();
         }
-        query.put("time", BasicDBObjectBuilder.start("$gte", from).get());
+        time("$gte", from);
         return this;
     }
 
@@ -79,10 +80,44 @@ public class MongoEventQuery implements EventQuery {
         } catch (ParseException e) {
             e.printStackTrace();
         }
-        query.put("time", BasicDBObjectBuilder.start("$lte", to).get());
+        time("$lte", to);
         return this;
     }
 
+    @Override
+    public EventQuery fromTime(long fromTime) {
+        time("$gte", fromTime);
+        return this;
+    }
+
+    @Override
+    public EventQuery toTime(long toTime) {
+        time("$lte", toTime);
+        return this;
+    }
+
+    @Override
+    public EventQuery before(long time, String id) {
+        Object _id = ObjectId.isValid(id) ? new ObjectId(id) : id;
+
+        BasicDBObject sameTime = new BasicDBObject("time", time);
+        sameTime.put("_id", new BasicDBObject("$lt", _id));
+        BasicDBList or = new BasicDBList();
+        or.add(new BasicDBObject("time", new BasicDBObject("$lt", time)));
+        or.add(sameTime);
+        query.put("$or", or);
+        return this;
+    }
+
+    private void time(String operator, Long time) {
+        BasicDBObject condition = (BasicDBObject) query.get("time");
+        if (condition == null) {
+            condition = new BasicDBObject();
+            query.put("time", condition);
+        }
+        condition.put(operator, time);
+    }
+
     @Override
     public EventQuery ipAddress(String ipAddress) {
         query.put("ipAddress", ipAddress);
@@ -103,7 +138,9 @@ public class MongoEventQuery implements EventQuery {
 
     @Override
     public List<Event> getResultList() {
-        DBCursor cur = audit.find(query).sort(new BasicDBObject("time", -1));
+        BasicDBObject sort = new BasicDBObject("time", -1);
+        sort.put("_id", -1);
+        DBCursor cur = audit.find(query).sort(sort);
         if (firstResult != null) {
             cur.skip(firstResult);
         }
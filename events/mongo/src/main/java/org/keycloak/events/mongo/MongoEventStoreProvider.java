@@ -83,6 +83,7 @@ public class MongoEventStoreProvider implements EventStoreProvider {
 
     static Event convert(BasicDBObject o) {
         Event e = new Event();
+        e.setId(o.get("_id").toString());
         e.setTime(o.getLong("time"));
         e.setType(EventType.valueOf(o.getString("type")));
         e.setRealmId(o.getString("realmId"));
@@ -114,6 +114,40 @@ public class MemEventQuery implements EventQuery {
         return this;
     }
     
+    @Override
+    public EventQuery fromTime(long fromTime) {
+        Iterator<Event> itr = this.events.iterator();
+        while (itr.hasNext()) {
+            if (itr.next().getTime() < fromTime) {
+                itr.remove();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public EventQuery toTime(long toTime) {
+        Iterator<Event> itr = this.events.iterator();
+        while (itr.hasNext()) {
+            if (itr.next().getTime() > toTime) {
+                itr.remove();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public EventQuery before(long time, String id) {
+        Iterator<Event> itr = this.events.iterator();
+        while (itr.hasNext()) {
+            Event next = itr.next();
+            if (next.getTime() > time || (next.getTime() == time && next.getId().compareTo(id) >= 0)) {
+                itr.remove();
+            }
+        }
+        return this;
+    }
+
     @Override
     public EventQuery ipAddress(String ipAddress) {
         Iterator<Event> itr = this.events.iterator();
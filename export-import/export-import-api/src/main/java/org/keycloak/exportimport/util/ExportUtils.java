@@ -318,6 +318,7 @@ public class ExportUtils {
         credRep.setHashedSaltedValue(userCred.getValue());
         if (userCred.getSalt() != null) credRep.setSalt(Base64.encodeBytes(userCred.getSalt()));
         credRep.setHashIterations(userCred.getHashIterations());
+        credRep.setAlgorithm(userCred.getAlgorithm());
         return credRep;
     }
 
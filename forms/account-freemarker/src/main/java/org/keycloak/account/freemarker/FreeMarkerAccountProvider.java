@@ -160,8 +160,8 @@ public class FreeMarkerAccountProvider implements AccountProvider {
         }
 
         try {
-            String result = freeMarker.processTemplate(attributes, Templates.getTemplate(page), theme);
-            Response.ResponseBuilder builder = Response.status(status).type(MediaType.TEXT_HTML).entity(result);
+            StreamingOutput result = freeMarker.createStreamingOutput(attributes, Templates.getTemplate(page), theme);
+            Response.ResponseBuilder builder = Response.status(status).type(MediaType.TEXT_HTML_TYPE.withCharset("utf-8")).entity(result);
             BrowserSecurityHeaderSetup.headers(builder, realm);
             LocaleHelper.updateLocaleCookie(builder, locale, realm, uriInfo, Urls.localeCookiePath(baseUri,realm.getName()));
             return builder.build();
@@ -19,12 +19,14 @@ public class ExtendingThemeManager implements ThemeProvider {
 
     private final KeycloakSession session;
     private final ConcurrentHashMap<ExtendingThemeManagerFactory.ThemeKey, Theme> themeCache;
+    private final ThemeResourceCache resourceCache;
     private List<ThemeProvider> providers;
     private String defaultTheme;
 
-    public ExtendingThemeManager(KeycloakSession session, ConcurrentHashMap<ExtendingThemeManagerFactory.ThemeKey, Theme> themeCache) {
+    public ExtendingThemeManager(KeycloakSession session, ConcurrentHashMap<ExtendingThemeManagerFactory.ThemeKey, Theme> themeCache, ThemeResourceCache resourceCache) {
         this.session = session;
         this.themeCache = themeCache;
+        this.resourceCache = resourceCache;
         this.defaultTheme = Config.scope("theme").get("default", "keycloak");
     }
 
@@ -51,6 +53,13 @@ public class ExtendingThemeManager implements ThemeProvider {
         return providers;
     }
 
+    /**
+     * @return cache of theme resources, or null if resources are not cached
+     */
+    public ThemeResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
     @Override
     public int getProviderPriority() {
         return 0;
@@ -66,11 +75,11 @@ public class ExtendingThemeManager implements ThemeProvider {
             ExtendingThemeManagerFactory.ThemeKey key = ExtendingThemeManagerFactory.ThemeKey.get(name, type);
             Theme theme = themeCache.get(key);
             if (theme == null) {
-                theme = loadTheme(name, type);
+                theme = loadTheme(name, type, true);
                 if (theme == null) {
-                    theme = loadTheme("keycloak", type);
+                    theme = loadTheme("keycloak", type, false);
                     if (theme == null) {
-                        theme = loadTheme("base", type);
+                        theme = loadTheme("base", type, false);
                     }
                     log.errorv("Failed to find {0} theme {1}, using built-in themes", type, name);
                 } else if (themeCache.putIfAbsent(key, theme) != null) {
@@ -79,13 +88,13 @@ public class ExtendingThemeManager implements ThemeProvider {
             }
             return theme;
         } else {
-            return loadTheme(name, type);
+            return loadTheme(name, type, false);
         }
     }
 
-    private Theme loadTheme(String name, Theme.Type type) throws IOException {
+    private Theme loadTheme(String name, Theme.Type type, boolean cached) throws IOException {
         Theme theme = findTheme(name, type);
-        if (theme != null && theme.getParentName() != null) {
+        if (theme != null && (theme.getParentName() != null || cached)) {
             List<Theme> themes = new LinkedList<Theme>();
             themes.add(theme);
 
@@ -104,7 +113,7 @@ public class ExtendingThemeManager implements ThemeProvider {
                 }
             }
 
-            return new ExtendingTheme(themes);
+            return new ExtendingTheme(themes, cached);
         } else {
             return theme;
         }
@@ -147,12 +156,24 @@ public class ExtendingThemeManager implements ThemeProvider {
         return null;
     }
 
+    /**
+     * Theme that extends a chain of parent themes. If cached the merged messages for each locale and the merged
+     * properties are loaded once and shared, so rendering a page doesn't read any message bundles.
+     */
     public static class ExtendingTheme implements Theme {
 
         private List<Theme> themes;
+        private final boolean cached;
+        private final ConcurrentHashMap<Locale, ThemeMessages> messages = new ConcurrentHashMap<Locale, ThemeMessages>();
+        private volatile Properties properties;
 
         public ExtendingTheme(List<Theme> themes) {
+            this(themes, false);
+        }
+
+        public ExtendingTheme(List<Theme> themes, boolean cached) {
             this.themes = themes;
+            this.cached = cached;
         }
 
         @Override
@@ -222,7 +243,36 @@ public class ExtendingThemeManager implements ThemeProvider {
 
         @Override
         public Properties getMessages(Locale locale) throws IOException {
-            Properties messages = new Properties();
+            if (!cached) {
+                return loadMessages(locale);
+            }
+
+            ThemeMessages m = this.messages.get(locale);
+            if (m == null) {
+                m = loadMessages(locale);
+                ThemeMessages existing = this.messages.putIfAbsent(locale, m);
+                if (existing != null) {
+                    m = existing;
+                }
+            }
+            return m;
+        }
+
+        @Override
+        public Properties getProperties() throws IOException {
+            if (!cached) {
+                return loadProperties();
+            }
+
+            Properties p = properties;
+            if (p == null) {
+                properties = p = loadProperties();
+            }
+            return p;
+        }
+
+        private ThemeMessages loadMessages(Locale locale) throws IOException {
+            ThemeMessages messages = new ThemeMessages(locale);
             ListIterator<Theme> itr = themes.listIterator(themes.size());
             while (itr.hasPrevious()) {
                 Properties m = itr.previous().getMessages(locale);
@@ -233,8 +283,7 @@ public class ExtendingThemeManager implements ThemeProvider {
             return messages;
         }
 
-        @Override
-        public Properties getProperties() throws IOException {
+        private Properties loadProperties() throws IOException {
             Properties properties = new Properties();
             ListIterator<Theme> itr = themes.listIterator(themes.size());
             while (itr.hasPrevious()) {
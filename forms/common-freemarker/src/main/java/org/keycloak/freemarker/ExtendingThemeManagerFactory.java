@@ -12,17 +12,26 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ExtendingThemeManagerFactory implements ThemeProviderFactory {
 
     private ConcurrentHashMap<ThemeKey, Theme> themeCache;
+    private ThemeResourceCache resourceCache;
 
     @Override
     public ThemeProvider create(KeycloakSession session) {
-        return new ExtendingThemeManager(session, themeCache);
+        return new ExtendingThemeManager(session, themeCache, resourceCache);
     }
 
     @Override
     public void init(Config.Scope config) {
-        if(Config.scope("theme").getBoolean("cacheThemes", true)) {
+        Config.Scope themeConfig = Config.scope("theme");
+        if(themeConfig.getBoolean("cacheThemes", true)) {
             themeCache = new ConcurrentHashMap<>();
         }
+
+        if (themeConfig.getBoolean("cacheResources", themeConfig.getBoolean("cacheThemes", true))) {
+            long maxSize = themeConfig.getLong("resourceCacheMaxSize", 32L * 1024 * 1024);
+            if (maxSize > 0) {
+                resourceCache = new ThemeResourceCache(maxSize, themeConfig.getInt("resourceCacheMaxEntrySize", 1024 * 1024));
+            }
+        }
     }
 
     @Override
@@ -32,6 +41,9 @@ public class ExtendingThemeManagerFactory implements ThemeProviderFactory {
 
     @Override
     public void close() {
+        if (resourceCache != null) {
+            resourceCache.clear();
+        }
     }
 
     @Override
@@ -5,7 +5,11 @@ import freemarker.template.Configuration;
 import freemarker.template.Template;
 import org.keycloak.Config;
 
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
@@ -16,6 +20,8 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class FreeMarkerUtil {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private ConcurrentHashMap<String, Template> cache;
 
     public FreeMarkerUtil() {
@@ -25,6 +31,48 @@ public class FreeMarkerUtil {
     }
 
     public String processTemplate(Object data, String templateName, Theme theme) throws FreeMarkerException {
+        Template template = getCachedTemplate(templateName, theme);
+        try {
+            Writer out = new StringWriter();
+            template.process(data, out);
+            return out.toString();
+        } catch (Exception e) {
+            throw new FreeMarkerException("Failed to process template " + templateName, e);
+        }
+    }
+
+    /**
+     * Renders the template as UTF-8 to a buffer and returns a response entity that writes the buffer to the response
+     * output stream, rather than rendering to a string that is then encoded and copied to the response. The template is
+     * rendered before returning, so a missing template or an error while rendering fails here while an error response
+     * can still be sent, instead of sending a truncated page.
+     *
+     * @param data
+     * @param templateName
+     * @param theme
+     * @return
+     * @throws FreeMarkerException
+     */
+    public StreamingOutput createStreamingOutput(Object data, String templateName, Theme theme) throws FreeMarkerException {
+        Template template = getCachedTemplate(templateName, theme);
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        try {
+            Writer out = new OutputStreamWriter(buffer, "UTF-8");
+            template.process(data, out);
+            out.flush();
+        } catch (Exception e) {
+            throw new FreeMarkerException("Failed to process template " + templateName, e);
+        }
+
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                buffer.writeTo(output);
+            }
+        };
+    }
+
+    private Template getCachedTemplate(String templateName, Theme theme) throws FreeMarkerException {
         try {
             Template template;
             if (cache != null) {
@@ -39,12 +87,9 @@ public class FreeMarkerUtil {
             } else {
                 template = getTemplate(templateName, theme);
             }
-
-            Writer out = new StringWriter();
-            template.process(data, out);
-            return out.toString();
+            return template;
         } catch (Exception e) {
-            throw new FreeMarkerException("Failed to process template " + templateName, e);
+            throw new FreeMarkerException("Failed to load template " + templateName, e);
         }
     }
 
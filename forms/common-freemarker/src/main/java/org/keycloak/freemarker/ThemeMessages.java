@@ -0,0 +1,60 @@
+package org.keycloak.freemarker;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Merged messages for a theme and locale. When themes are cached instances are shared between requests, so they must
+ * not be modified. Message formats are compiled the first time a message is formatted and reused after that, up to
+ * MAX_FORMATS messages. Keys without a message aren't cached, so the cache can't be filled with arbitrary keys.
+ */
+public class ThemeMessages extends Properties {
+
+    static final int MAX_FORMATS = 1000;
+
+    private final Locale locale;
+    private final transient ConcurrentHashMap<String, MessageFormat> formats = new ConcurrentHashMap<String, MessageFormat>();
+
+    public ThemeMessages(Locale locale) {
+        this.locale = locale;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Formats the message with the given key, or the key itself if there's no message with the key
+     *
+     * @param key
+     * @param parameters
+     * @return
+     */
+    public String format(String key, Object[] parameters) {
+        MessageFormat format = formats.get(key);
+        if (format == null) {
+            String message = getProperty(key);
+            if (message == null) {
+                return new MessageFormat(key, locale).format(parameters);
+            }
+
+            format = new MessageFormat(message, locale);
+            if (formats.size() < MAX_FORMATS) {
+                MessageFormat existing = formats.putIfAbsent(key, format);
+                if (existing != null) {
+                    format = existing;
+                }
+            }
+        }
+
+        // MessageFormat is not thread-safe, cached formats are only used through a copy
+        return ((MessageFormat) format.clone()).format(parameters);
+    }
+
+    int getCachedFormats() {
+        return formats.size();
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.keycloak.freemarker;
+
+import org.keycloak.util.MimeTypeUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of theme resources. Resources are cached with their content type and a strong ETag computed from
+ * the content. Resources larger than maxEntrySize are not cached, and the total size of cached resources is limited to
+ * maxSize (both in bytes). Resources are keyed by resources version, theme type, theme name and path, so resources of
+ * a previous version are never served for a new one.
+ *
+ * Owned by ExtendingThemeManagerFactory, which creates it from the resourceCacheMaxSize and resourceCacheMaxEntrySize
+ * options of the theme config.
+ *
+ * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
+ */
+public class ThemeResourceCache {
+
+    private final LinkedHashMap<String, CachedResource> cache = new LinkedHashMap<String, CachedResource>(16, 0.75f, true);
+    private final long maxSize;
+    private final int maxEntrySize;
+    private long size;
+
+    public ThemeResourceCache(long maxSize, int maxEntrySize) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    public CachedResource get(String version, Theme.Type type, String themeName, String path) {
+        String key = key(version, type, themeName, path);
+        synchronized (this) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Reads the resource and adds it to the cache. The stream is always closed. If the resource is too large to be
+     * cached it's still returned, but not added to the cache.
+     *
+     * @param version
+     * @param type
+     * @param themeName
+     * @param path
+     * @param resource
+     * @return
+     * @throws IOException
+     */
+    public CachedResource load(String version, Theme.Type type, String themeName, String path, InputStream resource) throws IOException {
+        byte[] data;
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int l = resource.read(buffer); l != -1; l = resource.read(buffer)) {
+                os.write(buffer, 0, l);
+            }
+            data = os.toByteArray();
+        } finally {
+            resource.close();
+        }
+
+        CachedResource cached = new CachedResource(data, MimeTypeUtil.getContentType(path), createETag(data));
+        if (data.length <= maxEntrySize) {
+            put(key(version, type, themeName, path), cached);
+        }
+        return cached;
+    }
+
+    private synchronized void put(String key, CachedResource resource) {
+        CachedResource previous = cache.put(key, resource);
+        if (previous != null) {
+            size -= previous.getData().length;
+        }
+        size += resource.getData().length;
+
+        Iterator<CachedResource> itr = cache.values().iterator();
+        while (size > maxSize && itr.hasNext()) {
+            size -= itr.next().getData().length;
+            itr.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        size = 0;
+    }
+
+    private static String key(String version, Theme.Type type, String themeName, String path) {
+        return version + "/" + type + "/" + themeName + "/" + path;
+    }
+
+    private static String createETag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class CachedResource {
+
+        private final byte[] data;
+        private final String contentType;
+        private final String etag;
+
+        public CachedResource(byte[] data, String contentType, String etag) {
+            this.data = data;
+            this.contentType = contentType;
+            this.etag = etag;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public boolean isCompressible() {
+            return contentType.startsWith("text/") || contentType.endsWith("+xml") || contentType.endsWith("/javascript") || contentType.endsWith("/json");
+        }
+
+    }
+
+}
@@ -9,22 +9,23 @@ import java.util.List;
 import java.util.Properties;
 
 /**
+ * The URLs for the supported locales are only built if the template uses them.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class LocaleBean {
 
+    private RealmModel realm;
     private String current;
+    private UriBuilder uriBuilder;
+    private Properties messages;
     private List<Locale> supported;
 
     public LocaleBean(RealmModel realm, java.util.Locale current, UriBuilder uriBuilder, Properties messages) {
+        this.realm = realm;
         this.current = messages.getProperty("locale_" + current.toLanguageTag(), current.toLanguageTag());
-
-        supported = new LinkedList<>();
-        for (String l : realm.getSupportedLocales()) {
-            String label = messages.getProperty("locale_" + l, l);
-            String url = uriBuilder.replaceQueryParam(LocaleHelper.KC_LOCALE_PARAM, l).build().toString();
-            supported.add(new Locale(label, url));
-        }
+        this.uriBuilder = uriBuilder;
+        this.messages = messages;
     }
 
     public String getCurrent() {
@@ -32,6 +33,14 @@ public class LocaleBean {
     }
 
     public List<Locale> getSupported() {
+        if (supported == null) {
+            supported = new LinkedList<>();
+            for (String l : realm.getSupportedLocales()) {
+                String label = messages.getProperty("locale_" + l, l);
+                String url = uriBuilder.replaceQueryParam(LocaleHelper.KC_LOCALE_PARAM, l).build().toString();
+                supported.add(new Locale(label, url));
+            }
+        }
         return supported;
     }
 
@@ -2,6 +2,7 @@ package org.keycloak.freemarker.beans;
 
 import freemarker.template.TemplateMethodModelEx;
 import freemarker.template.TemplateModelException;
+import org.keycloak.freemarker.ThemeMessages;
 
 import java.text.MessageFormat;
 import java.util.List;
@@ -24,6 +25,9 @@ public class MessageFormatterMethod implements TemplateMethodModelEx {
     public Object exec(List list) throws TemplateModelException {
         if (list.size() >= 1) {
             String key = list.get(0).toString();
+            if (messages instanceof ThemeMessages && locale.equals(((ThemeMessages) messages).getLocale())) {
+                return ((ThemeMessages) messages).format(key, list.subList(1, list.size()).toArray());
+            }
             return new MessageFormat(messages.getProperty(key,key),locale).format(list.subList(1, list.size()).toArray());
         } else {
             return null;
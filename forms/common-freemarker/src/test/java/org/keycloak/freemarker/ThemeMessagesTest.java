@@ -0,0 +1,96 @@
+package org.keycloak.freemarker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThemeMessagesTest {
+
+    @Test
+    public void format() {
+        ThemeMessages messages = new ThemeMessages(Locale.ENGLISH);
+        messages.setProperty("greeting", "Hello {0}, you have {1} messages");
+
+        Assert.assertEquals("Hello john, you have 3 messages", messages.format("greeting", new Object[] { "john", 3 }));
+        Assert.assertEquals("Hello jane, you have 1,000 messages", messages.format("greeting", new Object[] { "jane", 1000 }));
+        Assert.assertEquals(1, messages.getCachedFormats());
+    }
+
+    @Test
+    public void formatUsesLocale() {
+        ThemeMessages messages = new ThemeMessages(Locale.GERMAN);
+        messages.setProperty("count", "{0} items");
+
+        Assert.assertEquals("1.000 items", messages.format("count", new Object[] { 1000 }));
+    }
+
+    @Test
+    public void missingKeyNotCached() {
+        ThemeMessages messages = new ThemeMessages(Locale.ENGLISH);
+
+        Assert.assertEquals("missing", messages.format("missing", new Object[0]));
+        Assert.assertEquals("missing john", messages.format("missing {0}", new Object[] { "john" }));
+        Assert.assertEquals(0, messages.getCachedFormats());
+    }
+
+    @Test
+    public void cacheBounded() {
+        ThemeMessages messages = new ThemeMessages(Locale.ENGLISH);
+        for (int i = 0; i < ThemeMessages.MAX_FORMATS + 10; i++) {
+            messages.setProperty("key" + i, "message {0} " + i);
+        }
+
+        for (int i = 0; i < ThemeMessages.MAX_FORMATS + 10; i++) {
+            Assert.assertEquals("message x " + i, messages.format("key" + i, new Object[] { "x" }));
+        }
+        Assert.assertEquals(ThemeMessages.MAX_FORMATS, messages.getCachedFormats());
+
+        // Messages that didn't fit in the cache are still formatted
+        Assert.assertEquals("message y " + (ThemeMessages.MAX_FORMATS + 5), messages.format("key" + (ThemeMessages.MAX_FORMATS + 5), new Object[] { "y" }));
+    }
+
+    @Test
+    public void concurrentFormat() throws Exception {
+        final ThemeMessages messages = new ThemeMessages(Locale.ENGLISH);
+        messages.setProperty("greeting", "Hello {0}, you have {1} messages");
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            Thread th = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 10000; i++) {
+                        int count = i % 1000;
+                        String expected = "Hello user" + thread + ", you have " + count + " messages";
+                        if (!expected.equals(messages.format("greeting", new Object[] { "user" + thread, count }))) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            th.start();
+            threads.add(th);
+        }
+
+        start.countDown();
+        for (Thread th : threads) {
+            th.join();
+        }
+
+        Assert.assertEquals(0, failures.get());
+    }
+
+}
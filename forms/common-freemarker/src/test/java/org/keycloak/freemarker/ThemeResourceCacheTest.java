@@ -0,0 +1,107 @@
+package org.keycloak.freemarker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+public class ThemeResourceCacheTest {
+
+    @Test
+    public void loadAndGet() throws IOException {
+        ThemeResourceCache cache = new ThemeResourceCache(1024, 1024);
+        Assert.assertNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "css/login.css"));
+
+        ThemeResourceCache.CachedResource loaded = cache.load("1", Theme.Type.LOGIN, "keycloak", "css/login.css", stream("body {}"));
+        Assert.assertEquals("body {}", new String(loaded.getData(), "UTF-8"));
+        Assert.assertEquals("text/css", loaded.getContentType());
+        Assert.assertTrue(loaded.isCompressible());
+
+        Assert.assertSame(loaded, cache.get("1", Theme.Type.LOGIN, "keycloak", "css/login.css"));
+    }
+
+    @Test
+    public void keyedByVersionTypeAndTheme() throws IOException {
+        ThemeResourceCache cache = new ThemeResourceCache(1024, 1024);
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "css/login.css", stream("body {}"));
+
+        Assert.assertNull(cache.get("2", Theme.Type.LOGIN, "keycloak", "css/login.css"));
+        Assert.assertNull(cache.get("1", Theme.Type.ACCOUNT, "keycloak", "css/login.css"));
+        Assert.assertNull(cache.get("1", Theme.Type.LOGIN, "base", "css/login.css"));
+    }
+
+    @Test
+    public void etagFromContent() throws IOException {
+        ThemeResourceCache cache = new ThemeResourceCache(1024, 1024);
+        String a = cache.load("1", Theme.Type.LOGIN, "keycloak", "a.css", stream("a")).getETag();
+        String a2 = cache.load("1", Theme.Type.LOGIN, "other", "a.css", stream("a")).getETag();
+        String b = cache.load("2", Theme.Type.LOGIN, "keycloak", "a.css", stream("b")).getETag();
+
+        Assert.assertEquals(a, a2);
+        Assert.assertNotEquals(a, b);
+    }
+
+    @Test
+    public void largeResourceNotCached() throws IOException {
+        ThemeResourceCache cache = new ThemeResourceCache(1024, 4);
+
+        ThemeResourceCache.CachedResource loaded = cache.load("1", Theme.Type.LOGIN, "keycloak", "large.js", stream("12345"));
+        Assert.assertEquals(5, loaded.getData().length);
+        Assert.assertNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "large.js"));
+
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "small.js", stream("1234"));
+        Assert.assertNotNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "small.js"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEvicted() throws IOException {
+        ThemeResourceCache cache = new ThemeResourceCache(10, 10);
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "a.js", stream("1234"));
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "b.js", stream("1234"));
+
+        // Makes b.js the least recently used
+        cache.get("1", Theme.Type.LOGIN, "keycloak", "a.js");
+
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "c.js", stream("1234"));
+        Assert.assertNotNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "a.js"));
+        Assert.assertNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "b.js"));
+        Assert.assertNotNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "c.js"));
+
+        // Replacing a resource doesn't count its previous size
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "c.js", stream("123456"));
+        Assert.assertNotNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "a.js"));
+        Assert.assertNotNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "c.js"));
+    }
+
+    @Test
+    public void clear() throws IOException {
+        ThemeResourceCache cache = new ThemeResourceCache(10, 10);
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "a.js", stream("1234"));
+        cache.clear();
+
+        Assert.assertNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "a.js"));
+
+        cache.load("1", Theme.Type.LOGIN, "keycloak", "b.js", stream("1234567890"));
+        Assert.assertNotNull(cache.get("1", Theme.Type.LOGIN, "keycloak", "b.js"));
+    }
+
+    @Test
+    public void streamClosed() throws IOException {
+        final boolean[] closed = new boolean[1];
+        ByteArrayInputStream stream = new ByteArrayInputStream(new byte[] { 1 }) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+            }
+        };
+
+        new ThemeResourceCache(10, 10).load("1", Theme.Type.LOGIN, "keycloak", "a.png", stream);
+        Assert.assertTrue(closed[0]);
+    }
+
+    private static ByteArrayInputStream stream(String data) throws IOException {
+        return new ByteArrayInputStream(data.getBytes("UTF-8"));
+    }
+
+}
@@ -1038,6 +1038,7 @@ module.factory('PasswordPolicy', function() {
 
     p.policyMessages = {
         hashIterations: "Number of hashing iterations.  Default is 1.  Recommended is 50000.",
+        hashAlgorithm:  "Password hashing algorithm. One of pbkdf2, pbkdf2-sha256 or pbkdf2-sha512. Default is pbkdf2.",
         length:         "Minimal password length (integer type). Default value is 8.",
         digits:         "Minimal number (integer type) of digits in password. Default value is 1.",
         lowerCase:      "Minimal number (integer type) of lowercase characters in password. Default value is 1.",
@@ -1048,6 +1049,7 @@ module.factory('PasswordPolicy', function() {
 
     p.allPolicies = [
         { name: 'hashIterations', value: 1 },
+        { name: 'hashAlgorithm', value: 'pbkdf2' },
         { name: 'length', value: 8 },
         { name: 'digits', value: 1 },
         { name: 'lowerCase', value: 1 },
@@ -1067,11 +1069,12 @@ module.factory('PasswordPolicy', function() {
 
         for (var i = 0; i < policyArray.length; i ++){
             var policyToken = policyArray[i];
-            var re = /(\w+)\(*(\d*)\)*/;
+            var re = /(\w+)\(*([\w-]*)\)*/;
 
             var policyEntry = re.exec(policyToken);
             if (null !== policyEntry) {
-                policies.push({ name: policyEntry[1], value: parseInt(policyEntry[2]) });
+                var value = /^\d*$/.test(policyEntry[2]) ? parseInt(policyEntry[2]) : policyEntry[2];
+                policies.push({ name: policyEntry[1], value: value });
             }
         }
 
@@ -0,0 +1,49 @@
+package org.keycloak.email;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Email queued for sending. Contains the SMTP config of the realm at the time the email was created.
+ */
+public class EmailMessage {
+
+    private final Map<String, String> smtpConfig;
+    private final String to;
+    private final String subject;
+    private final String body;
+    private int attempts;
+
+    public EmailMessage(Map<String, String> smtpConfig, String to, String subject, String body) {
+        this.smtpConfig = Collections.unmodifiableMap(new HashMap<String, String>(smtpConfig));
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    public Map<String, String> getSmtpConfig() {
+        return smtpConfig;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    int incrementAttempts() {
+        return ++attempts;
+    }
+
+}
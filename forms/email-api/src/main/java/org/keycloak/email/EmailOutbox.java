@@ -0,0 +1,200 @@
+package org.keycloak.email;
+
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends emails in the background. Emails are added to a bounded queue and sent by a number of worker threads. Each
+ * worker takes up to batchSize emails from the queue at a time and sends them using pooled SMTP transports, so emails
+ * for the same SMTP server are sent over the same connection. Emails that fail are retried according to the
+ * {@link EmailRetryPolicy}. Emails that still fail after that are logged as errors and counted by getFailedCount.
+ */
+public class EmailOutbox {
+
+    private static final Logger log = Logger.getLogger(EmailOutbox.class);
+
+    private final BlockingQueue<EmailMessage> queue;
+    private final SmtpTransportPool transports;
+    private final int batchSize;
+    private final EmailRetryPolicy retryPolicy;
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final ScheduledExecutorService retryExecutor;
+    private final List<Thread> workers = new LinkedList<Thread>();
+    private final CountDownLatch shutdownLatch;
+    private volatile boolean run = true;
+
+    public EmailOutbox(SmtpTransportPool transports, int queueSize, int threads, int batchSize, EmailRetryPolicy retryPolicy) {
+        this.queue = new ArrayBlockingQueue<EmailMessage>(queueSize);
+        this.transports = transports;
+        this.batchSize = batchSize;
+        this.retryPolicy = retryPolicy;
+        this.shutdownLatch = new CountDownLatch(threads);
+
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Email Outbox Retry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Worker(), "Email Outbox " + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+    }
+
+    public void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Adds the email to the queue
+     *
+     * @param email
+     * @throws EmailException if the queue is full
+     */
+    public void send(EmailMessage email) throws EmailException {
+        if (!run) {
+            throw new EmailException("Email outbox is closed");
+        }
+        if (!queue.offer(email)) {
+            throw new EmailException("Email outbox is full");
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of emails that were not sent, after retrying
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Stops the workers after sending the emails that are already queued, waiting up to 10 seconds. Emails waiting to
+     * be retried are discarded.
+     */
+    public void shutdown() {
+        run = false;
+        retryExecutor.shutdownNow();
+        try {
+            if (!shutdownLatch.await(10, TimeUnit.SECONDS)) {
+                log.warnv("Email outbox stopped with {0} emails not sent", queue.size());
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        transports.close();
+    }
+
+    private void sendBatch(List<EmailMessage> batch) {
+        // Group by SMTP config so each group is sent with one connection
+        Map<Map<String, String>, List<EmailMessage>> groups = new LinkedHashMap<Map<String, String>, List<EmailMessage>>();
+        for (EmailMessage email : batch) {
+            List<EmailMessage> group = groups.get(email.getSmtpConfig());
+            if (group == null) {
+                group = new LinkedList<EmailMessage>();
+                groups.put(email.getSmtpConfig(), group);
+            }
+            group.add(email);
+        }
+
+        for (List<EmailMessage> group : groups.values()) {
+            for (EmailMessage email : group) {
+                try {
+                    transports.send(email);
+                } catch (Exception e) {
+                    failed(email, e);
+                }
+            }
+        }
+    }
+
+    private void failed(final EmailMessage email, Exception e) {
+        int attempts = email.incrementAttempts();
+        long delay = retryPolicy.getDelay(attempts);
+        if (delay < 0 || !run) {
+            discard(email, "after " + attempts + " attempts", e);
+            return;
+        }
+
+        log.debugv("Failed to send email to {0}, retrying in {1} ms", email.getTo(), delay);
+        try {
+            retryExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!queue.offer(email)) {
+                        discard(email, "outbox is full", null);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ree) {
+            discard(email, "outbox is closed", e);
+        }
+    }
+
+    private void discard(EmailMessage email, String reason, Exception e) {
+        failedCount.incrementAndGet();
+        log.errorv(e, "Failed to send email ''{0}'' to {1}, {2}", email.getSubject(), email.getTo(), reason);
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            List<EmailMessage> batch = new ArrayList<EmailMessage>(batchSize);
+            try {
+                while (run || !queue.isEmpty()) {
+                    try {
+                        EmailMessage email = queue.poll(2, TimeUnit.SECONDS);
+                        if (email == null) {
+                            transports.evictIdle();
+                            continue;
+                        }
+
+                        batch.add(email);
+                        queue.drainTo(batch, batchSize - 1);
+                        sendBatch(batch);
+                    } catch (InterruptedException e) {
+                        break;
+                    } catch (Exception e) {
+                        log.error("Failed to send emails", e);
+                    } finally {
+                        batch.clear();
+                    }
+                }
+            } finally {
+                shutdownLatch.countDown();
+            }
+        }
+
+    }
+
+}
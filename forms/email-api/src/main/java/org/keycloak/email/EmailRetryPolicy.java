@@ -0,0 +1,72 @@
+package org.keycloak.email;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Retry policy shared by emails sent while the request waits and emails sent by {@link EmailOutbox}. An email that
+ * fails is retried up to maxRetries times, waiting retryDelay (ms) before the first retry and doubling the delay for
+ * each subsequent retry.
+ */
+public class EmailRetryPolicy {
+
+    private static final Logger log = Logger.getLogger(EmailRetryPolicy.class);
+
+    private final int maxRetries;
+    private final long retryDelay;
+
+    public EmailRetryPolicy(int maxRetries, long retryDelay) {
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Returns how long to wait before retrying an email that has failed the given number of times
+     *
+     * @param attempts number of failed attempts
+     * @return delay in ms, or -1 if the email should not be retried
+     */
+    public long getDelay(int attempts) {
+        if (attempts > maxRetries) {
+            return -1;
+        }
+        return retryDelay << (attempts - 1);
+    }
+
+    /**
+     * Sends the email, retrying with the delays returned by {@link #getDelay(int)}
+     *
+     * @param transports
+     * @param email
+     * @throws Exception the failure of the last attempt, if the email was not sent
+     */
+    public void send(SmtpTransportPool transports, EmailMessage email) throws Exception {
+        while (true) {
+            try {
+                transports.send(email);
+                return;
+            } catch (Exception e) {
+                long delay = getDelay(email.incrementAttempts());
+                if (delay < 0) {
+                    throw e;
+                }
+
+                log.debugv("Failed to send email to {0}, retrying in {1} ms", email.getTo(), delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package org.keycloak.email;
+
+import org.jboss.logging.Logger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Pool of connected SMTP transports. Transports are pooled per SMTP config, so realms with the same SMTP server share
+ * connections, and a realm gets new connections as soon as its SMTP config is changed. Transports that have been idle
+ * for longer than maxIdle (ms) are closed.
+ */
+public class SmtpTransportPool {
+
+    private static final Logger log = Logger.getLogger(SmtpTransportPool.class);
+
+    private final ConcurrentMap<Map<String, String>, Pool> pools = new ConcurrentHashMap<Map<String, String>, Pool>();
+    private final long maxIdle;
+
+    public SmtpTransportPool(long maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Sends the email using a pooled transport. If sending fails the transport is closed rather than returned to the
+     * pool.
+     *
+     * @param email
+     * @throws MessagingException
+     */
+    public void send(EmailMessage email) throws MessagingException {
+        Pool pool = getPool(email.getSmtpConfig());
+        PooledTransport transport = pool.borrow();
+        try {
+            Message msg = new MimeMessage(pool.session);
+            msg.setFrom(new InternetAddress(email.getSmtpConfig().get("from")));
+            msg.setHeader("To", email.getTo());
+            msg.setSubject(email.getSubject());
+            msg.setText(email.getBody());
+            msg.saveChanges();
+            msg.setSentDate(new Date());
+
+            transport.transport.sendMessage(msg, new InternetAddress[]{new InternetAddress(email.getTo())});
+        } catch (MessagingException e) {
+            transport.close();
+            transport = null;
+            throw e;
+        } finally {
+            if (transport != null) {
+                pool.release(transport);
+            }
+        }
+    }
+
+    /**
+     * Closes transports that have been idle for longer than maxIdle
+     */
+    public void evictIdle() {
+        long expired = System.currentTimeMillis() - maxIdle;
+        for (Pool pool : pools.values()) {
+            Iterator<PooledTransport> itr = pool.idle.iterator();
+            while (itr.hasNext()) {
+                PooledTransport transport = itr.next();
+                if (transport.lastUsed < expired && pool.idle.remove(transport)) {
+                    transport.close();
+                }
+            }
+        }
+    }
+
+    public void close() {
+        for (Pool pool : pools.values()) {
+            for (PooledTransport transport = pool.idle.poll(); transport != null; transport = pool.idle.poll()) {
+                transport.close();
+            }
+        }
+        pools.clear();
+    }
+
+    private Pool getPool(Map<String, String> config) {
+        Pool pool = pools.get(config);
+        if (pool == null) {
+            pool = new Pool(config);
+            Pool existing = pools.putIfAbsent(config, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    private class Pool {
+
+        private final Map<String, String> config;
+        private final Session session;
+        private final boolean auth;
+        private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<PooledTransport>();
+
+        private Pool(Map<String, String> config) {
+            this.config = config;
+
+            Properties props = new Properties();
+            props.setProperty("mail.smtp.host", config.get("host"));
+
+            auth = "true".equals(config.get("auth"));
+            boolean ssl = "true".equals(config.get("ssl"));
+            boolean starttls = "true".equals(config.get("starttls"));
+
+            if (config.containsKey("port")) {
+                props.setProperty("mail.smtp.port", config.get("port"));
+            }
+
+            if (auth) {
+                props.put("mail.smtp.auth", "true");
+            }
+
+            if (ssl) {
+                props.put("mail.smtp.socketFactory.port", config.get("port"));
+                props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+            }
+
+            if (starttls) {
+                props.put("mail.smtp.starttls.enable", "true");
+            }
+
+            session = Session.getInstance(props);
+        }
+
+        private PooledTransport borrow() throws MessagingException {
+            long expired = System.currentTimeMillis() - maxIdle;
+            for (PooledTransport transport = idle.pollFirst(); transport != null; transport = idle.pollFirst()) {
+                if (transport.lastUsed >= expired && transport.transport.isConnected()) {
+                    return transport;
+                }
+                transport.close();
+            }
+
+            Transport transport = session.getTransport("smtp");
+            if (auth) {
+                transport.connect(config.get("user"), config.get("password"));
+            } else {
+                transport.connect();
+            }
+            return new PooledTransport(transport);
+        }
+
+        private void release(PooledTransport transport) {
+            transport.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(transport);
+        }
+
+    }
+
+    private static class PooledTransport {
+
+        private final Transport transport;
+        private volatile long lastUsed;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP transport", e);
+            }
+        }
+
+    }
+
+}
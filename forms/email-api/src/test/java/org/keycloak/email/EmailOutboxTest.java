@@ -0,0 +1,151 @@
+package org.keycloak.email;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmailOutboxTest {
+
+    private EmailOutbox outbox;
+
+    @After
+    public void after() {
+        if (outbox != null) {
+            outbox.shutdown();
+        }
+    }
+
+    @Test
+    public void sendEmails() throws Exception {
+        MockTransportPool transports = new MockTransportPool(0);
+        outbox = new EmailOutbox(transports, 100, 2, 5, new EmailRetryPolicy(3, 10));
+        outbox.start();
+
+        for (int i = 0; i < 20; i++) {
+            outbox.send(email("smtp" + (i % 2), "user" + i + "@localhost"));
+        }
+
+        assertTrue(waitFor(transports.sent, 20));
+        assertEquals(0, outbox.getFailedCount());
+    }
+
+    @Test
+    public void retryFailedEmail() throws Exception {
+        MockTransportPool transports = new MockTransportPool(2);
+        outbox = new EmailOutbox(transports, 100, 1, 5, new EmailRetryPolicy(3, 10));
+        outbox.start();
+
+        outbox.send(email("smtp", "user@localhost"));
+
+        assertTrue(waitFor(transports.sent, 1));
+        assertEquals(3, transports.attempts.get());
+        assertEquals(0, outbox.getFailedCount());
+    }
+
+    @Test
+    public void failedAfterMaxRetries() throws Exception {
+        MockTransportPool transports = new MockTransportPool(Integer.MAX_VALUE);
+        outbox = new EmailOutbox(transports, 100, 1, 5, new EmailRetryPolicy(2, 10));
+        outbox.start();
+
+        outbox.send(email("smtp", "user@localhost"));
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (outbox.getFailedCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, outbox.getFailedCount());
+        assertEquals(3, transports.attempts.get());
+        assertEquals(0, transports.sent.size());
+    }
+
+    @Test
+    public void retryBackoff() throws Exception {
+        MockTransportPool transports = new MockTransportPool(3);
+        outbox = new EmailOutbox(transports, 100, 1, 5, new EmailRetryPolicy(3, 50));
+        outbox.start();
+
+        outbox.send(email("smtp", "user@localhost"));
+
+        assertTrue(waitFor(transports.sent, 1));
+        assertEquals(4, transports.attempts.get());
+        transports.assertBackoff(50);
+    }
+
+    @Test
+    public void retryDiscardedOnShutdown() throws Exception {
+        MockTransportPool transports = new MockTransportPool(Integer.MAX_VALUE);
+        outbox = new EmailOutbox(transports, 100, 1, 5, new EmailRetryPolicy(3, 60000));
+        outbox.start();
+
+        outbox.send(email("smtp", "user@localhost"));
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (transports.attempts.get() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        outbox.shutdown();
+        outbox = null;
+
+        assertEquals(1, transports.attempts.get());
+        assertEquals(0, transports.sent.size());
+    }
+
+    @Test
+    public void outboxFull() throws Exception {
+        outbox = new EmailOutbox(new MockTransportPool(0), 2, 0, 5, new EmailRetryPolicy(3, 10));
+
+        outbox.send(email("smtp", "user1@localhost"));
+        outbox.send(email("smtp", "user2@localhost"));
+        try {
+            outbox.send(email("smtp", "user3@localhost"));
+            fail("Expected EmailException");
+        } catch (EmailException e) {
+        }
+        assertEquals(2, outbox.getQueueSize());
+    }
+
+    @Test
+    public void shutdownSendsQueuedEmails() throws Exception {
+        MockTransportPool transports = new MockTransportPool(0);
+        outbox = new EmailOutbox(transports, 100, 1, 5, new EmailRetryPolicy(3, 10));
+        for (int i = 0; i < 10; i++) {
+            outbox.send(email("smtp", "user" + i + "@localhost"));
+        }
+
+        outbox.start();
+        outbox.shutdown();
+
+        assertEquals(10, transports.sent.size());
+        try {
+            outbox.send(email("smtp", "user@localhost"));
+            fail("Expected EmailException");
+        } catch (EmailException e) {
+        }
+    }
+
+    private static EmailMessage email(String host, String to) {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("host", host);
+        config.put("from", "auto@keycloak.org");
+        return new EmailMessage(config, to, "Subject", "Body");
+    }
+
+    private static boolean waitFor(List<?> list, int size) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        return list.size() == size;
+    }
+
+}
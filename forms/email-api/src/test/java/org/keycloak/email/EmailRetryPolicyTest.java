@@ -0,0 +1,99 @@
+package org.keycloak.email;
+
+import org.junit.Test;
+
+import javax.mail.MessagingException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmailRetryPolicyTest {
+
+    @Test
+    public void delay() {
+        EmailRetryPolicy policy = new EmailRetryPolicy(3, 1000);
+        assertEquals(1000, policy.getDelay(1));
+        assertEquals(2000, policy.getDelay(2));
+        assertEquals(4000, policy.getDelay(3));
+        assertEquals(-1, policy.getDelay(4));
+
+        assertEquals(-1, new EmailRetryPolicy(0, 1000).getDelay(1));
+    }
+
+    @Test
+    public void send() throws Exception {
+        MockTransportPool transports = new MockTransportPool(0);
+        EmailMessage email = email();
+        new EmailRetryPolicy(3, 10).send(transports, email);
+
+        assertEquals(1, transports.attempts.get());
+        assertEquals(1, transports.sent.size());
+        assertEquals(0, email.getAttempts());
+    }
+
+    @Test
+    public void retryFailedEmail() throws Exception {
+        MockTransportPool transports = new MockTransportPool(2);
+        EmailMessage email = email();
+        new EmailRetryPolicy(3, 50).send(transports, email);
+
+        assertEquals(3, transports.attempts.get());
+        assertEquals(1, transports.sent.size());
+        assertEquals(2, email.getAttempts());
+        transports.assertBackoff(50);
+    }
+
+    @Test
+    public void failedAfterMaxRetries() throws Exception {
+        MockTransportPool transports = new MockTransportPool(Integer.MAX_VALUE);
+        long start = System.currentTimeMillis();
+        try {
+            new EmailRetryPolicy(2, 50).send(transports, email());
+            fail("Expected MessagingException");
+        } catch (MessagingException e) {
+        }
+
+        assertEquals(3, transports.attempts.get());
+        assertEquals(0, transports.sent.size());
+        assertTrue(System.currentTimeMillis() - start >= 150);
+        transports.assertBackoff(50);
+    }
+
+    @Test
+    public void noRetries() throws Exception {
+        MockTransportPool transports = new MockTransportPool(1);
+        try {
+            new EmailRetryPolicy(0, 50).send(transports, email());
+            fail("Expected MessagingException");
+        } catch (MessagingException e) {
+        }
+
+        assertEquals(1, transports.attempts.get());
+    }
+
+    @Test
+    public void interrupted() throws Exception {
+        MockTransportPool transports = new MockTransportPool(Integer.MAX_VALUE);
+        Thread.currentThread().interrupt();
+        try {
+            new EmailRetryPolicy(3, 60000).send(transports, email());
+            fail("Expected MessagingException");
+        } catch (MessagingException e) {
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertEquals(1, transports.attempts.get());
+    }
+
+    private static EmailMessage email() {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("host", "smtp");
+        config.put("from", "auto@keycloak.org");
+        return new EmailMessage(config, "user@localhost", "Subject", "Body");
+    }
+
+}
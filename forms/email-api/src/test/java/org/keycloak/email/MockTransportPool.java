@@ -0,0 +1,45 @@
+package org.keycloak.email;
+
+import javax.mail.MessagingException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport pool that fails the first number of attempts to send an email, and records the emails that were sent.
+ */
+class MockTransportPool extends SmtpTransportPool {
+
+    final List<EmailMessage> sent = new CopyOnWriteArrayList<EmailMessage>();
+    final List<Long> attemptTimes = new CopyOnWriteArrayList<Long>();
+    final AtomicInteger attempts = new AtomicInteger();
+    private final int failures;
+
+    MockTransportPool(int failures) {
+        super(60000);
+        this.failures = failures;
+    }
+
+    @Override
+    public void send(EmailMessage email) throws MessagingException {
+        attemptTimes.add(System.currentTimeMillis());
+        if (attempts.incrementAndGet() <= failures) {
+            throw new MessagingException("Expected failure");
+        }
+        sent.add(email);
+    }
+
+    /**
+     * Asserts the time between each attempt is at least the delay, doubling for each attempt
+     */
+    void assertBackoff(long delay) {
+        for (int i = 1; i < attemptTimes.size(); i++) {
+            long expected = delay << (i - 1);
+            long actual = attemptTimes.get(i) - attemptTimes.get(i - 1);
+            if (actual < expected) {
+                throw new AssertionError("Expected at least " + expected + " ms before attempt " + (i + 1) + ", was " + actual + " ms");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.keycloak.email;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SmtpTransportPoolTest {
+
+    private static final int PORT = 3026;
+
+    private GreenMail greenMail;
+    private SmtpTransportPool transports;
+
+    @Before
+    public void before() {
+        greenMail = new GreenMail(new ServerSetup(PORT, "localhost", "smtp"));
+        greenMail.start();
+
+        transports = new SmtpTransportPool(60000);
+    }
+
+    @After
+    public void after() {
+        transports.close();
+        greenMail.stop();
+    }
+
+    @Test
+    public void send() throws Exception {
+        transports.send(email(PORT, "user1@localhost", "First"));
+        transports.send(email(PORT, "user2@localhost", "Second"));
+
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertEquals(2, messages.length);
+        assertEquals("First", messages[0].getSubject());
+        assertEquals("user1@localhost", messages[0].getHeader("To")[0]);
+        assertEquals("Second", messages[1].getSubject());
+        assertEquals("user2@localhost", messages[1].getHeader("To")[0]);
+    }
+
+    @Test
+    public void sendAfterIdleTransportsEvicted() throws Exception {
+        SmtpTransportPool idleTransports = new SmtpTransportPool(0);
+        try {
+            idleTransports.send(email(PORT, "user1@localhost", "First"));
+            Thread.sleep(10);
+            idleTransports.evictIdle();
+            idleTransports.send(email(PORT, "user2@localhost", "Second"));
+        } finally {
+            idleTransports.close();
+        }
+
+        assertEquals(2, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    public void sendAfterFailure() throws Exception {
+        try {
+            transports.send(email(PORT + 1, "user1@localhost", "Unreachable"));
+            fail("Expected MessagingException");
+        } catch (MessagingException e) {
+        }
+
+        transports.send(email(PORT, "user2@localhost", "Second"));
+
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertEquals(1, messages.length);
+        assertEquals("Second", messages[0].getSubject());
+    }
+
+    private static EmailMessage email(int port, String to, String subject) {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("host", "localhost");
+        config.put("port", Integer.toString(port));
+        config.put("from", "auto@keycloak.org");
+        return new EmailMessage(config, to, subject, "Body");
+    }
+
+}
@@ -2,7 +2,11 @@ package org.keycloak.email.freemarker;
 
 import org.jboss.logging.Logger;
 import org.keycloak.email.EmailException;
+import org.keycloak.email.EmailMessage;
+import org.keycloak.email.EmailOutbox;
 import org.keycloak.email.EmailProvider;
+import org.keycloak.email.EmailRetryPolicy;
+import org.keycloak.email.SmtpTransportPool;
 import org.keycloak.email.freemarker.beans.EventBean;
 import org.keycloak.events.Event;
 import org.keycloak.events.EventType;
@@ -15,11 +19,6 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 
-import javax.mail.Message;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
 import java.text.MessageFormat;
 import java.util.*;
 
@@ -32,12 +31,18 @@ public class FreeMarkerEmailProvider implements EmailProvider {
 
     private KeycloakSession session;
     private FreeMarkerUtil freeMarker;
+    private SmtpTransportPool transports;
+    private EmailRetryPolicy retryPolicy;
+    private EmailOutbox outbox;
     private RealmModel realm;
     private UserModel user;
 
-    public FreeMarkerEmailProvider(KeycloakSession session, FreeMarkerUtil freeMarker) {
+    public FreeMarkerEmailProvider(KeycloakSession session, FreeMarkerUtil freeMarker, SmtpTransportPool transports, EmailRetryPolicy retryPolicy, EmailOutbox outbox) {
         this.session = session;
         this.freeMarker = freeMarker;
+        this.transports = transports;
+        this.retryPolicy = retryPolicy;
+        this.outbox = outbox;
     }
 
     @Override
@@ -97,53 +102,14 @@ public class FreeMarkerEmailProvider implements EmailProvider {
 
 
     private void send(String subject, String body) throws EmailException {
+        EmailMessage email = new EmailMessage(realm.getSmtpConfig(), user.getEmail(), subject, body);
+        if (outbox != null) {
+            outbox.send(email);
+            return;
+        }
+
         try {
-            String address = user.getEmail();
-            Map<String, String> config = realm.getSmtpConfig();
-
-            Properties props = new Properties();
-            props.setProperty("mail.smtp.host", config.get("host"));
-
-            boolean auth = "true".equals(config.get("auth"));
-            boolean ssl = "true".equals(config.get("ssl"));
-            boolean starttls = "true".equals(config.get("starttls"));
-
-            if (config.containsKey("port")) {
-                props.setProperty("mail.smtp.port", config.get("port"));
-            }
-
-            if (auth) {
-                props.put("mail.smtp.auth", "true");
-            }
-
-            if (ssl) {
-                props.put("mail.smtp.socketFactory.port", config.get("port"));
-                props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
-            }
-
-            if (starttls) {
-                props.put("mail.smtp.starttls.enable", "true");
-            }
-
-            String from = config.get("from");
-
-            Session session = Session.getInstance(props);
-
-            Message msg = new MimeMessage(session);
-            msg.setFrom(new InternetAddress(from));
-            msg.setHeader("To", address);
-            msg.setSubject(subject);
-            msg.setText(body);
-            msg.saveChanges();
-            msg.setSentDate(new Date());
-
-            Transport transport = session.getTransport("smtp");
-            if (auth) {
-                transport.connect(config.get("user"), config.get("password"));
-            } else {
-                transport.connect();
-            }
-            transport.sendMessage(msg, new InternetAddress[]{new InternetAddress(address)});
+            retryPolicy.send(transports, email);
         } catch (Exception e) {
             log.warn("Failed to send email", e);
             throw new EmailException(e);
@@ -1,8 +1,11 @@
 package org.keycloak.email.freemarker;
 
 import org.keycloak.Config;
+import org.keycloak.email.EmailOutbox;
 import org.keycloak.email.EmailProvider;
 import org.keycloak.email.EmailProviderFactory;
+import org.keycloak.email.EmailRetryPolicy;
+import org.keycloak.email.SmtpTransportPool;
 import org.keycloak.freemarker.FreeMarkerUtil;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
@@ -13,15 +16,28 @@ import org.keycloak.models.KeycloakSessionFactory;
 public class FreeMarkerEmailProviderFactory implements EmailProviderFactory {
 
     private FreeMarkerUtil freeMarker;
+    private SmtpTransportPool transports;
+    private EmailRetryPolicy retryPolicy;
+    private EmailOutbox outbox;
 
     @Override
     public EmailProvider create(KeycloakSession session) {
-        return new FreeMarkerEmailProvider(session, freeMarker);
+        return new FreeMarkerEmailProvider(session, freeMarker, transports, retryPolicy, outbox);
     }
 
     @Override
     public void init(Config.Scope config) {
         freeMarker = new FreeMarkerUtil();
+        transports = new SmtpTransportPool(config.getLong("connectionIdleTimeout", 60000L));
+        retryPolicy = new EmailRetryPolicy(config.getInt("maxRetries", 3), config.getLong("retryDelay", 1000L));
+
+        // Emails are sent in the background, unless async is disabled in which case the request waits for the email
+        // to be sent (including retries) and errors are reported to the user
+        if (config.getBoolean("async", true)) {
+            outbox = new EmailOutbox(transports, config.getInt("queueSize", 1000), config.getInt("threads", 2),
+                    config.getInt("batchSize", 20), retryPolicy);
+            outbox.start();
+        }
     }
 
     @Override
@@ -31,6 +47,11 @@ public class FreeMarkerEmailProviderFactory implements EmailProviderFactory {
 
     @Override
     public void close() {
+        if (outbox != null) {
+            outbox.shutdown();
+        } else {
+            transports.close();
+        }
         freeMarker = null;
     }
 
@@ -35,6 +35,8 @@ import java.util.LinkedList;
 import java.util.List;
 
 /**
+ * Identity providers and their login URLs are only looked up if the template uses them.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class IdentityProviderBean {
@@ -43,9 +45,20 @@ public class IdentityProviderBean {
 
     private List<IdentityProvider> providers;
     private RealmModel realm;
+    private URI baseURI;
+    private boolean initialized;
 
     public IdentityProviderBean(RealmModel realm, URI baseURI, UriInfo uriInfo) {
         this.realm = realm;
+        this.baseURI = baseURI;
+    }
+
+    private void init() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+
         List<IdentityProviderModel> identityProviders = realm.getIdentityProviders();
 
         if (!identityProviders.isEmpty()) {
@@ -69,11 +82,16 @@ public class IdentityProviderBean {
     }
 
     public List<IdentityProvider> getProviders() {
+        init();
         return providers;
     }
 
     public boolean isDisplayInfo() {
-        return  realm.isRegistrationAllowed() || displaySocial;
+        if (realm.isRegistrationAllowed()) {
+            return true;
+        }
+        init();
+        return displaySocial;
     }
 
     public static class IdentityProvider {
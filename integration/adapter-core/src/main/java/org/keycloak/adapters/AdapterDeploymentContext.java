@@ -1,21 +1,15 @@
 package org.keycloak.adapters;
 
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
 import org.jboss.logging.Logger;
 import org.keycloak.enums.RelativeUrlsUsed;
 import org.keycloak.enums.SslRequired;
 import org.keycloak.enums.TokenStore;
 import org.keycloak.representations.adapters.config.AdapterConfig;
-import org.keycloak.representations.idm.PublishedRealmRepresentation;
-import org.keycloak.util.JsonSerialization;
 import org.keycloak.util.KeycloakUriBuilder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.security.PublicKey;
 import java.util.Map;
@@ -63,7 +57,7 @@ public class AdapterDeploymentContext {
      * and, if needed, will lazily resolve the Realm's Public Key.
      *
      * For multi-tenant deployments, defers the resolution of KeycloakDeployment
-     * to the KeycloakConfigResolver .
+     * to the KeycloakConfigResolver, and lazily resolves the Realm's Public Key.
      *
      * @param facade the Request/Response Façade , used to either determine
      *               the Auth Server URL (single tenant) or pass thru to the
@@ -72,16 +66,18 @@ public class AdapterDeploymentContext {
      */
     public KeycloakDeployment resolveDeployment(HttpFacade facade) {
         if (null != configResolver) {
-            return configResolver.resolve(facade.getRequest());
+            KeycloakDeployment resolvedDeployment = configResolver.resolve(facade.getRequest());
+            if (resolvedDeployment != null && resolvedDeployment.getAuthServerBaseUrl() != null) {
+                resolveRealmKey(resolvedDeployment);
+            }
+            return resolvedDeployment;
         }
 
         if (deployment == null) return null;
         if (deployment.getAuthServerBaseUrl() == null) return deployment;
 
         KeycloakDeployment resolvedDeployment = resolveUrls(deployment, facade);
-        if (resolvedDeployment.getRealmKey() == null) {
-            resolveRealmKey(resolvedDeployment);
-        }
+        resolveRealmKey(resolvedDeployment);
         return resolvedDeployment;
     }
 
@@ -96,43 +92,20 @@ public class AdapterDeploymentContext {
         }
     }
 
+    /**
+     * Sets the realm public key if it's fetched from the server. The key is cached by the deployment's
+     * {@link RealmKeyResolver}, which is shared with other deployments for the same realm. Deployments without a
+     * resolver that don't have the realm public key configured use the shared resolver.
+     *
+     * @param deployment
+     */
     public void resolveRealmKey(KeycloakDeployment deployment) {
-        if (deployment.getClient() == null) {
-            throw new RuntimeException("KeycloakDeployment was never initialized through appropriate SPIs");
-        }
-        HttpGet get = new HttpGet(deployment.getRealmInfoUrl());
-        try {
-            HttpResponse response = deployment.getClient().execute(get);
-            int status = response.getStatusLine().getStatusCode();
-            if (status != 200) {
-                close(response);
-                throw new RuntimeException("Unable to resolve realm public key remotely, status = " + status);
-            }
-            HttpEntity entity = response.getEntity();
-            if (entity == null) {
-                throw new RuntimeException("Unable to resolve realm public key remotely.  There was no entity.");
-            }
-            InputStream is = entity.getContent();
-            try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                int c;
-                while ((c = is.read()) != -1) {
-                    os.write(c);
-                }
-                byte[] bytes = os.toByteArray();
-                String json = new String(bytes);
-                PublishedRealmRepresentation rep = JsonSerialization.readValue(json, PublishedRealmRepresentation.class);
-                deployment.setRealmKey(rep.getPublicKey());
-            } finally {
-                try {
-                    is.close();
-                } catch (IOException ignored) {
-
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to resolve realm public key remotely", e);
+        RealmKeyResolver resolver = deployment.getRealmKeyResolver();
+        if (resolver == null) {
+            if (deployment.getRealmKey() != null) return;
+            resolver = RealmKeyResolver.getInstance();
         }
+        deployment.setRealmKey(resolver.getRealmKey(deployment));
     }
 
     /**
@@ -217,6 +190,16 @@ public class AdapterDeploymentContext {
             delegate.setRealmKey(realmKey);
         }
 
+        @Override
+        public RealmKeyResolver getRealmKeyResolver() {
+            return delegate.getRealmKeyResolver();
+        }
+
+        @Override
+        public void setRealmKeyResolver(RealmKeyResolver realmKeyResolver) {
+            delegate.setRealmKeyResolver(realmKeyResolver);
+        }
+
         @Override
         public void setResourceName(String resourceName) {
             delegate.setResourceName(resourceName);
@@ -3,9 +3,14 @@ package org.keycloak.adapters;
 import org.jboss.logging.Logger;
 import org.keycloak.KeycloakPrincipal;
 import org.keycloak.KeycloakSecurityContext;
+import org.keycloak.RSATokenVerifier;
+import org.keycloak.VerificationException;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.jose.jws.crypto.RSAProvider;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.util.UriUtils;
 
+import java.security.PublicKey;
 import java.util.Collections;
 import java.util.Set;
 
@@ -97,6 +102,43 @@ public class AdapterUtils {
         return name;
     }
 
+    /**
+     * Verifies the token with the realm public key. If the realm public key is fetched from the server and the token
+     * signature is not valid, checks if the realm key has been changed and verifies the token again with the new key.
+     *
+     * @param tokenString
+     * @param deployment
+     * @param checkActive
+     * @return
+     * @throws VerificationException
+     */
+    public static AccessToken verifyToken(String tokenString, KeycloakDeployment deployment, boolean checkActive) throws VerificationException {
+        PublicKey realmKey = deployment.getRealmKey();
+        try {
+            return RSATokenVerifier.verifyToken(tokenString, realmKey, deployment.getRealm(), checkActive);
+        } catch (VerificationException e) {
+            RealmKeyResolver resolver = deployment.getRealmKeyResolver();
+            if (resolver == null || realmKey == null || !isSignatureInvalid(tokenString, realmKey)) {
+                throw e;
+            }
+
+            PublicKey newKey = resolver.refreshRealmKey(deployment, realmKey);
+            if (newKey == null) {
+                throw e;
+            }
+            deployment.setRealmKey(newKey);
+            return RSATokenVerifier.verifyToken(tokenString, newKey, deployment.getRealm(), checkActive);
+        }
+    }
+
+    private static boolean isSignatureInvalid(String tokenString, PublicKey realmKey) {
+        try {
+            return !RSAProvider.verify(new JWSInput(tokenString), realmKey);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     public static KeycloakPrincipal<RefreshableKeycloakSecurityContext> createPrincipal(KeycloakDeployment deployment, RefreshableKeycloakSecurityContext securityContext) {
         return new KeycloakPrincipal<RefreshableKeycloakSecurityContext>(getPrincipalName(deployment, securityContext.getToken()), securityContext);
     }
@@ -25,6 +25,7 @@ public class KeycloakDeployment {
     protected RelativeUrlsUsed relativeUrls;
     protected String realm;
     protected volatile PublicKey realmKey;
+    protected RealmKeyResolver realmKeyResolver;
     protected String authServerBaseUrl;
     protected String realmInfoUrl;
     protected KeycloakUriBuilder authUrl;
@@ -84,6 +85,19 @@ public class KeycloakDeployment {
         this.realmKey = realmKey;
     }
 
+    /**
+     * Resolver used to fetch the realm public key from the server, null if the realm public key is configured
+     *
+     * @return
+     */
+    public RealmKeyResolver getRealmKeyResolver() {
+        return realmKeyResolver;
+    }
+
+    public void setRealmKeyResolver(RealmKeyResolver realmKeyResolver) {
+        this.realmKeyResolver = realmKeyResolver;
+    }
+
     public String getAuthServerBaseUrl() {
         return authServerBaseUrl;
     }
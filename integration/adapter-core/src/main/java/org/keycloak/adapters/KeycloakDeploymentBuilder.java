@@ -43,6 +43,8 @@ public class KeycloakDeploymentBuilder {
                 throw new RuntimeException(e);
             }
             deployment.setRealmKey(realmKey);
+        } else {
+            deployment.setRealmKeyResolver(RealmKeyResolver.getInstance());
         }
         if (adapterConfig.getSslRequired() != null) {
             deployment.setSslRequired(SslRequired.valueOf(adapterConfig.getSslRequired().toUpperCase()));
@@ -0,0 +1,296 @@
+package org.keycloak.adapters;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.jboss.logging.Logger;
+import org.keycloak.representations.idm.PublishedRealmRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.PublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fetches realm public keys from the auth server and caches them by realm info url, so deployments for the same realm
+ * share the key. This includes deployments created by a {@link KeycloakConfigResolver} for multi-tenant applications.
+ *
+ * Only one request is sent to the server for each realm at a time. Threads that need a key which hasn't been fetched
+ * yet wait for that request. If the request fails, requests for the key fail without contacting the server until the
+ * retry time has passed. The retry time doubles with each failure, up to maxRetryTime.
+ *
+ * A cached key older than refreshTime is refreshed in the background the next time it's used, while the old key is
+ * still used. If a token signature can't be verified with the cached key, {@link #refreshRealmKey(KeycloakDeployment, PublicKey)}
+ * checks if the realm key has been changed. To prevent invalid tokens from causing requests to the server, this is
+ * done at most once every minTimeBetweenRequests.
+ *
+ * Keys are refreshed by a thread that exits when it's idle. Adapters call {@link #close()} when a deployment is stopped,
+ * so the thread doesn't keep the deployment's class loader from being released.
+ */
+public class RealmKeyResolver {
+
+    private static final Logger log = Logger.getLogger(RealmKeyResolver.class);
+
+    private static final RealmKeyResolver INSTANCE = new RealmKeyResolver();
+
+    private final ConcurrentHashMap<String, RealmKey> keys = new ConcurrentHashMap<String, RealmKey>();
+
+    private ThreadPoolExecutor executor;
+
+    private volatile long refreshTime = 60 * 60 * 1000;
+    private volatile long minTimeBetweenRequests = 10 * 1000;
+    private volatile long minRetryTime = 1000;
+    private volatile long maxRetryTime = 60 * 1000;
+
+    /**
+     * Resolver shared by all deployments that don't have the realm public key configured
+     *
+     * @return
+     */
+    public static RealmKeyResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the realm public key, fetching it from the server if it's not cached
+     *
+     * @param deployment
+     * @return
+     * @throws RuntimeException if the key couldn't be fetched
+     */
+    public PublicKey getRealmKey(KeycloakDeployment deployment) {
+        RealmKey realmKey = getEntry(deployment);
+        if (realmKey == null) {
+            // Realm info url isn't known, for example if the auth server url is relative and hasn't been resolved yet
+            if (deployment.getRealmKey() != null) {
+                return deployment.getRealmKey();
+            }
+            throw new RuntimeException("Unable to resolve realm public key remotely, realm info url not set");
+        }
+
+        PublicKey key = realmKey.key;
+        if (key != null) {
+            if (System.currentTimeMillis() - realmKey.fetched > refreshTime) {
+                refreshInBackground(deployment, realmKey);
+            }
+            return key;
+        }
+
+        synchronized (realmKey) {
+            if (realmKey.key != null) {
+                return realmKey.key;
+            }
+
+            long retryIn = realmKey.retryAt - System.currentTimeMillis();
+            if (retryIn > 0) {
+                throw new RuntimeException("Unable to resolve realm public key remotely, retrying in " + retryIn + " ms", realmKey.failure);
+            }
+
+            if (!fetch(deployment, realmKey)) {
+                throw realmKey.failure;
+            }
+            return realmKey.key;
+        }
+    }
+
+    /**
+     * Fetches the realm public key from the server if a token signature couldn't be verified with failedKey
+     *
+     * @param deployment
+     * @param failedKey the key that failed to verify the token signature
+     * @return the new realm public key, or null if the key hasn't changed or couldn't be fetched
+     */
+    public PublicKey refreshRealmKey(KeycloakDeployment deployment, PublicKey failedKey) {
+        RealmKey realmKey = getEntry(deployment);
+        if (realmKey == null) {
+            return null;
+        }
+
+        synchronized (realmKey) {
+            if (realmKey.key != null && !realmKey.key.equals(failedKey)) {
+                return realmKey.key;
+            }
+
+            long currentTime = System.currentTimeMillis();
+            if (currentTime - realmKey.requested < minTimeBetweenRequests || currentTime < realmKey.retryAt) {
+                return null;
+            }
+
+            log.debugv("Token signature not valid, checking if realm key for {0} has changed", deployment.getRealm());
+            if (fetch(deployment, realmKey) && !realmKey.key.equals(failedKey)) {
+                log.infov("Realm key for {0} has changed", deployment.getRealm());
+                return realmKey.key;
+            }
+            return null;
+        }
+    }
+
+    public void clear() {
+        keys.clear();
+    }
+
+    /**
+     * Stops the thread that refreshes keys in the background. Cached keys are kept, and the thread is started again if a
+     * key needs to be refreshed after this.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public void setRefreshTime(long refreshTime) {
+        this.refreshTime = refreshTime;
+    }
+
+    public void setMinTimeBetweenRequests(long minTimeBetweenRequests) {
+        this.minTimeBetweenRequests = minTimeBetweenRequests;
+    }
+
+    public void setMinRetryTime(long minRetryTime) {
+        this.minRetryTime = minRetryTime;
+    }
+
+    public void setMaxRetryTime(long maxRetryTime) {
+        this.maxRetryTime = maxRetryTime;
+    }
+
+    protected PublicKey fetchRealmKey(KeycloakDeployment deployment) {
+        if (deployment.getClient() == null) {
+            throw new RuntimeException("KeycloakDeployment was never initialized through appropriate SPIs");
+        }
+        HttpGet get = new HttpGet(deployment.getRealmInfoUrl());
+        try {
+            HttpResponse response = deployment.getClient().execute(get);
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status != 200) {
+                if (entity != null) {
+                    entity.getContent().close();
+                }
+                throw new RuntimeException("Unable to resolve realm public key remotely, status = " + status);
+            }
+            if (entity == null) {
+                throw new RuntimeException("Unable to resolve realm public key remotely.  There was no entity.");
+            }
+            InputStream is = entity.getContent();
+            try {
+                PublishedRealmRepresentation rep = JsonSerialization.readValue(is, PublishedRealmRepresentation.class);
+                return rep.getPublicKey();
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException ignored) {
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to resolve realm public key remotely", e);
+        }
+    }
+
+    private RealmKey getEntry(KeycloakDeployment deployment) {
+        String url = deployment.getRealmInfoUrl();
+        if (url == null) {
+            return null;
+        }
+
+        RealmKey realmKey = keys.get(url);
+        if (realmKey == null) {
+            realmKey = new RealmKey();
+            RealmKey existing = keys.putIfAbsent(url, realmKey);
+            if (existing != null) {
+                realmKey = existing;
+            }
+        }
+        return realmKey;
+    }
+
+    /**
+     * Must be called while holding the lock on realmKey
+     */
+    private boolean fetch(KeycloakDeployment deployment, RealmKey realmKey) {
+        realmKey.requested = System.currentTimeMillis();
+        try {
+            realmKey.key = fetchRealmKey(deployment);
+            realmKey.fetched = System.currentTimeMillis();
+            realmKey.failure = null;
+            realmKey.retryTime = 0;
+            realmKey.retryAt = 0;
+            return true;
+        } catch (RuntimeException e) {
+            realmKey.failure = e;
+            realmKey.retryTime = realmKey.retryTime == 0 ? minRetryTime : Math.min(realmKey.retryTime * 2, maxRetryTime);
+            realmKey.retryAt = System.currentTimeMillis() + realmKey.retryTime;
+            log.warnv("Failed to fetch realm key for {0}, retrying in {1} ms: {2}", deployment.getRealm(), realmKey.retryTime, e.getMessage());
+            return false;
+        }
+    }
+
+    private void refreshInBackground(final KeycloakDeployment deployment, final RealmKey realmKey) {
+        if (System.currentTimeMillis() < realmKey.retryAt || !realmKey.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (realmKey) {
+                        if (System.currentTimeMillis() - realmKey.fetched > refreshTime) {
+                            fetch(deployment, realmKey);
+                        }
+                    }
+                } finally {
+                    realmKey.refreshing.set(false);
+                }
+            }
+        };
+
+        try {
+            getExecutor().execute(refresh);
+        } catch (RejectedExecutionException e) {
+            // Closed concurrently, the key is refreshed the next time it's used
+            realmKey.refreshing.set(false);
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "keycloak-realm-key-refresh");
+                    thread.setDaemon(true);
+                    // Don't hold on to the class loader of the deployment that happened to trigger the refresh
+                    thread.setContextClassLoader(RealmKeyResolver.class.getClassLoader());
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    synchronized boolean isRefreshThreadStarted() {
+        return executor != null;
+    }
+
+    private static class RealmKey {
+        private volatile PublicKey key;
+        private volatile long fetched;
+        private volatile long requested;
+        private volatile long retryTime;
+        private volatile long retryAt;
+        private volatile RuntimeException failure;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
+
+}
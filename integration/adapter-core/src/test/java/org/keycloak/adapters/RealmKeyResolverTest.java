@@ -0,0 +1,219 @@
+package org.keycloak.adapters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RealmKeyResolverTest {
+
+    private PublicKey key1;
+    private PublicKey key2;
+    private KeycloakDeployment deployment;
+    private TestResolver resolver;
+
+    @Before
+    public void before() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        key1 = generator.generateKeyPair().getPublic();
+        key2 = generator.generateKeyPair().getPublic();
+
+        deployment = new KeycloakDeployment();
+        deployment.setRealm("test");
+        deployment.realmInfoUrl = "http://localhost/auth/realms/test";
+
+        resolver = new TestResolver();
+        resolver.key = key1;
+    }
+
+    @After
+    public void after() {
+        resolver.close();
+    }
+
+    @Test
+    public void fetchOnce() throws Exception {
+        resolver.delay = 200;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<PublicKey> keys = new LinkedList<PublicKey>();
+        List<Thread> threads = new LinkedList<Thread>();
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    PublicKey key = resolver.getRealmKey(deployment);
+                    synchronized (keys) {
+                        keys.add(key);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, resolver.requests.get());
+        assertEquals(10, keys.size());
+        for (PublicKey key : keys) {
+            assertSame(key1, key);
+        }
+    }
+
+    @Test
+    public void retryAfterFailure() throws Exception {
+        resolver.setMinRetryTime(100);
+        resolver.key = null;
+
+        try {
+            resolver.getRealmKey(deployment);
+            fail("Expected failure");
+        } catch (RuntimeException e) {
+        }
+        assertEquals(1, resolver.requests.get());
+
+        try {
+            resolver.getRealmKey(deployment);
+            fail("Expected failure");
+        } catch (RuntimeException e) {
+        }
+        assertEquals(1, resolver.requests.get());
+
+        Thread.sleep(150);
+
+        resolver.key = key1;
+        assertSame(key1, resolver.getRealmKey(deployment));
+        assertEquals(2, resolver.requests.get());
+    }
+
+    @Test
+    public void refreshOnSignatureFailure() throws Exception {
+        resolver.setMinTimeBetweenRequests(0);
+        assertSame(key1, resolver.getRealmKey(deployment));
+
+        assertNull(resolver.refreshRealmKey(deployment, key1));
+        assertEquals(2, resolver.requests.get());
+
+        resolver.key = key2;
+        assertSame(key2, resolver.refreshRealmKey(deployment, key1));
+        assertEquals(3, resolver.requests.get());
+
+        assertSame(key2, resolver.refreshRealmKey(deployment, key1));
+        assertEquals(3, resolver.requests.get());
+
+        assertSame(key2, resolver.getRealmKey(deployment));
+    }
+
+    @Test
+    public void refreshOnSignatureFailureLimited() throws Exception {
+        resolver.setMinTimeBetweenRequests(60 * 1000);
+        assertSame(key1, resolver.getRealmKey(deployment));
+
+        resolver.key = key2;
+        assertNull(resolver.refreshRealmKey(deployment, key1));
+        assertEquals(1, resolver.requests.get());
+        assertSame(key1, resolver.getRealmKey(deployment));
+    }
+
+    @Test
+    public void refreshInBackground() throws Exception {
+        resolver.setRefreshTime(0);
+        assertSame(key1, resolver.getRealmKey(deployment));
+
+        resolver.key = key2;
+        Thread.sleep(10);
+        assertSame(key1, resolver.getRealmKey(deployment));
+
+        for (int i = 0; i < 50 && resolver.getRealmKey(deployment) != key2; i++) {
+            Thread.sleep(10);
+        }
+        assertSame(key2, resolver.getRealmKey(deployment));
+    }
+
+    @Test
+    public void closeStopsRefreshThread() throws Exception {
+        resolver.setRefreshTime(0);
+        assertSame(key1, resolver.getRealmKey(deployment));
+        assertFalse(resolver.isRefreshThreadStarted());
+
+        Thread.sleep(10);
+        resolver.getRealmKey(deployment);
+        assertTrue(resolver.isRefreshThreadStarted());
+
+        resolver.close();
+        assertFalse(resolver.isRefreshThreadStarted());
+
+        // Cached key is kept, and refreshed again after close
+        resolver.key = key2;
+        for (int i = 0; i < 50 && resolver.getRealmKey(deployment) != key2; i++) {
+            Thread.sleep(10);
+        }
+        assertSame(key2, resolver.getRealmKey(deployment));
+        assertTrue(resolver.isRefreshThreadStarted());
+    }
+
+    @Test
+    public void noRealmInfoUrl() throws Exception {
+        deployment.realmInfoUrl = null;
+
+        try {
+            resolver.getRealmKey(deployment);
+            fail("Expected failure");
+        } catch (RuntimeException e) {
+        }
+        assertNull(resolver.refreshRealmKey(deployment, key1));
+
+        deployment.setRealmKey(key2);
+        assertSame(key2, resolver.getRealmKey(deployment));
+        assertNull(resolver.refreshRealmKey(deployment, key2));
+        assertEquals(0, resolver.requests.get());
+    }
+
+    private static class TestResolver extends RealmKeyResolver {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile PublicKey key;
+        private volatile long delay;
+
+        @Override
+        protected PublicKey fetchRealmKey(KeycloakDeployment deployment) {
+            requests.incrementAndGet();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (key == null) {
+                throw new RuntimeException("Server not available");
+            }
+            return key;
+        }
+
+    }
+
+}
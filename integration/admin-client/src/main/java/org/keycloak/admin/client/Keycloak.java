@@ -8,33 +8,69 @@ import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.RealmsResource;
 import org.keycloak.admin.client.token.TokenManager;
 
+import java.util.concurrent.TimeUnit;
+
 /**
+ * Entry point of the admin client. Instances are thread-safe and should be shared: the access token is cached and
+ * renewed by the {@link TokenManager}, and requests are sent using a pool of HTTP connections (10 by default, use
+ * {@link #getInstance(String, String, String, String, String, String, int)} to send many requests concurrently).
+ *
  * @author rodrigo.sasaki@icarros.com.br
  */
 public class Keycloak {
 
+    private static final int DEFAULT_CONNECTION_POOL_SIZE = 10;
+
     private final Config config;
     private final TokenManager tokenManager;
     private final ResteasyWebTarget target;
     private final ResteasyClient client;
 
-    private Keycloak(String serverUrl, String realm, String username, String password, String clientId, String clientSecret){
+    private Keycloak(String serverUrl, String realm, String username, String password, String clientId, String clientSecret, ResteasyClient client){
         config = new Config(serverUrl, realm, username, password, clientId, clientSecret);
-        client = new ResteasyClientBuilder().build();
+        this.client = client;
 
         tokenManager = new TokenManager(config, client);
 
         target = client.target(config.getServerUrl());
 
-        target.register(new BearerAuthFilter(tokenManager.getAccessTokenString()));
+        target.register(new BearerAuthFilter(tokenManager));
     }
 
     public static Keycloak getInstance(String serverUrl, String realm, String username, String password, String clientId, String clientSecret){
-        return new Keycloak(serverUrl, realm, username, password, clientId, clientSecret);
+        return getInstance(serverUrl, realm, username, password, clientId, clientSecret, DEFAULT_CONNECTION_POOL_SIZE);
     }
 
     public static Keycloak getInstance(String serverUrl, String realm, String username, String password, String clientId){
-        return new Keycloak(serverUrl, realm, username, password, clientId, null);
+        return getInstance(serverUrl, realm, username, password, clientId, null, DEFAULT_CONNECTION_POOL_SIZE);
+    }
+
+    /**
+     * @param connectionPoolSize maximum number of concurrent connections to the server
+     */
+    public static Keycloak getInstance(String serverUrl, String realm, String username, String password, String clientId, String clientSecret, int connectionPoolSize){
+        return new Keycloak(serverUrl, realm, username, password, clientId, clientSecret, createClient(connectionPoolSize));
+    }
+
+    /**
+     * @param client client used to send requests, closed by {@link #close()}
+     */
+    public static Keycloak getInstance(String serverUrl, String realm, String username, String password, String clientId, String clientSecret, ResteasyClient client){
+        return new Keycloak(serverUrl, realm, username, password, clientId, clientSecret, client);
+    }
+
+    /**
+     * Creates a client with a pool of connections. Idle connections are kept for 60 seconds.
+     *
+     * @param connectionPoolSize maximum number of concurrent connections to the server
+     * @return
+     */
+    public static ResteasyClient createClient(int connectionPoolSize) {
+        return new ResteasyClientBuilder()
+                .connectionPoolSize(connectionPoolSize)
+                .maxPooledPerRoute(connectionPoolSize)
+                .connectionTTL(60, TimeUnit.SECONDS)
+                .build();
     }
 
     public RealmsResource realms(){
@@ -50,6 +86,7 @@ public class Keycloak {
     }
 
     public void close() {
+        tokenManager.close();
         client.close();
     }
 
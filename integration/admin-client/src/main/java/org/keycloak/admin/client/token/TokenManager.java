@@ -1,29 +1,69 @@
 package org.keycloak.admin.client.token;
 
 import org.jboss.resteasy.client.jaxrs.ResteasyClient;
-import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
 import org.keycloak.admin.client.Config;
 import org.keycloak.admin.client.resource.BasicAuthFilter;
 import org.keycloak.representations.AccessTokenResponse;
 
 import javax.ws.rs.core.Form;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Obtains and caches the access token used by the admin client. The token manager is thread-safe: while the current
+ * token is valid it's returned without locking, and when a new token is needed only one thread obtains it while the
+ * others wait for the result.
+ *
+ * The token is refreshed minValidity seconds before it expires (or at half its lifespan for short lived tokens). If the
+ * token has been used since it was last obtained it's renewed in the background shortly before that, so busy clients
+ * don't have to wait for it. If the refresh token has expired or is rejected a new token is obtained with the password grant.
+ * Renewal is shared by all token managers and stops when {@link #close()} is called.
+ *
  * @author rodrigo.sasaki@icarros.com.br
  */
 public class TokenManager {
 
-    private AccessTokenResponse currentToken;
-    private Date expirationTime;
+    private static final int DEFAULT_MIN_VALIDITY = 30;
+
+    private static final ScheduledThreadPoolExecutor renewExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Keycloak Admin Client Token Renewal");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        // Cancelled renewals are removed from the queue straight away, otherwise they keep closed token managers (and
+        // their clients) reachable until the renewal was due. The thread exits when no renewals are scheduled.
+        renewExecutor.setRemoveOnCancelPolicy(true);
+        renewExecutor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        renewExecutor.allowCoreThreadTimeOut(true);
+    }
+
     private final Config config;
     private final ResteasyClient client;
+    private final int minValidity;
+    private final Object lock = new Object();
+
+    private volatile TokenState currentToken;
+    private volatile boolean used;
+    private volatile boolean closed;
+    private ScheduledFuture<?> renewTask;
 
     public TokenManager(Config config, ResteasyClient client){
+        this(config, client, DEFAULT_MIN_VALIDITY);
+    }
+
+    public TokenManager(Config config, ResteasyClient client, int minValidity){
         this.config = config;
         this.client = client;
+        this.minValidity = minValidity;
     }
 
     public String getAccessTokenString(){
@@ -31,71 +71,161 @@ public class TokenManager {
     }
 
     public AccessTokenResponse getAccessToken(){
-        if(currentToken == null){
-            grantToken();
-        }else if(tokenExpired()){
-            refreshToken();
+        TokenState token = currentToken;
+        if (token == null || token.isExpired()) {
+            synchronized (lock) {
+                // Another thread may have obtained a new token while this thread was waiting for the lock
+                token = currentToken;
+                if (token == null || token.isExpired()) {
+                    token = obtainToken(token);
+                }
+            }
         }
-        return currentToken;
+        used = true;
+        return token.response;
     }
 
     public AccessTokenResponse grantToken(){
-        ResteasyWebTarget target = client.target(config.getServerUrl());
+        synchronized (lock) {
+            return defineCurrentToken(requestGrant()).response;
+        }
+    }
+
+    public AccessTokenResponse refreshToken(){
+        synchronized (lock) {
+            TokenState token = currentToken;
+            if (token == null) {
+                return defineCurrentToken(requestGrant()).response;
+            }
+            return defineCurrentToken(requestRefresh(token.response.getRefreshToken())).response;
+        }
+    }
+
+    /**
+     * Stops background renewal of the token
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            if (renewTask != null) {
+                renewTask.cancel(false);
+                renewTask = null;
+            }
+        }
+    }
+
+    private TokenState obtainToken(TokenState token) {
+        if (token != null && token.response.getRefreshToken() != null && !token.isRefreshExpired()) {
+            try {
+                return defineCurrentToken(requestRefresh(token.response.getRefreshToken()));
+            } catch (RuntimeException e) {
+                // Refresh token no longer valid (for example the session was removed), fall back to the password grant
+            }
+        }
+        return defineCurrentToken(requestGrant());
+    }
 
+    AccessTokenResponse requestGrant(){
         Form form = new Form()
                 .param("grant_type", "password")
                 .param("username", config.getUsername())
                 .param("password", config.getPassword());
 
-        if(config.isPublicClient()){
-            form.param("client_id", config.getClientId());
-        } else {
-            target.register(new BasicAuthFilter(config.getClientId(), config.getClientSecret()));
-        }
-
-        TokenService tokenService = target.proxy(TokenService.class);
+        return tokenService(form).grantToken(config.getRealm(), form.asMap());
+    }
 
-        AccessTokenResponse response = tokenService.grantToken(config.getRealm(), form.asMap());
+    AccessTokenResponse requestRefresh(String refreshToken){
+        Form form = new Form()
+                .param("grant_type", "refresh_token")
+                .param("refresh_token", refreshToken);
 
-        defineCurrentToken(response);
-        return response;
+        return tokenService(form).refreshToken(config.getRealm(), form.asMap());
     }
 
-    public AccessTokenResponse refreshToken(){
+    private TokenService tokenService(Form form) {
         ResteasyWebTarget target = client.target(config.getServerUrl());
 
-        Form form = new Form()
-                .param("grant_type", "refresh_token")
-                .param("username", config.getUsername())
-                .param("password", config.getPassword());
-
         if(config.isPublicClient()){
             form.param("client_id", config.getClientId());
         } else {
             target.register(new BasicAuthFilter(config.getClientId(), config.getClientSecret()));
         }
 
-        TokenService tokenService = target.proxy(TokenService.class);
+        return target.proxy(TokenService.class);
+    }
 
-        AccessTokenResponse response = tokenService.refreshToken(config.getRealm(), form.asMap());
+    private TokenState defineCurrentToken(AccessTokenResponse accessTokenResponse){
+        TokenState token = new TokenState(accessTokenResponse, minValidity);
+        currentToken = token;
+        used = false;
+        scheduleRenewal(token);
+        return token;
+    }
 
-        defineCurrentToken(response);
-        return response;
+    private void scheduleRenewal(final TokenState token) {
+        if (renewTask != null) {
+            renewTask.cancel(false);
+            renewTask = null;
+        }
+        if (closed || token.response.getRefreshToken() == null || token.expiresAt == Long.MAX_VALUE) {
+            return;
+        }
+
+        // Renew before the token is considered expired, so threads using the client don't have to wait for it
+        long delay = (token.expiresAt - System.currentTimeMillis()) * 4 / 5;
+        renewTask = renewExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    // Only renew tokens that are in use, and only if no other thread has already replaced it
+                    if (closed || !used || currentToken != token) {
+                        return;
+                    }
+                    try {
+                        obtainToken(token);
+                    } catch (RuntimeException e) {
+                        // Leave it to the next call to getAccessToken to obtain a new token
+                    }
+                }
+            }
+        }, Math.max(0, delay), TimeUnit.MILLISECONDS);
     }
 
-    private void setExpirationTime() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.SECOND, (int) currentToken.getExpiresIn());
-        expirationTime = cal.getTime();
+    ScheduledFuture<?> getRenewTask() {
+        synchronized (lock) {
+            return renewTask;
+        }
     }
 
-    private boolean tokenExpired() {
-        return new Date().after(expirationTime);
+    static BlockingQueue<Runnable> getRenewQueue() {
+        return renewExecutor.getQueue();
     }
 
-    private void defineCurrentToken(AccessTokenResponse accessTokenResponse){
-        currentToken = accessTokenResponse;
-        setExpirationTime();
+    private static class TokenState {
+
+        private final AccessTokenResponse response;
+        private final long expiresAt;
+        private final long refreshExpiresAt;
+
+        private TokenState(AccessTokenResponse response, int minValidity) {
+            long now = System.currentTimeMillis();
+            this.response = response;
+            this.expiresAt = response.getExpiresIn() > 0 ? now + margin(response.getExpiresIn(), minValidity) * 1000 : Long.MAX_VALUE;
+            this.refreshExpiresAt = response.getRefreshExpiresIn() > 0 ? now + margin(response.getRefreshExpiresIn(), minValidity) * 1000 : Long.MAX_VALUE;
+        }
+
+        private static long margin(long expiresIn, int minValidity) {
+            return expiresIn > 2 * minValidity ? expiresIn - minValidity : expiresIn / 2;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        private boolean isRefreshExpired() {
+            return System.currentTimeMillis() >= refreshExpiresAt;
+        }
+
     }
 
 }
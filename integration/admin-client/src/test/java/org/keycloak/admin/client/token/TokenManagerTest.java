@@ -0,0 +1,209 @@
+package org.keycloak.admin.client.token;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.representations.AccessTokenResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TokenManagerTest {
+
+    private final List<MockTokenManager> managers = new ArrayList<MockTokenManager>();
+
+    @After
+    public void after() {
+        for (MockTokenManager manager : managers) {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void tokenCached() {
+        MockTokenManager manager = manager(3600, true);
+
+        Assert.assertEquals("grant-1", manager.getAccessTokenString());
+        Assert.assertEquals("grant-1", manager.getAccessTokenString());
+        Assert.assertEquals(1, manager.grants.get());
+        Assert.assertEquals(0, manager.refreshes.get());
+    }
+
+    @Test
+    public void concurrentRequestsObtainOneToken() throws Exception {
+        final MockTokenManager manager = manager(3600, true);
+        manager.requestDelay = 200;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<String> tokens = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    String token = manager.getAccessTokenString();
+                    synchronized (tokens) {
+                        tokens.add(token);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        Assert.assertEquals(10, tokens.size());
+        for (String token : tokens) {
+            Assert.assertEquals("grant-1", token);
+        }
+        Assert.assertEquals(1, manager.grants.get());
+    }
+
+    @Test
+    public void usedTokenRenewedInBackground() throws Exception {
+        MockTokenManager manager = manager(2, true);
+        manager.getAccessTokenString();
+
+        // The renewal replaces the renew task once the new token is set
+        ScheduledFuture<?> renewTask = manager.getRenewTask();
+        for (int i = 0; i < 50 && manager.getRenewTask() == renewTask; i++) {
+            Thread.sleep(100);
+        }
+
+        Assert.assertEquals(1, manager.refreshes.get());
+        Assert.assertEquals("refresh-1", manager.getAccessTokenString());
+        Assert.assertEquals(1, manager.grants.get());
+    }
+
+    @Test
+    public void unusedTokenNotRenewed() throws Exception {
+        MockTokenManager manager = manager(2, true);
+        manager.grantToken();
+
+        Thread.sleep(1500);
+
+        Assert.assertEquals(0, manager.refreshes.get());
+    }
+
+    @Test
+    public void rejectedRefreshFallsBackToGrant() throws Exception {
+        MockTokenManager manager = manager(2, true);
+        manager.refreshFails = true;
+        manager.grantToken();
+
+        Thread.sleep(1100);
+
+        Assert.assertEquals("grant-2", manager.getAccessTokenString());
+        Assert.assertEquals(1, manager.refreshes.get());
+        Assert.assertEquals(2, manager.grants.get());
+    }
+
+    @Test
+    public void noRenewalWithoutRefreshToken() {
+        MockTokenManager manager = manager(3600, false);
+        manager.getAccessTokenString();
+
+        Assert.assertNull(manager.getRenewTask());
+    }
+
+    @Test
+    public void closeCancelsRenewal() {
+        MockTokenManager manager = manager(3600, true);
+        manager.getAccessTokenString();
+
+        ScheduledFuture<?> renewTask = manager.getRenewTask();
+        Assert.assertNotNull(renewTask);
+        Assert.assertTrue(TokenManager.getRenewQueue().contains(renewTask));
+
+        manager.close();
+
+        Assert.assertTrue(renewTask.isCancelled());
+        Assert.assertFalse(TokenManager.getRenewQueue().contains(renewTask));
+        Assert.assertNull(manager.getRenewTask());
+
+        // A token obtained after close isn't renewed
+        manager.grantToken();
+        Assert.assertNull(manager.getRenewTask());
+    }
+
+    @Test
+    public void replacedRenewalRemoved() {
+        MockTokenManager manager = manager(3600, true);
+        manager.getAccessTokenString();
+        ScheduledFuture<?> renewTask = manager.getRenewTask();
+
+        manager.refreshToken();
+
+        Assert.assertFalse(TokenManager.getRenewQueue().contains(renewTask));
+        Assert.assertTrue(TokenManager.getRenewQueue().contains(manager.getRenewTask()));
+    }
+
+    private MockTokenManager manager(long expiresIn, boolean refreshToken) {
+        MockTokenManager manager = new MockTokenManager(expiresIn, refreshToken);
+        managers.add(manager);
+        return manager;
+    }
+
+    private static class MockTokenManager extends TokenManager {
+
+        private final AtomicInteger grants = new AtomicInteger();
+        private final AtomicInteger refreshes = new AtomicInteger();
+        private final long expiresIn;
+        private final boolean refreshToken;
+        private volatile long requestDelay;
+        private volatile boolean refreshFails;
+
+        private MockTokenManager(long expiresIn, boolean refreshToken) {
+            super(null, null);
+            this.expiresIn = expiresIn;
+            this.refreshToken = refreshToken;
+        }
+
+        @Override
+        AccessTokenResponse requestGrant() {
+            return response("grant-" + grants.incrementAndGet());
+        }
+
+        @Override
+        AccessTokenResponse requestRefresh(String refreshToken) {
+            int refresh = refreshes.incrementAndGet();
+            if (refreshFails) {
+                throw new RuntimeException("Refresh token rejected");
+            }
+            return response("refresh-" + refresh);
+        }
+
+        private AccessTokenResponse response(String token) {
+            if (requestDelay > 0) {
+                try {
+                    Thread.sleep(requestDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            AccessTokenResponse response = new AccessTokenResponse();
+            response.setToken(token);
+            response.setExpiresIn(expiresIn);
+            if (refreshToken) {
+                response.setRefreshToken("refresh-token");
+                response.setRefreshExpiresIn(expiresIn * 10);
+            }
+            return response;
+        }
+
+    }
+
+}
@@ -23,6 +23,7 @@ import org.keycloak.adapters.KeycloakDeployment;
 import org.keycloak.adapters.KeycloakDeploymentBuilder;
 import org.keycloak.adapters.NodesRegistrationManagement;
 import org.keycloak.adapters.PreAuthActionsHandler;
+import org.keycloak.adapters.RealmKeyResolver;
 import org.keycloak.adapters.RefreshableKeycloakSecurityContext;
 import org.keycloak.enums.TokenStore;
 
@@ -128,6 +129,7 @@ public abstract class AbstractKeycloakAuthenticatorValve extends FormAuthenticat
 
     protected void beforeStop() {
         nodesRegistrationManagement.stop();
+        RealmKeyResolver.getInstance().close();
     }
 
     private static InputStream getJSONFromServletContext(ServletContext servletContext) {
@@ -4,6 +4,7 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 import org.keycloak.adapters.NodesRegistrationManagement;
+import org.keycloak.adapters.RealmKeyResolver;
 
 /**
  * @author <a href="mailto:mposolda@redhat.com">Marek Posolda</a>
@@ -23,5 +24,6 @@ public class UndertowNodesRegistrationManagementWrapper implements ServletContex
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         delegate.stop();
+        RealmKeyResolver.getInstance().close();
     }
 }
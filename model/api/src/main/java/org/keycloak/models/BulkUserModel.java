@@ -0,0 +1,113 @@
+package org.keycloak.models;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A new user with its credentials and role mappings, added with {@link UserProvider#addUsers(RealmModel, List, boolean)}
+ */
+public class BulkUserModel {
+
+    private String id;
+    private String username;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private boolean enabled;
+    private boolean emailVerified;
+    private boolean totp;
+    private Map<String, String> attributes = new HashMap<String, String>();
+    private Set<UserModel.RequiredAction> requiredActions = new HashSet<UserModel.RequiredAction>();
+    private List<UserCredentialModel> credentials = new LinkedList<UserCredentialModel>();
+    private Set<RoleModel> roles = new HashSet<RoleModel>();
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEmailVerified() {
+        return emailVerified;
+    }
+
+    public void setEmailVerified(boolean emailVerified) {
+        this.emailVerified = emailVerified;
+    }
+
+    public boolean isTotp() {
+        return totp;
+    }
+
+    public void setTotp(boolean totp) {
+        this.totp = totp;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public Set<UserModel.RequiredAction> getRequiredActions() {
+        return requiredActions;
+    }
+
+    /**
+     * Plain-text credentials, hashed according to the realm's password policy when the user is added
+     *
+     * @return
+     */
+    public List<UserCredentialModel> getCredentials() {
+        return credentials;
+    }
+
+    public Set<RoleModel> getRoles() {
+        return roles;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.keycloak.models;
+
+import org.keycloak.provider.Provider;
+
+import java.util.Map;
+
+/**
+ * Records server metrics. Metrics are identified by name and created the first time they are used. Implementations
+ * are expected to be cheap enough to be invoked on every request.
+ */
+public interface MetricsProvider extends Provider {
+
+    /**
+     * Increments a counter by one
+     *
+     * @param name
+     */
+    void increment(String name);
+
+    /**
+     * Adds delta to a counter
+     *
+     * @param name
+     * @param delta
+     */
+    void add(String name, long delta);
+
+    /**
+     * Sets the current value of a gauge, for example the size of a queue
+     *
+     * @param name
+     * @param value
+     */
+    void gauge(String name, long value);
+
+    /**
+     * Records a duration in a histogram
+     *
+     * @param name
+     * @param nanos duration in nanoseconds
+     */
+    void record(String name, long nanos);
+
+    /**
+     * Returns the current value of all metrics. Counters and gauges are returned as numbers, histograms as maps
+     * containing count, mean, max and percentiles in milliseconds.
+     *
+     * @return
+     */
+    Map<String, Object> getSnapshot();
+
+}
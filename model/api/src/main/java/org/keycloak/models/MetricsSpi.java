@@ -0,0 +1,24 @@
+package org.keycloak.models;
+
+import org.keycloak.provider.Provider;
+import org.keycloak.provider.ProviderFactory;
+import org.keycloak.provider.Spi;
+
+public class MetricsSpi implements Spi {
+
+    @Override
+    public String getName() {
+        return "metrics";
+    }
+
+    @Override
+    public Class<? extends Provider> getProviderClass() {
+        return MetricsProvider.class;
+    }
+
+    @Override
+    public Class<? extends ProviderFactory> getProviderFactoryClass() {
+        return MetricsProviderFactory.class;
+    }
+
+}
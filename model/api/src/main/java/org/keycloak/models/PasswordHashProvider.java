@@ -0,0 +1,37 @@
+package org.keycloak.models;
+
+import org.keycloak.provider.Provider;
+
+/**
+ * Hashes and verifies password credentials. The id of the provider factory is stored with each hashed credential, so
+ * credentials hashed with an older algorithm can still be verified after the realm password policy changes.
+ */
+public interface PasswordHashProvider extends Provider {
+
+    /**
+     * @param rawPassword password provided by the user
+     * @param salt salt to derive the hash with
+     * @param iterations number of hash iterations
+     * @return encoded hash of the password
+     */
+    String encode(String rawPassword, byte[] salt, int iterations);
+
+    /**
+     * @param rawPassword password provided by the user
+     * @param credential hashed password credential stored for the user
+     * @return true if the password matches the stored credential
+     */
+    boolean verify(String rawPassword, UserCredentialValueModel credential);
+
+    /**
+     * Replaces the password credential of the user with a new hash created by this provider. This is invoked after a
+     * successful login when the realm password policy has changed, and may complete after the call returns.
+     *
+     * @param realm
+     * @param user
+     * @param rawPassword
+     * @param iterations
+     */
+    void rehash(RealmModel realm, UserModel user, String rawPassword, int iterations);
+
+}
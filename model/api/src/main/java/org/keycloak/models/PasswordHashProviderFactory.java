@@ -0,0 +1,6 @@
+package org.keycloak.models;
+
+import org.keycloak.provider.ProviderFactory;
+
+public interface PasswordHashProviderFactory extends ProviderFactory<PasswordHashProvider> {
+}
@@ -16,6 +16,8 @@ public class PasswordPolicy {
     public static final String INVALID_PASSWORD_MIN_UPPER_CASE_CHARS_MESSAGE = "invalidPasswordMinUpperCaseCharsMessage";
     public static final String INVALID_PASSWORD_MIN_SPECIAL_CHARS_MESSAGE = "invalidPasswordMinSpecialCharsMessage";
     public static final String INVALID_PASSWORD_NOT_USERNAME = "invalidPasswordNotUsernameMessage";
+
+    public static final String HASH_ALGORITHM_DEFAULT = "pbkdf2";
     
     private List<Policy> policies;
     private String policyString;
@@ -64,6 +66,8 @@ public class PasswordPolicy {
                 list.add(new NotUsername(args));
             } else if (name.equals(HashIterations.NAME)) {
                 list.add(new HashIterations(args));
+            } else if (name.equals(HashAlgorithm.NAME)) {
+                list.add(new HashAlgorithm(args));
             }
         }
         return list;
@@ -84,6 +88,21 @@ public class PasswordPolicy {
         return -1;
     }
 
+    /**
+     *
+     * @return id of the password hashing provider, or null if no hash algorithm setting
+     */
+    public String getHashAlgorithm() {
+        if (policies == null) return null;
+        for (Policy p : policies) {
+            if (p instanceof HashAlgorithm) {
+                return ((HashAlgorithm)p).algorithm;
+            }
+
+        }
+        return null;
+    }
+
     public Error validate(String username, String password) {
         for (Policy p : policies) {
             Error error = p.validate(username, password);
@@ -130,6 +149,20 @@ public class PasswordPolicy {
         }
     }
 
+    private static class HashAlgorithm implements Policy {
+        private static final String NAME = "hashAlgorithm";
+        private String algorithm;
+
+        public HashAlgorithm(String[] args) {
+            algorithm = stringArg(NAME, HASH_ALGORITHM_DEFAULT, args);
+        }
+
+        @Override
+        public Error validate(String username, String password) {
+            return null;
+        }
+    }
+
     private static class NotUsername implements Policy {
         private static final String NAME = "notUsername";
 
@@ -246,6 +279,16 @@ public class PasswordPolicy {
         }
     }
 
+    private static String stringArg(String policy, String defaultValue, String... args) {
+        if (args == null || args.length == 0) {
+            return defaultValue;
+        } else if (args.length == 1) {
+            return args[0];
+        } else {
+            throw new IllegalArgumentException("Invalid arguments to " + policy + ", expect no argument or single string");
+        }
+    }
+
     @Override
     public String toString() {
         return policyString;
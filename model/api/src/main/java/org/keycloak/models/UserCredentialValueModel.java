@@ -12,6 +12,7 @@ public class UserCredentialValueModel {
     private String device;
     private byte[] salt;
     private int hashIterations;
+    private String algorithm;
 
     public String getType() {
         return type;
@@ -52,4 +53,12 @@ public class UserCredentialValueModel {
     public void setHashIterations(int iterations) {
         this.hashIterations = iterations;
     }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
 }
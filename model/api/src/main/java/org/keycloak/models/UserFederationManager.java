@@ -1,6 +1,7 @@
 package org.keycloak.models;
 
 import org.jboss.logging.Logger;
+import org.keycloak.models.utils.KeycloakModelUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -42,6 +43,18 @@ public class UserFederationManager implements UserProvider {
         return registerWithFederation(realm, user);
     }
 
+    @Override
+    public void addUsers(RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles) {
+        for (UserFederationProviderModel federation : realm.getUserFederationProviders()) {
+            if (getFederationProvider(federation).synchronizeRegistrations()) {
+                // Users have to be registered with the federation provider one at a time
+                KeycloakModelUtils.addUsers(this, realm, users, addDefaultRoles);
+                return;
+            }
+        }
+        session.userStorage().addUsers(realm, users, addDefaultRoles);
+    }
+
     protected UserModel registerWithFederation(RealmModel realm, UserModel user) {
         for (UserFederationProviderModel federation : realm.getUserFederationProviders()) {
             UserFederationProvider fed = getFederationProvider(federation);
@@ -117,6 +130,23 @@ public class UserFederationManager implements UserProvider {
         return user;
     }
 
+    /**
+     * Proxies a user loaded directly from local storage through its federation provider. Unlike
+     * validateAndProxyUser a user that is no longer valid is not removed, so this can be used while paging through
+     * local storage without shifting the offsets of later pages.
+     *
+     * @param realm
+     * @param user
+     * @return proxied user, or null if the user is no longer valid
+     */
+    public UserModel proxyUser(RealmModel realm, UserModel user) {
+        UserFederationProvider link = getFederationLink(realm, user);
+        if (link != null) {
+            return link.isValid(user) ? link.proxy(user) : null;
+        }
+        return user;
+    }
+
     @Override
     public void addFederatedIdentity(RealmModel realm, UserModel user, FederatedIdentityModel socialLink) {
         validateUser(realm, user);
@@ -235,7 +265,23 @@ public class UserFederationManager implements UserProvider {
         return searchForUser(search, realm, 0, Integer.MAX_VALUE - 1);
     }
 
-    void federationLoad(RealmModel realm, Map<String, String> attributes) {
+    /**
+     * Imports users matching the search from the federation providers into local storage
+     *
+     * @param search
+     * @param realm
+     */
+    public void federationLoad(String search, RealmModel realm) {
+        federationLoad(realm, getSearchAttributes(search));
+    }
+
+    /**
+     * Imports users matching the attributes from the federation providers into local storage
+     *
+     * @param realm
+     * @param attributes
+     */
+    public void federationLoad(RealmModel realm, Map<String, String> attributes) {
         for (UserFederationProviderModel federation : realm.getUserFederationProviders()) {
             UserFederationProvider fed = getFederationProvider(federation);
             fed.searchByAttributes(attributes, realm, 30);
@@ -244,6 +290,16 @@ public class UserFederationManager implements UserProvider {
 
     @Override
     public List<UserModel> searchForUser(final String search, RealmModel realm, int firstResult, int maxResults) {
+        federationLoad(search, realm);
+        return query(new PaginatedQuery() {
+            @Override
+            public List<UserModel> query(RealmModel realm, int first, int max) {
+                return session.userStorage().searchForUser(search, realm, first, max);
+            }
+        }, realm, firstResult, maxResults);
+    }
+
+    private Map<String, String> getSearchAttributes(String search) {
         Map<String, String> attributes = new HashMap<String, String>();
         int spaceIndex = search.lastIndexOf(' ');
         if (spaceIndex > -1) {
@@ -258,13 +314,7 @@ public class UserFederationManager implements UserProvider {
             attributes.put(UserModel.LAST_NAME, search.trim());
             attributes.put(UserModel.USERNAME, search.trim().toLowerCase());
         }
-        federationLoad(realm, attributes);
-        return query(new PaginatedQuery() {
-            @Override
-            public List<UserModel> query(RealmModel realm, int first, int max) {
-                return session.userStorage().searchForUser(search, realm, first, max);
-            }
-        }, realm, firstResult, maxResults);
+        return attributes;
     }
 
     @Override
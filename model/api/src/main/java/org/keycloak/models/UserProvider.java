@@ -15,6 +15,18 @@ public interface UserProvider extends Provider {
 
     UserModel addUser(RealmModel realm, String id, String username, boolean addDefaultRoles);
     UserModel addUser(RealmModel realm, String username);
+
+    /**
+     * Adds the users, with their attributes, credentials and role mappings. Providers should write all users in as few
+     * round trips as possible rather than one user at a time. If any of the users can't be added an exception is thrown
+     * and the transaction should be rolled back, so callers adding a large number of users should add them in chunks
+     * with a transaction per chunk.
+     *
+     * @param realm
+     * @param users
+     * @param addDefaultRoles also grant the default roles of the realm and its applications
+     */
+    void addUsers(RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles);
     boolean removeUser(RealmModel realm, UserModel user);
 
     public void addFederatedIdentity(RealmModel realm, UserModel user, FederatedIdentityModel socialLink);
@@ -3,6 +3,7 @@ package org.keycloak.models;
 import org.keycloak.provider.Provider;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -19,7 +20,31 @@ public interface UserSessionProvider extends Provider {
     List<UserSessionModel> getUserSessions(RealmModel realm, UserModel user);
     List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client);
     List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults);
+
+    /**
+     * Passes the user sessions of the client to the visitor in the same order as
+     * {@link #getUserSessions(RealmModel, ClientModel, int, int)}. Sessions are loaded with a single query, scan or cursor
+     * while they're visited and aren't kept after the visitor returns, so this can be used for any number of sessions.
+     * Sessions added or removed while visiting may or may not be visited, but no session is visited twice.
+     *
+     * @param realm
+     * @param client
+     * @param firstResult first session to visit, or -1 to start at the beginning
+     * @param maxResults max number of sessions to visit, or -1 to visit all
+     * @param visitor
+     */
+    void visitUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, UserSessionVisitor visitor);
     int getActiveUserSessions(RealmModel realm, ClientModel client);
+
+    /**
+     * Returns the number of active user sessions for all clients in the realm with one call, rather than one call per
+     * client. Providers may return counters that lag slightly behind the sessions.
+     *
+     * @param realm
+     * @return map of client id to number of active user sessions, clients without sessions are not included
+     */
+    Map<String, Integer> getActiveUserSessionStats(RealmModel realm);
+
     void removeUserSession(RealmModel realm, UserSessionModel session);
     void removeUserSessions(RealmModel realm, UserModel user);
     void removeExpiredUserSessions(RealmModel realm);
@@ -28,6 +53,17 @@ public interface UserSessionProvider extends Provider {
     UsernameLoginFailureModel getUserLoginFailure(RealmModel realm, String username);
     UsernameLoginFailureModel addUserLoginFailure(RealmModel realm, String username);
 
+    /**
+     * Marks a time-based one-time password as used, so it can't be used again
+     *
+     * @param realm
+     * @param userId
+     * @param interval the interval the one-time password was generated for
+     * @param lifespan seconds until the one-time password expires
+     * @return false if the one-time password has already been used
+     */
+    boolean markOTPUsed(RealmModel realm, String userId, long interval, int lifespan);
+
     void onRealmRemoved(RealmModel realm);
     void onClientRemoved(RealmModel realm, ClientModel client);
     void onUserRemoved(RealmModel realm, UserModel user);
@@ -0,0 +1,10 @@
+package org.keycloak.models;
+
+/**
+ * Receives user sessions one at a time from {@link UserSessionProvider#visitUserSessions(RealmModel, ClientModel, int, int, UserSessionVisitor)}
+ */
+public interface UserSessionVisitor {
+
+    void visit(UserSessionModel userSession);
+
+}
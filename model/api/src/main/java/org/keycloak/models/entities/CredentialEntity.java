@@ -10,6 +10,7 @@ public class CredentialEntity {
     private String device;
     private byte[] salt;
     private int hashIterations;
+    private String algorithm;
 
     public String getType() {
         return type;
@@ -50,4 +51,12 @@ public class CredentialEntity {
     public void setHashIterations(int hashIterations) {
         this.hashIterations = hashIterations;
     }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
 }
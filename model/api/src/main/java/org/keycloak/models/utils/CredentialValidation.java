@@ -1,7 +1,10 @@
 package org.keycloak.models.utils;
 
+import org.jboss.logging.Logger;
 import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.PasswordHashProvider;
 import org.keycloak.models.PasswordPolicy;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserCredentialModel;
@@ -19,6 +22,8 @@ import java.util.List;
  */
 public class CredentialValidation {
 
+    private static final Logger logger = Logger.getLogger(CredentialValidation.class);
+
     private static int hashIterations(RealmModel realm) {
         PasswordPolicy policy = realm.getPasswordPolicy();
         if (policy != null) {
@@ -28,33 +33,61 @@ public class CredentialValidation {
 
     }
 
+    private static String hashAlgorithm(RealmModel realm) {
+        PasswordPolicy policy = realm.getPasswordPolicy();
+        if (policy != null) {
+            return policy.getHashAlgorithm();
+        }
+        return null;
+    }
+
+    private static PasswordHashProvider getHashProvider(KeycloakSession session, String algorithm) {
+        if (algorithm == null) {
+            algorithm = PasswordPolicy.HASH_ALGORITHM_DEFAULT;
+        }
+        PasswordHashProvider provider = session.getProvider(PasswordHashProvider.class, algorithm);
+        if (provider == null) {
+            logger.warnv("Password hashing provider not found: {0}", algorithm);
+        }
+        return provider;
+    }
+
     /**
-     * Will update password if hash iteration policy has changed
+     * Will update password if hash iteration or hash algorithm policy has changed. The update is done by the hash
+     * provider of the new algorithm and may complete after the login has finished. A password hashed with an algorithm
+     * that isn't available is never valid.
      *
+     * @param session
      * @param realm
      * @param user
      * @param password
      * @return
      */
-    public static boolean validPassword(RealmModel realm, UserModel user, String password) {
+    public static boolean validPassword(KeycloakSession session, RealmModel realm, UserModel user, String password) {
         boolean validated = false;
         UserCredentialValueModel passwordCred = null;
         for (UserCredentialValueModel cred : user.getCredentialsDirectly()) {
             if (cred.getType().equals(UserCredentialModel.PASSWORD)) {
-                validated = new Pbkdf2PasswordEncoder(cred.getSalt()).verify(password, cred.getValue(), cred.getHashIterations());
+                PasswordHashProvider hashProvider = getHashProvider(session, cred.getAlgorithm());
+                validated = hashProvider != null && hashProvider.verify(password, cred);
                 passwordCred = cred;
             }
         }
         if (validated) {
             int iterations = hashIterations(realm);
-            if (iterations > -1 && iterations != passwordCred.getHashIterations()) {
-                UserCredentialValueModel newCred = new UserCredentialValueModel();
-                newCred.setType(passwordCred.getType());
-                newCred.setDevice(passwordCred.getDevice());
-                newCred.setSalt(passwordCred.getSalt());
-                newCred.setHashIterations(iterations);
-                newCred.setValue(new Pbkdf2PasswordEncoder(newCred.getSalt()).encode(password, iterations));
-                user.updateCredentialDirectly(newCred);
+            String algorithm = hashAlgorithm(realm);
+
+            boolean iterationsChanged = iterations > -1 && iterations != passwordCred.getHashIterations();
+            boolean algorithmChanged = algorithm != null && !algorithm.equals(passwordCred.getAlgorithm() != null ? passwordCred.getAlgorithm() : PasswordPolicy.HASH_ALGORITHM_DEFAULT);
+
+            if (iterationsChanged || algorithmChanged) {
+                if (iterations == -1) {
+                    iterations = passwordCred.getHashIterations();
+                }
+                PasswordHashProvider hashProvider = getHashProvider(session, algorithm != null ? algorithm : passwordCred.getAlgorithm());
+                if (hashProvider != null) {
+                    hashProvider.rehash(realm, user, password, iterations);
+                }
             }
 
         }
@@ -84,12 +117,14 @@ public class CredentialValidation {
         }
     }
 
-    public static boolean validTOTP(RealmModel realm, UserModel user, String otp) {
-        UserCredentialValueModel passwordCred = null;
+    public static boolean validTOTP(KeycloakSession session, RealmModel realm, UserModel user, String otp) {
+        TimeBasedOTP totp = new TimeBasedOTP();
         for (UserCredentialValueModel cred : user.getCredentialsDirectly()) {
             if (cred.getType().equals(UserCredentialModel.TOTP)) {
-                if (new TimeBasedOTP().validate(otp, cred.getValue().getBytes())) {
-                    return true;
+                long interval = totp.validateInterval(otp, cred.getValue().getBytes());
+                if (interval != -1) {
+                    // Reject one-time passwords that have already been used
+                    return session.sessions().markOTPUsed(realm, user.getId(), interval, totp.getLifespan());
                 }
             }
         }
@@ -109,36 +144,39 @@ public class CredentialValidation {
     /**
      * Must validate all credentials.  FYI, password hashes may be rehashed and updated based on realm hash password policies.
      *
+     * @param session
      * @param realm
      * @param user
      * @param credentials
      * @return
      */
-    public static boolean validCredentials(RealmModel realm, UserModel user, List<UserCredentialModel> credentials) {
-        for (UserCredentialModel credential : credentials) {
-            if (!validCredential(realm, user, credential)) return false;
-        }
-        return true;
+    public static boolean validCredentials(KeycloakSession session, RealmModel realm, UserModel user, List<UserCredentialModel> credentials) {
+        return validCredentials(session, realm, user, credentials.toArray(new UserCredentialModel[credentials.size()]));
     }
 
     /**
      * Must validate all credentials.  FYI, password hashes may be rehashed and updated based on realm hash password policies.
      *
+     * @param session
      * @param realm
      * @param user
      * @param credentials
      * @return
      */
-    public static boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... credentials) {
+    public static boolean validCredentials(KeycloakSession session, RealmModel realm, UserModel user, UserCredentialModel... credentials) {
+        // One-time passwords are marked as used when they're validated, so they're validated last
+        for (UserCredentialModel credential : credentials) {
+            if (!credential.getType().equals(UserCredentialModel.TOTP) && !validCredential(session, realm, user, credential)) return false;
+        }
         for (UserCredentialModel credential : credentials) {
-            if (!validCredential(realm, user, credential)) return false;
+            if (credential.getType().equals(UserCredentialModel.TOTP) && !validCredential(session, realm, user, credential)) return false;
         }
         return true;
     }
 
-    private static boolean validCredential(RealmModel realm, UserModel user, UserCredentialModel credential) {
+    private static boolean validCredential(KeycloakSession session, RealmModel realm, UserModel user, UserCredentialModel credential) {
         if (credential.getType().equals(UserCredentialModel.PASSWORD)) {
-            if (!validPassword(realm, user, credential.getValue())) {
+            if (!validPassword(session, realm, user, credential.getValue())) {
                 return false;
             }
         } else if (credential.getType().equals(UserCredentialModel.PASSWORD_TOKEN)) {
@@ -146,7 +184,7 @@ public class CredentialValidation {
                 return false;
             }
         } else if (credential.getType().equals(UserCredentialModel.TOTP)) {
-            if (!validTOTP(realm, user, credential.getValue())) {
+            if (!validTOTP(session, realm, user, credential.getValue())) {
                 return false;
             }
         } else if (credential.getType().equals(UserCredentialModel.SECRET)) {
@@ -2,6 +2,7 @@ package org.keycloak.models.utils;
 
 import org.bouncycastle.openssl.PEMWriter;
 import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.BulkUserModel;
 import org.keycloak.models.ClaimMask;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.KeycloakSession;
@@ -12,6 +13,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.models.UserProvider;
 import org.keycloak.util.CertificateUtils;
 import org.keycloak.util.PemUtils;
 
@@ -25,6 +27,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -218,6 +222,38 @@ public final class KeycloakModelUtils {
         return user;
     }
 
+    /**
+     * Adds the users one at a time with the given provider. Used by providers that can't write users in bulk.
+     *
+     * @param provider
+     * @param realm
+     * @param users
+     * @param addDefaultRoles
+     */
+    public static void addUsers(UserProvider provider, RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles) {
+        for (BulkUserModel rep : users) {
+            UserModel user = provider.addUser(realm, rep.getId(), rep.getUsername(), addDefaultRoles);
+            user.setEmail(rep.getEmail());
+            user.setFirstName(rep.getFirstName());
+            user.setLastName(rep.getLastName());
+            user.setEnabled(rep.isEnabled());
+            user.setEmailVerified(rep.isEmailVerified());
+            user.setTotp(rep.isTotp());
+            for (Map.Entry<String, String> attr : rep.getAttributes().entrySet()) {
+                user.setAttribute(attr.getKey(), attr.getValue());
+            }
+            for (UserModel.RequiredAction action : rep.getRequiredActions()) {
+                user.addRequiredAction(action);
+            }
+            for (UserCredentialModel credential : rep.getCredentials()) {
+                user.updateCredential(credential);
+            }
+            for (RoleModel role : rep.getRoles()) {
+                user.grantRole(role);
+            }
+        }
+    }
+
     /**
      * Wrap given runnable job into KeycloakTransaction.
      *
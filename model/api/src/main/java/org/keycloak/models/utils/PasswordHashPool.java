@@ -0,0 +1,108 @@
+package org.keycloak.models.utils;
+
+import org.keycloak.models.ModelException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of passwords hashed at the same time. Hashes are computed on the calling thread once a permit is
+ * available, a caller that doesn't get a permit within hashTimeout fails instead of waiting for CPU indefinitely.
+ *
+ * Background rehashes run on up to rehashThreads threads and are never queued, so a plain-text password is only held
+ * by a rehash that is running. A rehash is skipped if all rehash threads are busy, it is retried on the next login.
+ */
+class PasswordHashPool {
+
+    private final Semaphore hashPermits;
+    private final long hashTimeout;
+    private final ThreadPoolExecutor rehashExecutor;
+
+    /**
+     * @param hashThreads maximum number of passwords hashed at the same time, or 0 for no limit
+     * @param hashTimeout milliseconds to wait for a permit to hash a password
+     * @param rehashThreads maximum number of background rehashes at the same time, or 0 to rehash on the calling thread
+     */
+    PasswordHashPool(int hashThreads, long hashTimeout, int rehashThreads) {
+        this.hashPermits = hashThreads > 0 ? new Semaphore(hashThreads, true) : null;
+        this.hashTimeout = hashTimeout;
+
+        if (rehashThreads > 0) {
+            rehashExecutor = new ThreadPoolExecutor(0, rehashThreads, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new DaemonThreadFactory("password-rehash"));
+        } else {
+            rehashExecutor = null;
+        }
+    }
+
+    <T> T compute(Callable<T> task) {
+        boolean acquired = false;
+        try {
+            if (hashPermits != null) {
+                acquired = hashPermits.tryAcquire(hashTimeout, TimeUnit.MILLISECONDS);
+                if (!acquired) {
+                    throw new ModelException("Too many concurrent password hash requests");
+                }
+            }
+            return task.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelException("Interrupted while waiting to hash password", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ModelException(e);
+        } finally {
+            if (acquired) {
+                hashPermits.release();
+            }
+        }
+    }
+
+    /**
+     * @return false if the rehash was skipped because all rehash threads are busy
+     */
+    boolean rehash(Runnable task) {
+        if (rehashExecutor == null) {
+            task.run();
+            return true;
+        }
+
+        try {
+            rehashExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    void close() {
+        if (rehashExecutor != null) {
+            rehashExecutor.shutdown();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String name;
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
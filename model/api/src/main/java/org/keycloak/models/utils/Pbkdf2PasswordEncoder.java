@@ -4,10 +4,12 @@ import net.iharder.Base64;
 
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * <p>
@@ -21,17 +23,36 @@ import java.security.spec.KeySpec;
 public class Pbkdf2PasswordEncoder {
 
     public static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA1";
+    public static final String PBKDF2_SHA256_ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final String PBKDF2_SHA512_ALGORITHM = "PBKDF2WithHmacSHA512";
     public static final String RNG_ALGORITHM = "SHA1PRNG";
 
     private static final int DERIVED_KEY_SIZE = 512;
     private static final int ITERATIONS = 1;
 
+    /**
+     * SecretKeyFactory instances are not thread-safe, so each thread keeps its own instance per algorithm instead of
+     * going through the provider lookup of SecretKeyFactory.getInstance for every password
+     */
+    private static final ThreadLocal<Map<String, SecretKeyFactory>> secretKeyFactories = new ThreadLocal<Map<String, SecretKeyFactory>>() {
+        @Override
+        protected Map<String, SecretKeyFactory> initialValue() {
+            return new HashMap<String, SecretKeyFactory>();
+        }
+    };
+
     private final int iterations;
+    private final String algorithm;
     private byte[] salt;
 
-    public Pbkdf2PasswordEncoder(byte[] salt, int iterations) {
+    public Pbkdf2PasswordEncoder(byte[] salt, int iterations, String algorithm) {
         this.salt = salt;
         this.iterations = iterations;
+        this.algorithm = algorithm;
+    }
+
+    public Pbkdf2PasswordEncoder(byte[] salt, int iterations) {
+        this(salt, iterations, PBKDF2_ALGORITHM);
     }
 
     public Pbkdf2PasswordEncoder(byte[] salt) {
@@ -44,16 +65,29 @@ public class Pbkdf2PasswordEncoder {
      * @return encoded password in Base64
      */
     public String encode(String rawPassword, int iterations) {
+        return encode(rawPassword.toCharArray(), iterations);
+    }
+
+    /**
+     * Encode the raw password provided. The copy of the password held by the key spec is cleared once the key has
+     * been derived, the caller is responsible for clearing rawPassword.
+     *
+     * @param rawPassword The password used as a master key to derive into a session key
+     * @return encoded password in Base64
+     */
+    public String encode(char[] rawPassword, int iterations) {
 
         String encodedPassword;
 
-        KeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, DERIVED_KEY_SIZE);
+        PBEKeySpec spec = new PBEKeySpec(rawPassword, salt, iterations, DERIVED_KEY_SIZE);
 
         try {
-            byte[] key = getSecretKeyFactory().generateSecret(spec).getEncoded();
+            byte[] key = getSecretKeyFactory(algorithm).generateSecret(spec).getEncoded();
             encodedPassword = Base64.encodeBytes(key);
         } catch (InvalidKeySpecException e) {
             throw new RuntimeException("Credential could not be encoded");
+        } finally {
+            spec.clearPassword();
         }
 
         return encodedPassword;
@@ -70,7 +104,7 @@ public class Pbkdf2PasswordEncoder {
      * @return true if the password is valid, otherwise false for invalid credentials
      */
     public boolean verify(String rawPassword, String encodedPassword) {
-        return encode(rawPassword).equals(encodedPassword);
+        return verify(rawPassword, encodedPassword, iterations);
     }
 
     /**
@@ -80,7 +114,10 @@ public class Pbkdf2PasswordEncoder {
      * @return true if the password is valid, otherwise false for invalid credentials
      */
     public boolean verify(String rawPassword, String encodedPassword, int iterations) {
-        return encode(rawPassword, iterations).equals(encodedPassword);
+        if (encodedPassword == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(encode(rawPassword, iterations).getBytes(), encodedPassword.getBytes());
     }
 
     /**
@@ -103,11 +140,17 @@ public class Pbkdf2PasswordEncoder {
         return buffer;
     }
 
-    private static SecretKeyFactory getSecretKeyFactory() {
-        try {
-            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("PBKDF2 algorithm not found");
+    private static SecretKeyFactory getSecretKeyFactory(String algorithm) {
+        Map<String, SecretKeyFactory> factories = secretKeyFactories.get();
+        SecretKeyFactory factory = factories.get(algorithm);
+        if (factory == null) {
+            try {
+                factory = SecretKeyFactory.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("PBKDF2 algorithm not found: " + algorithm);
+            }
+            factories.put(algorithm, factory);
         }
+        return factory;
     }
 }
@@ -0,0 +1,49 @@
+package org.keycloak.models.utils;
+
+import org.keycloak.models.PasswordHashProvider;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserCredentialValueModel;
+import org.keycloak.models.UserModel;
+
+import java.util.concurrent.Callable;
+
+public class Pbkdf2PasswordHashProvider implements PasswordHashProvider {
+
+    private final Pbkdf2PasswordHashProviderFactory factory;
+    private final String algorithm;
+
+    public Pbkdf2PasswordHashProvider(Pbkdf2PasswordHashProviderFactory factory, String algorithm) {
+        this.factory = factory;
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public String encode(final String rawPassword, final byte[] salt, final int iterations) {
+        return factory.compute(new Callable<String>() {
+            @Override
+            public String call() {
+                return new Pbkdf2PasswordEncoder(salt, iterations, algorithm).encode(rawPassword);
+            }
+        });
+    }
+
+    @Override
+    public boolean verify(final String rawPassword, final UserCredentialValueModel credential) {
+        return factory.compute(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return new Pbkdf2PasswordEncoder(credential.getSalt(), credential.getHashIterations(), algorithm).verify(rawPassword, credential.getValue());
+            }
+        });
+    }
+
+    @Override
+    public void rehash(RealmModel realm, UserModel user, String rawPassword, int iterations) {
+        factory.rehash(realm, user, rawPassword, iterations);
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
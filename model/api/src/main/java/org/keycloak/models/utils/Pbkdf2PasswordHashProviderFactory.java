@@ -0,0 +1,218 @@
+package org.keycloak.models.utils;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.PasswordHashProvider;
+import org.keycloak.models.PasswordHashProviderFactory;
+import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserCredentialModel;
+import org.keycloak.models.UserCredentialValueModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.provider.ProviderFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Password hashing with PBKDF2. The number of passwords hashed at the same time is bounded by a pool owned by the
+ * pbkdf2 provider and configured in its scope (hashThreads, hashTimeout, rehashThreads and asyncRehash). The
+ * pbkdf2-sha256 and pbkdf2-sha512 providers share that pool, so the bound applies to all PBKDF2 algorithms together.
+ * They only use their own scope if the pbkdf2 provider isn't available.
+ *
+ * Unless asyncRehash is disabled, rehashing after a password policy change is done in the background. The new hash is
+ * computed from a copy of the password that is cleared as soon as the hash has been derived, and stored in a separate
+ * transaction. The rehash is skipped if all rehash threads are busy (it will be retried on the next login).
+ */
+public class Pbkdf2PasswordHashProviderFactory implements PasswordHashProviderFactory {
+
+    private static final Logger logger = Logger.getLogger(Pbkdf2PasswordHashProviderFactory.class);
+
+    public static final String ID = PasswordPolicy.HASH_ALGORITHM_DEFAULT;
+
+    private final Set<String> pendingRehash = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private KeycloakSessionFactory sessionFactory;
+    private Config.Scope config;
+
+    private PasswordHashPool pool;
+    private boolean asyncRehash;
+    private Pbkdf2PasswordHashProviderFactory owner;
+
+    @Override
+    public PasswordHashProvider create(KeycloakSession session) {
+        return new Pbkdf2PasswordHashProvider(this, getAlgorithm());
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        this.config = config;
+        if (ID.equals(getId())) {
+            start(config);
+        }
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        this.sessionFactory = factory;
+
+        if (pool == null) {
+            ProviderFactory<PasswordHashProvider> pbkdf2 = factory.getProviderFactory(PasswordHashProvider.class, ID);
+            if (pbkdf2 instanceof Pbkdf2PasswordHashProviderFactory && ((Pbkdf2PasswordHashProviderFactory) pbkdf2).pool != null) {
+                owner = (Pbkdf2PasswordHashProviderFactory) pbkdf2;
+            } else {
+                logger.warnv("Password hashing provider {0} not available, {1} uses its own settings", ID, getId());
+                start(config);
+            }
+        }
+    }
+
+    private void start(Config.Scope config) {
+        int hashThreads = config.getInt("hashThreads", Runtime.getRuntime().availableProcessors());
+        long hashTimeout = config.getLong("hashTimeout", 10000L);
+        int rehashThreads = config.getInt("rehashThreads", 1);
+
+        asyncRehash = config.getBoolean("asyncRehash", true);
+        pool = new PasswordHashPool(hashThreads, hashTimeout, rehashThreads);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    protected String getAlgorithm() {
+        return Pbkdf2PasswordEncoder.PBKDF2_ALGORITHM;
+    }
+
+    PasswordHashPool getPool() {
+        return owner != null ? owner.pool : pool;
+    }
+
+    boolean isAsyncRehash() {
+        return owner != null ? owner.asyncRehash : asyncRehash;
+    }
+
+    <T> T compute(Callable<T> task) {
+        PasswordHashPool pool = getPool();
+        if (pool == null) {
+            throw new ModelException("Password hashing provider " + getId() + " is closed");
+        }
+        return pool.compute(task);
+    }
+
+    void rehash(RealmModel realm, UserModel user, String rawPassword, final int iterations) {
+        final byte[] salt = Pbkdf2PasswordEncoder.getSalt();
+
+        UserCredentialValueModel cred = getPasswordCredential(user);
+        if (cred == null) {
+            return;
+        }
+
+        if (!isAsyncRehash() || sessionFactory == null) {
+            updateCredential(user, cred, salt, iterations, encode(rawPassword.toCharArray(), salt, iterations));
+            return;
+        }
+
+        final String realmId = realm.getId();
+        final String userId = user.getId();
+        final String currentValue = cred.getValue();
+        if (!pendingRehash.add(userId)) {
+            return;
+        }
+
+        final char[] password = rawPassword.toCharArray();
+        boolean started = getPool().rehash(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String value = encode(password, salt, iterations);
+                    store(realmId, userId, currentValue, salt, iterations, value);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to rehash password of user " + userId, e);
+                } finally {
+                    pendingRehash.remove(userId);
+                }
+            }
+        });
+
+        if (!started) {
+            Arrays.fill(password, (char) 0);
+            pendingRehash.remove(userId);
+            logger.debugv("All rehash threads busy, skipping rehash of user {0}", userId);
+        }
+    }
+
+    /**
+     * Hashes the password within the bounds of the hash pool and clears it
+     */
+    private String encode(final char[] password, final byte[] salt, final int iterations) {
+        try {
+            return compute(new Callable<String>() {
+                @Override
+                public String call() {
+                    return new Pbkdf2PasswordEncoder(salt, iterations, getAlgorithm()).encode(password, iterations);
+                }
+            });
+        } finally {
+            Arrays.fill(password, (char) 0);
+        }
+    }
+
+    /**
+     * Stores the new hash in a separate transaction, unless the password has been changed since it was verified
+     */
+    private void store(final String realmId, final String userId, final String currentValue, final byte[] salt, final int iterations, final String value) {
+        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+            @Override
+            public void run(KeycloakSession session) {
+                RealmModel realm = session.realms().getRealm(realmId);
+                if (realm == null) return;
+                UserModel user = session.users().getUserById(userId, realm);
+                if (user == null) return;
+
+                UserCredentialValueModel cred = getPasswordCredential(user);
+                if (cred == null || !currentValue.equals(cred.getValue())) return;
+
+                updateCredential(user, cred, salt, iterations, value);
+            }
+        });
+    }
+
+    private UserCredentialValueModel getPasswordCredential(UserModel user) {
+        UserCredentialValueModel cred = null;
+        for (UserCredentialValueModel c : user.getCredentialsDirectly()) {
+            if (c.getType().equals(UserCredentialModel.PASSWORD)) {
+                cred = c;
+            }
+        }
+        return cred;
+    }
+
+    private void updateCredential(UserModel user, UserCredentialValueModel cred, byte[] salt, int iterations, String value) {
+        UserCredentialValueModel newCred = new UserCredentialValueModel();
+        newCred.setType(cred.getType());
+        newCred.setDevice(cred.getDevice());
+        newCred.setSalt(salt);
+        newCred.setHashIterations(iterations);
+        newCred.setAlgorithm(getId());
+        newCred.setValue(value);
+        user.updateCredentialDirectly(newCred);
+    }
+
+}
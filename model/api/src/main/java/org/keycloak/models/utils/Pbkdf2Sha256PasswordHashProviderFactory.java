@@ -0,0 +1,17 @@
+package org.keycloak.models.utils;
+
+public class Pbkdf2Sha256PasswordHashProviderFactory extends Pbkdf2PasswordHashProviderFactory {
+
+    public static final String ID = "pbkdf2-sha256";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    protected String getAlgorithm() {
+        return Pbkdf2PasswordEncoder.PBKDF2_SHA256_ALGORITHM;
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.keycloak.models.utils;
+
+import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.OAuthClientModel;
+import org.keycloak.models.RealmModel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled set of valid redirect URIs. Exact redirect URIs are kept in a hash set and wildcard redirect URIs (ending
+ * with '*') in a prefix trie, so matching a redirect URI doesn't depend on the number of valid redirect URIs.
+ *
+ * Relative valid redirect URIs (starting with '/') match both as is, and when prefixed with the origin (scheme, host
+ * and port) of the request.
+ *
+ * Matchers are immutable and can be cached, for example by the realm cache.
+ */
+public class RedirectUriMatcher {
+
+    private static final RedirectUriMatcher EMPTY = new RedirectUriMatcher(Collections.<String>emptySet());
+
+    private final Set<String> validRedirects;
+
+    private final Set<String> exact = new HashSet<String>();
+    private final PrefixTrie prefixes = new PrefixTrie();
+
+    private final Set<String> relativeExact = new HashSet<String>();
+    private final PrefixTrie relativePrefixes = new PrefixTrie();
+    private boolean relative;
+
+    private RedirectUriMatcher(Set<String> validRedirects) {
+        this.validRedirects = validRedirects;
+
+        for (String validRedirect : validRedirects) {
+            add(validRedirect, exact, prefixes, false);
+
+            if (validRedirect.startsWith("/")) {
+                add(validRedirect, relativeExact, relativePrefixes, true);
+                relative = true;
+            }
+        }
+    }
+
+    public static RedirectUriMatcher compile(Collection<String> validRedirects) {
+        if (validRedirects == null || validRedirects.isEmpty()) {
+            return EMPTY;
+        }
+        return new RedirectUriMatcher(Collections.unmodifiableSet(new HashSet<String>(validRedirects)));
+    }
+
+    /**
+     * Compiles the redirect URIs of all applications and clients in the realm
+     *
+     * @param realm
+     * @return
+     */
+    public static RedirectUriMatcher compile(RealmModel realm) {
+        Set<String> redirects = new HashSet<String>();
+        for (ApplicationModel client : realm.getApplications()) {
+            redirects.addAll(client.getRedirectUris());
+        }
+        for (OAuthClientModel client : realm.getOAuthClients()) {
+            redirects.addAll(client.getRedirectUris());
+        }
+        return redirects.isEmpty() ? EMPTY : new RedirectUriMatcher(Collections.unmodifiableSet(redirects));
+    }
+
+    public Set<String> getValidRedirects() {
+        return validRedirects;
+    }
+
+    public boolean isEmpty() {
+        return validRedirects.isEmpty();
+    }
+
+    /**
+     * Checks if the redirect URI (without query) matches any of the valid redirect URIs
+     *
+     * @param redirect the redirect URI
+     * @param origin scheme, host and port of the request (for example https://localhost:8443) used to resolve relative
+     *               valid redirect URIs, or null
+     * @return
+     */
+    public boolean matches(String redirect, String origin) {
+        if (exact.contains(redirect) || prefixes.matches(redirect)) {
+            return true;
+        }
+
+        if (relative && origin != null && redirect.startsWith(origin)) {
+            String path = redirect.substring(origin.length());
+            return relativeExact.contains(path) || relativePrefixes.matches(path);
+        }
+
+        return false;
+    }
+
+    private static void add(String validRedirect, Set<String> exact, PrefixTrie prefixes, boolean relative) {
+        if (validRedirect.endsWith("*")) {
+            String prefix = validRedirect.substring(0, validRedirect.length() - 1);
+            prefixes.add(prefix);
+
+            // Wildcard also matches the prefix without trailing '/'. A relative prefix is always resolved to an
+            // absolute URI, so the trailing '/' is stripped even if it's the only character.
+            if (prefix.endsWith("/") && (relative || prefix.length() > 1)) {
+                exact.add(prefix.substring(0, prefix.length() - 1));
+            }
+        } else {
+            exact.add(validRedirect);
+        }
+    }
+
+    private static class PrefixTrie {
+
+        private final Node root = new Node();
+        private boolean empty = true;
+
+        void add(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (node.children == null) {
+                    node.children = new HashMap<Character, Node>();
+                }
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+            empty = false;
+        }
+
+        boolean matches(String value) {
+            if (empty) {
+                return false;
+            }
+
+            Node node = root;
+            for (int i = 0; ; i++) {
+                if (node.terminal) {
+                    return true;
+                }
+                if (i == value.length() || node.children == null) {
+                    return false;
+                }
+                node = node.children.get(value.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+
+    }
+
+    private static class Node {
+        private Map<Character, Node> children;
+        private boolean terminal;
+    }
+
+}
@@ -804,6 +804,7 @@ public class RepresentationToModel {
             hashedCred.setType(cred.getType());
             hashedCred.setDevice(cred.getDevice());
             hashedCred.setHashIterations(cred.getHashIterations());
+            hashedCred.setAlgorithm(cred.getAlgorithm());
             try {
                 if (cred.getSalt() != null) hashedCred.setSalt(Base64.decode(cred.getSalt()));
             } catch (IOException ioe) {
@@ -2,10 +2,10 @@ package org.keycloak.models.utils;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * TOTP: Time-based One-time Password Algorithm Based on http://tools.ietf.org/html/draft-mraihi-totp-timebased-06
@@ -27,6 +27,14 @@ public class TimeBasedOTP {
     // 0 1 2 3 4 5 6 7 8
     private static final int[] DIGITS_POWER = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000};
 
+    // Mac instances are expensive to create and not thread-safe, so each thread keeps one per algorithm
+    private static final ThreadLocal<Map<String, Mac>> MACS = new ThreadLocal<Map<String, Mac>>() {
+        @Override
+        protected Map<String, Mac> initialValue() {
+            return new HashMap<String, Mac>();
+        }
+    };
+
     private Clock clock;
     private final String algorithm;
     private final int numberDigits;
@@ -55,15 +63,7 @@ public class TimeBasedOTP {
      * @param secretKey the secret key to derive the token from.
      */
     public String generate(String secretKey) {
-        long T = this.clock.getCurrentInterval();
-
-        String steps = Long.toHexString(T).toUpperCase();
-
-        // Just get a 16 digit string
-        while (steps.length() < 16)
-            steps = "0" + steps;
-
-        return generateTOTP(secretKey, steps, this.numberDigits, this.algorithm);
+        return generateTOTP(secretKey.getBytes(), this.clock.getCurrentInterval(), this.numberDigits, this.algorithm);
     }
 
     /**
@@ -78,23 +78,23 @@ public class TimeBasedOTP {
      *
      */
     public String generateTOTP(String key, String time, int returnDigits, String crypto) {
+        return generateTOTP(key.getBytes(), Long.parseLong(time, 16), returnDigits, crypto);
+    }
+
+    private static String generateTOTP(byte[] key, long interval, int returnDigits, String crypto) {
         String result = null;
         byte[] hash;
 
         // Using the counter
         // First 8 bytes are for the movingFactor
         // Complaint with base RFC 4226 (HOTP)
-        while (time.length() < 16)
-            time = "0" + time;
-
-        // Get the HEX in a Byte[]
-        byte[] msg = hexStr2Bytes(time);
-
-        // Adding one byte to get the right conversion
-        // byte[] k = hexStr2Bytes(key);
-        byte[] k = key.getBytes();
+        byte[] msg = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            msg[i] = (byte) interval;
+            interval >>>= 8;
+        }
 
-        hash = hmac_sha1(crypto, k, msg);
+        hash = hmac(crypto, key, msg);
 
         // put selected bytes into result int
         int offset = hash[hash.length - 1] & 0xf;
@@ -120,23 +120,42 @@ public class TimeBasedOTP {
      * @return
      */
     public boolean validate(String token, byte[] secret) {
-        long currentInterval = this.clock.getCurrentInterval();
+        return validateInterval(token, secret) != -1;
+    }
 
-        for (int i = this.delayWindow; i >= 0; --i) {
-            String steps = Long.toHexString(currentInterval - i).toUpperCase();
+    /**
+     * <p>Validates a token using a secret key.</p>
+     *
+     * @param token  OTP string to validate
+     * @param secret Shared secret
+     * @return the interval the token was generated for, or -1 if the token is not valid
+     */
+    public long validateInterval(String token, byte[] secret) {
+        if (token == null) {
+            return -1;
+        }
 
-            // Just get a 16 digit string
-            while (steps.length() < 16)
-                steps = "0" + steps;
+        byte[] tokenBytes = token.getBytes();
+        long currentInterval = this.clock.getCurrentInterval();
 
-            String candidate = generateTOTP(new String(secret), steps, this.numberDigits, this.algorithm);
+        for (int i = this.delayWindow; i >= 0; --i) {
+            String candidate = generateTOTP(secret, currentInterval - i, this.numberDigits, this.algorithm);
 
-            if (candidate.equals(token)) {
-                return true;
+            if (MessageDigest.isEqual(candidate.getBytes(), tokenBytes)) {
+                return currentInterval - i;
             }
         }
 
-        return false;
+        return -1;
+    }
+
+    /**
+     * Number of seconds a token is accepted for, including the delay window
+     *
+     * @return
+     */
+    public int getLifespan() {
+        return (this.delayWindow + 1) * this.clock.interval;
     }
 
     public void setCalendar(Calendar calendar) {
@@ -155,11 +174,17 @@ public class TimeBasedOTP {
      * @throws java.security.InvalidKeyException
      *
      */
-    private byte[] hmac_sha1(String crypto, byte[] keyBytes, byte[] text) {
+    private static byte[] hmac(String crypto, byte[] keyBytes, byte[] text) {
         byte[] value;
 
         try {
-            Mac hmac = Mac.getInstance(crypto);
+            Map<String, Mac> macs = MACS.get();
+            Mac hmac = macs.get(crypto);
+            if (hmac == null) {
+                hmac = Mac.getInstance(crypto);
+                macs.put(crypto, hmac);
+            }
+
             SecretKeySpec macKey = new SecretKeySpec(keyBytes, "RAW");
 
             hmac.init(macKey);
@@ -172,24 +197,6 @@ public class TimeBasedOTP {
         return value;
     }
 
-    /**
-     * This method converts HEX string to Byte[]
-     *
-     * @param hex the HEX string
-     * @return A byte array
-     */
-    private byte[] hexStr2Bytes(String hex) {
-        // Adding one byte to get the right conversion
-        // values starting with "0" can be converted
-        byte[] bArray = new BigInteger("10" + hex, 16).toByteArray();
-
-        // Copy all the REAL bytes, not the "first"
-        byte[] ret = new byte[bArray.length - 1];
-        for (int i = 0; i < ret.length; i++)
-            ret[i] = bArray[i + 1];
-        return ret;
-    }
-
     private class Clock {
 
         private final int interval;
@@ -201,12 +208,8 @@ public class TimeBasedOTP {
 
         public long getCurrentInterval() {
             Calendar currentCalendar = this.calendar;
-
-            if (currentCalendar == null) {
-                currentCalendar = GregorianCalendar.getInstance(TimeZone.getTimeZone("UTC"));
-            }
-
-            return (currentCalendar.getTimeInMillis() / 1000) / this.interval;
+            long currentTime = currentCalendar != null ? currentCalendar.getTimeInMillis() : System.currentTimeMillis();
+            return (currentTime / 1000) / this.interval;
         }
 
         public void setCalendar(Calendar calendar) {
@@ -0,0 +1,66 @@
+package org.keycloak.models.utils;
+
+import org.keycloak.util.Time;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers one-time passwords that have been used until they expire, so they can't be used again. Entries are kept in
+ * insertion order, expired entries are removed from the head when new entries are added. If there are more than maxSize
+ * entries the oldest entries are removed even if they haven't expired yet.
+ *
+ * This cache is local to the node and isn't persisted, so in a cluster a one-time password can be used once on each node,
+ * and after a restart it can be used again until it expires. User session providers that can share data between nodes
+ * should use that instead.
+ */
+public class UsedOTPCache {
+
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    private final LinkedHashMap<String, Integer> used;
+
+    public UsedOTPCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public UsedOTPCache(final int maxSize) {
+        used = new LinkedHashMap<String, Integer>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Marks the one-time password as used
+     *
+     * @param key identifies the one-time password
+     * @param lifespan seconds until the one-time password expires
+     * @return false if the one-time password has already been used
+     */
+    public synchronized boolean markUsed(String key, int lifespan) {
+        int currentTime = Time.currentTime();
+
+        Integer expires = used.get(key);
+        if (expires != null && expires > currentTime) {
+            return false;
+        }
+
+        Iterator<Integer> itr = used.values().iterator();
+        while (itr.hasNext() && itr.next() <= currentTime) {
+            itr.remove();
+        }
+
+        used.remove(key);
+        used.put(key, currentTime + lifespan);
+        return true;
+    }
+
+    public synchronized void clear() {
+        used.clear();
+    }
+
+}
@@ -80,6 +80,20 @@ public class PasswordPolicyTest {
         Assert.assertNull(policy.validate("jdoe", "ab&d1234"));
     }
 
+    @Test
+    public void testHashAlgorithm() {
+        PasswordPolicy policy = new PasswordPolicy("length(8)");
+        Assert.assertNull(policy.getHashAlgorithm());
+
+        policy = new PasswordPolicy("hashAlgorithm");
+        Assert.assertEquals(PasswordPolicy.HASH_ALGORITHM_DEFAULT, policy.getHashAlgorithm());
+
+        policy = new PasswordPolicy("hashIterations(20000) and hashAlgorithm(pbkdf2-sha256)");
+        Assert.assertEquals("pbkdf2-sha256", policy.getHashAlgorithm());
+        Assert.assertEquals(20000, policy.getHashIterations());
+        Assert.assertNull(policy.validate("jdoe", "jdoe"));
+    }
+
     @Test
     public void testComplex() {
         PasswordPolicy policy = new PasswordPolicy("length(8) and digits(2) and lowerCase(2) and upperCase(2) and specialChars(2) and notUsername()");
@@ -0,0 +1,238 @@
+package org.keycloak.models.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.PasswordHashProvider;
+import org.keycloak.models.UserCredentialValueModel;
+import org.keycloak.provider.Provider;
+import org.keycloak.provider.ProviderEvent;
+import org.keycloak.provider.ProviderEventListener;
+import org.keycloak.provider.ProviderFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class Pbkdf2PasswordHashProviderTest {
+
+    private static final byte[] SALT = bytes("salt");
+
+    private final Map<String, Pbkdf2PasswordHashProviderFactory> factories = new HashMap<String, Pbkdf2PasswordHashProviderFactory>();
+
+    @Before
+    public void before() {
+        factories.put(Pbkdf2PasswordHashProviderFactory.ID, new Pbkdf2PasswordHashProviderFactory());
+        factories.put(Pbkdf2Sha256PasswordHashProviderFactory.ID, new Pbkdf2Sha256PasswordHashProviderFactory());
+        factories.put(Pbkdf2Sha512PasswordHashProviderFactory.ID, new Pbkdf2Sha512PasswordHashProviderFactory());
+
+        for (Pbkdf2PasswordHashProviderFactory factory : factories.values()) {
+            factory.init(new Config.SystemPropertiesScope("keycloak.passwordHashing.test."));
+        }
+
+        KeycloakSessionFactory sessionFactory = new TestSessionFactory();
+        for (Pbkdf2PasswordHashProviderFactory factory : factories.values()) {
+            factory.postInit(sessionFactory);
+        }
+    }
+
+    @After
+    public void after() {
+        for (Pbkdf2PasswordHashProviderFactory factory : factories.values()) {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testPbkdf2() {
+        // Expected hashes are computed with an independent PBKDF2 implementation
+        assertHash(Pbkdf2PasswordHashProviderFactory.ID, "afQpQmaY8Gmi4XyqM0NkXbMFdlwIzuC4aO1Com5uQIrcIRDhTxS7NiJ5xiPvjPDNFlq8BhqH2IZEkrICzS2FnQ==");
+    }
+
+    @Test
+    public void testPbkdf2Sha256() {
+        // RFC 7914 test vector
+        assertHash(Pbkdf2Sha256PasswordHashProviderFactory.ID, "VawEblbjCJ/sFpHCJUS2BflBhSFt3gRl5oudV8INrLxJypzM8Xm2RZkWZLOdd+8xfHG4RbHjC9UJESBB06GXgw==");
+    }
+
+    @Test
+    public void testPbkdf2Sha512() {
+        assertHash(Pbkdf2Sha512PasswordHashProviderFactory.ID, "x0MZ2ZSZ/D6QE6z/WXwjxbrwoL7FY0xGuDUreT4yRyPVXKp2srJcQ0Atz9wGzc9m+Vt9BClCCzlSAAZ0nFGgTg==");
+    }
+
+    @Test
+    public void testPoolOwnedByPbkdf2() {
+        PasswordHashPool pool = factories.get(Pbkdf2PasswordHashProviderFactory.ID).getPool();
+        Assert.assertNotNull(pool);
+        Assert.assertSame(pool, factories.get(Pbkdf2Sha256PasswordHashProviderFactory.ID).getPool());
+        Assert.assertSame(pool, factories.get(Pbkdf2Sha512PasswordHashProviderFactory.ID).getPool());
+    }
+
+    @Test
+    public void testHashSaturated() throws Exception {
+        final PasswordHashPool pool = new PasswordHashPool(1, 100, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                pool.compute(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        started.countDown();
+                        release.await(5, TimeUnit.SECONDS);
+                        return null;
+                    }
+                });
+            }
+        };
+        thread.start();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        long start = System.currentTimeMillis();
+        try {
+            pool.compute(value("hash"));
+            Assert.fail("Expected hash to be rejected");
+        } catch (ModelException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+        }
+
+        release.countDown();
+        thread.join(5000);
+
+        Assert.assertEquals("hash", pool.compute(value("hash")));
+        pool.close();
+    }
+
+    @Test
+    public void testHashRunsOnCallingThread() {
+        PasswordHashPool pool = new PasswordHashPool(1, 100, 0);
+        Assert.assertSame(Thread.currentThread(), pool.compute(new Callable<Thread>() {
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        }));
+        pool.close();
+    }
+
+    @Test
+    public void testRehashSkippedWhenBusy() throws Exception {
+        PasswordHashPool pool = new PasswordHashPool(0, 0, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Assert.assertTrue(pool.rehash(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch skipped = new CountDownLatch(1);
+        Assert.assertFalse(pool.rehash(new Runnable() {
+            @Override
+            public void run() {
+                skipped.countDown();
+            }
+        }));
+
+        release.countDown();
+        Assert.assertFalse(skipped.await(100, TimeUnit.MILLISECONDS));
+        pool.close();
+    }
+
+    private void assertHash(String algorithm, String expected) {
+        PasswordHashProvider provider = factories.get(algorithm).create(null);
+
+        String hash = provider.encode("passwd", SALT, 1);
+        Assert.assertEquals(expected, hash);
+
+        UserCredentialValueModel credential = new UserCredentialValueModel();
+        credential.setValue(hash);
+        credential.setSalt(SALT);
+        credential.setHashIterations(1);
+        credential.setAlgorithm(algorithm);
+
+        Assert.assertTrue(provider.verify("passwd", credential));
+        Assert.assertFalse(provider.verify("invalid", credential));
+
+        credential.setHashIterations(2);
+        Assert.assertFalse(provider.verify("passwd", credential));
+    }
+
+    private static <T> Callable<T> value(final T value) {
+        return new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        };
+    }
+
+    private static byte[] bytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class TestSessionFactory implements KeycloakSessionFactory {
+
+        @Override
+        public KeycloakSession create() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Provider> ProviderFactory<T> getProviderFactory(Class<T> clazz) {
+            return getProviderFactory(clazz, Pbkdf2PasswordHashProviderFactory.ID);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends Provider> ProviderFactory<T> getProviderFactory(Class<T> clazz, String id) {
+            return (ProviderFactory<T>) factories.get(id);
+        }
+
+        @Override
+        public List<ProviderFactory> getProviderFactories(Class<? extends Provider> clazz) {
+            return new ArrayList<ProviderFactory>(factories.values());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void register(ProviderEventListener listener) {
+        }
+
+        @Override
+        public void unregister(ProviderEventListener listener) {
+        }
+
+        @Override
+        public void publish(ProviderEvent event) {
+        }
+    }
+
+}
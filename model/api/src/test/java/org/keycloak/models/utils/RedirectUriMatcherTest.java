@@ -0,0 +1,56 @@
+package org.keycloak.models.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RedirectUriMatcherTest {
+
+    private static final String ORIGIN = "http://localhost:8081";
+
+    @Test
+    public void testExact() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Arrays.asList("http://localhost:8081/app", "http://example.com/app"));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://example.com/app", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://localhost:8081/app/", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://localhost:8081/ap", ORIGIN));
+    }
+
+    @Test
+    public void testWildcard() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Arrays.asList("http://localhost:8081/app/*", "http://example.com*"));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app/", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app/foo/bar", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://localhost:8081/application", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://example.com.evil.com", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://example.org", ORIGIN));
+    }
+
+    @Test
+    public void testRelative() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Arrays.asList("/app/*", "/other"));
+        Assert.assertTrue(matcher.matches("/app/foo", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app/foo", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/other", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://localhost:8082/app/foo", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://localhost:8081evil/app/foo", "http://localhost:8081"));
+
+        matcher = RedirectUriMatcher.compile(Collections.singleton("/*"));
+        Assert.assertTrue(matcher.matches("http://localhost:8081", ORIGIN));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/foo", ORIGIN));
+        Assert.assertFalse(matcher.matches("http://localhost:8082/foo", ORIGIN));
+    }
+
+    @Test
+    public void testEmpty() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Collections.<String>emptySet());
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertFalse(matcher.matches("http://localhost:8081/app", ORIGIN));
+    }
+
+}
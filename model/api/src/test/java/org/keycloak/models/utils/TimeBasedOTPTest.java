@@ -0,0 +1,69 @@
+package org.keycloak.models.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Calendar;
+
+public class TimeBasedOTPTest {
+
+    private static final String SECRET = "12345678901234567890";
+
+    @Test
+    public void testGenerate() {
+        // Test vectors from RFC 6238
+        TimeBasedOTP otp = new TimeBasedOTP(TimeBasedOTP.HMAC_SHA1, 8, 30, 1);
+        assertGenerate(otp, 59L, "94287082");
+        assertGenerate(otp, 1111111109L, "07081804");
+        assertGenerate(otp, 1111111111L, "14050471");
+        assertGenerate(otp, 1234567890L, "89005924");
+        assertGenerate(otp, 2000000000L, "69279037");
+        assertGenerate(otp, 20000000000L, "65353130");
+
+        Assert.assertEquals("94287082", otp.generateTOTP(SECRET, "1", 8, TimeBasedOTP.HMAC_SHA1));
+    }
+
+    @Test
+    public void testValidate() {
+        TimeBasedOTP otp = new TimeBasedOTP();
+        setTime(otp, 1111111109L);
+        String token = otp.generate(SECRET);
+
+        Assert.assertTrue(otp.validate(token, SECRET.getBytes()));
+        Assert.assertEquals(1111111109L / 30, otp.validateInterval(token, SECRET.getBytes()));
+
+        // Accepted in the next interval, but not the one after that
+        setTime(otp, 1111111109L + 30);
+        Assert.assertEquals(1111111109L / 30, otp.validateInterval(token, SECRET.getBytes()));
+        setTime(otp, 1111111109L + 60);
+        Assert.assertEquals(-1, otp.validateInterval(token, SECRET.getBytes()));
+
+        Assert.assertFalse(otp.validate(null, SECRET.getBytes()));
+        Assert.assertFalse(otp.validate(token, "invalid".getBytes()));
+        Assert.assertEquals(60, otp.getLifespan());
+    }
+
+    @Test
+    public void testUsedOTPCache() {
+        UsedOTPCache cache = new UsedOTPCache(2);
+        Assert.assertTrue(cache.markUsed("a", 60));
+        Assert.assertFalse(cache.markUsed("a", 60));
+        Assert.assertTrue(cache.markUsed("b", 60));
+
+        // Expired entries can be used again
+        Assert.assertTrue(cache.markUsed("c", 0));
+        Assert.assertTrue(cache.markUsed("c", 60));
+    }
+
+    private void assertGenerate(TimeBasedOTP otp, long time, String expected) {
+        setTime(otp, time);
+        Assert.assertEquals(expected, otp.generate(SECRET));
+    }
+
+    private void setTime(TimeBasedOTP otp, long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time * 1000);
+        otp.setCalendar(calendar);
+    }
+
+}
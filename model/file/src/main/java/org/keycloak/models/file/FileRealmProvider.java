@@ -66,7 +66,7 @@ public class FileRealmProvider implements RealmProvider {
         RealmEntity realmEntity = new RealmEntity();
         realmEntity.setName(name);
         realmEntity.setId(id);
-        RealmAdapter realm = new RealmAdapter(session, realmEntity, inMemoryModel);
+        RealmAdapter realm = new RealmAdapter(realmEntity, inMemoryModel);
         inMemoryModel.putRealm(id, realm);
 
         return realm;
@@ -37,6 +37,7 @@ import java.util.regex.Pattern;
 import org.keycloak.connections.file.FileConnectionProvider;
 import org.keycloak.connections.file.InMemoryModel;
 import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.BulkUserModel;
 import org.keycloak.models.CredentialValidationOutput;
 import org.keycloak.models.ModelDuplicateException;
 import org.keycloak.models.entities.FederatedIdentityEntity;
@@ -73,34 +74,17 @@ public class FileUserProvider implements UserProvider {
 
     @Override
     public UserModel getUserByUsername(String username, RealmModel realm) {
-        for (UserModel user : inMemoryModel.getUsers(realm.getId())) {
-            if (user.getUsername() == null) continue;
-            if (user.getUsername().equals(username.toLowerCase())) return user;
-        }
-
-        return null;
+        return inMemoryModel.getUserByUsername(realm.getId(), username.toLowerCase());
     }
 
     @Override
     public UserModel getUserByEmail(String email, RealmModel realm) {
-        for (UserModel user : inMemoryModel.getUsers(realm.getId())) {
-            if (user.getEmail() == null) continue;
-            if (user.getEmail().equals(email.toLowerCase())) return user;
-        }
-
-        return null;
+        return inMemoryModel.getUserByEmail(realm.getId(), email.toLowerCase());
     }
 
     @Override
     public UserModel getUserByFederatedIdentity(FederatedIdentityModel socialLink, RealmModel realm) {
-        for (UserModel user : inMemoryModel.getUsers(realm.getId())) {
-            Set<FederatedIdentityModel> identities = this.getFederatedIdentities(user, realm);
-            for (FederatedIdentityModel idModel : identities) {
-                if (idModel.getUserId().equals(socialLink.getUserId())) return user;
-            }
-        }
-
-        return null;
+        return inMemoryModel.getUserByFederatedIdentity(realm.getId(), socialLink.getIdentityProvider(), socialLink.getUserId());
     }
 
     @Override
@@ -110,20 +94,26 @@ public class FileUserProvider implements UserProvider {
 
     @Override
     public int getUsersCount(RealmModel realm) {
-        return inMemoryModel.getUsers(realm.getId()).size();
+        return inMemoryModel.getUsersCount(realm.getId());
     }
 
     @Override
     public List<UserModel> getUsers(RealmModel realm, int firstResult, int maxResults) {
-        List users = new ArrayList(inMemoryModel.getUsers(realm.getId()));
-        List<UserModel> sortedList = sortedSubList(users, firstResult, maxResults);
-        return sortedList;
+        // already ordered by username
+        List<UserModel> users = new ArrayList<UserModel>(inMemoryModel.getUsers(realm.getId()));
+        return subList(users, firstResult, maxResults);
     }
 
     protected List<UserModel> sortedSubList(List list, int firstResult, int maxResults) {
         if (list.isEmpty()) return list;
 
         Collections.sort(list);
+        return subList(list, firstResult, maxResults);
+    }
+
+    protected List<UserModel> subList(List<UserModel> list, int firstResult, int maxResults) {
+        if (list.isEmpty()) return list;
+
         int first = (firstResult <= 0) ? 0 : firstResult;
         int last = first + maxResults; // could be int overflow
         if ((maxResults > list.size() - first) || (last > list.size())) { // int overflow or regular overflow
@@ -326,6 +316,7 @@ public class FileUserProvider implements UserProvider {
         }
 
         userEntity.getFederatedIdentities().add(federatedIdentityEntity);
+        inMemoryModel.addFederatedIdentity(realm.getId(), socialLink.getIdentityProvider(), socialLink.getUserId(), userAdapter);
     }
 
     @Override
@@ -338,6 +329,7 @@ public class FileUserProvider implements UserProvider {
         }
 
         userEntity.getFederatedIdentities().remove(federatedIdentityEntity);
+        inMemoryModel.removeFederatedIdentity(realm.getId(), federatedIdentityEntity.getIdentityProvider(), federatedIdentityEntity.getUserId(), user);
         return true;
     }
 
@@ -360,6 +352,11 @@ public class FileUserProvider implements UserProvider {
         return this.addUser(realm, KeycloakModelUtils.generateId(), username.toLowerCase(), true);
     }
 
+    @Override
+    public void addUsers(RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles) {
+        KeycloakModelUtils.addUsers(this, realm, users, addDefaultRoles);
+    }
+
     @Override
     public void preRemove(RealmModel realm) {
         // Nothing to do here?  Federation links are attached to users, which are removed by InMemoryModel
@@ -386,12 +383,12 @@ public class FileUserProvider implements UserProvider {
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, List<UserCredentialModel> input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 
     @Override
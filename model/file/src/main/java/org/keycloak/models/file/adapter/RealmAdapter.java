@@ -20,7 +20,6 @@ import org.keycloak.enums.SslRequired;
 import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.IdentityProviderModel;
-import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.OAuthClientModel;
 import org.keycloak.models.PasswordPolicy;
 import org.keycloak.models.RealmModel;
@@ -71,7 +70,6 @@ public class RealmAdapter implements RealmModel {
     protected volatile transient Key codeSecretKey;
 
     private volatile transient PasswordPolicy passwordPolicy;
-    private volatile transient KeycloakSession session;
 
     private final Map<String, ApplicationModel> allApps = new HashMap<String, ApplicationModel>();
     private ApplicationModel masterAdminApp = null;
@@ -79,8 +77,7 @@ public class RealmAdapter implements RealmModel {
     private final Map<String, OAuthClientAdapter> allOAuthClients = new HashMap<String, OAuthClientAdapter>();
     private final Map<String, IdentityProviderModel> allIdProviders = new HashMap<String, IdentityProviderModel>();
 
-    public RealmAdapter(KeycloakSession session, RealmEntity realm, InMemoryModel inMemoryModel) {
-        this.session = session;
+    public RealmAdapter(RealmEntity realm, InMemoryModel inMemoryModel) {
         this.realm = realm;
         this.inMemoryModel = inMemoryModel;
     }
@@ -657,8 +654,8 @@ public class RealmAdapter implements RealmModel {
         clientEntity.setRealmId(getId());
         clientEntity.setEnabled(true);
 
-        final ApplicationModel app = new ApplicationAdapter(session, this, appEntity, clientEntity, inMemoryModel);
-        session.getKeycloakSessionFactory().publish(new ApplicationCreationEvent() {
+        final ApplicationModel app = new ApplicationAdapter(inMemoryModel.getSession(), this, appEntity, clientEntity, inMemoryModel);
+        inMemoryModel.getSession().getKeycloakSessionFactory().publish(new ApplicationCreationEvent() {
             @Override
             public ApplicationModel getCreatedApplication() {
                 return app;
@@ -708,7 +705,7 @@ public class RealmAdapter implements RealmModel {
         oauthClient.setRealmId(getId());
         oauthClient.setName(name);
 
-        OAuthClientAdapter oAuthClient = new OAuthClientAdapter(session, this, oauthClient);
+        OAuthClientAdapter oAuthClient = new OAuthClientAdapter(inMemoryModel.getSession(), this, oauthClient);
         allOAuthClients.put(id, oAuthClient);
 
         return oAuthClient;
@@ -731,12 +728,7 @@ public class RealmAdapter implements RealmModel {
     }
 
     boolean hasUserWithEmail(String email) {
-        for (UserModel user : inMemoryModel.getUsers(getId())) {
-            if (user.getEmail() == null) continue;
-            if (user.getEmail().equals(email)) return true;
-        }
-
-        return false;
+        return inMemoryModel.hasUserWithEmail(getId(), email);
     }
 
     @Override
@@ -929,7 +921,7 @@ public class RealmAdapter implements RealmModel {
         while (it.hasNext()) {
             UserFederationProviderEntity entity = it.next();
             if (entity.getId().equals(provider.getId())) {
-                session.users().preRemove(this, new UserFederationProviderModel(entity.getId(), entity.getProviderName(), entity.getConfig(), entity.getPriority(), entity.getDisplayName(),
+                inMemoryModel.getSession().users().preRemove(this, new UserFederationProviderModel(entity.getId(), entity.getProviderName(), entity.getConfig(), entity.getPriority(), entity.getDisplayName(),
                         entity.getFullSyncPeriod(), entity.getChangedSyncPeriod(), entity.getLastSync()));
                 it.remove();
             }
@@ -17,6 +17,8 @@
 package org.keycloak.models.file.adapter;
 
 import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.PasswordHashProvider;
 import org.keycloak.models.PasswordPolicy;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
@@ -86,6 +88,7 @@ public class UserAdapter implements UserModel, Comparable {
 
         if (inMemoryModel.hasUserWithUsername(realm.getId(), username))
             throw new ModelDuplicateException("User with username " + username + " already exists in realm.");
+        inMemoryModel.updateUsername(realm.getId(), getUsername(), username, this);
         user.setUsername(username);
     }
 
@@ -127,6 +130,7 @@ public class UserAdapter implements UserModel, Comparable {
     @Override
     public void setEmail(String email) {
         if (email == null) {
+            inMemoryModel.updateEmail(realm.getId(), getEmail(), null, this);
             user.setEmail(email);
             return;
         }
@@ -135,6 +139,7 @@ public class UserAdapter implements UserModel, Comparable {
 
         RealmAdapter realmAdapter = (RealmAdapter)realm;
         if (realmAdapter.hasUserWithEmail(email)) throw new ModelDuplicateException("User with email address " + email + " already exists.");
+        inMemoryModel.updateEmail(realm.getId(), getEmail(), email, this);
         user.setEmail(email);
     }
 
@@ -220,14 +225,21 @@ public class UserAdapter implements UserModel, Comparable {
         if (cred.getType().equals(UserCredentialModel.PASSWORD)) {
             byte[] salt = Pbkdf2PasswordEncoder.getSalt();
             int hashIterations = 1;
+            String hashAlgorithm = PasswordPolicy.HASH_ALGORITHM_DEFAULT;
             PasswordPolicy policy = realm.getPasswordPolicy();
             if (policy != null) {
                 hashIterations = policy.getHashIterations();
                 if (hashIterations == -1) hashIterations = 1;
+                if (policy.getHashAlgorithm() != null) hashAlgorithm = policy.getHashAlgorithm();
             }
-            credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt).encode(cred.getValue(), hashIterations));
+            PasswordHashProvider hashProvider = inMemoryModel.getSession().getProvider(PasswordHashProvider.class, hashAlgorithm);
+            if (hashProvider == null) {
+                throw new ModelException("Password hashing provider not found: " + hashAlgorithm);
+            }
+            credentialEntity.setValue(hashProvider.encode(cred.getValue(), salt, hashIterations));
             credentialEntity.setSalt(salt);
             credentialEntity.setHashIterations(hashIterations);
+            credentialEntity.setAlgorithm(hashAlgorithm);
         } else {
             credentialEntity.setValue(cred.getValue());
         }
@@ -256,6 +268,7 @@ public class UserAdapter implements UserModel, Comparable {
             credModel.setValue(credEntity.getValue());
             credModel.setSalt(credEntity.getSalt());
             credModel.setHashIterations(credEntity.getHashIterations());
+            credModel.setAlgorithm(credEntity.getAlgorithm());
 
             result.add(credModel);
         }
@@ -279,6 +292,7 @@ public class UserAdapter implements UserModel, Comparable {
         credentialEntity.setSalt(credModel.getSalt());
         credentialEntity.setDevice(credModel.getDevice());
         credentialEntity.setHashIterations(credModel.getHashIterations());
+        credentialEntity.setAlgorithm(credModel.getAlgorithm());
     }
 
     @Override
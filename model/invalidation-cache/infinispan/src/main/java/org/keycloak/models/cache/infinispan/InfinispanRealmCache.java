@@ -6,6 +6,7 @@ import org.keycloak.models.cache.RealmCache;
 import org.keycloak.models.cache.entities.CachedApplication;
 import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
+import org.keycloak.models.cache.entities.CachedRealmSegment;
 import org.keycloak.models.cache.entities.CachedRole;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -158,6 +159,26 @@ public class InfinispanRealmCache implements RealmCache {
         cache.remove(id);
     }
 
+    @Override
+    public <T extends CachedRealmSegment> T getRealmSegment(String realmId, Class<T> type) {
+        if (!enabled) return null;
+        return get(CachedRealmSegment.getKey(realmId, type), type);
+    }
+
+    @Override
+    public void addRealmSegment(CachedRealmSegment segment) {
+        if (!enabled) return;
+        logger.tracev("Adding realm segment {0}", segment.getKey());
+        cache.put(segment.getKey(), segment);
+    }
+
+    @Override
+    public void invalidateRealmSegment(String realmId, Class<? extends CachedRealmSegment> type) {
+        String key = CachedRealmSegment.getKey(realmId, type);
+        logger.tracev("Removing realm segment {0}", key);
+        cache.remove(key);
+    }
+
     private <T> T get(String id, Class<T> type) {
         Object o = cache.get(id);
         return o != null && type.isInstance(o) ? type.cast(o) : null;
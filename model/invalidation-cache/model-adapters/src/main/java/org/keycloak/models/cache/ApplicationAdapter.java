@@ -6,6 +6,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleContainerModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.entities.CachedApplication;
+import org.keycloak.models.cache.entities.CachedRealmClients;
 
 import java.util.HashSet;
 import java.util.List;
@@ -54,7 +55,7 @@ public class ApplicationAdapter extends ClientAdapter implements ApplicationMode
     public void setName(String name) {
         getDelegateForUpdate();
         updated.setName(name);
-        cacheSession.registerRealmInvalidation(cachedRealm.getId());
+        cacheSession.registerRealmSegmentInvalidation(cachedRealm.getId(), CachedRealmClients.class);
     }
 
     @Override
@@ -1,6 +1,10 @@
 package org.keycloak.models.cache;
 
 import org.keycloak.models.RealmProvider;
+import org.keycloak.models.cache.entities.CachedIdentityProviders;
+import org.keycloak.models.cache.entities.CachedRealmClients;
+import org.keycloak.models.cache.entities.CachedRealmRoles;
+import org.keycloak.models.cache.entities.CachedRealmSegment;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -21,4 +25,19 @@ public interface CacheRealmProvider extends RealmProvider {
     void registerOAuthClientInvalidation(String id);
 
     void registerUserInvalidation(String id);
+
+    void registerRealmSegmentInvalidation(String realmId, Class<? extends CachedRealmSegment> type);
+
+    /**
+     * Returns null if the segment has been changed in this transaction, in which case it should be read from the
+     * delegate realm
+     *
+     * @param realmId
+     * @return
+     */
+    CachedRealmClients getRealmClients(String realmId);
+
+    CachedRealmRoles getRealmRoles(String realmId);
+
+    CachedIdentityProviders getIdentityProviders(String realmId);
 }
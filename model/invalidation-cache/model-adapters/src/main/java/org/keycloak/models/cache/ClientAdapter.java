@@ -7,6 +7,8 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleContainerModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.entities.CachedClient;
+import org.keycloak.models.cache.entities.CachedRealmClients;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -79,21 +81,36 @@ public abstract class ClientAdapter implements ClientModel {
         return cachedClient.getRedirectUris();
     }
 
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        if (updatedClient != null) return RedirectUriMatcher.compile(updatedClient.getRedirectUris());
+        return cachedClient.getRedirectUriMatcher();
+    }
+
     public void setRedirectUris(Set<String> redirectUris) {
         getDelegateForUpdate();
+        invalidateRealmRedirectUris();
         updatedClient.setRedirectUris(redirectUris);
     }
 
     public void addRedirectUri(String redirectUri) {
         getDelegateForUpdate();
+        invalidateRealmRedirectUris();
         updatedClient.addRedirectUri(redirectUri);
     }
 
     public void removeRedirectUri(String redirectUri) {
         getDelegateForUpdate();
+        invalidateRealmRedirectUris();
         updatedClient.removeRedirectUri(redirectUri);
     }
 
+    /**
+     * The realm keeps a matcher for the redirect URIs of all clients, so it's invalidated when redirect URIs change
+     */
+    protected void invalidateRealmRedirectUris() {
+        cacheSession.registerRealmSegmentInvalidation(cachedRealm.getId(), CachedRealmClients.class);
+    }
+
     public boolean isEnabled() {
         if (updatedClient != null) return updatedClient.isEnabled();
         return cachedClient.isEnabled();
@@ -3,15 +3,20 @@ package org.keycloak.models.cache;
 import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakTransaction;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.OAuthClientModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.entities.CachedApplication;
 import org.keycloak.models.cache.entities.CachedApplicationRole;
+import org.keycloak.models.cache.entities.CachedIdentityProviders;
 import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
+import org.keycloak.models.cache.entities.CachedRealmClients;
 import org.keycloak.models.cache.entities.CachedRealmRole;
+import org.keycloak.models.cache.entities.CachedRealmRoles;
+import org.keycloak.models.cache.entities.CachedRealmSegment;
 import org.keycloak.models.cache.entities.CachedRole;
 
 import java.util.HashMap;
@@ -36,6 +41,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
     protected Set<String> roleInvalidations = new HashSet<String>();
     protected Set<String> clientInvalidations = new HashSet<String>();
     protected Set<String> userInvalidations = new HashSet<String>();
+    protected Map<String, Set<Class<? extends CachedRealmSegment>>> segmentInvalidations = new HashMap<String, Set<Class<? extends CachedRealmSegment>>>();
     protected Map<String, RealmModel> managedRealms = new HashMap<String, RealmModel>();
     protected Map<String, ApplicationModel> managedApplications = new HashMap<String, ApplicationModel>();
     protected Map<String, OAuthClientModel> managedClients = new HashMap<String, OAuthClientModel>();
@@ -43,6 +49,8 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
 
     protected boolean clearAll;
 
+    protected MetricsProvider metrics;
+
     public DefaultCacheRealmProvider(RealmCache cache, KeycloakSession session) {
         this.cache = cache;
         this.session = session;
@@ -93,6 +101,21 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         userInvalidations.add(id);
     }
 
+    @Override
+    public void registerRealmSegmentInvalidation(String realmId, Class<? extends CachedRealmSegment> type) {
+        Set<Class<? extends CachedRealmSegment>> types = segmentInvalidations.get(realmId);
+        if (types == null) {
+            types = new HashSet<Class<? extends CachedRealmSegment>>();
+            segmentInvalidations.put(realmId, types);
+        }
+        types.add(type);
+    }
+
+    protected boolean isSegmentInvalidated(String realmId, Class<? extends CachedRealmSegment> type) {
+        Set<Class<? extends CachedRealmSegment>> types = segmentInvalidations.get(realmId);
+        return types != null && types.contains(type);
+    }
+
     protected void runInvalidations() {
         for (String id : realmInvalidations) {
             cache.invalidateCachedRealmById(id);
@@ -106,6 +129,11 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         for (String id : clientInvalidations) {
             cache.invalidateCachedOAuthClientById(id);
         }
+        for (Map.Entry<String, Set<Class<? extends CachedRealmSegment>>> e : segmentInvalidations.entrySet()) {
+            for (Class<? extends CachedRealmSegment> type : e.getValue()) {
+                cache.invalidateRealmSegment(e.getKey(), type);
+            }
+        }
     }
 
     private KeycloakTransaction getTransaction() {
@@ -169,11 +197,12 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
     public RealmModel getRealm(String id) {
         if (!cache.isEnabled()) return getDelegate().getRealm(id);
         CachedRealm cached = cache.getCachedRealm(id);
+        recordCacheLookup("realm", cached != null);
         if (cached == null) {
             RealmModel model = getDelegate().getRealm(id);
             if (model == null) return null;
             if (realmInvalidations.contains(id)) return model;
-            cached = new CachedRealm(cache, this, model);
+            cached = new CachedRealm(model);
             cache.addCachedRealm(cached);
         } else if (realmInvalidations.contains(id)) {
             return getDelegate().getRealm(id);
@@ -189,11 +218,12 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
     public RealmModel getRealmByName(String name) {
         if (!cache.isEnabled()) return getDelegate().getRealmByName(name);
         CachedRealm cached = cache.getCachedRealmByName(name);
+        recordCacheLookup("realm", cached != null);
         if (cached == null) {
             RealmModel model = getDelegate().getRealmByName(name);
             if (model == null) return null;
             if (realmInvalidations.contains(model.getId())) return model;
-            cached = new CachedRealm(cache, this, model);
+            cached = new CachedRealm(model);
             cache.addCachedRealm(cached);
         } else if (realmInvalidations.contains(cached.getId())) {
             return getDelegate().getRealmByName(name);
@@ -224,6 +254,9 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
 
         boolean didIt = getDelegate().removeRealm(id);
         realmInvalidations.add(id);
+        registerRealmSegmentInvalidation(id, CachedRealmClients.class);
+        registerRealmSegmentInvalidation(id, CachedRealmRoles.class);
+        registerRealmSegmentInvalidation(id, CachedIdentityProviders.class);
 
         // TODO: Temporary workaround to invalidate cached realm roles
         if (didIt && realmRoles != null) {
@@ -240,6 +273,56 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         if (delegate != null) delegate.close();
     }
 
+    protected void recordCacheLookup(String type, boolean hit) {
+        if (metrics == null) {
+            metrics = session.getProvider(MetricsProvider.class);
+            if (metrics == null) return;
+        }
+        metrics.increment("realmCache." + type + (hit ? ".hit" : ".miss"));
+    }
+
+    @Override
+    public CachedRealmClients getRealmClients(String realmId) {
+        if (!cache.isEnabled() || isSegmentInvalidated(realmId, CachedRealmClients.class)) return null;
+        CachedRealmClients cached = cache.getRealmSegment(realmId, CachedRealmClients.class);
+        recordCacheLookup("realmClients", cached != null);
+        if (cached == null) {
+            cached = new CachedRealmClients(getDelegateRealm(realmId));
+            cache.addRealmSegment(cached);
+        }
+        return cached;
+    }
+
+    @Override
+    public CachedRealmRoles getRealmRoles(String realmId) {
+        if (!cache.isEnabled() || isSegmentInvalidated(realmId, CachedRealmRoles.class)) return null;
+        CachedRealmRoles cached = cache.getRealmSegment(realmId, CachedRealmRoles.class);
+        recordCacheLookup("realmRoles", cached != null);
+        if (cached == null) {
+            cached = new CachedRealmRoles(getDelegateRealm(realmId));
+            cache.addRealmSegment(cached);
+        }
+        return cached;
+    }
+
+    @Override
+    public CachedIdentityProviders getIdentityProviders(String realmId) {
+        if (!cache.isEnabled() || isSegmentInvalidated(realmId, CachedIdentityProviders.class)) return null;
+        CachedIdentityProviders cached = cache.getRealmSegment(realmId, CachedIdentityProviders.class);
+        recordCacheLookup("identityProviders", cached != null);
+        if (cached == null) {
+            cached = new CachedIdentityProviders(getDelegateRealm(realmId));
+            cache.addRealmSegment(cached);
+        }
+        return cached;
+    }
+
+    protected RealmModel getDelegateRealm(String realmId) {
+        RealmModel model = getDelegate().getRealm(realmId);
+        if (model == null) throw new IllegalStateException("Not found in database");
+        return model;
+    }
+
     @Override
     public RoleModel getRoleById(String id, RealmModel realm) {
         if (!cache.isEnabled()) return getDelegate().getRoleById(id, realm);
@@ -248,6 +331,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
             cached = null;
         }
 
+        recordCacheLookup("role", cached != null);
         if (cached == null) {
             RoleModel model = getDelegate().getRoleById(id, realm);
             if (model == null) return null;
@@ -277,6 +361,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
             cached = null;
         }
 
+        recordCacheLookup("application", cached != null);
         if (cached == null) {
             ApplicationModel model = getDelegate().getApplicationById(id, realm);
             if (model == null) return null;
@@ -301,6 +386,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
             cached = null;
         }
 
+        recordCacheLookup("oauthClient", cached != null);
         if (cached == null) {
             OAuthClientModel model = getDelegate().getOAuthClientById(id, realm);
             if (model == null) return null;
@@ -1,8 +1,10 @@
 package org.keycloak.models.cache;
 
+import org.keycloak.models.BulkUserModel;
 import org.keycloak.models.CredentialValidationOutput;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakTransaction;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.FederatedIdentityModel;
@@ -35,6 +37,8 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
 
     protected boolean clearAll;
 
+    protected MetricsProvider metrics;
+
     public DefaultCacheUserProvider(UserCache cache, KeycloakSession session) {
         this.cache = cache;
         this.session = session;
@@ -126,6 +130,7 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
         }
 
         CachedUser cached = cache.getCachedUser(realm.getId(), id);
+        recordCacheLookup(cached != null);
         if (cached == null) {
             UserModel model = getDelegate().getUserById(id, realm);
             if (model == null) return null;
@@ -150,6 +155,7 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
             return getDelegate().getUserByUsername(username, realm);
         }
         CachedUser cached = cache.getCachedUserByUsername(realm.getId(), username);
+        recordCacheLookup(cached != null);
         if (cached == null) {
             UserModel model = getDelegate().getUserByUsername(username, realm);
             if (model == null) return null;
@@ -176,6 +182,7 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
             return getDelegate().getUserByEmail(email, realm);
         }
         CachedUser cached = cache.getCachedUserByEmail(realm.getId(), email);
+        recordCacheLookup(cached != null);
         if (cached == null) {
             UserModel model = getDelegate().getUserByEmail(email, realm);
             if (model == null) return null;
@@ -197,6 +204,14 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
         if (delegate != null) delegate.close();
     }
 
+    protected void recordCacheLookup(boolean hit) {
+        if (metrics == null) {
+            metrics = session.getProvider(MetricsProvider.class);
+            if (metrics == null) return;
+        }
+        metrics.increment(hit ? "userCache.hit" : "userCache.miss");
+    }
+
     @Override
     public UserModel getUserByFederatedIdentity(FederatedIdentityModel socialLink, RealmModel realm) {
         return getDelegate().getUserByFederatedIdentity(socialLink, realm);
@@ -257,6 +272,11 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
         return getDelegate().addUser(realm, username);
     }
 
+    @Override
+    public void addUsers(RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles) {
+        getDelegate().addUsers(realm, users, addDefaultRoles);
+    }
+
     @Override
     public boolean removeUser(RealmModel realm, UserModel user) {
         if (!cache.isEnabled()) return getDelegate().removeUser(realm, user);
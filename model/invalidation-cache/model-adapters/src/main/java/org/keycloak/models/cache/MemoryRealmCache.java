@@ -3,6 +3,7 @@ package org.keycloak.models.cache;
 import org.keycloak.models.cache.entities.CachedApplication;
 import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
+import org.keycloak.models.cache.entities.CachedRealmSegment;
 import org.keycloak.models.cache.entities.CachedRole;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -18,6 +19,7 @@ public class MemoryRealmCache implements RealmCache {
     protected ConcurrentHashMap<String, CachedApplication> applicationCache = new ConcurrentHashMap<String, CachedApplication>();
     protected ConcurrentHashMap<String, CachedOAuthClient> clientCache = new ConcurrentHashMap<String, CachedOAuthClient>();
     protected ConcurrentHashMap<String, CachedRole> roleCache = new ConcurrentHashMap<String, CachedRole>();
+    protected ConcurrentHashMap<String, CachedRealmSegment> segmentCache = new ConcurrentHashMap<String, CachedRealmSegment>();
     protected volatile boolean enabled = true;
 
     @Override
@@ -27,6 +29,7 @@ public class MemoryRealmCache implements RealmCache {
         applicationCache.clear();
         clientCache.clear();
         roleCache.clear();
+        segmentCache.clear();
     }
 
     @Override
@@ -144,4 +147,22 @@ public class MemoryRealmCache implements RealmCache {
     public void invalidateCachedRoleById(String id) {
         roleCache.remove(id);
     }
+
+    @Override
+    public <T extends CachedRealmSegment> T getRealmSegment(String realmId, Class<T> type) {
+        if (!enabled) return null;
+        CachedRealmSegment segment = segmentCache.get(CachedRealmSegment.getKey(realmId, type));
+        return segment != null && type.isInstance(segment) ? type.cast(segment) : null;
+    }
+
+    @Override
+    public void addRealmSegment(CachedRealmSegment segment) {
+        if (!enabled) return;
+        segmentCache.put(segment.getKey(), segment);
+    }
+
+    @Override
+    public void invalidateRealmSegment(String realmId, Class<? extends CachedRealmSegment> type) {
+        segmentCache.remove(CachedRealmSegment.getKey(realmId, type));
+    }
 }
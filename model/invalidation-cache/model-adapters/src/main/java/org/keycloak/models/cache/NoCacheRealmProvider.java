@@ -6,6 +6,10 @@ import org.keycloak.models.OAuthClientModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RoleModel;
+import org.keycloak.models.cache.entities.CachedIdentityProviders;
+import org.keycloak.models.cache.entities.CachedRealmClients;
+import org.keycloak.models.cache.entities.CachedRealmRoles;
+import org.keycloak.models.cache.entities.CachedRealmSegment;
 
 import java.util.List;
 
@@ -54,6 +58,25 @@ public class NoCacheRealmProvider implements CacheRealmProvider {
     public void registerOAuthClientInvalidation(String id) {
     }
 
+    @Override
+    public void registerRealmSegmentInvalidation(String realmId, Class<? extends CachedRealmSegment> type) {
+    }
+
+    @Override
+    public CachedRealmClients getRealmClients(String realmId) {
+        return null;
+    }
+
+    @Override
+    public CachedRealmRoles getRealmRoles(String realmId) {
+        return null;
+    }
+
+    @Override
+    public CachedIdentityProviders getIdentityProviders(String realmId) {
+        return null;
+    }
+
     @Override
     public RealmModel createRealm(String name) {
         return getDelegate().createRealm(name);
@@ -1,5 +1,6 @@
 package org.keycloak.models.cache;
 
+import org.keycloak.models.BulkUserModel;
 import org.keycloak.models.CredentialValidationOutput;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
@@ -126,6 +127,11 @@ public class NoCacheUserProvider implements CacheUserProvider {
         return getDelegate().addUser(realm, username);
     }
 
+    @Override
+    public void addUsers(RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles) {
+        getDelegate().addUsers(realm, users, addDefaultRoles);
+    }
+
     @Override
     public boolean removeUser(RealmModel realm, UserModel user) {
         return getDelegate().removeUser(realm, user);
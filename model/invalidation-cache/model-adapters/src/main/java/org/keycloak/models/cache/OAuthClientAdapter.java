@@ -3,6 +3,7 @@ package org.keycloak.models.cache;
 import org.keycloak.models.OAuthClientModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.cache.entities.CachedOAuthClient;
+import org.keycloak.models.cache.entities.CachedRealmClients;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -36,7 +37,7 @@ public class OAuthClientAdapter extends ClientAdapter implements OAuthClientMode
     public void setClientId(String id) {
         getDelegateForUpdate();
         updated.setClientId(id);
-        cacheSession.registerRealmInvalidation(cachedRealm.getId());
+        cacheSession.registerRealmSegmentInvalidation(cachedRealm.getId(), CachedRealmClients.class);
     }
 
     @Override
@@ -13,8 +13,12 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RequiredCredentialModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserFederationProviderModel;
+import org.keycloak.models.cache.entities.CachedIdentityProviders;
 import org.keycloak.models.cache.entities.CachedRealm;
+import org.keycloak.models.cache.entities.CachedRealmClients;
+import org.keycloak.models.cache.entities.CachedRealmRoles;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
 import java.security.Key;
 import java.security.PrivateKey;
@@ -35,6 +39,7 @@ public class RealmAdapter implements RealmModel {
     protected CachedRealm cached;
     protected CacheRealmProvider cacheSession;
     protected RealmModel updated;
+    protected RealmModel delegate;
     protected RealmCache cache;
     protected volatile transient PublicKey publicKey;
     protected volatile transient PrivateKey privateKey;
@@ -54,6 +59,21 @@ public class RealmAdapter implements RealmModel {
         }
     }
 
+    /**
+     * Returns the realm from the delegate without invalidating the cached realm settings. Used to read and update
+     * segments of the realm that are cached separately.
+     *
+     * @return
+     */
+    protected RealmModel getDelegate() {
+        if (updated != null) return updated;
+        if (delegate == null) {
+            delegate = cacheSession.getDelegate().getRealm(getId());
+            if (delegate == null) throw new IllegalStateException("Not found in database");
+        }
+        return delegate;
+    }
+
     @Override
     public String getId() {
         if (updated != null) return updated.getId();
@@ -351,7 +371,15 @@ public class RealmAdapter implements RealmModel {
     @Override
     public PublicKey getPublicKey() {
         if (publicKey != null) return publicKey;
-        publicKey = KeycloakModelUtils.getPublicKey(getPublicKeyPem());
+        if (updated != null) {
+            publicKey = KeycloakModelUtils.getPublicKey(getPublicKeyPem());
+        } else {
+            publicKey = cached.getPublicKey();
+            if (publicKey == null) {
+                publicKey = KeycloakModelUtils.getPublicKey(getPublicKeyPem());
+                cached.setPublicKey(publicKey);
+            }
+        }
         return publicKey;
     }
 
@@ -365,7 +393,15 @@ public class RealmAdapter implements RealmModel {
     @Override
     public X509Certificate getCertificate() {
         if (certificate != null) return certificate;
-        certificate = KeycloakModelUtils.getCertificate(getCertificatePem());
+        if (updated != null) {
+            certificate = KeycloakModelUtils.getCertificate(getCertificatePem());
+        } else {
+            certificate = cached.getCertificate();
+            if (certificate == null) {
+                certificate = KeycloakModelUtils.getCertificate(getCertificatePem());
+                cached.setCertificate(certificate);
+            }
+        }
         return certificate;
     }
 
@@ -392,7 +428,15 @@ public class RealmAdapter implements RealmModel {
     @Override
     public PrivateKey getPrivateKey() {
         if (privateKey != null) return privateKey;
-        privateKey = KeycloakModelUtils.getPrivateKey(getPrivateKeyPem());
+        if (updated != null) {
+            privateKey = KeycloakModelUtils.getPrivateKey(getPrivateKeyPem());
+        } else {
+            privateKey = cached.getPrivateKey();
+            if (privateKey == null) {
+                privateKey = KeycloakModelUtils.getPrivateKey(getPrivateKeyPem());
+                cached.setPrivateKey(privateKey);
+            }
+        }
         return privateKey;
     }
 
@@ -463,12 +507,15 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public void addDefaultRole(String name) {
+        // Adds the role to the realm if it doesn't exist
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmRoles.class);
         getDelegateForUpdate();
         updated.addDefaultRole(name);
     }
 
     @Override
     public void updateDefaultRoles(String[] defaultRoles) {
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmRoles.class);
         getDelegateForUpdate();
         updated.updateDefaultRoles(defaultRoles);
     }
@@ -476,11 +523,13 @@ public class RealmAdapter implements RealmModel {
     @Override
     public ClientModel findClient(String clientId) {
         if (updated != null) return updated.findClient(clientId);
-        String appId = cached.getApplications().get(clientId);
+        CachedRealmClients clients = cacheSession.getRealmClients(getId());
+        if (clients == null) return getDelegate().findClient(clientId);
+        String appId = clients.getApplications().get(clientId);
         if (appId != null) {
             return cacheSession.getApplicationById(appId, this);
         }
-        String oauth = cached.getClients().get(clientId);
+        String oauth = clients.getClients().get(clientId);
         if (oauth != null) {
             return cacheSession.getOAuthClientById(oauth, this);
         }
@@ -490,8 +539,10 @@ public class RealmAdapter implements RealmModel {
     @Override
     public Map<String, ApplicationModel> getApplicationNameMap() {
         if (updated != null) return updated.getApplicationNameMap();
+        CachedRealmClients clients = cacheSession.getRealmClients(getId());
+        if (clients == null) return getDelegate().getApplicationNameMap();
         Map<String, ApplicationModel> map = new HashMap<String, ApplicationModel>();
-        for (String id : cached.getApplications().values()) {
+        for (String id : clients.getApplications().values()) {
             ApplicationModel model = cacheSession.getApplicationById(id, this);
             if (model == null) {
                 throw new IllegalStateException("Cached application not found: " + id);
@@ -504,8 +555,10 @@ public class RealmAdapter implements RealmModel {
     @Override
     public List<ApplicationModel> getApplications() {
         if (updated != null) return updated.getApplications();
+        CachedRealmClients clients = cacheSession.getRealmClients(getId());
+        if (clients == null) return getDelegate().getApplications();
         List<ApplicationModel> apps = new LinkedList<ApplicationModel>();
-        for (String id : cached.getApplications().values()) {
+        for (String id : clients.getApplications().values()) {
             ApplicationModel model = cacheSession.getApplicationById(id, this);
             if (model == null) {
                 throw new IllegalStateException("Cached application not found: " + id);
@@ -516,18 +569,30 @@ public class RealmAdapter implements RealmModel {
 
     }
 
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        if (updated != null) return RedirectUriMatcher.compile(updated);
+        CachedRealmClients clients = cacheSession.getRealmClients(getId());
+        if (clients == null) return RedirectUriMatcher.compile(getDelegate());
+        RedirectUriMatcher matcher = clients.getRedirectUriMatcher();
+        if (matcher == null) {
+            matcher = RedirectUriMatcher.compile(this);
+            clients.setRedirectUriMatcher(matcher);
+        }
+        return matcher;
+    }
+
     @Override
     public ApplicationModel addApplication(String name) {
-        getDelegateForUpdate();
-        ApplicationModel app = updated.addApplication(name);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmClients.class);
+        ApplicationModel app = getDelegate().addApplication(name);
         cacheSession.registerApplicationInvalidation(app.getId());
         return app;
     }
 
     @Override
     public ApplicationModel addApplication(String id, String name) {
-        getDelegateForUpdate();
-        ApplicationModel app =  updated.addApplication(id, name);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmClients.class);
+        ApplicationModel app =  getDelegate().addApplication(id, name);
         cacheSession.registerApplicationInvalidation(app.getId());
         return app;
     }
@@ -535,8 +600,8 @@ public class RealmAdapter implements RealmModel {
     @Override
     public boolean removeApplication(String id) {
         cacheSession.registerApplicationInvalidation(id);
-        getDelegateForUpdate();
-        return updated.removeApplication(id);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmClients.class);
+        return getDelegate().removeApplication(id);
     }
 
     @Override
@@ -548,7 +613,9 @@ public class RealmAdapter implements RealmModel {
     @Override
     public ApplicationModel getApplicationByName(String name) {
         if (updated != null) return updated.getApplicationByName(name);
-        String id = cached.getApplications().get(name);
+        CachedRealmClients clients = cacheSession.getRealmClients(getId());
+        if (clients == null) return getDelegate().getApplicationByName(name);
+        String id = clients.getApplications().get(name);
         if (id == null) return null;
         return getApplicationById(id);
     }
@@ -561,16 +628,16 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public OAuthClientModel addOAuthClient(String name) {
-        getDelegateForUpdate();
-        OAuthClientModel client = updated.addOAuthClient(name);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmClients.class);
+        OAuthClientModel client = getDelegate().addOAuthClient(name);
         cacheSession.registerOAuthClientInvalidation(client.getId());
         return client;
     }
 
     @Override
     public OAuthClientModel addOAuthClient(String id, String name) {
-        getDelegateForUpdate();
-        OAuthClientModel client =  updated.addOAuthClient(id, name);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmClients.class);
+        OAuthClientModel client =  getDelegate().addOAuthClient(id, name);
         cacheSession.registerOAuthClientInvalidation(client.getId());
         return client;
     }
@@ -578,7 +645,9 @@ public class RealmAdapter implements RealmModel {
     @Override
     public OAuthClientModel getOAuthClient(String name) {
         if (updated != null) return updated.getOAuthClient(name);
-        String id = cached.getClients().get(name);
+        CachedRealmClients clients = cacheSession.getRealmClients(getId());
+        if (clients == null) return getDelegate().getOAuthClient(name);
+        String id = clients.getClients().get(name);
         if (id == null) return null;
         return getOAuthClientById(id);
     }
@@ -592,15 +661,17 @@ public class RealmAdapter implements RealmModel {
     @Override
     public boolean removeOAuthClient(String id) {
         cacheSession.registerOAuthClientInvalidation(id);
-        getDelegateForUpdate();
-        return updated.removeOAuthClient(id);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmClients.class);
+        return getDelegate().removeOAuthClient(id);
     }
 
     @Override
     public List<OAuthClientModel> getOAuthClients() {
         if (updated != null) return updated.getOAuthClients();
+        CachedRealmClients realmClients = cacheSession.getRealmClients(getId());
+        if (realmClients == null) return getDelegate().getOAuthClients();
         List<OAuthClientModel> clients = new LinkedList<OAuthClientModel>();
-        for (String id : cached.getClients().values()) {
+        for (String id : realmClients.getClients().values()) {
             OAuthClientModel model = cacheSession.getOAuthClientById(id, this);
             if (model == null) {
                 throw new IllegalStateException("Cached oauth client not found: " + id);
@@ -639,7 +710,9 @@ public class RealmAdapter implements RealmModel {
     @Override
     public List<IdentityProviderModel> getIdentityProviders() {
         if (updated != null) return updated.getIdentityProviders();
-        return cached.getIdentityProviders();
+        CachedIdentityProviders identityProviders = cacheSession.getIdentityProviders(getId());
+        if (identityProviders == null) return getDelegate().getIdentityProviders();
+        return identityProviders.getIdentityProviders();
     }
 
     @Override
@@ -655,20 +728,20 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public void addIdentityProvider(IdentityProviderModel identityProvider) {
-        getDelegateForUpdate();
-        updated.addIdentityProvider(identityProvider);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedIdentityProviders.class);
+        getDelegate().addIdentityProvider(identityProvider);
     }
 
     @Override
     public void updateIdentityProvider(IdentityProviderModel identityProvider) {
-        getDelegateForUpdate();
-        updated.updateIdentityProvider(identityProvider);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedIdentityProviders.class);
+        getDelegate().updateIdentityProvider(identityProvider);
     }
 
     @Override
     public void removeIdentityProviderByAlias(String alias) {
-        getDelegateForUpdate();
-        updated.removeIdentityProviderByAlias(alias);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedIdentityProviders.class);
+        getDelegate().removeIdentityProviderByAlias(alias);
     }
 
     @Override
@@ -766,6 +839,7 @@ public class RealmAdapter implements RealmModel {
     @Override
     public boolean removeRoleById(String id) {
         cacheSession.registerRoleInvalidation(id);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmRoles.class);
         getDelegateForUpdate();
         return updated.removeRoleById(id);
     }
@@ -820,23 +894,25 @@ public class RealmAdapter implements RealmModel {
     @Override
     public RoleModel getRole(String name) {
         if (updated != null) return updated.getRole(name);
-        String id = cached.getRealmRoles().get(name);
+        CachedRealmRoles roles = cacheSession.getRealmRoles(getId());
+        if (roles == null) return getDelegate().getRole(name);
+        String id = roles.getRoles().get(name);
         if (id == null) return null;
         return cacheSession.getRoleById(id, this);
     }
 
     @Override
     public RoleModel addRole(String name) {
-        getDelegateForUpdate();
-        RoleModel role = updated.addRole(name);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmRoles.class);
+        RoleModel role = getDelegate().addRole(name);
         cacheSession.registerRoleInvalidation(role.getId());
         return role;
     }
 
     @Override
     public RoleModel addRole(String id, String name) {
-        getDelegateForUpdate();
-        RoleModel role =  updated.addRole(id, name);
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmRoles.class);
+        RoleModel role =  getDelegate().addRole(id, name);
         cacheSession.registerRoleInvalidation(role.getId());
         return role;
     }
@@ -844,6 +920,7 @@ public class RealmAdapter implements RealmModel {
     @Override
     public boolean removeRole(RoleModel role) {
         cacheSession.registerRoleInvalidation(role.getId());
+        cacheSession.registerRealmSegmentInvalidation(getId(), CachedRealmRoles.class);
         getDelegateForUpdate();
         return updated.removeRole(role);
     }
@@ -851,9 +928,11 @@ public class RealmAdapter implements RealmModel {
     @Override
     public Set<RoleModel> getRoles() {
         if (updated != null) return updated.getRoles();
+        CachedRealmRoles realmRoles = cacheSession.getRealmRoles(getId());
+        if (realmRoles == null) return getDelegate().getRoles();
 
         Set<RoleModel> roles = new HashSet<RoleModel>();
-        for (String id : cached.getRealmRoles().values()) {
+        for (String id : realmRoles.getRoles().values()) {
             RoleModel roleById = cacheSession.getRoleById(id, this);
             if (roleById == null) continue;
             roles.add(roleById);
@@ -3,6 +3,7 @@ package org.keycloak.models.cache;
 import org.keycloak.models.cache.entities.CachedApplication;
 import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
+import org.keycloak.models.cache.entities.CachedRealmSegment;
 import org.keycloak.models.cache.entities.CachedRole;
 
 /**
@@ -49,6 +50,12 @@ public interface RealmCache {
 
     void invalidateRoleById(String id);
 
+    <T extends CachedRealmSegment> T getRealmSegment(String realmId, Class<T> type);
+
+    void addRealmSegment(CachedRealmSegment segment);
+
+    void invalidateRealmSegment(String realmId, Class<? extends CachedRealmSegment> type);
+
     boolean isEnabled();
 
     void setEnabled(boolean enabled);
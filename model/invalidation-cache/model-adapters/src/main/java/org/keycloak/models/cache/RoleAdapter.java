@@ -5,6 +5,7 @@ import org.keycloak.models.RoleContainerModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.entities.CachedApplicationRole;
 import org.keycloak.models.cache.entities.CachedRealmRole;
+import org.keycloak.models.cache.entities.CachedRealmRoles;
 import org.keycloak.models.cache.entities.CachedRole;
 import org.keycloak.models.utils.KeycloakModelUtils;
 
@@ -67,6 +68,11 @@ public class RoleAdapter implements RoleModel {
     public void setName(String name) {
         getDelegateForUpdate();
         updated.setName(name);
+        if (cached instanceof CachedRealmRole) {
+            cacheSession.registerRealmSegmentInvalidation(realm.getId(), CachedRealmRoles.class);
+        } else {
+            cacheSession.registerApplicationInvalidation(((CachedApplicationRole) cached).getAppId());
+        }
     }
 
     @Override
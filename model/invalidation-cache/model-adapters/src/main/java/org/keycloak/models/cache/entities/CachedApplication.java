@@ -35,7 +35,6 @@ public class CachedApplication extends CachedClient {
         bearerOnly = model.isBearerOnly();
         for (RoleModel role : model.getRoles()) {
             roles.put(role.getName(), role.getId());
-            cache.addCachedRole(new CachedApplicationRole(id, role, realm));
         }
 
         nodeReRegistrationTimeout = model.getNodeReRegistrationTimeout();
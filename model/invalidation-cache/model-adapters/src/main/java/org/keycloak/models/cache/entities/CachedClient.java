@@ -7,6 +7,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.RealmCache;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -38,6 +39,7 @@ public class CachedClient {
     protected Set<String> webOrigins = new HashSet<String>();
     private List<ClientIdentityProviderMappingModel> identityProviders = new ArrayList<ClientIdentityProviderMappingModel>();
     private Set<ProtocolMapperModel> protocolMappers = new HashSet<ProtocolMapperModel>();
+    private transient volatile RedirectUriMatcher redirectUriMatcher;
 
     public CachedClient(RealmCache cache, RealmProvider delegate, RealmModel realm, ClientModel model) {
         id = model.getId();
@@ -84,6 +86,13 @@ public class CachedClient {
         return redirectUris;
     }
 
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        if (redirectUriMatcher == null) {
+            redirectUriMatcher = RedirectUriMatcher.compile(redirectUris);
+        }
+        return redirectUriMatcher;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -0,0 +1,28 @@
+package org.keycloak.models.cache.entities;
+
+import org.keycloak.models.IdentityProviderModel;
+import org.keycloak.models.RealmModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Identity providers of a realm
+ */
+public class CachedIdentityProviders extends CachedRealmSegment {
+
+    private final List<IdentityProviderModel> identityProviders = new ArrayList<IdentityProviderModel>();
+
+    public CachedIdentityProviders(RealmModel model) {
+        super(model.getId());
+
+        for (IdentityProviderModel identityProvider : model.getIdentityProviders()) {
+            identityProviders.add(new IdentityProviderModel(identityProvider));
+        }
+    }
+
+    public List<IdentityProviderModel> getIdentityProviders() {
+        return identityProviders;
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.keycloak.models.cache.entities;
+
+import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.OAuthClientModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.utils.RedirectUriMatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ids of the applications and OAuth clients in a realm by name. Applications and clients are cached separately when
+ * they are first used.
+ */
+public class CachedRealmClients extends CachedRealmSegment {
+
+    private final Map<String, String> applications = new HashMap<String, String>();
+    private final Map<String, String> clients = new HashMap<String, String>();
+    private transient volatile RedirectUriMatcher redirectUriMatcher;
+
+    public CachedRealmClients(RealmModel model) {
+        super(model.getId());
+
+        for (ApplicationModel app : model.getApplications()) {
+            applications.put(app.getName(), app.getId());
+        }
+
+        for (OAuthClientModel client : model.getOAuthClients()) {
+            clients.put(client.getClientId(), client.getId());
+        }
+    }
+
+    public Map<String, String> getApplications() {
+        return applications;
+    }
+
+    public Map<String, String> getClients() {
+        return clients;
+    }
+
+    /**
+     * Matcher for the redirect URIs of all applications and clients in the realm. Created on first use by the realm
+     * adapter, as it requires loading all applications and clients.
+     *
+     * @return
+     */
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        return redirectUriMatcher;
+    }
+
+    public void setRedirectUriMatcher(RedirectUriMatcher redirectUriMatcher) {
+        this.redirectUriMatcher = redirectUriMatcher;
+    }
+
+}
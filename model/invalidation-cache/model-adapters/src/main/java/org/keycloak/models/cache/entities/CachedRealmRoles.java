@@ -0,0 +1,28 @@
+package org.keycloak.models.cache.entities;
+
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ids of the realm roles in a realm by name. Roles are cached separately when they are first used.
+ */
+public class CachedRealmRoles extends CachedRealmSegment {
+
+    private final Map<String, String> roles = new HashMap<String, String>();
+
+    public CachedRealmRoles(RealmModel model) {
+        super(model.getId());
+
+        for (RoleModel role : model.getRoles()) {
+            roles.put(role.getName(), role.getId());
+        }
+    }
+
+    public Map<String, String> getRoles() {
+        return roles;
+    }
+
+}
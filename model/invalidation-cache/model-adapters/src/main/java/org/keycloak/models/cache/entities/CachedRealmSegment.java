@@ -0,0 +1,28 @@
+package org.keycloak.models.cache.entities;
+
+/**
+ * Part of a realm that is loaded and cached separately from the realm settings. Segments are loaded when first used and
+ * each segment is invalidated on its own, so for example adding an application doesn't require reloading the realm or
+ * its roles.
+ */
+public abstract class CachedRealmSegment {
+
+    protected final String realm;
+
+    protected CachedRealmSegment(String realm) {
+        this.realm = realm;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public String getKey() {
+        return getKey(realm, getClass());
+    }
+
+    public static String getKey(String realm, Class<? extends CachedRealmSegment> type) {
+        return realm + "." + type.getSimpleName();
+    }
+
+}
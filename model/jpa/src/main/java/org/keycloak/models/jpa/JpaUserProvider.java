@@ -1,6 +1,8 @@
 package org.keycloak.models.jpa;
 
+import org.keycloak.connections.jpa.JpaBatchBuilder;
 import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.BulkUserModel;
 import org.keycloak.models.CredentialValidationOutput;
 import org.keycloak.models.FederatedIdentityModel;
 import org.keycloak.models.KeycloakSession;
@@ -12,6 +14,7 @@ import org.keycloak.models.UserModel;
 import org.keycloak.models.UserProvider;
 import org.keycloak.models.jpa.entities.FederatedIdentityEntity;
 import org.keycloak.models.jpa.entities.UserEntity;
+import org.keycloak.models.jpa.entities.UserRoleMappingEntity;
 import org.keycloak.models.utils.CredentialValidation;
 import org.keycloak.models.utils.KeycloakModelUtils;
 
@@ -54,7 +57,7 @@ public class JpaUserProvider implements UserProvider {
         entity.setRealmId(realm.getId());
         em.persist(entity);
         em.flush();
-        UserModel userModel = new UserAdapter(realm, em, entity);
+        UserModel userModel = new UserAdapter(session, realm, em, entity);
 
         if (addDefaultRoles) {
             for (String r : realm.getDefaultRoles()) {
@@ -76,6 +79,75 @@ public class JpaUserProvider implements UserProvider {
         return addUser(realm, KeycloakModelUtils.generateId(), username.toLowerCase(), true);
     }
 
+    /**
+     * Persists all users, then their attributes, required actions, credentials and role mappings, and flushes once with
+     * JDBC batching enabled. Entities are persisted one table at a time so consecutive inserts go to the same table and
+     * are sent in the same batch.
+     */
+    @Override
+    public void addUsers(RealmModel realm, List<BulkUserModel> users, boolean addDefaultRoles) {
+        Set<RoleModel> defaultRoles = new HashSet<RoleModel>();
+        if (addDefaultRoles) {
+            for (String r : realm.getDefaultRoles()) {
+                defaultRoles.add(realm.getRole(r));
+            }
+            for (ApplicationModel application : realm.getApplications()) {
+                for (String r : application.getDefaultRoles()) {
+                    defaultRoles.add(application.getRole(r));
+                }
+            }
+        }
+
+        List<UserAdapter> adapters = new ArrayList<UserAdapter>(users.size());
+        for (BulkUserModel rep : users) {
+            UserEntity entity = new UserEntity();
+            entity.setId(rep.getId() != null ? rep.getId() : KeycloakModelUtils.generateId());
+            entity.setUsername(rep.getUsername().toLowerCase());
+            entity.setRealmId(realm.getId());
+            entity.setEmail(rep.getEmail());
+            entity.setFirstName(rep.getFirstName());
+            entity.setLastName(rep.getLastName());
+            entity.setEnabled(rep.isEnabled());
+            entity.setEmailVerified(rep.isEmailVerified());
+            entity.setTotp(rep.isTotp());
+            em.persist(entity);
+            adapters.add(new UserAdapter(session, realm, em, entity));
+        }
+
+        for (int i = 0; i < users.size(); i++) {
+            for (Map.Entry<String, String> attr : users.get(i).getAttributes().entrySet()) {
+                adapters.get(i).setAttribute(attr.getKey(), attr.getValue());
+            }
+        }
+        for (int i = 0; i < users.size(); i++) {
+            for (UserModel.RequiredAction action : users.get(i).getRequiredActions()) {
+                adapters.get(i).addRequiredAction(action);
+            }
+        }
+        for (int i = 0; i < users.size(); i++) {
+            for (UserCredentialModel credential : users.get(i).getCredentials()) {
+                adapters.get(i).setCredential(credential);
+            }
+        }
+        for (int i = 0; i < users.size(); i++) {
+            Set<RoleModel> roles = new HashSet<RoleModel>(defaultRoles);
+            roles.addAll(users.get(i).getRoles());
+            for (RoleModel role : roles) {
+                UserRoleMappingEntity mapping = new UserRoleMappingEntity();
+                mapping.setUser(adapters.get(i).getUser());
+                mapping.setRoleId(role.getId());
+                em.persist(mapping);
+            }
+        }
+
+        JpaBatchBuilder.enable();
+        try {
+            em.flush();
+        } finally {
+            JpaBatchBuilder.disable();
+        }
+    }
+
     @Override
     public boolean removeUser(RealmModel realm, UserModel user) {
         UserEntity userEntity = em.find(UserEntity.class, user.getId());
@@ -184,7 +256,7 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("realmId", realm.getId());
         List<UserEntity> entities = query.getResultList();
         if (entities.size() == 0) return null;
-        return new UserAdapter(realm, em, entities.get(0));
+        return new UserAdapter(session, realm, em, entities.get(0));
     }
 
     @Override
@@ -194,7 +266,7 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("realmId", realm.getId());
         List<UserEntity> results = query.getResultList();
         if (results.size() == 0) return null;
-        return new UserAdapter(realm, em, results.get(0));
+        return new UserAdapter(session, realm, em, results.get(0));
     }
 
     @Override
@@ -203,7 +275,7 @@ public class JpaUserProvider implements UserProvider {
         query.setParameter("email", email.toLowerCase());
         query.setParameter("realmId", realm.getId());
         List<UserEntity> results = query.getResultList();
-        return results.isEmpty() ? null : new UserAdapter(realm, em, results.get(0));
+        return results.isEmpty() ? null : new UserAdapter(session, realm, em, results.get(0));
     }
 
      @Override
@@ -224,7 +296,7 @@ public class JpaUserProvider implements UserProvider {
                     ", userId=" + identity.getUserId() + ", results=" + results);
         } else {
             UserEntity user = results.get(0);
-            return new UserAdapter(realm, em, user);
+            return new UserAdapter(session, realm, em, user);
         }
     }
 
@@ -254,7 +326,7 @@ public class JpaUserProvider implements UserProvider {
         }
         List<UserEntity> results = query.getResultList();
         List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity entity : results) users.add(new UserAdapter(realm, em, entity));
+        for (UserEntity entity : results) users.add(new UserAdapter(session, realm, em, entity));
         return users;
     }
 
@@ -276,7 +348,7 @@ public class JpaUserProvider implements UserProvider {
         }
         List<UserEntity> results = query.getResultList();
         List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity entity : results) users.add(new UserAdapter(realm, em, entity));
+        for (UserEntity entity : results) users.add(new UserAdapter(session, realm, em, entity));
         return users;
     }
 
@@ -334,7 +406,7 @@ public class JpaUserProvider implements UserProvider {
         }
         List<UserEntity> results = query.getResultList();
         List<UserModel> users = new ArrayList<UserModel>();
-        for (UserEntity entity : results) users.add(new UserAdapter(realm, em, entity));
+        for (UserEntity entity : results) users.add(new UserAdapter(session, realm, em, entity));
         return users;
     }
 
@@ -369,12 +441,12 @@ public class JpaUserProvider implements UserProvider {
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, List<UserCredentialModel> input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 
     @Override
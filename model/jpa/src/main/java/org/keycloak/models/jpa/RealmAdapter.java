@@ -633,9 +633,11 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public List<ApplicationModel> getApplications() {
+        // Roles are fetched with the applications, so loading all applications and their roles is a single statement
+        TypedQuery<ApplicationEntity> query = em.createNamedQuery("findApplicationsByRealmWithRoles", ApplicationEntity.class);
+        query.setParameter("realm", realm);
         List<ApplicationModel> list = new ArrayList<ApplicationModel>();
-        if (realm.getApplications() == null) return list;
-        for (ApplicationEntity entity : realm.getApplications()) {
+        for (ApplicationEntity entity : query.getResultList()) {
             list.add(new ApplicationAdapter(this, em, session, entity));
         }
         return list;
@@ -714,7 +716,12 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public ApplicationModel getApplicationByName(String name) {
-        return getApplicationNameMap().get(name);
+        TypedQuery<ApplicationEntity> query = em.createNamedQuery("findApplicationByName", ApplicationEntity.class);
+        query.setParameter("name", name);
+        query.setParameter("realm", realm);
+        List<ApplicationEntity> entities = query.getResultList();
+        if (entities.isEmpty()) return null;
+        return new ApplicationAdapter(this, em, session, entities.get(0));
     }
 
     @Override
@@ -1013,10 +1020,10 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public Set<RoleModel> getRoles() {
+        TypedQuery<RoleEntity> query = em.createNamedQuery("getRealmRoles", RoleEntity.class);
+        query.setParameter("realm", realm);
         Set<RoleModel> list = new HashSet<RoleModel>();
-        Collection<RoleEntity> roles = realm.getRoles();
-        if (roles == null) return list;
-        for (RoleEntity entity : roles) {
+        for (RoleEntity entity : query.getResultList()) {
             list.add(new RoleAdapter(this, em, entity));
         }
         return list;
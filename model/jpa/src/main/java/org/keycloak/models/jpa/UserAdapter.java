@@ -1,6 +1,8 @@
 package org.keycloak.models.jpa;
 
 import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.PasswordHashProvider;
 import org.keycloak.models.PasswordPolicy;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleContainerModel;
@@ -14,7 +16,6 @@ import org.keycloak.models.jpa.entities.UserEntity;
 import org.keycloak.models.jpa.entities.UserRequiredActionEntity;
 import org.keycloak.models.jpa.entities.UserRoleMappingEntity;
 import org.keycloak.models.utils.KeycloakModelUtils;
-import org.keycloak.models.utils.Pbkdf2PasswordEncoder;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
@@ -37,8 +38,10 @@ public class UserAdapter implements UserModel {
     protected UserEntity user;
     protected EntityManager em;
     protected RealmModel realm;
+    protected KeycloakSession session;
 
-    public UserAdapter(RealmModel realm, EntityManager em, UserEntity user) {
+    public UserAdapter(KeycloakSession session, RealmModel realm, EntityManager em, UserEntity user) {
+        this.session = session;
         this.em = em;
         this.user = user;
         this.realm = realm;
@@ -208,6 +211,16 @@ public class UserAdapter implements UserModel {
 
     @Override
     public void updateCredential(UserCredentialModel cred) {
+        setCredential(cred);
+        em.flush();
+    }
+
+    /**
+     * Updates the credential without flushing
+     *
+     * @param cred
+     */
+    void setCredential(UserCredentialModel cred) {
         CredentialEntity credentialEntity = getCredentialEntity(user, cred.getType());
 
         if (credentialEntity == null) {
@@ -222,19 +235,22 @@ public class UserAdapter implements UserModel {
         if (cred.getType().equals(UserCredentialModel.PASSWORD)) {
             byte[] salt = getSalt();
             int hashIterations = 1;
+            String hashAlgorithm = PasswordPolicy.HASH_ALGORITHM_DEFAULT;
             PasswordPolicy policy = realm.getPasswordPolicy();
             if (policy != null) {
                 hashIterations = policy.getHashIterations();
                 if (hashIterations == -1) hashIterations = 1;
+                if (policy.getHashAlgorithm() != null) hashAlgorithm = policy.getHashAlgorithm();
             }
-            credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt).encode(cred.getValue(), hashIterations));
+            PasswordHashProvider hashProvider = session.getProvider(PasswordHashProvider.class, hashAlgorithm);
+            credentialEntity.setValue(hashProvider.encode(cred.getValue(), salt, hashIterations));
+            credentialEntity.setAlgorithm(hashAlgorithm);
             credentialEntity.setSalt(salt);
             credentialEntity.setHashIterations(hashIterations);
         } else {
             credentialEntity.setValue(cred.getValue());
         }
         credentialEntity.setDevice(cred.getDevice());
-        em.flush();
     }
 
     private CredentialEntity getCredentialEntity(UserEntity userEntity, String credType) {
@@ -260,6 +276,7 @@ public class UserAdapter implements UserModel {
                 credModel.setValue(credEntity.getValue());
                 credModel.setSalt(credEntity.getSalt());
                 credModel.setHashIterations(credEntity.getHashIterations());
+                credModel.setAlgorithm(credEntity.getAlgorithm());
 
                 result.add(credModel);
             }
@@ -285,6 +302,7 @@ public class UserAdapter implements UserModel {
         credentialEntity.setSalt(credModel.getSalt());
         credentialEntity.setDevice(credModel.getDevice());
         credentialEntity.setHashIterations(credModel.getHashIterations());
+        credentialEntity.setAlgorithm(credModel.getAlgorithm());
 
         em.flush();
     }
@@ -9,6 +9,8 @@ import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.MapKeyColumn;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -20,6 +22,10 @@ import java.util.Map;
  * @version $Revision: 1 $
  */
 @Entity
+@NamedQueries({
+        @NamedQuery(name="findApplicationByName", query="select app from ApplicationEntity app where app.name = :name and app.realm = :realm"),
+        @NamedQuery(name="findApplicationsByRealmWithRoles", query="select distinct app from ApplicationEntity app left join fetch app.roles where app.realm = :realm")
+})
 public class ApplicationEntity extends ClientEntity {
 
     @Column(name="SURROGATE_AUTH_REQUIRED")
@@ -37,7 +43,7 @@ public class ApplicationEntity extends ClientEntity {
     @Column(name="NODE_REREG_TIMEOUT")
     private int nodeReRegistrationTimeout;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade ={CascadeType.REMOVE}, orphanRemoval = true, mappedBy = "application")
+    @OneToMany(fetch = FetchType.LAZY, cascade ={CascadeType.REMOVE}, orphanRemoval = true, mappedBy = "application")
     Collection<RoleEntity> roles = new ArrayList<RoleEntity>();
 
     @OneToMany(fetch = FetchType.LAZY, cascade ={CascadeType.REMOVE}, orphanRemoval = true)
@@ -1,5 +1,6 @@
 package org.keycloak.models.jpa.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.CollectionTable;
 import javax.persistence.Column;
@@ -28,6 +29,7 @@ import java.util.Set;
  * @version $Revision: 1 $
  */
 @Entity
+@Cacheable
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @Table(name="CLIENT", uniqueConstraints = {@UniqueConstraint(columnNames = {"REALM_ID", "NAME"})})
 public abstract class ClientEntity {
@@ -37,6 +37,8 @@ public class CredentialEntity {
     protected byte[] salt;
     @Column(name="HASH_ITERATIONS")
     protected int hashIterations;
+    @Column(name="ALGORITHM")
+    protected String algorithm;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="USER_ID")
@@ -97,4 +99,12 @@ public class CredentialEntity {
     public void setHashIterations(int hashIterations) {
         this.hashIterations = hashIterations;
     }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
 }
@@ -1,5 +1,6 @@
 package org.keycloak.models.jpa.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.CollectionTable;
 import javax.persistence.Column;
@@ -29,6 +30,7 @@ import java.util.Set;
  */
 @Table(name="REALM")
 @Entity
+@Cacheable
 @NamedQueries({
         @NamedQuery(name="getAllRealms", query="select realm from RealmEntity realm"),
         @NamedQuery(name="getRealmByName", query="select realm from RealmEntity realm where realm.name = :name"),
@@ -3,6 +3,7 @@ package org.keycloak.models.mongo.keycloak.adapters;
 import org.keycloak.connections.mongo.api.context.MongoStoreInvocationContext;
 import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.PasswordHashProvider;
 import org.keycloak.models.PasswordPolicy;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
@@ -188,12 +189,16 @@ public class UserAdapter extends AbstractMongoAdapter<MongoUserEntity> implement
         if (cred.getType().equals(UserCredentialModel.PASSWORD)) {
             byte[] salt = Pbkdf2PasswordEncoder.getSalt();
             int hashIterations = 1;
+            String hashAlgorithm = PasswordPolicy.HASH_ALGORITHM_DEFAULT;
             PasswordPolicy policy = realm.getPasswordPolicy();
             if (policy != null) {
                 hashIterations = policy.getHashIterations();
                 if (hashIterations == -1) hashIterations = 1;
+                if (policy.getHashAlgorithm() != null) hashAlgorithm = policy.getHashAlgorithm();
             }
-            credentialEntity.setValue(new Pbkdf2PasswordEncoder(salt).encode(cred.getValue(), hashIterations));
+            PasswordHashProvider hashProvider = session.getProvider(PasswordHashProvider.class, hashAlgorithm);
+            credentialEntity.setValue(hashProvider.encode(cred.getValue(), salt, hashIterations));
+            credentialEntity.setAlgorithm(hashAlgorithm);
             credentialEntity.setSalt(salt);
             credentialEntity.setHashIterations(hashIterations);
         } else {
@@ -225,6 +230,7 @@ public class UserAdapter extends AbstractMongoAdapter<MongoUserEntity> implement
             credModel.setValue(credEntity.getValue());
             credModel.setSalt(credEntity.getSalt());
             credModel.setHashIterations(credEntity.getHashIterations());
+            credModel.setAlgorithm(credEntity.getAlgorithm());
 
             result.add(credModel);
         }
@@ -246,6 +252,7 @@ public class UserAdapter extends AbstractMongoAdapter<MongoUserEntity> implement
         credentialEntity.setSalt(credModel.getSalt());
         credentialEntity.setDevice(credModel.getDevice());
         credentialEntity.setHashIterations(credModel.getHashIterations());
+        credentialEntity.setAlgorithm(credModel.getAlgorithm());
 
 
         getMongoStore().updateEntity(user, invocationContext);
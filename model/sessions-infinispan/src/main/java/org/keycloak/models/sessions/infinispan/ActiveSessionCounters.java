@@ -0,0 +1,142 @@
+package org.keycloak.models.sessions.infinispan;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Number of active user sessions for each client, kept per realm so session stats don't require a scan of the session
+ * cache. Counters are updated when transactions that attach or detach client sessions, or remove user sessions, are
+ * committed on this node. Changes made on other nodes aren't seen, and a user session with more than one client session
+ * for the same client is counted more than once, so counters drift. To correct this counters for a realm are replaced
+ * with counts from the cache when they're older than maxAge (ms), or after expired sessions are removed.
+ */
+public class ActiveSessionCounters {
+
+    private final ConcurrentMap<String, RealmCounters> realms = new ConcurrentHashMap<String, RealmCounters>();
+    private final long maxAge;
+
+    public ActiveSessionCounters(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns the number of active user sessions for each client with active sessions, or null if the counters for the
+     * realm have to be reconciled first
+     *
+     * @param realm
+     * @return
+     */
+    public Map<String, Integer> get(String realm) {
+        RealmCounters counters = realms.get(realm);
+        if (counters == null || System.currentTimeMillis() - counters.time > maxAge) {
+            return null;
+        }
+
+        Map<String, Integer> stats = new HashMap<String, Integer>();
+        for (Map.Entry<String, AtomicInteger> e : counters.clients.entrySet()) {
+            int count = e.getValue().get();
+            if (count > 0) {
+                stats.put(e.getKey(), count);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Replaces the counters for the realm
+     *
+     * @param realm
+     * @param counts number of active user sessions for each client
+     * @return
+     */
+    public Map<String, Integer> reconcile(String realm, Map<String, Integer> counts) {
+        RealmCounters counters = new RealmCounters();
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            counters.clients.put(e.getKey(), new AtomicInteger(e.getValue()));
+        }
+        realms.put(realm, counters);
+        return new HashMap<String, Integer>(counts);
+    }
+
+    public void invalidate(String realm) {
+        realms.remove(realm);
+    }
+
+    public Changes changes() {
+        return new Changes();
+    }
+
+    private void add(String realm, String client, int delta) {
+        RealmCounters counters = realms.get(realm);
+        if (counters == null) {
+            // Not counted yet, the next get reconciles the realm
+            return;
+        }
+
+        AtomicInteger count = counters.clients.get(client);
+        if (count == null) {
+            AtomicInteger existing = counters.clients.putIfAbsent(client, count = new AtomicInteger());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.addAndGet(delta);
+    }
+
+    /**
+     * Changes to the counters made by a transaction, applied when the transaction is committed
+     */
+    public class Changes {
+
+        private final Map<String, Map<String, Integer>> deltas = new HashMap<String, Map<String, Integer>>();
+        private final Set<String> invalidated = new HashSet<String>();
+
+        public void add(String realm, String client, int delta) {
+            Map<String, Integer> clients = deltas.get(realm);
+            if (clients == null) {
+                clients = new HashMap<String, Integer>();
+                deltas.put(realm, clients);
+            }
+            Integer current = clients.get(client);
+            clients.put(client, current != null ? current + delta : delta);
+        }
+
+        public void invalidate(String realm) {
+            invalidated.add(realm);
+        }
+
+        public void apply() {
+            for (Map.Entry<String, Map<String, Integer>> r : deltas.entrySet()) {
+                if (invalidated.contains(r.getKey())) {
+                    continue;
+                }
+                for (Map.Entry<String, Integer> c : r.getValue().entrySet()) {
+                    ActiveSessionCounters.this.add(r.getKey(), c.getKey(), c.getValue());
+                }
+            }
+            for (String realm : invalidated) {
+                ActiveSessionCounters.this.invalidate(realm);
+            }
+            clear();
+        }
+
+        public void clear() {
+            deltas.clear();
+            invalidated.clear();
+        }
+
+    }
+
+    private static class RealmCounters {
+
+        private final long time = System.currentTimeMillis();
+        private final ConcurrentMap<String, AtomicInteger> clients = new ConcurrentHashMap<String, AtomicInteger>();
+
+    }
+
+}
@@ -9,7 +9,6 @@ import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
 
-import java.util.HashMap;
 import java.util.Set;
 
 /**
@@ -136,17 +135,13 @@ public class ClientSessionAdapter implements ClientSessionModel {
 
     @Override
     public void setNote(String name, String value) {
-        if (entity.getNotes() == null) {
-            entity.setNotes(new HashMap<String, String>());
-        }
-        entity.getNotes().put(name, value);
+        entity.setNote(name, value);
         update();
     }
 
     @Override
     public void removeNote(String name) {
-        if (entity.getNotes() != null) {
-            entity.getNotes().remove(name);
+        if (entity.removeNote(name)) {
             update();
         }
     }
@@ -155,4 +150,8 @@ public class ClientSessionAdapter implements ClientSessionModel {
         provider.getTx().replace(cache, entity.getId(), entity);
     }
 
+    ClientSessionEntity getEntity() {
+        return entity;
+    }
+
 }
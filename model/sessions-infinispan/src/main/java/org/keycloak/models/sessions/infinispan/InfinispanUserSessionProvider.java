@@ -1,7 +1,12 @@
 package org.keycloak.models.sessions.infinispan;
 
+import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.context.Flag;
 import org.infinispan.distexec.mapreduce.MapReduceTask;
+import org.jboss.logging.Logger;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.KeycloakSession;
@@ -10,13 +15,17 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.UserSessionVisitor;
 import org.keycloak.models.UsernameLoginFailureModel;
 import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
 import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+import org.keycloak.models.sessions.infinispan.distexec.SessionLookup;
+import org.keycloak.models.sessions.infinispan.entities.UsedOTPEntity;
 import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
 import org.keycloak.models.sessions.infinispan.mapreduce.ClientSessionMapper;
+import org.keycloak.models.sessions.infinispan.mapreduce.DistinctCountReducer;
 import org.keycloak.models.sessions.infinispan.mapreduce.FirstResultReducer;
 import org.keycloak.models.sessions.infinispan.mapreduce.LargestResultReducer;
 import org.keycloak.models.sessions.infinispan.mapreduce.SessionMapper;
@@ -25,29 +34,42 @@ import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.RealmInfoUtil;
 import org.keycloak.util.Time;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class InfinispanUserSessionProvider implements UserSessionProvider {
 
+    private static final Logger log = Logger.getLogger(InfinispanUserSessionProvider.class);
+
+    private static final int VISIT_PAGE_SIZE = 100;
+
     private final KeycloakSession session;
     private final Cache<String, SessionEntity> sessionCache;
     private final Cache<LoginFailureKey, LoginFailureEntity> loginFailureCache;
     private final InfinispanKeycloakTransaction tx;
+    private final int lastSessionRefreshWindow;
+    private final ActiveSessionCounters counters;
+    private final SessionLookup sessionLookup;
 
-    public InfinispanUserSessionProvider(KeycloakSession session, Cache<String, SessionEntity> sessionCache, Cache<LoginFailureKey, LoginFailureEntity> loginFailureCache) {
+    public InfinispanUserSessionProvider(KeycloakSession session, Cache<String, SessionEntity> sessionCache, Cache<LoginFailureKey, LoginFailureEntity> loginFailureCache, int lastSessionRefreshWindow, ActiveSessionCounters counters, SessionLookup sessionLookup) {
         this.session = session;
         this.sessionCache = sessionCache;
         this.loginFailureCache = loginFailureCache;
+        this.lastSessionRefreshWindow = lastSessionRefreshWindow;
+        this.counters = counters;
+        this.sessionLookup = sessionLookup;
         this.tx = new InfinispanKeycloakTransaction();
 
         session.getTransaction().enlistAfterCompletion(tx);
@@ -130,6 +152,40 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
 
     @Override
     public List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults) {
+        List<String> ids = getUserSessionIds(realm, client, firstResult, maxResults);
+        Map<String, SessionEntity> sessions = getSessions(ids);
+
+        List<UserSessionModel> userSessions = new LinkedList<UserSessionModel>();
+        for (String id : ids) {
+            UserSessionEntity userSessionEntity = (UserSessionEntity) sessions.get(id);
+            if (userSessionEntity != null) {
+                userSessions.add(wrap(realm, userSessionEntity));
+            }
+        }
+
+        return userSessions;
+    }
+
+    /**
+     * Finds the ids of the sessions with a single map/reduce, then loads the sessions a page at a time while visiting, so
+     * only the ids are kept for the whole visit. Sessions removed while visiting are skipped.
+     */
+    @Override
+    public void visitUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, UserSessionVisitor visitor) {
+        List<String> ids = new ArrayList<String>(getUserSessionIds(realm, client, firstResult, maxResults));
+        for (int i = 0; i < ids.size(); i += VISIT_PAGE_SIZE) {
+            List<String> page = ids.subList(i, Math.min(i + VISIT_PAGE_SIZE, ids.size()));
+            Map<String, SessionEntity> sessions = getSessions(page);
+            for (String id : page) {
+                UserSessionEntity userSessionEntity = (UserSessionEntity) sessions.get(id);
+                if (userSessionEntity != null) {
+                    visitor.visit(wrap(realm, userSessionEntity));
+                }
+            }
+        }
+    }
+
+    private List<String> getUserSessionIds(RealmModel realm, ClientModel client, int firstResult, int maxResults) {
         Map<String, Integer> map = new MapReduceTask(sessionCache)
                 .mappedWith(ClientSessionMapper.create(realm.getId()).client(client.getId()).emitUserSessionAndTimestamp())
                 .reducedWith(new LargestResultReducer())
@@ -161,15 +217,11 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             sessionTimestamps = sessionTimestamps.subList(firstResult, toIndex);
         }
 
-        List<UserSessionModel> userSessions = new LinkedList<UserSessionModel>();
+        List<String> ids = new LinkedList<String>();
         for (Map.Entry<String, Integer> e : sessionTimestamps) {
-            UserSessionEntity userSessionEntity = (UserSessionEntity) sessionCache.get(e.getKey());
-            if (userSessionEntity != null) {
-                userSessions.add(wrap(realm, userSessionEntity));
-            }
+            ids.add(e.getKey());
         }
-
-        return userSessions;
+        return ids;
     }
 
     @Override
@@ -181,6 +233,20 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         return map.size();
     }
 
+    @Override
+    public Map<String, Integer> getActiveUserSessionStats(RealmModel realm) {
+        Map<String, Integer> stats = counters.get(realm.getId());
+        if (stats == null) {
+            // Counts all clients with one task, rather than one task per client
+            Map<String, Integer> map = new MapReduceTask(sessionCache)
+                    .mappedWith(ClientSessionMapper.create(realm.getId()).emitClientAndUserSession())
+                    .reducedWith(new DistinctCountReducer()).execute();
+
+            stats = counters.reconcile(realm.getId(), map);
+        }
+        return stats;
+    }
+
     @Override
     public void removeUserSession(RealmModel realm, UserSessionModel session) {
         removeUserSession(realm, session.getId());
@@ -221,6 +287,9 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         for (String id : map.keySet()) {
             tx.remove(sessionCache, id);
         }
+
+        // Sessions expire without being removed from the counters, so they're counted again on the next request
+        tx.invalidateCounters(realm.getId());
     }
 
     @Override
@@ -233,6 +302,8 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         for (String id : ids.keySet()) {
             sessionCache.remove(id);
         }
+
+        counters.invalidate(realm.getId());
     }
 
     @Override
@@ -251,6 +322,16 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         return wrap(key, entity);
     }
 
+    @Override
+    public boolean markOTPUsed(RealmModel realm, String userId, long interval, int lifespan) {
+        // Not added through the transaction, so concurrent requests with the same one-time password can't both succeed
+        String key = "otp:" + userId + ":" + interval;
+        UsedOTPEntity entity = new UsedOTPEntity();
+        entity.setId(key);
+        entity.setRealm(realm.getId());
+        return sessionCache.putIfAbsent(key, entity, lifespan, TimeUnit.SECONDS) == null;
+    }
+
     @Override
     public void onRealmRemoved(RealmModel realm) {
         removeUserSessions(realm);
@@ -266,6 +347,8 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         for (String id : map.keySet()) {
             tx.remove(sessionCache, id);
         }
+
+        tx.invalidateCounters(realm.getId());
     }
 
     @Override
@@ -280,40 +363,43 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
     public void close() {
     }
 
+    /**
+     * Returns the sessions with the given ids that exist, see {@link SessionLookup}
+     *
+     * @param ids
+     * @return
+     */
+    Map<String, SessionEntity> getSessions(Collection<String> ids) {
+        return sessionLookup.getSessions(sessionCache, ids);
+    }
+
     void attachSession(UserSessionModel userSession, ClientSessionModel clientSession) {
         UserSessionEntity entity = ((UserSessionAdapter) userSession).getEntity();
-        String clientSessionId = clientSession.getId();
-        if (entity.getClientSessions() == null) {
-            entity.setClientSessions(new HashSet<String>());
-        }
-        if (!entity.getClientSessions().contains(clientSessionId)) {
-            entity.getClientSessions().add(clientSessionId);
+        if (entity.addClientSession(clientSession.getId())) {
             tx.replace(sessionCache, entity.getId(), entity);
+            tx.updateCounter(entity.getRealm(), ((ClientSessionAdapter) clientSession).getEntity().getClient(), 1);
         }
     }
 
     void dettachSession(UserSessionModel userSession, ClientSessionModel clientSession) {
         UserSessionEntity entity = ((UserSessionAdapter) userSession).getEntity();
-        String clientSessionId = clientSession.getId();
-        if (entity.getClientSessions() != null && entity.getClientSessions().contains(clientSessionId)) {
-            entity.getClientSessions().remove(clientSessionId);
-            if (entity.getClientSessions().isEmpty()) {
-                entity.setClientSessions(null);
-            }
+        if (entity.removeClientSession(clientSession.getId())) {
             tx.replace(sessionCache, entity.getId(), entity);
+            tx.updateCounter(entity.getRealm(), ((ClientSessionAdapter) clientSession).getEntity().getClient(), -1);
         }
     }
 
     void removeUserSession(RealmModel realm, String userSessionId) {
         tx.remove(sessionCache, userSessionId);
 
-        Map<String, String> map = new MapReduceTask(sessionCache)
-                .mappedWith(ClientSessionMapper.create(realm.getId()).userSession(userSessionId).emitKey())
+        Map<String, ClientSessionEntity> map = new MapReduceTask(sessionCache)
+                .mappedWith(ClientSessionMapper.create(realm.getId()).userSession(userSessionId))
                 .reducedWith(new FirstResultReducer())
                 .execute();
 
-        for (String id : map.keySet()) {
-            tx.remove(sessionCache, id);
+        for (ClientSessionEntity clientSession : map.values()) {
+            tx.remove(sessionCache, clientSession.getId());
+            tx.updateCounter(realm.getId(), clientSession.getClient(), -1);
         }
     }
 
@@ -321,6 +407,10 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         return tx;
     }
 
+    int getLastSessionRefreshWindow() {
+        return lastSessionRefreshWindow;
+    }
+
     UserSessionModel wrap(RealmModel realm, UserSessionEntity entity) {
         return entity != null ? new UserSessionAdapter(session, this, sessionCache, realm, entity) : null;
     }
@@ -355,6 +445,7 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
         private boolean active;
         private boolean rollback;
         private Map<Object, CacheTask> tasks = new HashMap<Object, CacheTask>();
+        private ActiveSessionCounters.Changes counterChanges = counters.changes();
 
         @Override
         public void begin() {
@@ -367,14 +458,37 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
                 throw new RuntimeException("Rollback only!");
             }
 
+            // Writes to clustered caches are sent concurrently, and then we wait for all of them to complete
+            List<Future<?>> futures = new LinkedList<Future<?>>();
+            for (CacheTask task : tasks.values()) {
+                Future<?> future = task.execute();
+                if (future != null) {
+                    futures.add(future);
+                }
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+
             for (CacheTask task : tasks.values()) {
-                task.execute();
+                task.committed();
             }
+
+            counterChanges.apply();
         }
 
         @Override
         public void rollback() {
             tasks.clear();
+            counterChanges.clear();
         }
 
         @Override
@@ -420,6 +534,14 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
             tasks.put(key, new CacheTask(cache, CacheOperation.REMOVE, key, null));
         }
 
+        public void updateCounter(String realm, String client, int delta) {
+            counterChanges.add(realm, client, delta);
+        }
+
+        public void invalidateCounters(String realm) {
+            counterChanges.invalidate(realm);
+        }
+
         public class CacheTask {
             private Cache cache;
             private CacheOperation operation;
@@ -433,18 +555,51 @@ public class InfinispanUserSessionProvider implements UserSessionProvider {
                 this.value = value;
             }
 
-            public void execute() {
+            /**
+             * Executes the task. Returns a future if the cache is clustered, or null if the task has completed.
+             *
+             * @return
+             */
+            public Future<?> execute() {
+                boolean async = cache.getCacheConfiguration().clustering().cacheMode().isClustered();
+                AdvancedCache c = cache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES);
+
                 switch (operation) {
                     case ADD:
-                        cache.put(key, value);
+                        if (async) {
+                            return c.putAsync(key, value);
+                        }
+                        c.put(key, value);
                         break;
                     case REMOVE:
-                        cache.remove(key);
+                        if (async) {
+                            return c.removeAsync(key);
+                        }
+                        c.remove(key);
                         break;
                     case REPLACE:
-                        cache.replace(key, value);
+                        if (value instanceof DeltaAware) {
+                            // Only send the changes, the delta is merged with the existing session on each node
+                            Delta delta = ((DeltaAware) value).delta();
+                            if (async) {
+                                return c.putAsync(key, delta);
+                            }
+                            c.put(key, delta);
+                        } else {
+                            if (async) {
+                                return c.replaceAsync(key, value);
+                            }
+                            c.replace(key, value);
+                        }
                         break;
                 }
+                return null;
+            }
+
+            public void committed() {
+                if (value instanceof DeltaAware) {
+                    ((DeltaAware) value).commit();
+                }
             }
         }
 
@@ -9,6 +9,7 @@ import org.keycloak.models.UserSessionProvider;
 import org.keycloak.models.UserSessionProviderFactory;
 import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
 import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+import org.keycloak.models.sessions.infinispan.distexec.SessionLookup;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
 
 /**
@@ -16,16 +17,28 @@ import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
  */
 public class InfinispanUserSessionProviderFactory implements UserSessionProviderFactory {
 
+    private int lastSessionRefreshWindow;
+    private ActiveSessionCounters counters;
+    private SessionLookup sessionLookup;
+
     @Override
     public UserSessionProvider create(KeycloakSession session) {
         InfinispanConnectionProvider connections = session.getProvider(InfinispanConnectionProvider.class);
         Cache<String, SessionEntity> cache = connections.getCache(InfinispanConnectionProvider.SESSION_CACHE_NAME);
         Cache<LoginFailureKey, LoginFailureEntity> loginFailures = connections.getCache(InfinispanConnectionProvider.LOGIN_FAILURE_CACHE_NAME);
-        return new InfinispanUserSessionProvider(session, cache, loginFailures);
+        return new InfinispanUserSessionProvider(session, cache, loginFailures, lastSessionRefreshWindow, counters, sessionLookup);
     }
 
     @Override
     public void init(Config.Scope config) {
+        // Seconds lastSessionRefresh can be behind on other nodes before a refresh is replicated
+        lastSessionRefreshWindow = config.getInt("lastSessionRefreshWindow", 0);
+
+        // Seconds before the number of active sessions per client is counted again, to include changes from other nodes
+        counters = new ActiveSessionCounters(config.getInt("sessionStatsMaxAge", 60) * 1000L);
+
+        // Minimum number of sessions fetched from their owners with one request per owner, rather than a get per session
+        sessionLookup = new SessionLookup(config.getInt("distributedGetThreshold", 10));
     }
 
     @Override
@@ -35,6 +48,7 @@ public class InfinispanUserSessionProviderFactory implements UserSessionProvider
 
     @Override
     public void close() {
+        sessionLookup.close();
     }
 
     @Override
@@ -11,7 +11,6 @@ import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
 import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -75,7 +74,9 @@ public class UserSessionAdapter implements UserSessionModel {
 
     public void setLastSessionRefresh(int lastSessionRefresh) {
         entity.setLastSessionRefresh(lastSessionRefresh);
-        update();
+        if (lastSessionRefresh - entity.getReplicatedLastSessionRefresh() >= provider.getLastSessionRefreshWindow()) {
+            update();
+        }
     }
 
     @Override
@@ -85,17 +86,13 @@ public class UserSessionAdapter implements UserSessionModel {
 
     @Override
     public void setNote(String name, String value) {
-        if (entity.getNotes() == null) {
-            entity.setNotes(new HashMap<String, String>());
-        }
-        entity.getNotes().put(name, value);
+        entity.setNote(name, value);
         update();
     }
 
     @Override
     public void removeNote(String name) {
-        if (entity.getNotes() != null) {
-            entity.getNotes().remove(name);
+        if (entity.removeNote(name)) {
             update();
         }
     }
@@ -115,11 +112,8 @@ public class UserSessionAdapter implements UserSessionModel {
     public List<ClientSessionModel> getClientSessions() {
         if (entity.getClientSessions() != null) {
             List<ClientSessionEntity> clientSessions = new LinkedList<ClientSessionEntity>();
-            for (String c : entity.getClientSessions()) {
-                ClientSessionEntity clientSession = (ClientSessionEntity) cache.get(c);
-                if (clientSession != null) {
-                    clientSessions.add(clientSession);
-                }
+            for (SessionEntity clientSession : provider.getSessions(entity.getClientSessions()).values()) {
+                clientSessions.add((ClientSessionEntity) clientSession);
             }
             return provider.wrapClientSessions(realm, clientSessions);
         } else {
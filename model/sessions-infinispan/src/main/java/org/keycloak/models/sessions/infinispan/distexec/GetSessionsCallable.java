@@ -0,0 +1,40 @@
+package org.keycloak.models.sessions.infinispan.distexec;
+
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Returns the sessions with the given ids. Executed on each node with the ids the node owns, so fetching multiple
+ * sessions only requires one round trip per owner rather than one per session.
+ */
+public class GetSessionsCallable implements DistributedCallable<String, SessionEntity, Map<String, SessionEntity>>, Serializable {
+
+    private transient Cache<String, SessionEntity> cache;
+
+    private transient Set<String> ids;
+
+    @Override
+    public void setEnvironment(Cache<String, SessionEntity> cache, Set<String> ids) {
+        this.cache = cache;
+        this.ids = ids;
+    }
+
+    @Override
+    public Map<String, SessionEntity> call() throws Exception {
+        Map<String, SessionEntity> sessions = new HashMap<String, SessionEntity>();
+        for (String id : ids) {
+            SessionEntity session = cache.get(id);
+            if (session != null) {
+                sessions.put(id, session);
+            }
+        }
+        return sessions;
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.keycloak.models.sessions.infinispan.distexec;
+
+import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.jboss.logging.Logger;
+import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Looks up sessions by id. With a distributed cache and at least distributedGetThreshold ids the sessions are fetched
+ * with {@link GetSessionsCallable}, one request to each node that owns some of them rather than one request per
+ * session. Fewer ids, or a cache that isn't distributed, are looked up with a get per id.
+ *
+ * One executor is shared by all lookups. It's created with the first distributed lookup and shut down by {@link #close()}.
+ */
+public class SessionLookup {
+
+    private static final Logger log = Logger.getLogger(SessionLookup.class);
+
+    private final int distributedGetThreshold;
+
+    // guarded by this
+    private Cache<String, SessionEntity> executorCache;
+    private DefaultExecutorService executor;
+
+    public SessionLookup(int distributedGetThreshold) {
+        this.distributedGetThreshold = distributedGetThreshold;
+    }
+
+    /**
+     * Returns the sessions with the given ids that exist
+     *
+     * @param cache
+     * @param ids
+     * @return
+     */
+    public Map<String, SessionEntity> getSessions(Cache<String, SessionEntity> cache, Collection<String> ids) {
+        if (ids.size() >= distributedGetThreshold && ids.size() > 1 && cache.getCacheConfiguration().clustering().cacheMode().isDistributed()) {
+            try {
+                List<Future<Map<String, SessionEntity>>> futures = getExecutor(cache).submitEverywhere(new GetSessionsCallable(), ids.toArray(new String[ids.size()]));
+
+                Map<String, SessionEntity> sessions = new HashMap<String, SessionEntity>();
+                for (Future<Map<String, SessionEntity>> future : futures) {
+                    sessions.putAll(future.get());
+                }
+                return sessions;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                log.debug("Failed to get sessions from owners, getting sessions individually", e);
+            }
+        }
+
+        Map<String, SessionEntity> sessions = new HashMap<String, SessionEntity>();
+        for (String id : ids) {
+            SessionEntity session = cache.get(id);
+            if (session != null) {
+                sessions.put(id, session);
+            }
+        }
+        return sessions;
+    }
+
+    synchronized DefaultExecutorService getExecutor(Cache<String, SessionEntity> cache) {
+        if (executor != null && executorCache != cache) {
+            // Cache was restarted, the executor is bound to the previous instance
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (executor == null) {
+            executor = new DefaultExecutorService(cache);
+            executorCache = cache;
+        }
+        return executor;
+    }
+
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            executorCache = null;
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.sessions.infinispan.marshalling.ClientSessionDeltaExternalizer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to a client session. Contains all the small fields of the session, the roles only if they have changed and
+ * only the notes that have changed (a null note value means the note was removed). A full delta contains all roles and
+ * notes.
+ *
+ * As with {@link UserSessionDelta} a delta for a key that has no client session is ignored, so a client session that was
+ * removed concurrently is never brought back to life.
+ */
+@SerializeWith(ClientSessionDeltaExternalizer.class)
+public class ClientSessionDelta implements Delta {
+
+    private String id;
+    private String realm;
+    private String client;
+    private String userSession;
+    private String authMethod;
+    private String redirectUri;
+    private String state;
+    private int timestamp;
+    private ClientSessionModel.Action action;
+
+    private boolean full;
+    private boolean rolesChanged;
+    private Set<String> roles;
+    private Map<String, String> notes;
+
+    private transient ClientSessionEntity source;
+
+    public ClientSessionDelta() {
+    }
+
+    ClientSessionDelta(ClientSessionEntity entity, boolean full, boolean rolesChanged, Map<String, String> notes) {
+        this.source = entity;
+        this.id = entity.getId();
+        this.realm = entity.getRealm();
+        this.client = entity.getClient();
+        this.userSession = entity.getUserSession();
+        this.authMethod = entity.getAuthMethod();
+        this.redirectUri = entity.getRedirectUri();
+        this.state = entity.getState();
+        this.timestamp = entity.getTimestamp();
+        this.action = entity.getAction();
+        this.full = full;
+        this.rolesChanged = rolesChanged;
+        this.roles = rolesChanged && entity.getRoles() != null ? new HashSet<String>(entity.getRoles()) : null;
+        this.notes = notes != null ? new HashMap<String, String>(notes) : null;
+    }
+
+    @Override
+    public DeltaAware merge(DeltaAware d) {
+        if (d != null && d == source) {
+            // Merged into the session the delta was created from (non-clustered cache)
+            return d;
+        }
+
+        if (!(d instanceof ClientSessionEntity)) {
+            // Client session was removed, or never existed on this node
+            return null;
+        }
+
+        ClientSessionEntity entity = (ClientSessionEntity) d;
+        entity.apply(this);
+        return entity;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    public void setClient(String client) {
+        this.client = client;
+    }
+
+    public String getUserSession() {
+        return userSession;
+    }
+
+    public void setUserSession(String userSession) {
+        this.userSession = userSession;
+    }
+
+    public String getAuthMethod() {
+        return authMethod;
+    }
+
+    public void setAuthMethod(String authMethod) {
+        this.authMethod = authMethod;
+    }
+
+    public String getRedirectUri() {
+        return redirectUri;
+    }
+
+    public void setRedirectUri(String redirectUri) {
+        this.redirectUri = redirectUri;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public int getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(int timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public ClientSessionModel.Action getAction() {
+        return action;
+    }
+
+    public void setAction(ClientSessionModel.Action action) {
+        this.action = action;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public boolean isRolesChanged() {
+        return rolesChanged;
+    }
+
+    public void setRolesChanged(boolean rolesChanged) {
+        this.rolesChanged = rolesChanged;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Set<String> roles) {
+        this.roles = roles;
+    }
+
+    public Map<String, String> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(Map<String, String> notes) {
+        this.notes = notes;
+    }
+
+}
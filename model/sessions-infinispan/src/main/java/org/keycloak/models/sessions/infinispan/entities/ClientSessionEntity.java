@@ -1,14 +1,23 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.SerializeWith;
 import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.sessions.infinispan.marshalling.ClientSessionEntityExternalizer;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Client sessions keep track of changes made since they were last replicated, see {@link ClientSessionDelta}.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class ClientSessionEntity extends SessionEntity {
+@SerializeWith(ClientSessionEntityExternalizer.class)
+public class ClientSessionEntity extends SessionEntity implements DeltaAware {
 
     private String client;
 
@@ -27,6 +36,10 @@ public class ClientSessionEntity extends SessionEntity {
     private Set<String> roles;
     private Map<String, String> notes;
 
+    private transient boolean replicated;
+    private transient boolean rolesChanged;
+    private transient Map<String, String> changedNotes;
+
     public String getClient() {
         return client;
     }
@@ -87,8 +100,9 @@ public class ClientSessionEntity extends SessionEntity {
         return roles;
     }
 
-    public void setRoles(Set<String> roles) {
+    public synchronized void setRoles(Set<String> roles) {
         this.roles = roles;
+        this.rolesChanged = true;
     }
 
     public Map<String, String> getNotes() {
@@ -98,4 +112,84 @@ public class ClientSessionEntity extends SessionEntity {
     public void setNotes(Map<String, String> notes) {
         this.notes = notes;
     }
+
+    public synchronized void setNote(String name, String value) {
+        if (notes == null) {
+            notes = new HashMap<String, String>();
+        }
+        notes.put(name, value);
+
+        if (changedNotes == null) {
+            changedNotes = new HashMap<String, String>();
+        }
+        changedNotes.put(name, value);
+    }
+
+    public synchronized boolean removeNote(String name) {
+        if (notes == null || !notes.containsKey(name)) {
+            return false;
+        }
+        notes.remove(name);
+
+        if (changedNotes == null) {
+            changedNotes = new HashMap<String, String>();
+        }
+        changedNotes.put(name, null);
+        return true;
+    }
+
+    /**
+     * Returns the changes since the session was last replicated, or the whole session if it has never been replicated
+     *
+     * @return
+     */
+    @Override
+    public synchronized Delta delta() {
+        if (!replicated) {
+            return new ClientSessionDelta(this, true, true, notes);
+        } else {
+            return new ClientSessionDelta(this, false, rolesChanged, changedNotes);
+        }
+    }
+
+    @Override
+    public synchronized void commit() {
+        replicated = true;
+        rolesChanged = false;
+        changedNotes = null;
+    }
+
+    synchronized void apply(ClientSessionDelta delta) {
+        setId(delta.getId());
+        setRealm(delta.getRealm());
+        client = delta.getClient();
+        userSession = delta.getUserSession();
+        authMethod = delta.getAuthMethod();
+        redirectUri = delta.getRedirectUri();
+        state = delta.getState();
+        timestamp = delta.getTimestamp();
+        action = delta.getAction();
+
+        if (delta.isRolesChanged()) {
+            roles = delta.getRoles() != null ? new HashSet<String>(delta.getRoles()) : null;
+        }
+
+        if (delta.isFull()) {
+            notes = delta.getNotes() != null ? new HashMap<String, String>(delta.getNotes()) : null;
+        } else if (delta.getNotes() != null) {
+            if (notes == null) {
+                notes = new HashMap<String, String>();
+            }
+            for (Map.Entry<String, String> e : delta.getNotes().entrySet()) {
+                if (e.getValue() != null) {
+                    notes.put(e.getKey(), e.getValue());
+                } else {
+                    notes.remove(e.getKey());
+                }
+            }
+        }
+
+        commit();
+    }
+
 }
@@ -1,8 +1,12 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.sessions.infinispan.marshalling.LoginFailureEntityExternalizer;
+
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
+@SerializeWith(LoginFailureEntityExternalizer.class)
 public class LoginFailureEntity {
 
     private String username;
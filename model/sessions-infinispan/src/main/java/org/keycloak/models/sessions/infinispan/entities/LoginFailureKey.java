@@ -1,8 +1,12 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.sessions.infinispan.marshalling.LoginFailureKeyExternalizer;
+
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
+@SerializeWith(LoginFailureKeyExternalizer.class)
 public class LoginFailureKey {
 
     private final String realm;
@@ -13,6 +17,14 @@ public class LoginFailureKey {
         this.username = username;
     }
 
+    public String getRealm() {
+        return realm;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,8 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+/**
+ * A time-based one-time password that has been used. Stored in the session cache with a lifespan, so it's removed when
+ * the one-time password expires. It's not removed when all sessions for the realm are removed.
+ */
+public class UsedOTPEntity extends SessionEntity {
+}
@@ -0,0 +1,194 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.SerializeWith;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.marshalling.UserSessionDeltaExternalizer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to a user session. Contains all the small fields of the session, but only the notes and client sessions that
+ * have changed since the session was last replicated (a null note value means the note was removed). A full delta
+ * contains all notes and client sessions.
+ *
+ * A delta is only merged into an existing session. Merging a delta for a key that has no session returns null, which
+ * Infinispan doesn't store, so a session that was removed concurrently is never brought back to life. Deltas for the
+ * same session are merged in the order they are applied, a later value replaces an earlier one.
+ */
+@SerializeWith(UserSessionDeltaExternalizer.class)
+public class UserSessionDelta implements Delta {
+
+    private String id;
+    private String realm;
+    private String user;
+    private String loginUsername;
+    private String ipAddress;
+    private String authMethod;
+    private boolean rememberMe;
+    private int started;
+    private int lastSessionRefresh;
+    private UserSessionModel.State state;
+
+    private boolean full;
+    private Map<String, String> notes;
+    private Set<String> addedClientSessions;
+    private Set<String> removedClientSessions;
+
+    private transient UserSessionEntity source;
+
+    public UserSessionDelta() {
+    }
+
+    UserSessionDelta(UserSessionEntity entity, boolean full, Map<String, String> notes, Set<String> addedClientSessions, Set<String> removedClientSessions) {
+        this.source = entity;
+        this.id = entity.getId();
+        this.realm = entity.getRealm();
+        this.user = entity.getUser();
+        this.loginUsername = entity.getLoginUsername();
+        this.ipAddress = entity.getIpAddress();
+        this.authMethod = entity.getAuthMethod();
+        this.rememberMe = entity.isRememberMe();
+        this.started = entity.getStarted();
+        this.lastSessionRefresh = entity.getLastSessionRefresh();
+        this.state = entity.getState();
+        this.full = full;
+        this.notes = notes != null ? new HashMap<String, String>(notes) : null;
+        this.addedClientSessions = addedClientSessions != null ? new HashSet<String>(addedClientSessions) : null;
+        this.removedClientSessions = removedClientSessions != null ? new HashSet<String>(removedClientSessions) : null;
+    }
+
+    @Override
+    public DeltaAware merge(DeltaAware d) {
+        if (d != null && d == source) {
+            // Merged into the session the delta was created from (non-clustered cache)
+            return d;
+        }
+
+        if (!(d instanceof UserSessionEntity)) {
+            // Session was removed, or never existed on this node
+            return null;
+        }
+
+        UserSessionEntity entity = (UserSessionEntity) d;
+        entity.apply(this);
+        return entity;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getLoginUsername() {
+        return loginUsername;
+    }
+
+    public void setLoginUsername(String loginUsername) {
+        this.loginUsername = loginUsername;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public String getAuthMethod() {
+        return authMethod;
+    }
+
+    public void setAuthMethod(String authMethod) {
+        this.authMethod = authMethod;
+    }
+
+    public boolean isRememberMe() {
+        return rememberMe;
+    }
+
+    public void setRememberMe(boolean rememberMe) {
+        this.rememberMe = rememberMe;
+    }
+
+    public int getStarted() {
+        return started;
+    }
+
+    public void setStarted(int started) {
+        this.started = started;
+    }
+
+    public int getLastSessionRefresh() {
+        return lastSessionRefresh;
+    }
+
+    public void setLastSessionRefresh(int lastSessionRefresh) {
+        this.lastSessionRefresh = lastSessionRefresh;
+    }
+
+    public UserSessionModel.State getState() {
+        return state;
+    }
+
+    public void setState(UserSessionModel.State state) {
+        this.state = state;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public Map<String, String> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(Map<String, String> notes) {
+        this.notes = notes;
+    }
+
+    public Set<String> getAddedClientSessions() {
+        return addedClientSessions;
+    }
+
+    public void setAddedClientSessions(Set<String> addedClientSessions) {
+        this.addedClientSessions = addedClientSessions;
+    }
+
+    public Set<String> getRemovedClientSessions() {
+        return removedClientSessions;
+    }
+
+    public void setRemovedClientSessions(Set<String> removedClientSessions) {
+        this.removedClientSessions = removedClientSessions;
+    }
+
+}
@@ -1,14 +1,25 @@
 package org.keycloak.models.sessions.infinispan.entities;
 
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.SerializeWith;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.marshalling.UserSessionEntityExternalizer;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * User sessions keep track of changes made since they were last replicated. When the session is updated only a
+ * {@link UserSessionDelta} is sent to the other nodes, which contains the small fields, but only the notes and client
+ * sessions that have changed. The tracked changes are reset by {@link #commit()}.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class UserSessionEntity extends SessionEntity {
+@SerializeWith(UserSessionEntityExternalizer.class)
+public class UserSessionEntity extends SessionEntity implements DeltaAware {
 
     private String user;
 
@@ -30,6 +41,16 @@ public class UserSessionEntity extends SessionEntity {
 
     private Map<String, String> notes;
 
+    private transient boolean replicated;
+
+    private transient int replicatedLastSessionRefresh;
+
+    private transient Map<String, String> changedNotes;
+
+    private transient Set<String> addedClientSessions;
+
+    private transient Set<String> removedClientSessions;
+
     public String getUser() {
         return user;
     }
@@ -109,4 +130,141 @@ public class UserSessionEntity extends SessionEntity {
     public void setState(UserSessionModel.State state) {
         this.state = state;
     }
+
+    public synchronized void setNote(String name, String value) {
+        if (notes == null) {
+            notes = new HashMap<String, String>();
+        }
+        notes.put(name, value);
+
+        if (changedNotes == null) {
+            changedNotes = new HashMap<String, String>();
+        }
+        changedNotes.put(name, value);
+    }
+
+    public synchronized boolean removeNote(String name) {
+        if (notes == null || !notes.containsKey(name)) {
+            return false;
+        }
+        notes.remove(name);
+
+        if (changedNotes == null) {
+            changedNotes = new HashMap<String, String>();
+        }
+        changedNotes.put(name, null);
+        return true;
+    }
+
+    public synchronized boolean addClientSession(String clientSession) {
+        if (clientSessions == null) {
+            clientSessions = new HashSet<String>();
+        }
+        if (!clientSessions.add(clientSession)) {
+            return false;
+        }
+
+        if (removedClientSessions == null || !removedClientSessions.remove(clientSession)) {
+            if (addedClientSessions == null) {
+                addedClientSessions = new HashSet<String>();
+            }
+            addedClientSessions.add(clientSession);
+        }
+        return true;
+    }
+
+    public synchronized boolean removeClientSession(String clientSession) {
+        if (clientSessions == null || !clientSessions.remove(clientSession)) {
+            return false;
+        }
+        if (clientSessions.isEmpty()) {
+            clientSessions = null;
+        }
+
+        if (addedClientSessions == null || !addedClientSessions.remove(clientSession)) {
+            if (removedClientSessions == null) {
+                removedClientSessions = new HashSet<String>();
+            }
+            removedClientSessions.add(clientSession);
+        }
+        return true;
+    }
+
+    /**
+     * Returns lastSessionRefresh as it was when the session was last replicated
+     *
+     * @return
+     */
+    public int getReplicatedLastSessionRefresh() {
+        return replicatedLastSessionRefresh;
+    }
+
+    /**
+     * Returns the changes since the session was last replicated, or the whole session if it has never been replicated
+     *
+     * @return
+     */
+    @Override
+    public synchronized Delta delta() {
+        if (!replicated) {
+            return new UserSessionDelta(this, true, notes, clientSessions, null);
+        } else {
+            return new UserSessionDelta(this, false, changedNotes, addedClientSessions, removedClientSessions);
+        }
+    }
+
+    @Override
+    public synchronized void commit() {
+        replicated = true;
+        replicatedLastSessionRefresh = lastSessionRefresh;
+        changedNotes = null;
+        addedClientSessions = null;
+        removedClientSessions = null;
+    }
+
+    synchronized void apply(UserSessionDelta delta) {
+        setId(delta.getId());
+        setRealm(delta.getRealm());
+        user = delta.getUser();
+        loginUsername = delta.getLoginUsername();
+        ipAddress = delta.getIpAddress();
+        authMethod = delta.getAuthMethod();
+        rememberMe = delta.isRememberMe();
+        started = delta.getStarted();
+        lastSessionRefresh = delta.getLastSessionRefresh();
+        state = delta.getState();
+
+        if (delta.isFull()) {
+            notes = delta.getNotes() != null ? new HashMap<String, String>(delta.getNotes()) : null;
+            clientSessions = delta.getAddedClientSessions() != null ? new HashSet<String>(delta.getAddedClientSessions()) : null;
+        } else {
+            if (delta.getNotes() != null) {
+                if (notes == null) {
+                    notes = new HashMap<String, String>();
+                }
+                for (Map.Entry<String, String> e : delta.getNotes().entrySet()) {
+                    if (e.getValue() != null) {
+                        notes.put(e.getKey(), e.getValue());
+                    } else {
+                        notes.remove(e.getKey());
+                    }
+                }
+            }
+            if (delta.getAddedClientSessions() != null) {
+                if (clientSessions == null) {
+                    clientSessions = new HashSet<String>();
+                }
+                clientSessions.addAll(delta.getAddedClientSessions());
+            }
+            if (delta.getRemovedClientSessions() != null && clientSessions != null) {
+                clientSessions.removeAll(delta.getRemovedClientSessions());
+                if (clientSessions.isEmpty()) {
+                    clientSessions = null;
+                }
+            }
+        }
+
+        commit();
+    }
+
 }
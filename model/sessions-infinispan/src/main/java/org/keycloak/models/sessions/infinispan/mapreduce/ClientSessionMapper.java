@@ -17,7 +17,7 @@ public class ClientSessionMapper implements Mapper<String, SessionEntity, String
     }
 
     private enum EmitValue {
-        KEY, ENTITY, USER_SESSION_AND_TIMESTAMP
+        KEY, ENTITY, USER_SESSION_AND_TIMESTAMP, CLIENT_AND_USER_SESSION
     }
 
     private String realm;
@@ -46,6 +46,11 @@ public class ClientSessionMapper implements Mapper<String, SessionEntity, String
         return this;
     }
 
+    public ClientSessionMapper emitClientAndUserSession() {
+        emit = EmitValue.CLIENT_AND_USER_SESSION;
+        return this;
+    }
+
     public ClientSessionMapper client(String client) {
         this.client = client;
         return this;
@@ -106,6 +111,11 @@ public class ClientSessionMapper implements Mapper<String, SessionEntity, String
                     collector.emit(entity.getUserSession(), entity.getTimestamp());
                 }
                 break;
+            case CLIENT_AND_USER_SESSION:
+                if (entity.getUserSession() != null) {
+                    collector.emit(entity.getClient(), entity.getUserSession());
+                }
+                break;
         }
     }
 
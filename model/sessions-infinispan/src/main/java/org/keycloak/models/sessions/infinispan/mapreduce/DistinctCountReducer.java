@@ -0,0 +1,24 @@
+package org.keycloak.models.sessions.infinispan.mapreduce;
+
+import org.infinispan.distexec.mapreduce.Reducer;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Counts the distinct values emitted for each key
+ */
+public class DistinctCountReducer implements Reducer<Object, Object>, Serializable {
+
+    @Override
+    public Object reduce(Object reducedKey, Iterator<Object> itr) {
+        Set<Object> values = new HashSet<Object>();
+        while (itr.hasNext()) {
+            values.add(itr.next());
+        }
+        return values.size();
+    }
+
+}
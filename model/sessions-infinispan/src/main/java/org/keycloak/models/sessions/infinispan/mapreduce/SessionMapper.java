@@ -3,6 +3,7 @@ package org.keycloak.models.sessions.infinispan.mapreduce;
 import org.infinispan.distexec.mapreduce.Collector;
 import org.infinispan.distexec.mapreduce.Mapper;
 import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.UsedOTPEntity;
 
 import java.io.Serializable;
 
@@ -38,6 +39,12 @@ public class SessionMapper implements Mapper<String, SessionEntity, String, Obje
             return;
         }
 
+        // Used one-time passwords aren't sessions, they must not be removed when the sessions are removed, otherwise
+        // they could be used again. They're removed when they expire.
+        if (e instanceof UsedOTPEntity) {
+            return;
+        }
+
         switch (emit) {
             case KEY:
                 collector.emit(key, key);
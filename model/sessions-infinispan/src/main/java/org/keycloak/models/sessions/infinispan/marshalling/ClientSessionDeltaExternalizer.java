@@ -0,0 +1,77 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionDelta;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshalling.SessionMarshalling.*;
+
+public class ClientSessionDeltaExternalizer implements AdvancedExternalizer<ClientSessionDelta> {
+
+    public static final int ID = 9105;
+
+    private static final int VERSION = 1;
+
+    @Override
+    public void writeObject(ObjectOutput output, ClientSessionDelta delta) throws IOException {
+        output.writeByte(VERSION);
+        writeString(output, delta.getId());
+        writeString(output, delta.getRealm());
+        writeString(output, delta.getClient());
+        writeString(output, delta.getUserSession());
+        writeString(output, delta.getAuthMethod());
+        writeString(output, delta.getRedirectUri());
+        writeString(output, delta.getState());
+        writeVarInt(output, delta.getTimestamp());
+        writeEnum(output, delta.getAction());
+        output.writeBoolean(delta.isFull());
+        output.writeBoolean(delta.isRolesChanged());
+        if (delta.isRolesChanged()) {
+            writeStringSet(output, delta.getRoles());
+        }
+        writeNotes(output, delta.getNotes());
+    }
+
+    @Override
+    public ClientSessionDelta readObject(ObjectInput input) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported client session delta version " + version);
+        }
+
+        ClientSessionDelta delta = new ClientSessionDelta();
+        delta.setId(readString(input));
+        delta.setRealm(readSharedString(input));
+        delta.setClient(readSharedString(input));
+        delta.setUserSession(readString(input));
+        delta.setAuthMethod(readSharedString(input));
+        delta.setRedirectUri(readString(input));
+        delta.setState(readString(input));
+        delta.setTimestamp(readVarInt(input));
+        delta.setAction(readEnum(input, ClientSessionModel.Action.class));
+        delta.setFull(input.readBoolean());
+        delta.setRolesChanged(input.readBoolean());
+        if (delta.isRolesChanged()) {
+            delta.setRoles(readStringSet(input, true));
+        }
+        delta.setNotes(readNotes(input));
+        return delta;
+    }
+
+    @Override
+    public Set<Class<? extends ClientSessionDelta>> getTypeClasses() {
+        return Collections.<Class<? extends ClientSessionDelta>>singleton(ClientSessionDelta.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ID;
+    }
+
+}
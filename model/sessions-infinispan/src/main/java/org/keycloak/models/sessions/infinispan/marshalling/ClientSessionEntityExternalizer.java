@@ -0,0 +1,70 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshalling.SessionMarshalling.*;
+
+public class ClientSessionEntityExternalizer implements AdvancedExternalizer<ClientSessionEntity> {
+
+    public static final int ID = 9101;
+
+    private static final int VERSION = 1;
+
+    @Override
+    public void writeObject(ObjectOutput output, ClientSessionEntity session) throws IOException {
+        output.writeByte(VERSION);
+        writeString(output, session.getId());
+        writeString(output, session.getRealm());
+        writeString(output, session.getClient());
+        writeString(output, session.getUserSession());
+        writeString(output, session.getAuthMethod());
+        writeString(output, session.getRedirectUri());
+        writeString(output, session.getState());
+        writeVarInt(output, session.getTimestamp());
+        writeEnum(output, session.getAction());
+        writeStringSet(output, session.getRoles());
+        writeNotes(output, session.getNotes());
+    }
+
+    @Override
+    public ClientSessionEntity readObject(ObjectInput input) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported client session version " + version);
+        }
+
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setId(readString(input));
+        session.setRealm(readSharedString(input));
+        session.setClient(readSharedString(input));
+        session.setUserSession(readString(input));
+        session.setAuthMethod(readSharedString(input));
+        session.setRedirectUri(readString(input));
+        session.setState(readString(input));
+        session.setTimestamp(readVarInt(input));
+        session.setAction(readEnum(input, ClientSessionModel.Action.class));
+        session.setRoles(readStringSet(input, true));
+        session.setNotes(readNotes(input));
+        session.commit();
+        return session;
+    }
+
+    @Override
+    public Set<Class<? extends ClientSessionEntity>> getTypeClasses() {
+        return Collections.<Class<? extends ClientSessionEntity>>singleton(ClientSessionEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ID;
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshalling.SessionMarshalling.*;
+
+public class LoginFailureEntityExternalizer implements AdvancedExternalizer<LoginFailureEntity> {
+
+    public static final int ID = 9102;
+
+    private static final int VERSION = 1;
+
+    @Override
+    public void writeObject(ObjectOutput output, LoginFailureEntity entity) throws IOException {
+        output.writeByte(VERSION);
+        writeString(output, entity.getRealm());
+        writeString(output, entity.getUsername());
+        writeVarInt(output, entity.getFailedLoginNotBefore());
+        writeVarInt(output, entity.getNumFailures());
+        writeVarLong(output, entity.getLastFailure());
+        writeString(output, entity.getLastIPFailure());
+    }
+
+    @Override
+    public LoginFailureEntity readObject(ObjectInput input) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported login failure version " + version);
+        }
+
+        LoginFailureEntity entity = new LoginFailureEntity();
+        entity.setRealm(readSharedString(input));
+        entity.setUsername(readString(input));
+        entity.setFailedLoginNotBefore(readVarInt(input));
+        entity.setNumFailures(readVarInt(input));
+        entity.setLastFailure(readVarLong(input));
+        entity.setLastIPFailure(readString(input));
+        return entity;
+    }
+
+    @Override
+    public Set<Class<? extends LoginFailureEntity>> getTypeClasses() {
+        return Collections.<Class<? extends LoginFailureEntity>>singleton(LoginFailureEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ID;
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshalling.SessionMarshalling.*;
+
+public class LoginFailureKeyExternalizer implements AdvancedExternalizer<LoginFailureKey> {
+
+    public static final int ID = 9103;
+
+    @Override
+    public void writeObject(ObjectOutput output, LoginFailureKey key) throws IOException {
+        writeString(output, key.getRealm());
+        writeString(output, key.getUsername());
+    }
+
+    @Override
+    public LoginFailureKey readObject(ObjectInput input) throws IOException {
+        return new LoginFailureKey(readSharedString(input), readString(input));
+    }
+
+    @Override
+    public Set<Class<? extends LoginFailureKey>> getTypeClasses() {
+        return Collections.<Class<? extends LoginFailureKey>>singleton(LoginFailureKey.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ID;
+    }
+
+}
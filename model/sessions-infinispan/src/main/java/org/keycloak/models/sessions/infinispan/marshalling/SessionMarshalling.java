@@ -0,0 +1,213 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact encoding used by the session entity externalizers.
+ *
+ * <ul>
+ * <li>Integers are written as zig-zag varints, so small values and deltas take one or two bytes</li>
+ * <li>Ids in the format created by KeycloakModelUtils.generateId (lower case UUIDs) are written as 16 bytes</li>
+ * <li>Well-known values such as note keys and protocol names are written as an index into a fixed dictionary</li>
+ * <li>Other strings are written as varint length followed by UTF-8 bytes</li>
+ * </ul>
+ *
+ * The dictionary is part of the wire format. Entries can only be appended, never removed or reordered.
+ */
+public class SessionMarshalling {
+
+    private static final String[] DICTIONARY = {
+            // Protocols and auth methods
+            "openid-connect", "saml", "form", "cookie", "sso", "bearer", "kerberos",
+            // Client session notes
+            "action_key", "response_type", "redirect_uri", "state", "scope", "login_hint", "prompt", "kc_idp_hint",
+            "application_session_state", "application_session_host", "code",
+            "OIDC_LOGOUT_REDIRECT_URI", "OIDC_LOGOUT_STATE_PARAM", "KEYCLOAK_LOGOUT_PROTOCOL", "BROKER_PROVIDER_ID",
+            "saml_binding", "SAML_REQUEST_ID", "SAML_NAME_ID", "SAML_NAME_ID_FORMAT", "saml.logout.binding",
+            "SAML_LOGOUT_RELAY_STATE", "SAML_LOGOUT_REQUEST_ID", "SAML_LOGOUT_BINDING_URI", "saml.logout.signature.algorithm",
+            "RelayState", "NAMEID_FORMAT",
+            // Common values
+            "true", "false", "master", "post", "get", "security-admin-console", "account"
+    };
+
+    private static final Map<String, Integer> DICTIONARY_INDEX = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            DICTIONARY_INDEX.put(DICTIONARY[i], i);
+        }
+    }
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int UUID_STRING = 2;
+    private static final int DICTIONARY_STRING = 3;
+
+    private SessionMarshalling() {
+    }
+
+    public static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    public static int readVarInt(ObjectInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    public static void writeVarLong(ObjectOutput out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    public static long readVarLong(ObjectInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeString(ObjectOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+
+        Integer index = DICTIONARY_INDEX.get(value);
+        if (index != null) {
+            out.writeByte(DICTIONARY_STRING);
+            writeVarInt(out, index);
+            return;
+        }
+
+        UUID uuid = toUUID(value);
+        if (uuid != null) {
+            out.writeByte(UUID_STRING);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            return;
+        }
+
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeByte(STRING);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ObjectInput in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case DICTIONARY_STRING:
+                return DICTIONARY[readVarInt(in)];
+            case UUID_STRING:
+                return new UUID(in.readLong(), in.readLong()).toString();
+            case STRING:
+                byte[] bytes = new byte[readVarInt(in)];
+                in.readFully(bytes);
+                return new String(bytes, "UTF-8");
+            default:
+                throw new IOException("Unknown string type " + type);
+        }
+    }
+
+    /**
+     * Reads a string that is shared by many sessions (realm and client ids, note keys). These are interned so each
+     * node only keeps one copy.
+     */
+    public static String readSharedString(ObjectInput in) throws IOException {
+        String value = readString(in);
+        return value != null ? value.intern() : null;
+    }
+
+    public static void writeStringSet(ObjectOutput out, Set<String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(out, -1);
+            return;
+        }
+
+        writeVarInt(out, values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    public static Set<String> readStringSet(ObjectInput in, boolean shared) throws IOException {
+        int size = readVarInt(in);
+        if (size < 0) {
+            return null;
+        }
+
+        Set<String> values = new HashSet<String>();
+        for (int i = 0; i < size; i++) {
+            values.add(shared ? readSharedString(in) : readString(in));
+        }
+        return values;
+    }
+
+    public static void writeNotes(ObjectOutput out, Map<String, String> notes) throws IOException {
+        if (notes == null) {
+            writeVarInt(out, -1);
+            return;
+        }
+
+        writeVarInt(out, notes.size());
+        for (Map.Entry<String, String> e : notes.entrySet()) {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue());
+        }
+    }
+
+    public static Map<String, String> readNotes(ObjectInput in) throws IOException {
+        int size = readVarInt(in);
+        if (size < 0) {
+            return null;
+        }
+
+        Map<String, String> notes = new HashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            notes.put(readSharedString(in), readString(in));
+        }
+        return notes;
+    }
+
+    public static <E extends Enum<E>> void writeEnum(ObjectOutput out, E value) throws IOException {
+        writeVarInt(out, value != null ? value.ordinal() : -1);
+    }
+
+    public static <E extends Enum<E>> E readEnum(ObjectInput in, Class<E> type) throws IOException {
+        int ordinal = readVarInt(in);
+        return ordinal >= 0 ? type.getEnumConstants()[ordinal] : null;
+    }
+
+    private static UUID toUUID(String value) {
+        if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return null;
+        }
+
+        try {
+            UUID uuid = UUID.fromString(value);
+            // Only use the binary form if it converts back to exactly the same string
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
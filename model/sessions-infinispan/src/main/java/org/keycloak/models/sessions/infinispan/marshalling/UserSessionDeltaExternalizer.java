@@ -0,0 +1,75 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionDelta;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshalling.SessionMarshalling.*;
+
+public class UserSessionDeltaExternalizer implements AdvancedExternalizer<UserSessionDelta> {
+
+    public static final int ID = 9104;
+
+    private static final int VERSION = 1;
+
+    @Override
+    public void writeObject(ObjectOutput output, UserSessionDelta delta) throws IOException {
+        output.writeByte(VERSION);
+        writeString(output, delta.getId());
+        writeString(output, delta.getRealm());
+        writeString(output, delta.getUser());
+        writeString(output, delta.getLoginUsername());
+        writeString(output, delta.getIpAddress());
+        writeString(output, delta.getAuthMethod());
+        output.writeBoolean(delta.isRememberMe());
+        writeVarInt(output, delta.getStarted());
+        writeVarInt(output, delta.getLastSessionRefresh() - delta.getStarted());
+        writeEnum(output, delta.getState());
+        output.writeBoolean(delta.isFull());
+        writeNotes(output, delta.getNotes());
+        writeStringSet(output, delta.getAddedClientSessions());
+        writeStringSet(output, delta.getRemovedClientSessions());
+    }
+
+    @Override
+    public UserSessionDelta readObject(ObjectInput input) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported user session delta version " + version);
+        }
+
+        UserSessionDelta delta = new UserSessionDelta();
+        delta.setId(readString(input));
+        delta.setRealm(readSharedString(input));
+        delta.setUser(readString(input));
+        delta.setLoginUsername(readString(input));
+        delta.setIpAddress(readString(input));
+        delta.setAuthMethod(readSharedString(input));
+        delta.setRememberMe(input.readBoolean());
+        delta.setStarted(readVarInt(input));
+        delta.setLastSessionRefresh(delta.getStarted() + readVarInt(input));
+        delta.setState(readEnum(input, UserSessionModel.State.class));
+        delta.setFull(input.readBoolean());
+        delta.setNotes(readNotes(input));
+        delta.setAddedClientSessions(readStringSet(input, false));
+        delta.setRemovedClientSessions(readStringSet(input, false));
+        return delta;
+    }
+
+    @Override
+    public Set<Class<? extends UserSessionDelta>> getTypeClasses() {
+        return Collections.<Class<? extends UserSessionDelta>>singleton(UserSessionDelta.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ID;
+    }
+
+}
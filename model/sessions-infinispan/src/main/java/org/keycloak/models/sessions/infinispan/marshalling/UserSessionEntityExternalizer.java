@@ -0,0 +1,72 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.keycloak.models.sessions.infinispan.marshalling.SessionMarshalling.*;
+
+public class UserSessionEntityExternalizer implements AdvancedExternalizer<UserSessionEntity> {
+
+    public static final int ID = 9100;
+
+    private static final int VERSION = 1;
+
+    @Override
+    public void writeObject(ObjectOutput output, UserSessionEntity session) throws IOException {
+        output.writeByte(VERSION);
+        writeString(output, session.getId());
+        writeString(output, session.getRealm());
+        writeString(output, session.getUser());
+        writeString(output, session.getLoginUsername());
+        writeString(output, session.getIpAddress());
+        writeString(output, session.getAuthMethod());
+        output.writeBoolean(session.isRememberMe());
+        writeVarInt(output, session.getStarted());
+        writeVarInt(output, session.getLastSessionRefresh() - session.getStarted());
+        writeStringSet(output, session.getClientSessions());
+        writeEnum(output, session.getState());
+        writeNotes(output, session.getNotes());
+    }
+
+    @Override
+    public UserSessionEntity readObject(ObjectInput input) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported user session version " + version);
+        }
+
+        UserSessionEntity session = new UserSessionEntity();
+        session.setId(readString(input));
+        session.setRealm(readSharedString(input));
+        session.setUser(readString(input));
+        session.setLoginUsername(readString(input));
+        session.setIpAddress(readString(input));
+        session.setAuthMethod(readSharedString(input));
+        session.setRememberMe(input.readBoolean());
+        session.setStarted(readVarInt(input));
+        session.setLastSessionRefresh(session.getStarted() + readVarInt(input));
+        session.setClientSessions(readStringSet(input, false));
+        session.setState(readEnum(input, UserSessionModel.State.class));
+        session.setNotes(readNotes(input));
+        session.commit();
+        return session;
+    }
+
+    @Override
+    public Set<Class<? extends UserSessionEntity>> getTypeClasses() {
+        return Collections.<Class<? extends UserSessionEntity>>singleton(UserSessionEntity.class);
+    }
+
+    @Override
+    public Integer getId() {
+        return ID;
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.keycloak.models.sessions.infinispan.distexec;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.sessions.infinispan.entities.SessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class SessionLookupTest {
+
+    private final List<DefaultCacheManager> cacheManagers = new LinkedList<DefaultCacheManager>();
+
+    private final SessionLookup lookup = new SessionLookup(5);
+
+    @After
+    public void after() {
+        lookup.close();
+        for (DefaultCacheManager cacheManager : cacheManagers) {
+            cacheManager.stop();
+        }
+    }
+
+    @Test
+    public void localCache() {
+        Cache<String, SessionEntity> cache = localCache();
+        List<String> ids = createSessions(cache, 10);
+
+        List<String> lookupIds = new ArrayList<String>(ids);
+        lookupIds.add("missing");
+        assertSessions(ids, lookup.getSessions(cache, lookupIds));
+
+        assertSessions(ids.subList(0, 1), lookup.getSessions(cache, ids.subList(0, 1)));
+        Assert.assertTrue(lookup.getSessions(cache, Collections.<String>emptyList()).isEmpty());
+        Assert.assertTrue(lookup.getSessions(cache, Collections.singletonList("missing")).isEmpty());
+    }
+
+    @Test
+    public void distributedCache() throws Exception {
+        String cluster = "session-lookup-" + UUID.randomUUID();
+        Cache<String, SessionEntity> cache1 = distributedCache(cluster);
+        Cache<String, SessionEntity> cache2 = distributedCache(cluster);
+        waitForMembers(cache1, 2);
+
+        List<String> ids = createSessions(cache1, 20);
+
+        List<String> lookupIds = new ArrayList<String>(ids);
+        lookupIds.add("missing");
+        DefaultExecutorService executor = lookup.getExecutor(cache1);
+        assertSessions(ids, lookup.getSessions(cache1, lookupIds));
+        assertSessions(ids, lookup.getSessions(cache1, lookupIds));
+
+        // Executor is reused between lookups
+        Assert.assertSame(executor, lookup.getExecutor(cache1));
+
+        // Fewer ids than the threshold are looked up directly
+        assertSessions(ids.subList(0, 4), lookup.getSessions(cache1, ids.subList(0, 4)));
+        Assert.assertTrue(lookup.getSessions(cache1, Collections.singletonList("missing")).isEmpty());
+
+        // Executor is replaced when looking up sessions in another cache instance
+        assertSessions(ids, lookup.getSessions(cache2, ids));
+        Assert.assertNotSame(executor, lookup.getExecutor(cache2));
+    }
+
+    @Test
+    public void closed() throws Exception {
+        String cluster = "session-lookup-" + UUID.randomUUID();
+        Cache<String, SessionEntity> cache1 = distributedCache(cluster);
+        distributedCache(cluster);
+        waitForMembers(cache1, 2);
+
+        List<String> ids = createSessions(cache1, 10);
+        assertSessions(ids, lookup.getSessions(cache1, ids));
+
+        DefaultExecutorService executor = lookup.getExecutor(cache1);
+        lookup.close();
+        Assert.assertTrue(executor.isShutdown());
+
+        assertSessions(ids, lookup.getSessions(cache1, ids));
+        Assert.assertNotSame(executor, lookup.getExecutor(cache1));
+    }
+
+    private Cache<String, SessionEntity> localCache() {
+        GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+        gcb.globalJmxStatistics().allowDuplicateDomains(true);
+
+        DefaultCacheManager cacheManager = new DefaultCacheManager(gcb.build(), new ConfigurationBuilder().build());
+        cacheManagers.add(cacheManager);
+        return cacheManager.getCache("sessions");
+    }
+
+    private Cache<String, SessionEntity> distributedCache(String cluster) {
+        GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+        gcb.transport().defaultTransport().clusterName(cluster);
+        gcb.globalJmxStatistics().allowDuplicateDomains(true);
+
+        ConfigurationBuilder cb = new ConfigurationBuilder();
+        cb.clustering().cacheMode(CacheMode.DIST_SYNC).hash().numOwners(1);
+
+        DefaultCacheManager cacheManager = new DefaultCacheManager(gcb.build(), cb.build());
+        cacheManagers.add(cacheManager);
+        return cacheManager.getCache("sessions");
+    }
+
+    private static void waitForMembers(Cache<String, SessionEntity> cache, int members) throws InterruptedException {
+        for (int i = 0; i < 300 && cache.getCacheManager().getMembers().size() < members; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(members, cache.getCacheManager().getMembers().size());
+    }
+
+    private static List<String> createSessions(Cache<String, SessionEntity> cache, int count) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            UserSessionEntity session = new UserSessionEntity();
+            session.setId(UUID.randomUUID().toString());
+            session.setRealm("realm");
+            session.setUser("user-" + i);
+            cache.put(session.getId(), session);
+            ids.add(session.getId());
+        }
+        return ids;
+    }
+
+    private static void assertSessions(List<String> expected, Map<String, SessionEntity> sessions) {
+        Assert.assertEquals(expected.size(), sessions.size());
+        for (String id : expected) {
+            Assert.assertEquals(id, sessions.get(id).getId());
+        }
+    }
+
+}
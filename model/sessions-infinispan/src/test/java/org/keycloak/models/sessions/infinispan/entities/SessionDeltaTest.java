@@ -0,0 +1,183 @@
+package org.keycloak.models.sessions.infinispan.entities;
+
+import org.infinispan.atomic.Delta;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.UserSessionModel;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Merging of user and client session deltas into the sessions held by other nodes.
+ */
+public class SessionDeltaTest {
+
+    @Test
+    public void userSessionDeltaForAbsentKeyIgnored() {
+        UserSessionEntity local = userSession();
+        Assert.assertNull(local.delta().merge(null));
+
+        local.commit();
+        local.setNote("note", "value");
+        Assert.assertNull(local.delta().merge(null));
+        Assert.assertNull(local.delta().merge(new ClientSessionEntity()));
+    }
+
+    @Test
+    public void userSessionDeltaMerged() {
+        UserSessionEntity local = userSession();
+        local.commit();
+        UserSessionEntity remote = userSession();
+        remote.commit();
+
+        local.setLastSessionRefresh(200);
+        local.setState(UserSessionModel.State.LOGGING_OUT);
+        local.setNote("note", "value");
+        local.addClientSession("client-session");
+
+        Assert.assertSame(remote, local.delta().merge(remote));
+        Assert.assertEquals(200, remote.getLastSessionRefresh());
+        Assert.assertEquals(UserSessionModel.State.LOGGING_OUT, remote.getState());
+        Assert.assertEquals("value", remote.getNotes().get("note"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("client-session")), remote.getClientSessions());
+    }
+
+    @Test
+    public void userSessionDeltasMergedInOrder() {
+        UserSessionEntity local = userSession();
+        local.setNote("removed", "value");
+        local.commit();
+        UserSessionEntity remote = userSession();
+        remote.setNote("removed", "value");
+        remote.commit();
+
+        local.setLastSessionRefresh(200);
+        local.setNote("note", "first");
+        local.addClientSession("first");
+        Delta first = local.delta();
+        local.commit();
+
+        local.setLastSessionRefresh(300);
+        local.setNote("note", "second");
+        local.removeNote("removed");
+        local.removeClientSession("first");
+        local.addClientSession("second");
+        Delta second = local.delta();
+        local.commit();
+
+        first.merge(remote);
+        second.merge(remote);
+
+        Assert.assertEquals(300, remote.getLastSessionRefresh());
+        Assert.assertEquals("second", remote.getNotes().get("note"));
+        Assert.assertFalse(remote.getNotes().containsKey("removed"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("second")), remote.getClientSessions());
+
+        // A later delta only changes what it contains
+        local.setNote("other", "value");
+        local.delta().merge(remote);
+        Assert.assertEquals("second", remote.getNotes().get("note"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("second")), remote.getClientSessions());
+    }
+
+    @Test
+    public void fullUserSessionDeltaReplacesNotesAndClientSessions() {
+        UserSessionEntity remote = userSession();
+        remote.setNote("stale", "value");
+        remote.addClientSession("stale");
+        remote.commit();
+
+        // Never replicated, so the delta contains the whole session
+        UserSessionEntity local = userSession();
+        local.setNote("note", "value");
+        local.addClientSession("client-session");
+
+        local.delta().merge(remote);
+        Assert.assertEquals(1, remote.getNotes().size());
+        Assert.assertEquals("value", remote.getNotes().get("note"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("client-session")), remote.getClientSessions());
+    }
+
+    @Test
+    public void userSessionDeltaMergedIntoSource() {
+        UserSessionEntity local = userSession();
+        local.commit();
+        local.setNote("note", "value");
+
+        // Non-clustered caches merge the delta into the session it was created from
+        Assert.assertSame(local, local.delta().merge(local));
+        Assert.assertEquals("value", local.getNotes().get("note"));
+    }
+
+    @Test
+    public void clientSessionDeltaForAbsentKeyIgnored() {
+        ClientSessionEntity local = clientSession();
+        Assert.assertNull(local.delta().merge(null));
+
+        local.commit();
+        local.setTimestamp(200);
+        Assert.assertNull(local.delta().merge(null));
+        Assert.assertNull(local.delta().merge(new UserSessionEntity()));
+    }
+
+    @Test
+    public void clientSessionDeltasMergedInOrder() {
+        ClientSessionEntity local = clientSession();
+        local.setRoles(new HashSet<String>(Arrays.asList("role")));
+        local.commit();
+        ClientSessionEntity remote = clientSession();
+        remote.setRoles(new HashSet<String>(Arrays.asList("role")));
+        remote.commit();
+
+        local.setTimestamp(200);
+        local.setAction(ClientSessionModel.Action.CODE_TO_TOKEN);
+        local.setNote("note", "first");
+        Delta first = local.delta();
+        local.commit();
+
+        local.setTimestamp(300);
+        local.setNote("note", "second");
+        local.setRoles(new HashSet<String>(Arrays.asList("other-role")));
+        Delta second = local.delta();
+        local.commit();
+
+        Assert.assertSame(remote, first.merge(remote));
+        // Roles didn't change in the first delta
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("role")), remote.getRoles());
+
+        Assert.assertSame(remote, second.merge(remote));
+        Assert.assertEquals(300, remote.getTimestamp());
+        Assert.assertEquals(ClientSessionModel.Action.CODE_TO_TOKEN, remote.getAction());
+        Assert.assertEquals("second", remote.getNotes().get("note"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("other-role")), remote.getRoles());
+
+        local.removeNote("note");
+        local.delta().merge(remote);
+        Assert.assertFalse(remote.getNotes().containsKey("note"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("other-role")), remote.getRoles());
+    }
+
+    private static UserSessionEntity userSession() {
+        UserSessionEntity session = new UserSessionEntity();
+        session.setId("session");
+        session.setRealm("realm");
+        session.setUser("user");
+        session.setStarted(100);
+        session.setLastSessionRefresh(100);
+        session.setState(UserSessionModel.State.LOGGED_IN);
+        return session;
+    }
+
+    private static ClientSessionEntity clientSession() {
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setId("client-session");
+        session.setRealm("realm");
+        session.setClient("client");
+        session.setUserSession("session");
+        session.setTimestamp(100);
+        return session;
+    }
+
+}
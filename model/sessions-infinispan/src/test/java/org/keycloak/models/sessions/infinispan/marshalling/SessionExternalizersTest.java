@@ -0,0 +1,358 @@
+package org.keycloak.models.sessions.infinispan.marshalling;
+
+import org.infinispan.commons.marshall.Externalizer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionDelta;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureEntity;
+import org.keycloak.models.sessions.infinispan.entities.LoginFailureKey;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionDelta;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes entities with each externalizer and reads them back, with all fields set, with fields that are null and with
+ * empty sets and maps.
+ */
+public class SessionExternalizersTest {
+
+    private static final String ID = "5c9b5b1f-0b4a-4a3e-9bde-5d5e1bb3c0a1";
+    private static final String ID2 = "0e4f6b1c-1c2d-4e3f-8a9b-0c1d2e3f4a5b";
+
+    @Test
+    public void userSession() throws IOException {
+        UserSessionEntity session = new UserSessionEntity();
+        session.setId(ID);
+        session.setRealm("master");
+        session.setUser(ID2);
+        session.setLoginUsername("user@example.com");
+        session.setIpAddress("127.0.0.1");
+        session.setAuthMethod("openid-connect");
+        session.setRememberMe(true);
+        session.setStarted(1000);
+        session.setLastSessionRefresh(1300);
+        session.setClientSessions(set(ID2, "not-a-uuid"));
+        session.setState(UserSessionModel.State.LOGGED_IN);
+        session.setNotes(notes("KEYCLOAK_LOGOUT_PROTOCOL", "openid-connect", "custom", "æøå"));
+
+        assertUserSession(session, roundTrip(new UserSessionEntityExternalizer(), session));
+    }
+
+    @Test
+    public void userSessionNullAndEmpty() throws IOException {
+        UserSessionEntity session = new UserSessionEntity();
+        session.setStarted(1000);
+        session.setLastSessionRefresh(0);
+
+        UserSessionEntity read = roundTrip(new UserSessionEntityExternalizer(), session);
+        assertUserSession(session, read);
+        Assert.assertNull(read.getId());
+        Assert.assertNull(read.getClientSessions());
+        Assert.assertNull(read.getNotes());
+        Assert.assertNull(read.getState());
+
+        session.setId("");
+        session.setClientSessions(new HashSet<String>());
+        session.setNotes(new HashMap<String, String>());
+
+        read = roundTrip(new UserSessionEntityExternalizer(), session);
+        assertUserSession(session, read);
+        Assert.assertEquals("", read.getId());
+        Assert.assertTrue(read.getClientSessions().isEmpty());
+        Assert.assertTrue(read.getNotes().isEmpty());
+    }
+
+    @Test
+    public void clientSession() throws IOException {
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setId(ID);
+        session.setRealm("master");
+        session.setClient("security-admin-console");
+        session.setUserSession(ID2);
+        session.setAuthMethod("saml");
+        session.setRedirectUri("http://localhost/app?q=" + Long.MAX_VALUE);
+        session.setState("state");
+        session.setTimestamp(Integer.MAX_VALUE);
+        session.setAction(ClientSessionModel.Action.CODE_TO_TOKEN);
+        session.setRoles(set(ID, ID2));
+        session.setNotes(notes("redirect_uri", "http://localhost/app", "scope", null));
+
+        assertClientSession(session, roundTrip(new ClientSessionEntityExternalizer(), session));
+    }
+
+    @Test
+    public void clientSessionNullAndEmpty() throws IOException {
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setTimestamp(-1);
+
+        ClientSessionEntity read = roundTrip(new ClientSessionEntityExternalizer(), session);
+        assertClientSession(session, read);
+        Assert.assertNull(read.getAction());
+        Assert.assertNull(read.getRoles());
+        Assert.assertNull(read.getNotes());
+
+        session.setRoles(new HashSet<String>());
+        session.setNotes(new HashMap<String, String>());
+
+        read = roundTrip(new ClientSessionEntityExternalizer(), session);
+        assertClientSession(session, read);
+        Assert.assertTrue(read.getRoles().isEmpty());
+        Assert.assertTrue(read.getNotes().isEmpty());
+    }
+
+    @Test
+    public void userSessionDelta() throws IOException {
+        UserSessionDelta delta = new UserSessionDelta();
+        delta.setId(ID);
+        delta.setRealm("test");
+        delta.setUser(ID2);
+        delta.setLoginUsername("user");
+        delta.setIpAddress("::1");
+        delta.setAuthMethod("form");
+        delta.setRememberMe(true);
+        delta.setStarted(2000);
+        delta.setLastSessionRefresh(2500);
+        delta.setState(UserSessionModel.State.LOGGING_IN);
+        delta.setFull(true);
+        // Removed notes are sent with a null value
+        delta.setNotes(notes("added", "value", "removed", null));
+        delta.setAddedClientSessions(set(ID));
+        delta.setRemovedClientSessions(set(ID2));
+
+        assertUserSessionDelta(delta, roundTrip(new UserSessionDeltaExternalizer(), delta));
+    }
+
+    @Test
+    public void userSessionDeltaNullAndEmpty() throws IOException {
+        UserSessionDelta delta = new UserSessionDelta();
+
+        UserSessionDelta read = roundTrip(new UserSessionDeltaExternalizer(), delta);
+        assertUserSessionDelta(delta, read);
+        Assert.assertNull(read.getNotes());
+        Assert.assertNull(read.getAddedClientSessions());
+        Assert.assertNull(read.getRemovedClientSessions());
+
+        delta.setNotes(new HashMap<String, String>());
+        delta.setAddedClientSessions(new HashSet<String>());
+        delta.setRemovedClientSessions(new HashSet<String>());
+
+        read = roundTrip(new UserSessionDeltaExternalizer(), delta);
+        assertUserSessionDelta(delta, read);
+        Assert.assertTrue(read.getNotes().isEmpty());
+        Assert.assertTrue(read.getAddedClientSessions().isEmpty());
+        Assert.assertTrue(read.getRemovedClientSessions().isEmpty());
+    }
+
+    @Test
+    public void clientSessionDelta() throws IOException {
+        ClientSessionDelta delta = new ClientSessionDelta();
+        delta.setId(ID);
+        delta.setRealm("test");
+        delta.setClient(ID2);
+        delta.setUserSession(ID);
+        delta.setAuthMethod("openid-connect");
+        delta.setRedirectUri("http://localhost/app");
+        delta.setState("state");
+        delta.setTimestamp(3000);
+        delta.setAction(ClientSessionModel.Action.AUTHENTICATE);
+        delta.setFull(false);
+        delta.setRolesChanged(true);
+        delta.setRoles(set(ID2));
+        delta.setNotes(notes("code", "c", "removed", null));
+
+        assertClientSessionDelta(delta, roundTrip(new ClientSessionDeltaExternalizer(), delta));
+    }
+
+    @Test
+    public void clientSessionDeltaNullAndEmpty() throws IOException {
+        ClientSessionDelta delta = new ClientSessionDelta();
+
+        ClientSessionDelta read = roundTrip(new ClientSessionDeltaExternalizer(), delta);
+        assertClientSessionDelta(delta, read);
+        Assert.assertFalse(read.isRolesChanged());
+        Assert.assertNull(read.getRoles());
+        Assert.assertNull(read.getNotes());
+
+        // Roles changed to null and to an empty set are both sent
+        delta.setRolesChanged(true);
+        read = roundTrip(new ClientSessionDeltaExternalizer(), delta);
+        Assert.assertTrue(read.isRolesChanged());
+        Assert.assertNull(read.getRoles());
+
+        delta.setRoles(new HashSet<String>());
+        delta.setNotes(new HashMap<String, String>());
+        read = roundTrip(new ClientSessionDeltaExternalizer(), delta);
+        assertClientSessionDelta(delta, read);
+        Assert.assertTrue(read.getRoles().isEmpty());
+        Assert.assertTrue(read.getNotes().isEmpty());
+    }
+
+    @Test
+    public void loginFailure() throws IOException {
+        LoginFailureEntity entity = new LoginFailureEntity();
+        entity.setRealm("master");
+        entity.setUsername("user");
+        entity.setFailedLoginNotBefore(100);
+        entity.setNumFailures(3);
+        entity.setLastFailure(System.currentTimeMillis());
+        entity.setLastIPFailure("127.0.0.1");
+
+        assertLoginFailure(entity, roundTrip(new LoginFailureEntityExternalizer(), entity));
+    }
+
+    @Test
+    public void loginFailureNullAndEmpty() throws IOException {
+        LoginFailureEntity entity = new LoginFailureEntity();
+
+        LoginFailureEntity read = roundTrip(new LoginFailureEntityExternalizer(), entity);
+        assertLoginFailure(entity, read);
+        Assert.assertNull(read.getRealm());
+        Assert.assertNull(read.getUsername());
+        Assert.assertNull(read.getLastIPFailure());
+
+        entity.setUsername("");
+        entity.setLastFailure(Long.MIN_VALUE);
+        assertLoginFailure(entity, roundTrip(new LoginFailureEntityExternalizer(), entity));
+    }
+
+    @Test
+    public void loginFailureKey() throws IOException {
+        LoginFailureKey key = new LoginFailureKey("master", "user");
+        LoginFailureKey read = roundTrip(new LoginFailureKeyExternalizer(), key);
+        Assert.assertEquals(key, read);
+        Assert.assertEquals(key.hashCode(), read.hashCode());
+
+        key = new LoginFailureKey(null, "");
+        read = roundTrip(new LoginFailureKeyExternalizer(), key);
+        Assert.assertNull(read.getRealm());
+        Assert.assertEquals("", read.getUsername());
+    }
+
+    @Test
+    public void sharedStringsInterned() throws IOException {
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setRealm(new String("realm-" + ID));
+        session.setClient(new String("client-" + ID));
+
+        ClientSessionEntity read = roundTrip(new ClientSessionEntityExternalizer(), session);
+        Assert.assertSame(("realm-" + ID).intern(), read.getRealm());
+        Assert.assertSame(("client-" + ID).intern(), read.getClient());
+    }
+
+    private static <T> T roundTrip(Externalizer<T> externalizer, T object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        externalizer.writeObject(output, object);
+        // Something written after the object must still be readable, so the object can't read too far
+        output.writeInt(42);
+        output.close();
+
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            T read = externalizer.readObject(input);
+            Assert.assertEquals(42, input.readInt());
+            return read;
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void assertUserSession(UserSessionEntity expected, UserSessionEntity actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getUser(), actual.getUser());
+        Assert.assertEquals(expected.getLoginUsername(), actual.getLoginUsername());
+        Assert.assertEquals(expected.getIpAddress(), actual.getIpAddress());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.isRememberMe(), actual.isRememberMe());
+        Assert.assertEquals(expected.getStarted(), actual.getStarted());
+        Assert.assertEquals(expected.getLastSessionRefresh(), actual.getLastSessionRefresh());
+        Assert.assertEquals(expected.getClientSessions(), actual.getClientSessions());
+        Assert.assertEquals(expected.getState(), actual.getState());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+    }
+
+    private static void assertClientSession(ClientSessionEntity expected, ClientSessionEntity actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getClient(), actual.getClient());
+        Assert.assertEquals(expected.getUserSession(), actual.getUserSession());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.getRedirectUri(), actual.getRedirectUri());
+        Assert.assertEquals(expected.getState(), actual.getState());
+        Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        Assert.assertEquals(expected.getAction(), actual.getAction());
+        Assert.assertEquals(expected.getRoles(), actual.getRoles());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+    }
+
+    private static void assertUserSessionDelta(UserSessionDelta expected, UserSessionDelta actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getUser(), actual.getUser());
+        Assert.assertEquals(expected.getLoginUsername(), actual.getLoginUsername());
+        Assert.assertEquals(expected.getIpAddress(), actual.getIpAddress());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.isRememberMe(), actual.isRememberMe());
+        Assert.assertEquals(expected.getStarted(), actual.getStarted());
+        Assert.assertEquals(expected.getLastSessionRefresh(), actual.getLastSessionRefresh());
+        Assert.assertEquals(expected.getState(), actual.getState());
+        Assert.assertEquals(expected.isFull(), actual.isFull());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+        Assert.assertEquals(expected.getAddedClientSessions(), actual.getAddedClientSessions());
+        Assert.assertEquals(expected.getRemovedClientSessions(), actual.getRemovedClientSessions());
+    }
+
+    private static void assertClientSessionDelta(ClientSessionDelta expected, ClientSessionDelta actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getClient(), actual.getClient());
+        Assert.assertEquals(expected.getUserSession(), actual.getUserSession());
+        Assert.assertEquals(expected.getAuthMethod(), actual.getAuthMethod());
+        Assert.assertEquals(expected.getRedirectUri(), actual.getRedirectUri());
+        Assert.assertEquals(expected.getState(), actual.getState());
+        Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        Assert.assertEquals(expected.getAction(), actual.getAction());
+        Assert.assertEquals(expected.isFull(), actual.isFull());
+        Assert.assertEquals(expected.isRolesChanged(), actual.isRolesChanged());
+        Assert.assertEquals(expected.getRoles(), actual.getRoles());
+        Assert.assertEquals(expected.getNotes(), actual.getNotes());
+    }
+
+    private static void assertLoginFailure(LoginFailureEntity expected, LoginFailureEntity actual) {
+        Assert.assertEquals(expected.getRealm(), actual.getRealm());
+        Assert.assertEquals(expected.getUsername(), actual.getUsername());
+        Assert.assertEquals(expected.getFailedLoginNotBefore(), actual.getFailedLoginNotBefore());
+        Assert.assertEquals(expected.getNumFailures(), actual.getNumFailures());
+        Assert.assertEquals(expected.getLastFailure(), actual.getLastFailure());
+        Assert.assertEquals(expected.getLastIPFailure(), actual.getLastIPFailure());
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+    private static Map<String, String> notes(String... keysAndValues) {
+        Map<String, String> notes = new HashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            notes.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return notes;
+    }
+
+}
@@ -7,31 +7,40 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.UserSessionVisitor;
 import org.keycloak.models.UsernameLoginFailureModel;
 import org.keycloak.models.sessions.jpa.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.jpa.entities.UserSessionEntity;
 import org.keycloak.models.sessions.jpa.entities.UsernameLoginFailureEntity;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.RealmInfoUtil;
+import org.keycloak.models.utils.UsedOTPCache;
 import org.keycloak.util.Time;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class JpaUserSessionProvider implements UserSessionProvider {
 
+    private static final int VISIT_PAGE_SIZE = 100;
+
     protected final KeycloakSession session;
 
     protected final EntityManager em;
 
-    public JpaUserSessionProvider(KeycloakSession session, EntityManager em) {
+    protected final UsedOTPCache usedOTPs;
+
+    public JpaUserSessionProvider(KeycloakSession session, EntityManager em, UsedOTPCache usedOTPs) {
         this.session = session;
         this.em = em;
+        this.usedOTPs = usedOTPs;
     }
 
     @Override
@@ -83,6 +92,11 @@ public class JpaUserSessionProvider implements UserSessionProvider {
         return new UsernameLoginFailureAdapter(entity);
     }
 
+    @Override
+    public boolean markOTPUsed(RealmModel realm, String userId, long interval, int lifespan) {
+        return usedOTPs.markUsed(userId + ":" + interval, lifespan);
+    }
+
     @Override
     public UserSessionModel createUserSession(RealmModel realm, UserModel user, String loginUsername, String ipAddress, String authMethod, boolean rememberMe) {
         UserSessionEntity entity = new UserSessionEntity();
@@ -143,6 +157,48 @@ public class JpaUserSessionProvider implements UserSessionProvider {
         return list;
     }
 
+    /**
+     * Pages are read after the last visited session (ordered by started and id) rather than by offset, so sessions added
+     * or removed while visiting don't shift the pages. The persistence context is flushed and cleared after each page, to
+     * release the sessions and any users or clients loaded by the visitor, so entities loaded before visiting are detached.
+     */
+    @Override
+    public void visitUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, UserSessionVisitor visitor) {
+        int remaining = maxResults >= 0 ? maxResults : Integer.MAX_VALUE;
+        UserSessionEntity last = null;
+
+        while (remaining > 0) {
+            TypedQuery<UserSessionEntity> query;
+            if (last == null) {
+                query = em.createNamedQuery("getUserSessionByClient", UserSessionEntity.class);
+                if (firstResult > 0) {
+                    query.setFirstResult(firstResult);
+                }
+            } else {
+                query = em.createNamedQuery("getUserSessionByClientAfter", UserSessionEntity.class)
+                        .setParameter("started", last.getStarted())
+                        .setParameter("id", last.getId());
+            }
+            query.setParameter("realmId", realm.getId())
+                    .setParameter("clientId", client.getId())
+                    .setMaxResults(Math.min(remaining, VISIT_PAGE_SIZE));
+
+            List<UserSessionEntity> page = query.getResultList();
+            for (UserSessionEntity entity : page) {
+                visitor.visit(new UserSessionAdapter(session, em, realm, entity));
+            }
+
+            em.flush();
+            em.clear();
+
+            if (page.size() < VISIT_PAGE_SIZE) {
+                break;
+            }
+            remaining -= page.size();
+            last = page.get(page.size() - 1);
+        }
+    }
+
     @Override
     public int getActiveUserSessions(RealmModel realm, ClientModel client) {
         Object count = em.createNamedQuery("getActiveUserSessionByClient")
@@ -152,6 +208,19 @@ public class JpaUserSessionProvider implements UserSessionProvider {
         return ((Number)count).intValue();
     }
 
+    @Override
+    public Map<String, Integer> getActiveUserSessionStats(RealmModel realm) {
+        List<Object[]> results = em.createNamedQuery("getActiveUserSessionStats", Object[].class)
+                .setParameter("realmId", realm.getId())
+                .getResultList();
+
+        Map<String, Integer> stats = new HashMap<String, Integer>();
+        for (Object[] result : results) {
+            stats.put((String) result[0], ((Number) result[1]).intValue());
+        }
+        return stats;
+    }
+
     @Override
     public void removeUserSession(RealmModel realm, UserSessionModel session) {
         UserSessionEntity entity = em.find(UserSessionEntity.class, session.getId());
@@ -6,6 +6,7 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.UserSessionProvider;
 import org.keycloak.models.UserSessionProviderFactory;
+import org.keycloak.models.utils.UsedOTPCache;
 
 import javax.persistence.EntityManager;
 
@@ -16,6 +17,9 @@ public class JpaUserSessionProviderFactory implements UserSessionProviderFactory
 
     public static final String ID = "jpa";
 
+    // Used one-time passwords are only kept in memory, so they're not shared between nodes
+    private final UsedOTPCache usedOTPs = new UsedOTPCache();
+
     @Override
     public void init(Config.Scope config) {
     }
@@ -33,7 +37,7 @@ public class JpaUserSessionProviderFactory implements UserSessionProviderFactory
     @Override
     public UserSessionProvider create(KeycloakSession session) {
         EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
-        return new JpaUserSessionProvider(session, em);
+        return new JpaUserSessionProvider(session, em, usedOTPs);
     }
 
     @Override
@@ -8,6 +8,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.UserSessionVisitor;
 import org.keycloak.models.UsernameLoginFailureModel;
 import org.keycloak.models.sessions.mem.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.mem.entities.UserSessionEntity;
@@ -15,13 +16,18 @@ import org.keycloak.models.sessions.mem.entities.UsernameLoginFailureEntity;
 import org.keycloak.models.sessions.mem.entities.UsernameLoginFailureKey;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.RealmInfoUtil;
+import org.keycloak.models.utils.UsedOTPCache;
 import org.keycloak.util.Time;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -33,12 +39,14 @@ public class MemUserSessionProvider implements UserSessionProvider {
     private final ConcurrentHashMap<String, UserSessionEntity> userSessions;
     private final ConcurrentHashMap<String, ClientSessionEntity> clientSessions;
     private final ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures;
+    private final UsedOTPCache usedOTPs;
 
-    public MemUserSessionProvider(KeycloakSession session, ConcurrentHashMap<String, UserSessionEntity> userSessions, ConcurrentHashMap<String, ClientSessionEntity> clientSessions, ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures) {
+    public MemUserSessionProvider(KeycloakSession session, ConcurrentHashMap<String, UserSessionEntity> userSessions, ConcurrentHashMap<String, ClientSessionEntity> clientSessions, ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures, UsedOTPCache usedOTPs) {
         this.session = session;
         this.userSessions = userSessions;
         this.clientSessions = clientSessions;
         this.loginFailures = loginFailures;
+        this.usedOTPs = usedOTPs;
     }
 
     @Override
@@ -148,11 +156,41 @@ public class MemUserSessionProvider implements UserSessionProvider {
         return userSessions.subList(firstResult, toIndex);
     }
 
+    @Override
+    public void visitUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, UserSessionVisitor visitor) {
+        // Sessions are already in memory, so visiting a sorted snapshot doesn't load anything more
+        List<UserSessionModel> userSessions = getUserSessions(realm, client);
+        int fromIndex = firstResult > 0 ? Math.min(firstResult, userSessions.size()) : 0;
+        int toIndex = maxResults >= 0 ? (int) Math.min((long) fromIndex + maxResults, userSessions.size()) : userSessions.size();
+        for (UserSessionModel userSession : userSessions.subList(fromIndex, toIndex)) {
+            visitor.visit(userSession);
+        }
+    }
+
     @Override
     public int getActiveUserSessions(RealmModel realm, ClientModel client) {
         return getUserSessions(realm, client).size();
     }
 
+    @Override
+    public Map<String, Integer> getActiveUserSessionStats(RealmModel realm) {
+        Map<String, Integer> stats = new HashMap<String, Integer>();
+        for (UserSessionEntity s : userSessions.values()) {
+            if (!s.getRealm().equals(realm.getId())) {
+                continue;
+            }
+
+            Set<String> clients = new HashSet<String>();
+            for (ClientSessionEntity clientSession : s.getClientSessions()) {
+                if (clients.add(clientSession.getClientId())) {
+                    Integer count = stats.get(clientSession.getClientId());
+                    stats.put(clientSession.getClientId(), count != null ? count + 1 : 1);
+                }
+            }
+        }
+        return stats;
+    }
+
     @Override
     public void removeUserSession(RealmModel realm, UserSessionModel session) {
         UserSessionEntity entity = getUserSessionEntity(realm, session.getId());
@@ -240,6 +278,11 @@ public class MemUserSessionProvider implements UserSessionProvider {
         return new UsernameLoginFailureAdapter(entity);
     }
 
+    @Override
+    public boolean markOTPUsed(RealmModel realm, String userId, long interval, int lifespan) {
+        return usedOTPs.markUsed(userId + ":" + interval, lifespan);
+    }
+
     @Override
     public void onRealmRemoved(RealmModel realm) {
         removeUserSessions(realm);
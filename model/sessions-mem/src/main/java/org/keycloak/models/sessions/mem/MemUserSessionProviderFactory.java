@@ -9,6 +9,7 @@ import org.keycloak.models.sessions.mem.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.mem.entities.UserSessionEntity;
 import org.keycloak.models.sessions.mem.entities.UsernameLoginFailureEntity;
 import org.keycloak.models.sessions.mem.entities.UsernameLoginFailureKey;
+import org.keycloak.models.utils.UsedOTPCache;
 
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -25,9 +26,11 @@ public class MemUserSessionProviderFactory implements UserSessionProviderFactory
 
     private ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures = new ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity>();
 
+    private UsedOTPCache usedOTPs = new UsedOTPCache();
+
     @Override
     public UserSessionProvider create(KeycloakSession session) {
-        return new MemUserSessionProvider(session, userSessions, clientSessions, loginFailures);
+        return new MemUserSessionProvider(session, userSessions, clientSessions, loginFailures, usedOTPs);
     }
 
     @Override
@@ -43,6 +46,7 @@ public class MemUserSessionProviderFactory implements UserSessionProviderFactory
     public void close() {
         userSessions.clear();
         loginFailures.clear();
+        usedOTPs.clear();
     }
 
     @Override
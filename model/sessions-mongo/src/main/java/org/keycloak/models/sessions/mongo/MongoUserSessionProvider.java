@@ -1,6 +1,9 @@
 package org.keycloak.models.sessions.mongo;
 
+import com.mongodb.AggregationOutput;
 import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.QueryBuilder;
 import org.keycloak.connections.mongo.api.MongoStore;
@@ -12,16 +15,20 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.UserSessionVisitor;
 import org.keycloak.models.UsernameLoginFailureModel;
 import org.keycloak.models.sessions.mongo.entities.MongoClientSessionEntity;
 import org.keycloak.models.sessions.mongo.entities.MongoUserSessionEntity;
 import org.keycloak.models.sessions.mongo.entities.MongoUsernameLoginFailureEntity;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.RealmInfoUtil;
+import org.keycloak.models.utils.UsedOTPCache;
 import org.keycloak.util.Time;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -29,13 +36,17 @@ import java.util.List;
 public class MongoUserSessionProvider implements UserSessionProvider {
 
     private final KeycloakSession session;
+    private final DB db;
     private final MongoStore mongoStore;
     private final MongoStoreInvocationContext invocationContext;
+    private final UsedOTPCache usedOTPs;
 
-    public MongoUserSessionProvider(KeycloakSession session, MongoStore mongoStore, MongoStoreInvocationContext invocationContext) {
+    public MongoUserSessionProvider(KeycloakSession session, DB db, MongoStore mongoStore, MongoStoreInvocationContext invocationContext, UsedOTPCache usedOTPs) {
         this.session = session;
+        this.db = db;
         this.mongoStore = mongoStore;
         this.invocationContext = invocationContext;
+        this.usedOTPs = usedOTPs;
     }
 
     public MongoStore getMongoStore() {
@@ -142,6 +153,39 @@ public class MongoUserSessionProvider implements UserSessionProvider {
         return result;
     }
 
+    /**
+     * Reads the client sessions with a single cursor, fetching only the session ids, and loads each user session as it's
+     * visited. User sessions removed while visiting are skipped.
+     */
+    @Override
+    public void visitUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, UserSessionVisitor visitor) {
+        DBObject query = new QueryBuilder()
+                .and("clientId").is(client.getId())
+                .and("sessionId").notEquals(null)
+                .get();
+        DBObject sort = new BasicDBObject("timestamp", 1).append("id", 1);
+
+        DBCursor cursor = db.getCollection("clientSessions").find(query, new BasicDBObject("sessionId", 1)).sort(sort).batchSize(100);
+        try {
+            if (firstResult > 0) {
+                cursor.skip(firstResult);
+            }
+            if (maxResults >= 0) {
+                cursor.limit(maxResults);
+            }
+
+            while (cursor.hasNext()) {
+                String sessionId = (String) cursor.next().get("sessionId");
+                MongoUserSessionEntity userSession = mongoStore.loadEntity(MongoUserSessionEntity.class, sessionId, invocationContext);
+                if (userSession != null) {
+                    visitor.visit(new UserSessionAdapter(session, this, userSession, realm, invocationContext));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public int getActiveUserSessions(RealmModel realm, ClientModel client) {
         DBObject query = new QueryBuilder()
@@ -151,6 +195,23 @@ public class MongoUserSessionProvider implements UserSessionProvider {
         return mongoStore.countEntities(MongoClientSessionEntity.class, query, invocationContext);
     }
 
+    @Override
+    public Map<String, Integer> getActiveUserSessionStats(RealmModel realm) {
+        DBObject match = new BasicDBObject("$match", new QueryBuilder()
+                .and("realmId").is(realm.getId())
+                .and("sessionId").notEquals(null)
+                .get());
+        DBObject group = new BasicDBObject("$group", new BasicDBObject("_id", "$clientId").append("count", new BasicDBObject("$sum", 1)));
+
+        AggregationOutput output = db.getCollection("clientSessions").aggregate(match, group);
+
+        Map<String, Integer> stats = new HashMap<String, Integer>();
+        for (DBObject result : output.results()) {
+            stats.put((String) result.get("_id"), ((Number) result.get("count")).intValue());
+        }
+        return stats;
+    }
+
     @Override
     public void removeUserSession(RealmModel realm, UserSessionModel session) {
         mongoStore.removeEntity(((UserSessionAdapter) session).getMongoEntity(), invocationContext);
@@ -227,6 +288,11 @@ public class MongoUserSessionProvider implements UserSessionProvider {
         return new UsernameLoginFailureAdapter(invocationContext, userEntity);
     }
 
+    @Override
+    public boolean markOTPUsed(RealmModel realm, String userId, long interval, int lifespan) {
+        return usedOTPs.markUsed(userId + ":" + interval, lifespan);
+    }
+
     @Override
     public void onRealmRemoved(RealmModel realm) {
         removeUserSessions(realm);
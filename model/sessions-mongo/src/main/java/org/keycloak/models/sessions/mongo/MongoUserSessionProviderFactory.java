@@ -6,6 +6,7 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.UserSessionProvider;
 import org.keycloak.models.UserSessionProviderFactory;
+import org.keycloak.models.utils.UsedOTPCache;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -14,10 +15,13 @@ public class MongoUserSessionProviderFactory implements UserSessionProviderFacto
 
     public static final String ID = "mongo";
 
+    // Used one-time passwords are only kept in memory, so they're not shared between nodes
+    private final UsedOTPCache usedOTPs = new UsedOTPCache();
+
     @Override
     public UserSessionProvider create(KeycloakSession session) {
         MongoConnectionProvider connection = session.getProvider(MongoConnectionProvider.class);
-        return new MongoUserSessionProvider(session, connection.getMongoStore(), connection.getInvocationContext());
+        return new MongoUserSessionProvider(session, connection.getDB(), connection.getMongoStore(), connection.getInvocationContext(), usedOTPs);
     }
 
     @Override
@@ -15,10 +15,12 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.ProtocolMapperModel;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
 import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.cache.CacheRealmProvider;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.protocol.ProtocolMapper;
 import org.keycloak.protocol.oidc.mappers.OIDCAccessTokenMapper;
@@ -33,7 +35,13 @@ import org.keycloak.util.Time;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -46,6 +54,16 @@ import java.util.Set;
 public class TokenManager {
     protected static final Logger logger = Logger.getLogger(TokenManager.class);
 
+    private static final int MAX_MAPPER_PLANS = 1000;
+
+    // Least recently used plans are dropped, so plans of clients that were removed through another node don't accumulate
+    private static final Map<String, MapperPlan> mapperPlans = new LinkedHashMap<String, MapperPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MapperPlan> eldest) {
+            return size() > MAX_MAPPER_PLANS;
+        }
+    };
+
     public static void applyScope(RoleModel role, RoleModel scope, Set<RoleModel> visited, Set<RoleModel> requested) {
         if (visited.contains(scope)) return;
         visited.add(scope);
@@ -89,15 +107,8 @@ public class TokenManager {
             AuthenticationManager.backchannelLogout(session, realm, userSession, uriInfo, connection, headers);
             throw new OAuthErrorException(OAuthErrorException.INVALID_GRANT, "Session not active", "Session not active");
         }
-        ClientSessionModel clientSession = null;
-        for (ClientSessionModel clientSessionModel : userSession.getClientSessions()) {
-            if (clientSessionModel.getId().equals(oldToken.getClientSession())) {
-                clientSession = clientSessionModel;
-                break;
-            }
-        }
-
-        if (clientSession == null) {
+        ClientSessionModel clientSession = oldToken.getClientSession() != null ? session.sessions().getClientSession(realm, oldToken.getClientSession()) : null;
+        if (clientSession == null || clientSession.getUserSession() == null || !clientSession.getUserSession().getId().equals(userSession.getId())) {
             throw new OAuthErrorException(OAuthErrorException.INVALID_GRANT, "Client session not active", "Client session not active");
         }
 
@@ -237,16 +248,46 @@ public class TokenManager {
             scopeMappings.addAll(((ApplicationModel) client).getRoles());
         }
 
+        // Same as applyScope, but expands the composites of each role once instead of searching them for every scope
+        Map<RoleModel, Set<RoleModel>> expanded = new HashMap<RoleModel, Set<RoleModel>>();
         for (RoleModel role : roleMappings) {
+            Set<RoleModel> effective = new HashSet<RoleModel>();
+            expandComposites(role, effective, expanded);
             for (RoleModel desiredRole : scopeMappings) {
                 Set<RoleModel> visited = new HashSet<RoleModel>();
-                applyScope(role, desiredRole, visited, requestedRoles);
+                applyScope(effective, desiredRole, visited, requestedRoles);
             }
         }
 
         return requestedRoles;
     }
 
+    private static void applyScope(Set<RoleModel> effective, RoleModel scope, Set<RoleModel> visited, Set<RoleModel> requested) {
+        if (!visited.add(scope)) return;
+        if (effective.contains(scope)) {
+            requested.add(scope);
+            return;
+        }
+        if (!scope.isComposite()) return;
+
+        for (RoleModel contained : scope.getComposites()) {
+            applyScope(effective, contained, visited, requested);
+        }
+    }
+
+    private static void expandComposites(RoleModel role, Set<RoleModel> effective, Map<RoleModel, Set<RoleModel>> expanded) {
+        if (!effective.add(role) || !role.isComposite()) return;
+
+        Set<RoleModel> composites = expanded.get(role);
+        if (composites == null) {
+            composites = role.getComposites();
+            expanded.put(role, composites);
+        }
+        for (RoleModel composite : composites) {
+            expandComposites(composite, effective, expanded);
+        }
+    }
+
     public void verifyAccess(AccessToken token, AccessToken newToken) throws OAuthErrorException {
         if (token.getRealmAccess() != null) {
             if (newToken.getRealmAccess() == null) throw new OAuthErrorException(OAuthErrorException.INVALID_SCOPE, "User no long has permission for realm roles");
@@ -275,34 +316,91 @@ public class TokenManager {
 
     public AccessToken transformAccessToken(KeycloakSession session, AccessToken token, RealmModel realm, ClientModel client, UserModel user,
                                             UserSessionModel userSession, ClientSessionModel clientSession) {
+        MapperPlan plan = getMapperPlan(session, client);
+        for (Map.Entry<ProtocolMapperModel, OIDCAccessTokenMapper> entry : plan.accessTokenMappers) {
+            token = entry.getValue().transformAccessToken(token, entry.getKey(), session, userSession, clientSession);
+        }
+        return token;
+    }
+    public void transformIDToken(KeycloakSession session, IDToken token, RealmModel realm, ClientModel client, UserModel user,
+                                      UserSessionModel userSession, ClientSessionModel clientSession) {
+        MapperPlan plan = getMapperPlan(session, client);
+        for (Map.Entry<ProtocolMapperModel, OIDCIDTokenMapper> entry : plan.idTokenMappers) {
+            token = entry.getValue().transformIDToken(token, entry.getKey(), session, userSession, clientSession);
+        }
+    }
+
+    /**
+     * Returns the OIDC mappers of the client resolved to their provider factories. Plans are only kept while the realm
+     * cache is enabled, and reused as long as the cached client returns the same set of protocol mappers. The cache
+     * replaces the set when a mapper is added, updated or removed, or the client is invalidated by another node. Up to
+     * MAX_MAPPER_PLANS plans are kept.
+     */
+    private static MapperPlan getMapperPlan(KeycloakSession session, ClientModel client) {
         Set<ProtocolMapperModel> mappings = client.getProtocolMappers();
         KeycloakSessionFactory sessionFactory = session.getKeycloakSessionFactory();
-        for (ProtocolMapperModel mapping : mappings) {
-            if (!mapping.getProtocol().equals(OIDCLoginProtocol.LOGIN_PROTOCOL)) continue;
 
-            ProtocolMapper mapper = (ProtocolMapper)sessionFactory.getProviderFactory(ProtocolMapper.class, mapping.getProtocolMapper());
-            if (mapper == null || !(mapper instanceof OIDCAccessTokenMapper)) continue;
-            token = ((OIDCAccessTokenMapper)mapper).transformAccessToken(token, mapping, session, userSession, clientSession);
+        RealmProvider realms = session.realms();
+        if (!(realms instanceof CacheRealmProvider) || !((CacheRealmProvider) realms).isEnabled()) {
+            return new MapperPlan(sessionFactory, client.getRealm().getId(), mappings);
+        }
 
+        MapperPlan plan;
+        synchronized (mapperPlans) {
+            plan = mapperPlans.get(client.getId());
+        }
+        if (plan == null || plan.mappings != mappings || plan.sessionFactory != sessionFactory) {
+            plan = new MapperPlan(sessionFactory, client.getRealm().getId(), mappings);
+            synchronized (mapperPlans) {
+                mapperPlans.put(client.getId(), plan);
+            }
+        }
+        return plan;
+    }
 
+    public static void onClientRemoved(RealmModel realm, ClientModel client) {
+        synchronized (mapperPlans) {
+            mapperPlans.remove(client.getId());
+        }
+    }
 
+    public static void onRealmRemoved(RealmModel realm) {
+        synchronized (mapperPlans) {
+            Iterator<MapperPlan> itr = mapperPlans.values().iterator();
+            while (itr.hasNext()) {
+                if (realm.getId().equals(itr.next().realmId)) {
+                    itr.remove();
+                }
+            }
         }
-        return token;
     }
-    public void transformIDToken(KeycloakSession session, IDToken token, RealmModel realm, ClientModel client, UserModel user,
-                                      UserSessionModel userSession, ClientSessionModel clientSession) {
-        Set<ProtocolMapperModel> mappings = client.getProtocolMappers();
-        KeycloakSessionFactory sessionFactory = session.getKeycloakSessionFactory();
-        for (ProtocolMapperModel mapping : mappings) {
-            if (!mapping.getProtocol().equals(OIDCLoginProtocol.LOGIN_PROTOCOL)) continue;
 
-            ProtocolMapper mapper = (ProtocolMapper)sessionFactory.getProviderFactory(ProtocolMapper.class, mapping.getProtocolMapper());
-            if (mapper == null || !(mapper instanceof OIDCIDTokenMapper)) continue;
-            token = ((OIDCIDTokenMapper)mapper).transformIDToken(token, mapping, session, userSession, clientSession);
+    private static class MapperPlan {
 
+        private final KeycloakSessionFactory sessionFactory;
+        private final String realmId;
+        private final Set<ProtocolMapperModel> mappings;
+        private final List<Map.Entry<ProtocolMapperModel, OIDCAccessTokenMapper>> accessTokenMappers = new LinkedList<Map.Entry<ProtocolMapperModel, OIDCAccessTokenMapper>>();
+        private final List<Map.Entry<ProtocolMapperModel, OIDCIDTokenMapper>> idTokenMappers = new LinkedList<Map.Entry<ProtocolMapperModel, OIDCIDTokenMapper>>();
 
+        private MapperPlan(KeycloakSessionFactory sessionFactory, String realmId, Set<ProtocolMapperModel> mappings) {
+            this.sessionFactory = sessionFactory;
+            this.realmId = realmId;
+            this.mappings = mappings;
 
+            for (ProtocolMapperModel mapping : mappings) {
+                if (!mapping.getProtocol().equals(OIDCLoginProtocol.LOGIN_PROTOCOL)) continue;
+
+                ProtocolMapper mapper = (ProtocolMapper)sessionFactory.getProviderFactory(ProtocolMapper.class, mapping.getProtocolMapper());
+                if (mapper instanceof OIDCAccessTokenMapper) {
+                    accessTokenMappers.add(new AbstractMap.SimpleImmutableEntry<ProtocolMapperModel, OIDCAccessTokenMapper>(mapping, (OIDCAccessTokenMapper) mapper));
+                }
+                if (mapper instanceof OIDCIDTokenMapper) {
+                    idTokenMappers.add(new AbstractMap.SimpleImmutableEntry<ProtocolMapperModel, OIDCIDTokenMapper>(mapping, (OIDCIDTokenMapper) mapper));
+                }
+            }
         }
+
     }
 
 
@@ -16,6 +16,7 @@ import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.IdentityProviderModel;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RequiredCredentialModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
@@ -93,14 +94,22 @@ public class AuthorizationEndpoint {
 
     @GET
     public Response build() {
-        switch (action) {
-            case REGISTER:
-                return buildRegister();
-            case CODE:
-                return buildAuthorizationCodeAuthorizationResponse();
-        }
+        MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+        long start = System.nanoTime();
+        try {
+            switch (action) {
+                case REGISTER:
+                    return buildRegister();
+                case CODE:
+                    return buildAuthorizationCodeAuthorizationResponse();
+            }
 
-        throw new RuntimeException("Unknown action " + action);
+            throw new RuntimeException("Unknown action " + action);
+        } finally {
+            if (metrics != null) {
+                metrics.record("authorization." + action.name().toLowerCase(), System.nanoTime() - start);
+            }
+        }
     }
 
     /**
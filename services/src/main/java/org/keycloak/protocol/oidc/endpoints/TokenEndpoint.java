@@ -14,6 +14,7 @@ import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
@@ -89,16 +90,24 @@ public class TokenEndpoint {
 
     @POST
     public Response build() {
-        switch (action) {
-            case AUTHORIZATION_CODE:
-                return buildAuthorizationCodeAccessTokenResponse();
-            case REFRESH_TOKEN:
-                return buildRefreshToken();
-            case PASSWORD:
-                return buildResourceOwnerPasswordCredentialsGrant();
-        }
+        MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+        long start = System.nanoTime();
+        try {
+            switch (action) {
+                case AUTHORIZATION_CODE:
+                    return buildAuthorizationCodeAccessTokenResponse();
+                case REFRESH_TOKEN:
+                    return buildRefreshToken();
+                case PASSWORD:
+                    return buildResourceOwnerPasswordCredentialsGrant();
+            }
 
-        throw new RuntimeException("Unknown action " + action);
+            throw new RuntimeException("Unknown action " + action);
+        } finally {
+            if (metrics != null) {
+                metrics.record("token." + action.name().toLowerCase(), System.nanoTime() - start);
+            }
+        }
     }
 
     @OPTIONS
@@ -1,11 +1,12 @@
 package org.keycloak.protocol.oidc.utils;
 
 import org.jboss.logging.Logger;
-import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.Constants;
-import org.keycloak.models.OAuthClientModel;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.cache.ClientAdapter;
+import org.keycloak.models.cache.RealmAdapter;
+import org.keycloak.models.utils.RedirectUriMatcher;
 import org.keycloak.services.resources.flows.Urls;
 
 import javax.ws.rs.core.UriInfo;
@@ -21,13 +22,23 @@ public class RedirectUtils {
     private static final Logger logger = Logger.getLogger(RedirectUtils.class);
 
     public static String verifyRealmRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm) {
-        Set<String> validRedirects = getValidateRedirectUris(realm);
-        return verifyRedirectUri(uriInfo, redirectUri, realm, validRedirects);
+        RedirectUriMatcher matcher;
+        if (realm instanceof RealmAdapter) {
+            matcher = ((RealmAdapter) realm).getRedirectUriMatcher();
+        } else {
+            matcher = RedirectUriMatcher.compile(realm);
+        }
+        return verifyRedirectUri(uriInfo, redirectUri, realm, matcher);
     }
 
     public static String verifyRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm, ClientModel client) {
-        Set<String> validRedirects = client.getRedirectUris();
-        return verifyRedirectUri(uriInfo, redirectUri, realm, validRedirects);
+        RedirectUriMatcher matcher;
+        if (client instanceof ClientAdapter) {
+            matcher = ((ClientAdapter) client).getRedirectUriMatcher();
+        } else {
+            matcher = RedirectUriMatcher.compile(client.getRedirectUris());
+        }
+        return verifyRedirectUri(uriInfo, redirectUri, realm, matcher);
     }
 
     public static Set<String> resolveValidRedirects(UriInfo uriInfo, Set<String> validRedirects) {
@@ -44,38 +55,23 @@ public class RedirectUtils {
         return resolveValidRedirects;
     }
 
-    private static Set<String> getValidateRedirectUris(RealmModel realm) {
-        Set<String> redirects = new HashSet<String>();
-        for (ApplicationModel client : realm.getApplications()) {
-            for (String redirect : client.getRedirectUris()) {
-                redirects.add(redirect);
-            }
-        }
-        for (OAuthClientModel client : realm.getOAuthClients()) {
-            for (String redirect : client.getRedirectUris()) {
-                redirects.add(redirect);
-            }
-        }
-        return redirects;
-    }
-
-    private static String verifyRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm, Set<String> validRedirects) {
+    private static String verifyRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm, RedirectUriMatcher matcher) {
         if (redirectUri == null) {
-            if (validRedirects.size() != 1) return null;
-            String validRedirect = validRedirects.iterator().next();
+            if (matcher.getValidRedirects().size() != 1) return null;
+            String validRedirect = matcher.getValidRedirects().iterator().next();
             int idx = validRedirect.indexOf("/*");
             if (idx > -1) {
                 validRedirect = validRedirect.substring(0, idx);
             }
             redirectUri = validRedirect;
-        } else if (validRedirects.isEmpty()) {
+        } else if (matcher.isEmpty()) {
             logger.debug("No Redirect URIs supplied");
             redirectUri = null;
         } else {
             String r = redirectUri.indexOf('?') != -1 ? redirectUri.substring(0, redirectUri.indexOf('?')) : redirectUri;
-            Set<String> resolveValidRedirects = resolveValidRedirects(uriInfo, validRedirects);
+            String origin = getOrigin(uriInfo);
 
-            boolean valid = matchesRedirects(resolveValidRedirects, r);
+            boolean valid = matcher.matches(r, origin);
 
             if (!valid && r.startsWith(Constants.INSTALLED_APP_URL) && r.indexOf(':', Constants.INSTALLED_APP_URL.length()) >= 0) {
                 int i = r.indexOf(':', Constants.INSTALLED_APP_URL.length());
@@ -90,7 +86,7 @@ public class RedirectUtils {
 
                 r = sb.toString();
 
-                valid = matchesRedirects(resolveValidRedirects, r);
+                valid = matcher.matches(r, origin);
             }
             if (valid && redirectUri.startsWith("/")) {
                 redirectUri = relativeToAbsoluteURI(uriInfo, redirectUri);
@@ -106,29 +102,16 @@ public class RedirectUtils {
     }
 
     private static String relativeToAbsoluteURI(UriInfo uriInfo, String relative) {
+        return getOrigin(uriInfo) + relative;
+    }
+
+    private static String getOrigin(UriInfo uriInfo) {
         URI baseUri = uriInfo.getBaseUri();
         String uri = baseUri.getScheme() + "://" + baseUri.getHost();
         if (baseUri.getPort() != -1) {
             uri += ":" + baseUri.getPort();
         }
-        relative = uri + relative;
-        return relative;
-    }
-
-    private static boolean matchesRedirects(Set<String> validRedirects, String redirect) {
-        for (String validRedirect : validRedirects) {
-            if (validRedirect.endsWith("*")) {
-                // strip off *
-                int length = validRedirect.length() - 1;
-                validRedirect = validRedirect.substring(0, length);
-                if (redirect.startsWith(validRedirect)) return true;
-                // strip off trailing '/'
-                if (length - 1 > 0 && validRedirect.charAt(length - 1) == '/') length--;
-                validRedirect = validRedirect.substring(0, length);
-                if (validRedirect.equals(redirect)) return true;
-            } else if (validRedirect.equals(redirect)) return true;
-        }
-        return false;
+        return uri;
     }
 
 }
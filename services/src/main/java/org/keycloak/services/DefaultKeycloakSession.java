@@ -3,6 +3,7 @@ package org.keycloak.services;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.KeycloakTransactionManager;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.UserFederationManager;
 import org.keycloak.models.UserProvider;
@@ -11,6 +12,7 @@ import org.keycloak.models.cache.CacheRealmProvider;
 import org.keycloak.models.cache.CacheUserProvider;
 import org.keycloak.provider.Provider;
 import org.keycloak.provider.ProviderFactory;
+import org.keycloak.services.metrics.TimedUserSessionProvider;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -85,7 +87,7 @@ public class DefaultKeycloakSession implements KeycloakSession {
         if (provider == null) {
             ProviderFactory<T> providerFactory = factory.getProviderFactory(clazz);
             if (providerFactory != null) {
-                provider = providerFactory.create(this);
+                provider = instrument(clazz, providerFactory.create(this));
                 providers.put(hash, provider);
             }
         }
@@ -98,13 +100,23 @@ public class DefaultKeycloakSession implements KeycloakSession {
         if (provider == null) {
             ProviderFactory<T> providerFactory = factory.getProviderFactory(clazz, id);
             if (providerFactory != null) {
-                provider = providerFactory.create(this);
+                provider = instrument(clazz, providerFactory.create(this));
                 providers.put(hash, provider);
             }
         }
         return provider;
     }
 
+    private <T extends Provider> T instrument(Class<T> clazz, T provider) {
+        if (clazz == UserSessionProvider.class && provider != null) {
+            MetricsProvider metrics = getProvider(MetricsProvider.class);
+            if (metrics != null) {
+                return clazz.cast(new TimedUserSessionProvider((UserSessionProvider) provider, metrics));
+            }
+        }
+        return provider;
+    }
+
     public <T extends Provider> Set<String> listProviderIds(Class<T> clazz) {
         return factory.getAllProviderIds(clazz);
     }
@@ -2,6 +2,7 @@ package org.keycloak.services;
 
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
+import org.keycloak.events.EventDispatcherProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.RealmModel;
@@ -15,12 +16,19 @@ import org.keycloak.provider.Spi;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
 
@@ -48,6 +56,9 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
     }
 
     public void init() {
+        long start = System.currentTimeMillis();
+
+        Map<ProviderFactory, Config.Scope> scopes = new LinkedHashMap<ProviderFactory, Config.Scope>();
         ProviderManager pm = new ProviderManager(getClass().getClassLoader(), Config.scope().getArray("providers"));
 
         for (Spi spi : ServiceLoader.load(Spi.class, getClass().getClassLoader())) {
@@ -63,16 +74,14 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
                     throw new RuntimeException("Failed to find provider " + provider + " for " + spi.getName());
                 }
 
-                Config.Scope scope = Config.scope(spi.getName(), provider);
-                factory.init(scope);
+                scopes.put(factory, Config.scope(spi.getName(), provider));
 
                 factories.put(factory.getId(), factory);
 
                 log.debugv("Loaded SPI {0} (provider = {1})", spi.getName(), provider);
             } else {
                 for (ProviderFactory factory : pm.load(spi)) {
-                    Config.Scope scope = Config.scope(spi.getName(), factory.getId());
-                    factory.init(scope);
+                    scopes.put(factory, Config.scope(spi.getName(), factory.getId()));
 
                     factories.put(factory.getId(), factory);
                 }
@@ -87,11 +96,87 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
                 }
             }
         }
+        long loaded = System.currentTimeMillis();
+
+        initFactories(scopes);
+        long initialized = System.currentTimeMillis();
+
         for ( Map<String, ProviderFactory> factories : factoriesMap.values()) {
             for (ProviderFactory factory : factories.values()) {
                 factory.postInit(this);
             }
         }
+        long end = System.currentTimeMillis();
+
+        log.infov("Initialized {0} providers in {1} ms (load {2} ms, init {3} ms, post init {4} ms)", scopes.size(), end - start, loaded - start, initialized - loaded, end - initialized);
+    }
+
+    /**
+     * Invokes init for all factories. By default factories are initialized sequentially. Factories only get their config
+     * in init, dependencies on other factories are resolved in postInit, so init can be invoked in parallel by setting
+     * startup.initThreads to more than 1. Only do this if all factories, including custom providers, are safe to
+     * initialize concurrently.
+     *
+     * @param scopes
+     */
+    private void initFactories(Map<ProviderFactory, Config.Scope> scopes) {
+        int threads = Math.min(Config.scope("startup").getInt("initThreads", 1), scopes.size());
+        if (threads <= 1) {
+            for (Map.Entry<ProviderFactory, Config.Scope> e : scopes.entrySet()) {
+                initFactory(e.getKey(), e.getValue());
+            }
+            return;
+        }
+
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Provider Init " + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }
+        });
+
+        try {
+            List<Future<?>> futures = new LinkedList<Future<?>>();
+            for (final Map.Entry<ProviderFactory, Config.Scope> e : scopes.entrySet()) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        initFactory(e.getKey(), e.getValue());
+                    }
+                }));
+            }
+
+            RuntimeException failure = null;
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while initializing providers", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void initFactory(ProviderFactory factory, Config.Scope scope) {
+        long start = System.currentTimeMillis();
+        factory.init(scope);
+        log.debugv("Initialized {0} in {1} ms", factory.getClass().getName(), System.currentTimeMillis() - start);
     }
 
     public KeycloakSession create() {
@@ -131,8 +216,20 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
     }
 
     public void close() {
-        for (Map<String, ProviderFactory> factories : factoriesMap.values()) {
-            for (ProviderFactory factory : factories.values()) {
+        // Queued events are sent using other providers (event store, connections), so the dispatcher is closed first to
+        // send them before the providers they depend on are closed
+        Map<String, ProviderFactory> dispatchers = factoriesMap.get(EventDispatcherProvider.class);
+        if (dispatchers != null) {
+            for (ProviderFactory factory : dispatchers.values()) {
+                factory.close();
+            }
+        }
+
+        for (Map.Entry<Class<? extends Provider>, Map<String, ProviderFactory>> e : factoriesMap.entrySet()) {
+            if (e.getKey().equals(EventDispatcherProvider.class)) {
+                continue;
+            }
+            for (ProviderFactory factory : e.getValue().values()) {
                 factory.close();
             }
         }
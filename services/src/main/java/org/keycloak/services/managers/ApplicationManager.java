@@ -7,6 +7,7 @@ import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserSessionProvider;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.protocol.oidc.TokenManager;
 import org.keycloak.representations.adapters.config.BaseRealmConfig;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.util.Time;
@@ -46,6 +47,7 @@ public class ApplicationManager {
             if (sessions != null) {
                 sessions.onClientRemoved(realm, application);
             }
+            TokenManager.onClientRemoved(realm, application);
             return true;
         } else {
             return false;
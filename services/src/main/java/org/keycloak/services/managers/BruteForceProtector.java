@@ -5,6 +5,7 @@ import org.jboss.logging.Logger;
 import org.keycloak.ClientConnection;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UsernameLoginFailureModel;
 
@@ -162,6 +163,11 @@ public class BruteForceProtector implements Runnable {
                         queue.drainTo(events, TRANSACTION_SIZE);
                         Collections.sort(events); // we sort to avoid deadlock due to ordered updates.  Maybe I'm overthinking this.
                         KeycloakSession session = factory.create();
+                        MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+                        if (metrics != null) {
+                            metrics.gauge("bruteForce.queueDepth", queue.size());
+                            metrics.add("bruteForce.processed", events.size());
+                        }
                         session.getTransaction().begin();
                         try {
                             for (LoginEvent event : events) {
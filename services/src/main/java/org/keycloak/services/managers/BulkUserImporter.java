@@ -0,0 +1,240 @@
+package org.keycloak.services.managers;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.jboss.logging.Logger;
+import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.BulkUserModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+import org.keycloak.models.UserCredentialModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RepresentationToModel;
+import org.keycloak.representations.idm.BulkUserResultRepresentation;
+import org.keycloak.representations.idm.CredentialRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds users from a JSON array of users. The array is read as a stream, so only one chunk of users is kept in memory.
+ * Each chunk is added in its own transaction, if a chunk fails none of the users in it are added, but the remaining
+ * chunks are still added. Users that are invalid, for example with a password that doesn't match the password policy of
+ * the realm, are not added and are reported individually, without failing the rest of the chunk. If the array can't be
+ * read to the end, for example if a user is malformed or the stream is closed, the users read before that are still
+ * added and the result contains the error and the index of the user that couldn't be read.
+ */
+public class BulkUserImporter {
+
+    private static final Logger log = Logger.getLogger(BulkUserImporter.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    public static final int MAX_CHUNK_SIZE = 5000;
+
+    private final KeycloakSessionFactory sessionFactory;
+    private final String realmId;
+    private final int chunkSize;
+    private final boolean addDefaultRoles;
+
+    public BulkUserImporter(KeycloakSessionFactory sessionFactory, String realmId, int chunkSize, boolean addDefaultRoles) {
+        this.sessionFactory = sessionFactory;
+        this.realmId = realmId;
+        this.chunkSize = chunkSize;
+        this.addDefaultRoles = addDefaultRoles;
+    }
+
+    public BulkUserResultRepresentation importUsers(InputStream users) {
+        BulkUserResultRepresentation result = new BulkUserResultRepresentation();
+        List<UserRepresentation> chunk = new ArrayList<UserRepresentation>(chunkSize);
+        int offset = 0;
+
+        JsonParser parser = null;
+        try {
+            parser = JsonSerialization.mapper.getJsonFactory().createJsonParser(users);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected an array of users");
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(JsonSerialization.mapper.readValue(parser, UserRepresentation.class));
+                if (chunk.size() == chunkSize) {
+                    addChunk(chunk, offset, result);
+                    offset += chunk.size();
+                    chunk.clear();
+                }
+            }
+
+            if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected an array of users");
+            }
+        } catch (IOException e) {
+            log.debugv(e, "Failed to read user {0}", offset + chunk.size());
+            result.setError(getMessage(e));
+            result.setErrorIndex(offset + chunk.size());
+        } finally {
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close parser", e);
+                }
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            addChunk(chunk, offset, result);
+        }
+        return result;
+    }
+
+    private void addChunk(final List<UserRepresentation> chunk, final int offset, BulkUserResultRepresentation result) {
+        final List<BulkUserResultRepresentation.UserError> userErrors = new ArrayList<BulkUserResultRepresentation.UserError>();
+        try {
+            KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                @Override
+                public void run(KeycloakSession session) {
+                    RealmModel realm = session.realms().getRealm(realmId);
+                    if (realm == null) {
+                        throw new ModelException("Realm not found");
+                    }
+
+                    Map<String, RoleModel> roles = new HashMap<String, RoleModel>();
+                    List<BulkUserModel> users = new ArrayList<BulkUserModel>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        UserRepresentation rep = chunk.get(i);
+                        try {
+                            users.add(toModel(realm, rep, roles));
+                        } catch (ModelException e) {
+                            userErrors.add(new BulkUserResultRepresentation.UserError(offset + i, rep.getUsername(), e.getMessage(), toStrings(e.getParameters())));
+                        }
+                    }
+
+                    if (!users.isEmpty()) {
+                        session.users().addUsers(realm, users, addDefaultRoles);
+                    }
+                }
+            });
+            result.setAdded(result.getAdded() + chunk.size() - userErrors.size());
+            result.setFailed(result.getFailed() + userErrors.size());
+            result.getUserErrors().addAll(userErrors);
+        } catch (RuntimeException e) {
+            log.debugv(e, "Failed to add users {0} to {1}", offset, offset + chunk.size() - 1);
+            result.setFailed(result.getFailed() + chunk.size());
+            result.getErrors().add(new BulkUserResultRepresentation.ChunkError(offset, chunk.size(), getMessage(e)));
+        }
+    }
+
+    private BulkUserModel toModel(RealmModel realm, UserRepresentation rep, Map<String, RoleModel> roles) {
+        if (rep.getUsername() == null) {
+            throw new ModelException("Username is missing");
+        }
+
+        BulkUserModel user = new BulkUserModel();
+        user.setId(rep.getId());
+        user.setUsername(rep.getUsername());
+        user.setEmail(rep.getEmail());
+        user.setFirstName(rep.getFirstName());
+        user.setLastName(rep.getLastName());
+        user.setEnabled(rep.isEnabled());
+        user.setEmailVerified(rep.isEmailVerified());
+        user.setTotp(rep.isTotp());
+
+        if (rep.getAttributes() != null) {
+            user.getAttributes().putAll(rep.getAttributes());
+        }
+
+        if (rep.getRequiredActions() != null) {
+            for (String action : rep.getRequiredActions()) {
+                user.getRequiredActions().add(UserModel.RequiredAction.valueOf(action));
+            }
+        }
+
+        if (rep.getCredentials() != null) {
+            for (CredentialRepresentation cred : rep.getCredentials()) {
+                if (cred.getValue() == null) {
+                    throw new ModelException("Only plain-text credentials are supported for user " + rep.getUsername());
+                }
+                UserCredentialModel credential = RepresentationToModel.convertCredential(cred);
+                if (UserCredentialModel.PASSWORD.equals(credential.getType()) && realm.getPasswordPolicy() != null) {
+                    PasswordPolicy.Error error = realm.getPasswordPolicy().validate(rep.getUsername(), credential.getValue());
+                    if (error != null) throw new ModelException(error.getMessage(), error.getParameters());
+                }
+                user.getCredentials().add(credential);
+                if (cred.isTemporary()) {
+                    user.getRequiredActions().add(UserModel.RequiredAction.UPDATE_PASSWORD);
+                }
+            }
+        }
+
+        if (rep.getRealmRoles() != null) {
+            for (String roleName : rep.getRealmRoles()) {
+                user.getRoles().add(getRole(realm, null, roleName, roles));
+            }
+        }
+
+        if (rep.getApplicationRoles() != null) {
+            for (Map.Entry<String, List<String>> e : rep.getApplicationRoles().entrySet()) {
+                for (String roleName : e.getValue()) {
+                    user.getRoles().add(getRole(realm, e.getKey(), roleName, roles));
+                }
+            }
+        }
+
+        return user;
+    }
+
+    private RoleModel getRole(RealmModel realm, String appName, String roleName, Map<String, RoleModel> roles) {
+        String key = appName != null ? appName + "/" + roleName : roleName;
+        RoleModel role = roles.get(key);
+        if (role == null) {
+            if (appName == null) {
+                role = realm.getRole(roleName);
+            } else {
+                ApplicationModel app = realm.getApplicationByName(appName);
+                if (app == null) {
+                    throw new ModelException("Application not found: " + appName);
+                }
+                role = app.getRole(roleName);
+            }
+
+            if (role == null) {
+                throw new ModelException("Role not found: " + key);
+            }
+            roles.put(key, role);
+        }
+        return role;
+    }
+
+    private List<String> toStrings(Object[] parameters) {
+        if (parameters == null || parameters.length == 0) {
+            return null;
+        }
+
+        List<String> strings = new ArrayList<String>(parameters.length);
+        for (Object p : parameters) {
+            strings.add(String.valueOf(p));
+        }
+        return strings;
+    }
+
+    private String getMessage(Throwable t) {
+        while (t.getCause() != null && t.getMessage() == null) {
+            t = t.getCause();
+        }
+        return t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+    }
+
+}
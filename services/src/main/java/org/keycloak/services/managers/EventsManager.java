@@ -2,10 +2,13 @@ package org.keycloak.services.managers;
 
 import org.jboss.logging.Logger;
 import org.keycloak.ClientConnection;
+import org.keycloak.events.Event;
 import org.keycloak.events.EventBuilder;
+import org.keycloak.events.EventDispatcherProvider;
 import org.keycloak.events.EventListenerProvider;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.MetricsProvider;
 import org.keycloak.models.RealmModel;
 
 import java.util.LinkedList;
@@ -30,11 +33,16 @@ public class EventsManager {
 
     public EventBuilder createEventBuilder() {
         List<EventListenerProvider> listeners = new LinkedList<EventListenerProvider>();
+        EventDispatcherProvider dispatcher = session.getProvider(EventDispatcherProvider.class);
 
         if (realm.isEventsEnabled()) {
-            EventStoreProvider eventStore = session.getProvider(EventStoreProvider.class);
-            if (eventStore != null) {
-                listeners.add(eventStore);
+            EventListenerProvider asyncEventStore = dispatcher != null ? dispatcher.getAsyncListener(EventStoreProvider.class, null) : null;
+            EventStoreProvider eventStore = asyncEventStore == null ? session.getProvider(EventStoreProvider.class) : null;
+            if (asyncEventStore != null) {
+                listeners.add(asyncEventStore);
+            } else if (eventStore != null) {
+                MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+                listeners.add(metrics != null ? new TimedEventListener(eventStore, metrics) : eventStore);
             } else {
                 log.error("Events enabled, but no event store provider configured");
             }
@@ -42,7 +50,10 @@ public class EventsManager {
 
         if (realm.getEventsListeners() != null) {
             for (String id : realm.getEventsListeners()) {
-                EventListenerProvider listener = session.getProvider(EventListenerProvider.class, id);
+                EventListenerProvider listener = dispatcher != null ? dispatcher.getAsyncListener(EventListenerProvider.class, id) : null;
+                if (listener == null) {
+                    listener = session.getProvider(EventListenerProvider.class, id);
+                }
                 if (listener != null) {
                     listeners.add(listener);
                 } else {
@@ -54,4 +65,31 @@ public class EventsManager {
         return new EventBuilder(listeners, realm, clientConnection.getRemoteAddr());
     }
 
+    private static class TimedEventListener implements EventListenerProvider {
+
+        private final EventListenerProvider delegate;
+        private final MetricsProvider metrics;
+
+        private TimedEventListener(EventListenerProvider delegate, MetricsProvider metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            long start = System.nanoTime();
+            try {
+                delegate.onEvent(event);
+            } finally {
+                metrics.record("events.store", System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void close() {
+            // The event store is closed by the session that created it
+        }
+
+    }
+
 }
@@ -5,6 +5,7 @@ import org.codehaus.jackson.annotate.JsonPropertyOrder;
 import org.keycloak.models.OAuthClientModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserSessionProvider;
+import org.keycloak.protocol.oidc.TokenManager;
 import org.keycloak.representations.adapters.config.BaseRealmConfig;
 import org.keycloak.representations.idm.CredentialRepresentation;
 
@@ -33,6 +34,7 @@ public class OAuthClientManager {
             if (sessions != null) {
                 realmManager.getSession().sessions().onClientRemoved(realm, client);
             }
+            TokenManager.onClientRemoved(realm, client);
             return true;
         } else {
             return false;
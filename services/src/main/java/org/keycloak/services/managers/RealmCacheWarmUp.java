@@ -0,0 +1,69 @@
+package org.keycloak.services.managers;
+
+import org.jboss.logging.Logger;
+import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Loads all realms into the realm cache, so the first requests after startup don't have to load realms from the
+ * database. Applications, clients, roles and identity providers are cached separately from the realm settings, so
+ * these are loaded as well. Realm keys are also parsed. Each realm is loaded in its own transaction, a realm that
+ * fails to load is logged and skipped.
+ */
+public class RealmCacheWarmUp {
+
+    private static final Logger log = Logger.getLogger(RealmCacheWarmUp.class);
+
+    public void warmUp(KeycloakSessionFactory sessionFactory) {
+        long start = System.currentTimeMillis();
+
+        final List<String> realmIds = new LinkedList<String>();
+        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+            @Override
+            public void run(KeycloakSession session) {
+                for (RealmModel realm : session.realms().getRealms()) {
+                    realmIds.add(realm.getId());
+                }
+            }
+        });
+
+        int loaded = 0;
+        for (final String realmId : realmIds) {
+            try {
+                KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                    @Override
+                    public void run(KeycloakSession session) {
+                        RealmModel realm = session.realms().getRealm(realmId);
+                        if (realm == null) {
+                            return;
+                        }
+
+                        for (ApplicationModel app : realm.getApplications()) {
+                            app.getRoles();
+                        }
+                        realm.getOAuthClients();
+                        realm.getRoles();
+                        realm.getIdentityProviders();
+
+                        realm.getPublicKey();
+                        realm.getPrivateKey();
+                        realm.getCertificate();
+                    }
+                });
+                loaded++;
+            } catch (RuntimeException e) {
+                log.warn("Failed to load realm " + realmId + " into realm cache", e);
+            }
+        }
+
+        log.infov("Loaded {0} realms into realm cache in {1} ms", loaded, System.currentTimeMillis() - start);
+    }
+
+}
@@ -61,7 +61,7 @@ public class UsersSyncManager {
     public void refreshPeriodicSyncForProvider(final KeycloakSessionFactory sessionFactory, TimerProvider timer, final UserFederationProviderModel fedProvider, final String realmId) {
         if (fedProvider.getFullSyncPeriod() > 0) {
             // We want periodic full sync for this provider
-            timer.schedule(new Runnable() {
+            timer.scheduleClusterTask(new Runnable() {
 
                 @Override
                 public void run() {
@@ -79,7 +79,7 @@ public class UsersSyncManager {
 
         if (fedProvider.getChangedSyncPeriod() > 0) {
             // We want periodic sync of just changed users for this provider
-            timer.schedule(new Runnable() {
+            timer.scheduleClusterTask(new Runnable() {
 
                 @Override
                 public void run() {
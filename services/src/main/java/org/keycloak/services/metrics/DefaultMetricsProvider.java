@@ -0,0 +1,44 @@
+package org.keycloak.services.metrics;
+
+import org.keycloak.models.MetricsProvider;
+
+import java.util.Map;
+
+public class DefaultMetricsProvider implements MetricsProvider {
+
+    private final MetricsRegistry registry;
+
+    public DefaultMetricsProvider(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void increment(String name) {
+        registry.add(name, 1);
+    }
+
+    @Override
+    public void add(String name, long delta) {
+        registry.add(name, delta);
+    }
+
+    @Override
+    public void gauge(String name, long value) {
+        registry.gauge(name, value);
+    }
+
+    @Override
+    public void record(String name, long nanos) {
+        registry.record(name, nanos);
+    }
+
+    @Override
+    public Map<String, Object> getSnapshot() {
+        return registry.getSnapshot();
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
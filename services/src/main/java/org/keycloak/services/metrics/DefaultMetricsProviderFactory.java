@@ -0,0 +1,69 @@
+package org.keycloak.services.metrics;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.MetricsProvider;
+import org.keycloak.models.MetricsProviderFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Keeps metrics in memory. The metrics are also registered with the platform MBean server unless "jmx" is set to
+ * false.
+ */
+public class DefaultMetricsProviderFactory implements MetricsProviderFactory {
+
+    private static final Logger logger = Logger.getLogger(DefaultMetricsProviderFactory.class);
+
+    private MetricsRegistry registry;
+    private ObjectName objectName;
+
+    @Override
+    public MetricsProvider create(KeycloakSession session) {
+        return new DefaultMetricsProvider(registry);
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        registry = new MetricsRegistry(config.getInt("concurrency", Runtime.getRuntime().availableProcessors()));
+
+        if (config.getBoolean("jmx", true)) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(config.get("objectName", "org.keycloak:type=Metrics"));
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new MetricsMBean(registry), name);
+                    objectName = name;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to register metrics MBean", e);
+            }
+        }
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+    }
+
+    @Override
+    public void close() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.warn("Failed to unregister metrics MBean", e);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String getId() {
+        return "default";
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.keycloak.services.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations. Durations are counted in exponential buckets (bucket n holds durations less than
+ * 2^n microseconds), so percentiles are approximate. To reduce contention updates are spread over a number of stripes
+ * selected by thread id, and the stripes are summed when a snapshot is taken.
+ */
+public class Histogram {
+
+    private static final int BUCKETS = 32;
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+
+    private final AtomicLongArray[] stripes;
+    private final int mask;
+
+    public Histogram(int concurrency) {
+        int size = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        stripes = new AtomicLongArray[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 2);
+        }
+        mask = size - 1;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        stripe.incrementAndGet(bucket(nanos));
+        stripe.addAndGet(SUM, nanos);
+
+        long max = stripe.get(MAX);
+        while (nanos > max && !stripe.compareAndSet(MAX, max, nanos)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    /**
+     * Returns count, mean, max and 50th, 95th and 99th percentiles. Durations are in milliseconds.
+     *
+     * @return
+     */
+    public Map<String, Object> getSnapshot() {
+        long[] buckets = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = stripe.get(i);
+                buckets[i] += c;
+                count += c;
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("count", count);
+        snapshot.put("mean", count > 0 ? toMillis(sum / count) : 0.0);
+        snapshot.put("max", toMillis(max));
+        snapshot.put("p50", toMillis(percentile(buckets, count, max, 0.50)));
+        snapshot.put("p95", toMillis(percentile(buckets, count, max, 0.95)));
+        snapshot.put("p99", toMillis(percentile(buckets, count, max, 0.99)));
+        return snapshot;
+    }
+
+    private static long percentile(long[] buckets, long count, long max, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(count * percentile);
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets[i];
+            if (total >= threshold) {
+                // Upper bound of the bucket, but never more than the largest recorded value
+                return i < BUCKETS - 1 ? Math.min((1L << i) * 1000, max) : max;
+            }
+        }
+        return max;
+    }
+
+    private static int bucket(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+}
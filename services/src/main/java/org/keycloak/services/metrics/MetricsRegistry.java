@@ -0,0 +1,69 @@
+package org.keycloak.services.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds all counters, gauges and histograms. Metrics are created on first use and never removed.
+ */
+public class MetricsRegistry {
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    private final int concurrency;
+
+    public MetricsRegistry(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void add(String name, long delta) {
+        getValue(counters, name).addAndGet(delta);
+    }
+
+    public void gauge(String name, long value) {
+        getValue(gauges, name).set(value);
+    }
+
+    public void record(String name, long nanos) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram(concurrency);
+            Histogram existing = histograms.putIfAbsent(name, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    public Map<String, Object> getSnapshot() {
+        Map<String, Object> snapshot = new TreeMap<String, Object>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, AtomicLong> e : gauges.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().getSnapshot());
+        }
+        return snapshot;
+    }
+
+    private static AtomicLong getValue(ConcurrentMap<String, AtomicLong> values, String name) {
+        AtomicLong value = values.get(name);
+        if (value == null) {
+            value = new AtomicLong();
+            AtomicLong existing = values.putIfAbsent(name, value);
+            if (existing != null) {
+                value = existing;
+            }
+        }
+        return value;
+    }
+
+}
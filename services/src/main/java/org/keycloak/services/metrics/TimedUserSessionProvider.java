@@ -0,0 +1,254 @@
+package org.keycloak.services.metrics;
+
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.MetricsProvider;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.UserSessionVisitor;
+import org.keycloak.models.UsernameLoginFailureModel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the duration of every call to the delegate as "userSessions.&lt;method name&gt;".
+ */
+public class TimedUserSessionProvider implements UserSessionProvider {
+
+    private static final String PREFIX = "userSessions.";
+
+    private final UserSessionProvider delegate;
+    private final MetricsProvider metrics;
+
+    public TimedUserSessionProvider(UserSessionProvider delegate, MetricsProvider metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public UserSessionProvider getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ClientSessionModel createClientSession(RealmModel realm, ClientModel client) {
+        long start = System.nanoTime();
+        try {
+            return delegate.createClientSession(realm, client);
+        } finally {
+            record("createClientSession", start);
+        }
+    }
+
+    @Override
+    public ClientSessionModel getClientSession(RealmModel realm, String id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getClientSession(realm, id);
+        } finally {
+            record("getClientSession", start);
+        }
+    }
+
+    @Override
+    public ClientSessionModel getClientSession(String id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getClientSession(id);
+        } finally {
+            record("getClientSession", start);
+        }
+    }
+
+    @Override
+    public UserSessionModel createUserSession(RealmModel realm, UserModel user, String loginUsername, String ipAddress, String authMethod, boolean rememberMe) {
+        long start = System.nanoTime();
+        try {
+            return delegate.createUserSession(realm, user, loginUsername, ipAddress, authMethod, rememberMe);
+        } finally {
+            record("createUserSession", start);
+        }
+    }
+
+    @Override
+    public UserSessionModel getUserSession(RealmModel realm, String id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getUserSession(realm, id);
+        } finally {
+            record("getUserSession", start);
+        }
+    }
+
+    @Override
+    public List<UserSessionModel> getUserSessions(RealmModel realm, UserModel user) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getUserSessions(realm, user);
+        } finally {
+            record("getUserSessions", start);
+        }
+    }
+
+    @Override
+    public List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getUserSessions(realm, client);
+        } finally {
+            record("getUserSessions", start);
+        }
+    }
+
+    @Override
+    public List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getUserSessions(realm, client, firstResult, maxResults);
+        } finally {
+            record("getUserSessions", start);
+        }
+    }
+
+    @Override
+    public void visitUserSessions(RealmModel realm, ClientModel client, int firstResult, int maxResults, UserSessionVisitor visitor) {
+        long start = System.nanoTime();
+        try {
+            delegate.visitUserSessions(realm, client, firstResult, maxResults, visitor);
+        } finally {
+            record("visitUserSessions", start);
+        }
+    }
+
+    @Override
+    public int getActiveUserSessions(RealmModel realm, ClientModel client) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getActiveUserSessions(realm, client);
+        } finally {
+            record("getActiveUserSessions", start);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getActiveUserSessionStats(RealmModel realm) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getActiveUserSessionStats(realm);
+        } finally {
+            record("getActiveUserSessionStats", start);
+        }
+    }
+
+    @Override
+    public void removeUserSession(RealmModel realm, UserSessionModel session) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeUserSession(realm, session);
+        } finally {
+            record("removeUserSession", start);
+        }
+    }
+
+    @Override
+    public void removeUserSessions(RealmModel realm, UserModel user) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeUserSessions(realm, user);
+        } finally {
+            record("removeUserSessions", start);
+        }
+    }
+
+    @Override
+    public void removeExpiredUserSessions(RealmModel realm) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeExpiredUserSessions(realm);
+        } finally {
+            record("removeExpiredUserSessions", start);
+        }
+    }
+
+    @Override
+    public void removeUserSessions(RealmModel realm) {
+        long start = System.nanoTime();
+        try {
+            delegate.removeUserSessions(realm);
+        } finally {
+            record("removeUserSessions", start);
+        }
+    }
+
+    @Override
+    public UsernameLoginFailureModel getUserLoginFailure(RealmModel realm, String username) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getUserLoginFailure(realm, username);
+        } finally {
+            record("getUserLoginFailure", start);
+        }
+    }
+
+    @Override
+    public UsernameLoginFailureModel addUserLoginFailure(RealmModel realm, String username) {
+        long start = System.nanoTime();
+        try {
+            return delegate.addUserLoginFailure(realm, username);
+        } finally {
+            record("addUserLoginFailure", start);
+        }
+    }
+
+    @Override
+    public boolean markOTPUsed(RealmModel realm, String userId, long interval, int lifespan) {
+        long start = System.nanoTime();
+        try {
+            return delegate.markOTPUsed(realm, userId, interval, lifespan);
+        } finally {
+            record("markOTPUsed", start);
+        }
+    }
+
+    @Override
+    public void onRealmRemoved(RealmModel realm) {
+        long start = System.nanoTime();
+        try {
+            delegate.onRealmRemoved(realm);
+        } finally {
+            record("onRealmRemoved", start);
+        }
+    }
+
+    @Override
+    public void onClientRemoved(RealmModel realm, ClientModel client) {
+        long start = System.nanoTime();
+        try {
+            delegate.onClientRemoved(realm, client);
+        } finally {
+            record("onClientRemoved", start);
+        }
+    }
+
+    @Override
+    public void onUserRemoved(RealmModel realm, UserModel user) {
+        long start = System.nanoTime();
+        try {
+            delegate.onUserRemoved(realm, user);
+        } finally {
+            record("onUserRemoved", start);
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private void record(String method, long start) {
+        metrics.record(PREFIX + method, System.nanoTime() - start);
+    }
+
+}
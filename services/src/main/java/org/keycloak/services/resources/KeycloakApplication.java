@@ -15,6 +15,7 @@ import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.services.DefaultKeycloakSessionFactory;
 import org.keycloak.services.managers.ApplianceBootstrap;
 import org.keycloak.services.managers.BruteForceProtector;
+import org.keycloak.services.managers.RealmCacheWarmUp;
 import org.keycloak.services.managers.RealmManager;
 import org.keycloak.services.managers.UsersSyncManager;
 import org.keycloak.services.resources.admin.AdminRoot;
@@ -57,9 +58,12 @@ public class KeycloakApplication extends Application {
     protected String contextPath;
 
     public KeycloakApplication(@Context ServletContext context, @Context Dispatcher dispatcher) {
+        long start = System.currentTimeMillis();
+
         loadConfig();
 
         this.sessionFactory = createSessionFactory();
+        long providers = System.currentTimeMillis();
 
         dispatcher.getDefaultContextObjects().put(KeycloakApplication.class, this);
         this.contextPath = context.getContextPath();
@@ -84,7 +88,16 @@ public class KeycloakApplication extends Application {
         setupDefaultRealm(context.getContextPath());
 
         importRealms(context);
+        long bootstrap = System.currentTimeMillis();
+
+        if (Config.scope("startup").getBoolean("warmUpRealmCache", false)) {
+            new RealmCacheWarmUp().warmUp(sessionFactory);
+        }
+        long warmUp = System.currentTimeMillis();
+
         setupScheduledTasks(sessionFactory);
+
+        log.infov("Started in {0} ms (providers {1} ms, bootstrap and import {2} ms, realm cache warm-up {3} ms)", System.currentTimeMillis() - start, providers - start, bootstrap - providers, warmUp - bootstrap);
     }
 
     public String getContextPath() {
@@ -152,8 +165,8 @@ public class KeycloakApplication extends Application {
         long interval = Config.scope("scheduled").getLong("interval", 60L) * 1000;
 
         TimerProvider timer = sessionFactory.create().getProvider(TimerProvider.class);
-        timer.schedule(new ScheduledTaskRunner(sessionFactory, new ClearExpiredEvents()), interval, "ClearExpiredEvents");
-        timer.schedule(new ScheduledTaskRunner(sessionFactory, new ClearExpiredUserSessions()), interval, "ClearExpiredUserSessions");
+        timer.scheduleClusterTask(new ScheduledTaskRunner(sessionFactory, new ClearExpiredEvents()), interval, "ClearExpiredEvents");
+        timer.scheduleClusterTask(new ScheduledTaskRunner(sessionFactory, new ClearExpiredUserSessions()), interval, "ClearExpiredUserSessions");
         new UsersSyncManager().bootstrapPeriodic(sessionFactory, timer);
     }
 
@@ -266,6 +266,18 @@ public class LoginActionsService {
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     public Response processLogin(@QueryParam("code") String code,
                                  final MultivaluedMap<String, String> formData) {
+        MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+        long start = System.nanoTime();
+        try {
+            return processLoginForm(code, formData, metrics);
+        } finally {
+            if (metrics != null) {
+                metrics.record("login.form", System.nanoTime() - start);
+            }
+        }
+    }
+
+    private Response processLoginForm(String code, MultivaluedMap<String, String> formData, MetricsProvider metrics) {
         event.event(EventType.LOGIN);
         if (!checkSsl()) {
             event.error(Errors.SSL_REQUIRED);
@@ -329,6 +341,9 @@ public class LoginActionsService {
         }
 
         AuthenticationManager.AuthenticationStatus status = authManager.authenticateForm(session, clientConnection, realm, formData);
+        if (metrics != null) {
+            metrics.increment("login.status." + status.name().toLowerCase());
+        }
 
         if (remember) {
             authManager.createRememberMeCookie(realm, username, uriInfo, clientConnection);
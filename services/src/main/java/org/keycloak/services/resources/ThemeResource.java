@@ -3,16 +3,22 @@ package org.keycloak.services.resources;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
 import org.keycloak.Version;
+import org.keycloak.freemarker.ExtendingThemeManager;
 import org.keycloak.freemarker.Theme;
 import org.keycloak.freemarker.ThemeProvider;
+import org.keycloak.freemarker.ThemeResourceCache;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.util.MimeTypeUtil;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.InputStream;
 
@@ -29,34 +35,69 @@ public class ThemeResource {
     @Context
     private KeycloakSession session;
 
+    @Context
+    private Request request;
+
     /**
      * Get theme content
      *
+     * Resources are served from ThemeResourceCache if enabled, with a strong ETag so conditional requests can be
+     * answered with 304. Compressible resources are sent with gzip content encoding if the client accepts it.
+     *
      * @param themType
      * @param themeName
      * @param path
+     * @param acceptEncoding
      * @return
      */
     @GET
     @Path("/{version}/{themeType}/{themeName}/{path:.*}")
-    public Response getResource(@PathParam("version") String version, @PathParam("themeType") String themType, @PathParam("themeName") String themeName, @PathParam("path") String path) {
+    public Response getResource(@PathParam("version") String version, @PathParam("themeType") String themType, @PathParam("themeName") String themeName, @PathParam("path") String path, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
         if (!version.equals(Version.RESOURCES_VERSION)) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 
         try {
+            CacheControl cacheControl = new CacheControl();
+            cacheControl.setNoTransform(false);
+            cacheControl.setMaxAge(Config.scope("theme").getInt("staticMaxAge", -1));
+
             ThemeProvider themeProvider = session.getProvider(ThemeProvider.class, "extending");
-            Theme theme = themeProvider.getTheme(themeName, Theme.Type.valueOf(themType.toUpperCase()));
-            InputStream resource = theme.getResourceAsStream(path);
-            if (resource != null) {
-                CacheControl cacheControl = new CacheControl();
-                cacheControl.setNoTransform(false);
-                cacheControl.setMaxAge(Config.scope("theme").getInt("staticMaxAge", -1));
-
-                return Response.ok(resource).type(MimeTypeUtil.getContentType(path)).cacheControl(cacheControl).build();
-            } else {
-                return Response.status(Response.Status.NOT_FOUND).build();
+            ThemeResourceCache cache = ((ExtendingThemeManager) themeProvider).getResourceCache();
+            Theme.Type type = Theme.Type.valueOf(themType.toUpperCase());
+
+            ThemeResourceCache.CachedResource cached = cache != null ? cache.get(version, type, themeName, path) : null;
+            if (cached == null) {
+                Theme theme = themeProvider.getTheme(themeName, type);
+                InputStream resource = theme.getResourceAsStream(path);
+                if (resource == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+
+                if (cache == null) {
+                    return Response.ok(resource).type(MimeTypeUtil.getContentType(path)).cacheControl(cacheControl).build();
+                }
+
+                cached = cache.load(version, type, themeName, path, resource);
+            }
+
+            boolean gzip = cached.isCompressible() && acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+            // Strong ETags have to differ between encodings of the same resource
+            EntityTag etag = new EntityTag(gzip ? cached.getETag() + "-gzip" : cached.getETag());
+
+            Response.ResponseBuilder builder = request.evaluatePreconditions(etag);
+            if (builder == null) {
+                builder = Response.ok(cached.getData()).type(cached.getContentType());
+                if (gzip) {
+                    // RESTEasy compresses responses that have Content-Encoding set to gzip
+                    builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+                }
+            }
+            if (cached.isCompressible()) {
+                builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
             }
+            return builder.tag(etag).cacheControl(cacheControl).build();
         } catch (Exception e) {
             logger.warn("Failed to get theme resource", e);
             return Response.serverError().build();
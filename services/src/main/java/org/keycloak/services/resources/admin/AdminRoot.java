@@ -9,11 +9,13 @@ import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.jboss.resteasy.spi.UnauthorizedException;
 import org.keycloak.ClientConnection;
 import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.models.AdminRoles;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.protocol.oidc.TokenManager;
 import org.keycloak.representations.AccessToken;
+import org.keycloak.services.ForbiddenException;
 import org.keycloak.services.managers.AppAuthManager;
 import org.keycloak.services.managers.AuthenticationManager;
 import org.keycloak.services.managers.RealmManager;
@@ -215,6 +217,27 @@ public class AdminRoot {
         return adminResource;
     }
 
+    /**
+     * Server metrics, only available to admins of the master realm
+     *
+     * @param headers
+     * @return
+     */
+    @Path("metrics")
+    public MetricsAdminResource getMetrics(@Context final HttpHeaders headers) {
+        handlePreflightRequest();
+
+        AdminAuth auth = authenticateRealmAdminRequest(headers);
+        if (!auth.getRealm().equals(new RealmManager(session).getKeycloakAdminstrationRealm()) || !auth.hasRealmRole(AdminRoles.ADMIN)) {
+            throw new ForbiddenException();
+        }
+        Cors.add(request).allowedOrigins(auth.getToken()).allowedMethods("GET").auth().build(response);
+
+        MetricsAdminResource adminResource = new MetricsAdminResource();
+        ResteasyProviderFactory.getInstance().injectProperties(adminResource);
+        return adminResource;
+    }
+
     protected void handlePreflightRequest() {
         if (request.getHttpMethod().equalsIgnoreCase("OPTIONS")) {
             logger.debug("Cors admin pre-flight");
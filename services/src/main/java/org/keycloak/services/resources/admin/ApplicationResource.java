@@ -1,5 +1,7 @@
 package org.keycloak.services.resources.admin;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.resteasy.spi.BadRequestException;
@@ -12,6 +14,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.UserSessionVisitor;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.models.utils.ModelToRepresentation;
 import org.keycloak.models.utils.RepresentationToModel;
@@ -36,14 +39,15 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -326,22 +330,39 @@ public class ApplicationResource {
     /**
      * Return a list of user sessions associated with this application
      *
-     * @return
+     * @return list of {@link UserSessionRepresentation}
      */
     @Path("user-sessions")
     @GET
     @NoCache
     @Produces(MediaType.APPLICATION_JSON)
-    public List<UserSessionRepresentation> getUserSessions(@QueryParam("first") Integer firstResult, @QueryParam("max") Integer maxResults) {
+    public StreamingOutput getUserSessions(@QueryParam("first") Integer firstResult, @QueryParam("max") Integer maxResults) {
         auth.requireView();
-        firstResult = firstResult != null ? firstResult : -1;
-        maxResults = maxResults != null ? maxResults : -1;
-        List<UserSessionRepresentation> sessions = new ArrayList<UserSessionRepresentation>();
-        for (UserSessionModel userSession : session.sessions().getUserSessions(application.getRealm(), application, firstResult, maxResults)) {
-            UserSessionRepresentation rep = ModelToRepresentation.toRepresentation(userSession);
-            sessions.add(rep);
-        }
-        return sessions;
+        final int first = firstResult != null ? firstResult : -1;
+        final int max = maxResults != null ? maxResults : -1;
+
+        // Sessions are written as they're visited, the provider loads them in a single pass rather than a query per page
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                final JsonGenerator generator = JsonSerialization.mapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+                generator.writeStartArray();
+
+                session.sessions().visitUserSessions(application.getRealm(), application, first, max, new UserSessionVisitor() {
+                    @Override
+                    public void visit(UserSessionModel userSession) {
+                        try {
+                            generator.writeObject(ModelToRepresentation.toRepresentation(userSession));
+                        } catch (IOException e) {
+                            throw new WebApplicationException(e);
+                        }
+                    }
+                });
+
+                generator.writeEndArray();
+                generator.flush();
+            }
+        };
     }
 
     /**
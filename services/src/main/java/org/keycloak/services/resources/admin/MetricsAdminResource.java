@@ -0,0 +1,34 @@
+package org.keycloak.services.resources.admin;
+
+import org.jboss.resteasy.annotations.cache.NoCache;
+import org.jboss.resteasy.spi.NotFoundException;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.MetricsProvider;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import java.util.Map;
+
+public class MetricsAdminResource {
+
+    @Context
+    private KeycloakSession session;
+
+    /**
+     * Returns the current value of all server metrics. Durations are in milliseconds.
+     *
+     * @return
+     */
+    @GET
+    @NoCache
+    @Produces("application/json")
+    public Map<String, Object> getMetrics() {
+        MetricsProvider metrics = session.getProvider(MetricsProvider.class);
+        if (metrics == null) {
+            throw new NotFoundException("Metrics not enabled");
+        }
+        return metrics.getSnapshot();
+    }
+
+}
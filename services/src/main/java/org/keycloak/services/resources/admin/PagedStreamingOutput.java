@@ -0,0 +1,90 @@
+package org.keycloak.services.resources.admin;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.keycloak.util.JsonSerialization;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes a JSON array of representations while paging through the models, so only one page of models is held in memory
+ * no matter how many results are returned. If the client requested a range (first/max) only that range is written,
+ * otherwise pages are fetched until the provider returns an empty page. Models can be skipped by returning null from
+ * {@link #toRepresentation(Object)}, skipped models don't count towards max.
+ */
+public abstract class PagedStreamingOutput<M> implements StreamingOutput {
+
+    public static final int PAGE_SIZE = 100;
+
+    private final int firstResult;
+    private final int maxResults;
+    private final int pageSize;
+
+    /**
+     * @param firstResult first result to return, or -1 to start at the beginning
+     * @param maxResults max number of results, or -1 to return everything
+     */
+    public PagedStreamingOutput(int firstResult, int maxResults) {
+        this(firstResult, maxResults, PAGE_SIZE);
+    }
+
+    /**
+     * @param firstResult first result to return, or -1 to start at the beginning
+     * @param maxResults max number of results, or -1 to return everything
+     * @param pageSize number of models to fetch from the provider at once
+     */
+    public PagedStreamingOutput(int firstResult, int maxResults, int pageSize) {
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param first index of the first model to fetch
+     * @param max max number of models to fetch
+     * @return models, empty if there are no more results
+     */
+    protected abstract List<M> getPage(int first, int max);
+
+    /**
+     * @param model
+     * @return representation of the model, or null to skip it
+     */
+    protected abstract Object toRepresentation(M model);
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        JsonGenerator generator = JsonSerialization.mapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+        generator.writeStartArray();
+
+        int first = firstResult > 0 ? firstResult : 0;
+        int remaining = maxResults >= 0 ? maxResults : Integer.MAX_VALUE;
+
+        while (remaining > 0) {
+            int max = Math.min(remaining, pageSize);
+            List<M> page = getPage(first, max);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            for (M model : page) {
+                Object rep = toRepresentation(model);
+                if (rep != null) {
+                    generator.writeObject(rep);
+                    remaining--;
+                }
+            }
+            generator.flush();
+
+            first += page.size();
+        }
+
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.keycloak.services.resources.admin;
 
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -24,9 +25,12 @@ import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.resteasy.spi.NotFoundException;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.events.Event;
+import org.keycloak.events.EventListenerProvider;
 import org.keycloak.events.EventQuery;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.events.EventType;
+import org.keycloak.events.stats.LoginStats;
+import org.keycloak.events.stats.LoginStatsProvider;
 import org.keycloak.exportimport.ApplicationImporter;
 import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.KeycloakSession;
@@ -40,8 +44,10 @@ import org.keycloak.models.utils.ModelToRepresentation;
 import org.keycloak.models.utils.RepresentationToModel;
 import org.keycloak.protocol.oidc.TokenManager;
 import org.keycloak.representations.adapters.action.GlobalRequestResult;
+import org.keycloak.representations.idm.BulkUserResultRepresentation;
 import org.keycloak.representations.idm.RealmEventsConfigRepresentation;
 import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.services.managers.BulkUserImporter;
 import org.keycloak.services.managers.LDAPConnectionTestManager;
 import org.keycloak.services.managers.RealmManager;
 import org.keycloak.services.managers.ResourceAdminManager;
@@ -242,6 +248,33 @@ public class RealmAdminResource {
         return users;
     }
 
+    /**
+     * Add users in bulk. The body is a JSON array of users, which is read as a stream and added in chunks of chunkSize
+     * users, each chunk in its own transaction. Users can have plain-text credentials, realm roles and application
+     * roles. The result contains the number of users added and an error for each chunk that failed. If the body can't be
+     * read to the end the users before the error are still added, and the result contains the error and the index of the
+     * user that couldn't be read.
+     *
+     * @param users
+     * @param chunkSize number of users added in each transaction (default 500, at most 5000)
+     * @param defaultRoles add the realm's default roles to the users (default true)
+     * @return
+     */
+    @Path("users-bulk")
+    @POST
+    @NoCache
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public BulkUserResultRepresentation addUsers(InputStream users, @QueryParam("chunkSize") Integer chunkSize, @QueryParam("defaultRoles") Boolean defaultRoles) {
+        auth.init(RealmAuth.Resource.USER);
+        auth.requireManage();
+
+        int size = chunkSize != null ? Math.max(1, Math.min(chunkSize, BulkUserImporter.MAX_CHUNK_SIZE)) : BulkUserImporter.DEFAULT_CHUNK_SIZE;
+
+        BulkUserImporter importer = new BulkUserImporter(session.getKeycloakSessionFactory(), realm.getId(), size, defaultRoles == null || defaultRoles);
+        return importer.importUsers(users);
+    }
+
     @Path("user-federation")
     public UserFederationResource userFederation() {
         UserFederationResource fed = new UserFederationResource(realm, auth);
@@ -314,10 +347,11 @@ public class RealmAdminResource {
     @Deprecated
     public Map<String, Integer> getApplicationSessionStats() {
         auth.requireView();
+        Map<String, Integer> active = session.sessions().getActiveUserSessionStats(realm);
         Map<String, Integer> stats = new HashMap<String, Integer>();
         for (ApplicationModel application : realm.getApplications()) {
-            int size = session.sessions().getActiveUserSessions(application.getRealm(), application);
-            if (size == 0) continue;
+            Integer size = active.get(application.getId());
+            if (size == null || size == 0) continue;
             stats.put(application.getName(), size);
         }
         return stats;
@@ -335,10 +369,11 @@ public class RealmAdminResource {
     @Produces(MediaType.APPLICATION_JSON)
     public List<Map<String, String>> getApplicationByIdSessionStats() {
         auth.requireView();
+        Map<String, Integer> active = session.sessions().getActiveUserSessionStats(realm);
         List<Map<String, String>> data = new LinkedList<Map<String, String>>();
         for (ApplicationModel application : realm.getApplications()) {
-            int size = session.sessions().getActiveUserSessions(application.getRealm(), application);
-            if (size == 0) continue;
+            Integer size = active.get(application.getId());
+            if (size == null || size == 0) continue;
             Map<String, String> map = new HashMap<String, String>();
             map.put("id", application.getId());
             map.put("name", application.getName());
@@ -385,6 +420,10 @@ public class RealmAdminResource {
      * @param types type type
      * @param user user id
      * @param ipAddress
+     * @param timeFrom only events created at or after this time (ms)
+     * @param timeTo only events created at or before this time (ms)
+     * @param beforeTime with beforeId, only events after the given event (time and id of the last event on the previous page)
+     * @param beforeId
      * @param firstResult
      * @param maxResults
      * @return
@@ -395,7 +434,9 @@ public class RealmAdminResource {
     @Produces(MediaType.APPLICATION_JSON)
     public List<Event> getEvents(@QueryParam("client") String client,
             @QueryParam("user") String user, @QueryParam("dateFrom") String dateFrom, @QueryParam("dateTo") String dateTo,
-            @QueryParam("ipAddress") String ipAddress, @QueryParam("first") Integer firstResult,
+            @QueryParam("ipAddress") String ipAddress, @QueryParam("timeFrom") Long timeFrom, @QueryParam("timeTo") Long timeTo,
+            @QueryParam("beforeTime") Long beforeTime, @QueryParam("beforeId") String beforeId,
+            @QueryParam("first") Integer firstResult,
             @QueryParam("max") Integer maxResults) {
         auth.init(RealmAuth.Resource.EVENTS).requireView();
 
@@ -425,6 +466,15 @@ public class RealmAdminResource {
         if(dateTo != null) {
             query.toDate(dateTo);
         }
+        if (timeFrom != null) {
+            query.fromTime(timeFrom);
+        }
+        if (timeTo != null) {
+            query.toTime(timeTo);
+        }
+        if (beforeTime != null && beforeId != null) {
+            query.before(beforeTime, beforeId);
+        }
 
         if (ipAddress != null) {
             query.ipAddress(ipAddress);
@@ -452,6 +502,56 @@ public class RealmAdminResource {
         eventStore.clear(realm.getId());
     }
 
+    /**
+     * Login statistics for a period, requires the login-stats event listener to be enabled for the realm. Defaults to
+     * the last 24 hours.
+     *
+     * @param client client id, or all clients if not specified
+     * @param timeFrom start of the period (ms)
+     * @param timeTo end of the period (ms)
+     * @return
+     */
+    @Path("events/stats")
+    @GET
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public LoginStats getEventStats(@QueryParam("client") String client, @QueryParam("timeFrom") Long timeFrom, @QueryParam("timeTo") Long timeTo) {
+        auth.init(RealmAuth.Resource.EVENTS).requireView();
+
+        long to = timeTo != null ? timeTo : System.currentTimeMillis();
+        long from = timeFrom != null ? timeFrom : to - 24 * 60 * 60 * 1000;
+        return getLoginStatsProvider().getStats(realm.getId(), client, from, to);
+    }
+
+    /**
+     * Login statistics for each hour in a period, requires the login-stats event listener to be enabled for the realm.
+     * Defaults to the last 24 hours. Hours that have been rolled up are returned as one entry per day.
+     *
+     * @param client client id, or all clients if not specified
+     * @param timeFrom start of the period (ms)
+     * @param timeTo end of the period (ms)
+     * @return
+     */
+    @Path("events/stats/hourly")
+    @GET
+    @NoCache
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<LoginStats> getHourlyEventStats(@QueryParam("client") String client, @QueryParam("timeFrom") Long timeFrom, @QueryParam("timeTo") Long timeTo) {
+        auth.init(RealmAuth.Resource.EVENTS).requireView();
+
+        long to = timeTo != null ? timeTo : System.currentTimeMillis();
+        long from = timeFrom != null ? timeFrom : to - 24 * 60 * 60 * 1000;
+        return getLoginStatsProvider().getHourlyStats(realm.getId(), client, from, to);
+    }
+
+    private LoginStatsProvider getLoginStatsProvider() {
+        EventListenerProvider provider = session.getProvider(EventListenerProvider.class, "login-stats");
+        if (!(provider instanceof LoginStatsProvider)) {
+            throw new NotFoundException("Login statistics not available");
+        }
+        return (LoginStatsProvider) provider;
+    }
+
     @Path("testLDAPConnection")
     @GET
     @NoCache
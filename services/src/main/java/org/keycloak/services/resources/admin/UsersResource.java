@@ -53,6 +53,7 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
@@ -357,29 +358,38 @@ public class UsersResource {
      * @param first
      * @param email
      * @param username
-     * @return
+     * @param firstResult
+     * @param maxResults
+     * @return list of {@link UserRepresentation}, streamed page by page
      */
     @GET
     @NoCache
     @Produces("application/json")
-    public List<UserRepresentation> getUsers(@QueryParam("search") String search,
-                                             @QueryParam("lastName") String last,
-                                             @QueryParam("firstName") String first,
-                                             @QueryParam("email") String email,
-                                             @QueryParam("username") String username,
-                                             @QueryParam("first") Integer firstResult,
-                                             @QueryParam("max") Integer maxResults) {
+    public StreamingOutput getUsers(@QueryParam("search") String search,
+                                    @QueryParam("lastName") String last,
+                                    @QueryParam("firstName") String first,
+                                    @QueryParam("email") String email,
+                                    @QueryParam("username") String username,
+                                    @QueryParam("first") Integer firstResult,
+                                    @QueryParam("max") Integer maxResults) {
         auth.requireView();
 
         firstResult = firstResult != null ? firstResult : -1;
         maxResults = maxResults != null ? maxResults : -1;
 
-        List<UserRepresentation> results = new ArrayList<UserRepresentation>();
-        List<UserModel> userModels;
+        // Federation providers are searched once up front, pages are then read from local storage and each user is
+        // proxied through its federation provider as it's written
         if (search != null) {
-            userModels = session.users().searchForUser(search.trim(), realm, firstResult, maxResults);
+            final String searchString = search.trim();
+            session.users().federationLoad(searchString, realm);
+            return new UsersStreamingOutput(firstResult, maxResults) {
+                @Override
+                protected List<UserModel> getPage(int first, int max) {
+                    return session.userStorage().searchForUser(searchString, realm, first, max);
+                }
+            };
         } else if (last != null || first != null || email != null || username != null) {
-            Map<String, String> attributes = new HashMap<String, String>();
+            final Map<String, String> attributes = new HashMap<String, String>();
             if (last != null) {
                 attributes.put(UserModel.LAST_NAME, last);
             }
@@ -392,15 +402,34 @@ public class UsersResource {
             if (username != null) {
                 attributes.put(UserModel.USERNAME, username);
             }
-            userModels = session.users().searchForUserByAttributes(attributes, realm, firstResult, maxResults);
+            session.users().federationLoad(realm, attributes);
+            return new UsersStreamingOutput(firstResult, maxResults) {
+                @Override
+                protected List<UserModel> getPage(int first, int max) {
+                    return session.userStorage().searchForUserByAttributes(attributes, realm, first, max);
+                }
+            };
         } else {
-            userModels = session.users().getUsers(realm, firstResult, maxResults);
+            return new UsersStreamingOutput(firstResult, maxResults) {
+                @Override
+                protected List<UserModel> getPage(int first, int max) {
+                    return session.userStorage().getUsers(realm, first, max);
+                }
+            };
+        }
+    }
+
+    private abstract class UsersStreamingOutput extends PagedStreamingOutput<UserModel> {
+
+        UsersStreamingOutput(int firstResult, int maxResults) {
+            super(firstResult, maxResults);
         }
 
-        for (UserModel user : userModels) {
-            results.add(ModelToRepresentation.toRepresentation(user));
+        @Override
+        protected Object toRepresentation(UserModel user) {
+            user = session.users().proxyUser(realm, user);
+            return user != null ? ModelToRepresentation.toRepresentation(user) : null;
         }
-        return results;
     }
 
     /**
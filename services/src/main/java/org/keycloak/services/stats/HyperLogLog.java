@@ -0,0 +1,180 @@
+package org.keycloak.services.stats;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimator of the number of distinct values. Uses 2048 registers, which gives a standard error of about
+ * 2.3%. Estimators can be merged to estimate the number of distinct values in the union.
+ *
+ * Most buckets only see a few users, so registers start out sparse: only the registers that are set are stored, as a
+ * sorted array of index and rank. Once more than 256 registers are set (1 KB) the estimator switches to a dense array of
+ * all 2048 registers (2 KB). The estimate is the same for both representations.
+ */
+public class HyperLogLog {
+
+    private static final int P = 11;
+    private static final int M = 1 << P;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private static final int SPARSE_MAX = M / 8;
+
+    // Sorted by index, each entry is (index << 8 | rank). Null once dense.
+    private int[] sparse = new int[4];
+    private int sparseSize;
+
+    // Null while sparse
+    private byte[] registers;
+
+    public HyperLogLog() {
+    }
+
+    /**
+     * Creates an estimator from the output of {@link #toByteArray()}
+     *
+     * @param data
+     */
+    public HyperLogLog(byte[] data) {
+        if (data.length != M && (data.length % 3 != 0 || data.length / 3 > SPARSE_MAX)) {
+            throw new IllegalArgumentException("Invalid HyperLogLog data");
+        }
+        merge(data);
+    }
+
+    public synchronized void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - P));
+        int rank = Long.numberOfLeadingZeros((hash << P) | (1L << (P - 1))) + 1;
+        set(index, rank);
+    }
+
+    public void merge(HyperLogLog other) {
+        merge(other.toByteArray());
+    }
+
+    public synchronized long cardinality() {
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte r : registers) {
+                sum += 1.0 / (1L << r);
+                if (r == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            zeros = M - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xff));
+            }
+        }
+
+        double estimate = ALPHA * M * M / sum;
+        if (estimate <= 2.5 * M && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = M * Math.log((double) M / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return true if only the registers that are set are stored
+     */
+    public synchronized boolean isSparse() {
+        return registers == null;
+    }
+
+    /**
+     * Returns the registers, either all 2048 registers or 3 bytes (index and rank) for each register that is set if the
+     * estimator is sparse
+     *
+     * @return
+     */
+    public synchronized byte[] toByteArray() {
+        if (registers != null) {
+            return registers.clone();
+        }
+
+        byte[] data = new byte[sparseSize * 3];
+        for (int i = 0; i < sparseSize; i++) {
+            int index = sparse[i] >>> 8;
+            data[i * 3] = (byte) (index >>> 8);
+            data[i * 3 + 1] = (byte) index;
+            data[i * 3 + 2] = (byte) sparse[i];
+        }
+        return data;
+    }
+
+    private synchronized void merge(byte[] data) {
+        if (data.length == M) {
+            for (int i = 0; i < M; i++) {
+                if (data[i] > 0) {
+                    set(i, data[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < data.length; i += 3) {
+                set(((data[i] & 0xff) << 8) | (data[i + 1] & 0xff), data[i + 2]);
+            }
+        }
+    }
+
+    private void set(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int i = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        if (i < 0) {
+            i = -i - 1;
+        }
+
+        if (i < sparseSize && sparse[i] >>> 8 == index) {
+            if (rank > (sparse[i] & 0xff)) {
+                sparse[i] = index << 8 | rank;
+            }
+            return;
+        }
+
+        if (sparseSize == SPARSE_MAX) {
+            toDense();
+            registers[index] = (byte) rank;
+            return;
+        }
+
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparse.length * 2, SPARSE_MAX));
+        }
+        System.arraycopy(sparse, i, sparse, i + 1, sparseSize - i);
+        sparse[i] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private void toDense() {
+        registers = new byte[M];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private static long hash(String value) {
+        // FNV-1a followed by the MurmurHash3 finalizer to spread the bits
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.keycloak.services.stats;
+
+import org.keycloak.events.Event;
+import org.keycloak.events.stats.LoginStats;
+import org.keycloak.events.stats.LoginStatsProvider;
+
+import java.util.List;
+
+public class LoginStatsEventListenerProvider implements LoginStatsProvider {
+
+    private final LoginStatsRegistry registry;
+
+    public LoginStatsEventListenerProvider(LoginStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        registry.record(event);
+    }
+
+    @Override
+    public List<LoginStats> getHourlyStats(String realmId, String clientId, long fromTime, long toTime) {
+        return registry.getHourlyStats(realmId, clientId, fromTime, toTime);
+    }
+
+    @Override
+    public LoginStats getStats(String realmId, String clientId, long fromTime, long toTime) {
+        return registry.getStats(realmId, clientId, fromTime, toTime);
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
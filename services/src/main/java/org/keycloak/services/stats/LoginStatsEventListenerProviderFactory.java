@@ -0,0 +1,92 @@
+package org.keycloak.services.stats;
+
+import org.keycloak.Config;
+import org.keycloak.events.EventListenerProvider;
+import org.keycloak.events.EventListenerProviderFactory;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.timer.TimerProvider;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Maintains login statistics in memory and saves them to a directory periodically. Hourly statistics are kept for
+ * hourlyRetention hours (default 48) and then rolled up per day, daily statistics are kept for dailyRetention days
+ * (default 90). Changed statistics are saved every saveInterval seconds, by default to login-stats in the server data
+ * directory.
+ *
+ * Each node counts the events it receives and saves them in a sub-directory named after nodeId (defaults to
+ * jboss.node.name or the host name). If dir is shared by the nodes of a cluster, queries include the statistics saved by
+ * the other nodes.
+ */
+public class LoginStatsEventListenerProviderFactory implements EventListenerProviderFactory {
+
+    public static final String ID = "login-stats";
+
+    private LoginStatsRegistry registry;
+    private long saveInterval;
+
+    @Override
+    public EventListenerProvider create(KeycloakSession session) {
+        return new LoginStatsEventListenerProvider(registry);
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        String dir = config.get("dir");
+        if (dir == null && System.getProperty("jboss.server.data.dir") != null) {
+            dir = new File(System.getProperty("jboss.server.data.dir"), "login-stats").getPath();
+        }
+
+        registry = new LoginStatsRegistry(config.getInt("hourlyRetention", 48), config.getInt("dailyRetention", 90),
+                dir != null ? new File(dir) : null, config.get("nodeId", getDefaultNodeId()));
+        saveInterval = config.getLong("saveInterval", 300L) * 1000;
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        registry.load();
+
+        KeycloakSession session = factory.create();
+        try {
+            TimerProvider timer = session.getProvider(TimerProvider.class);
+            if (timer != null) {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        registry.rollUp();
+                        registry.prune();
+                        registry.save();
+                    }
+                }, saveInterval, "LoginStatsSave");
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        registry.save();
+    }
+
+    private static String getDefaultNodeId() {
+        String nodeId = System.getProperty("jboss.node.name");
+        if (nodeId != null) {
+            return nodeId;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "local";
+        }
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+}
@@ -0,0 +1,562 @@
+package org.keycloak.services.stats;
+
+import org.jboss.logging.Logger;
+import org.keycloak.events.Event;
+import org.keycloak.events.stats.LoginStats;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incrementally maintained event statistics. Events are counted per realm, client, event type and hour, and the
+ * distinct users per realm, client and hour are estimated with {@link HyperLogLog}. {@link #rollUp()} merges the hours
+ * of days that are older than hourlyRetention (hours) into one bucket per day, and {@link #prune()} discards days older
+ * than dailyRetention (days).
+ *
+ * If a directory is given statistics are saved to dir/nodeId/realmId/day.json, one file per realm and day (days since
+ * epoch). {@link #save()} only writes the days that changed since the previous save, and {@link #load()} reads the days
+ * saved by this node. When the directory is shared by the nodes of a cluster, queries include the days saved by the
+ * other nodes, so the statistics cover the whole cluster. Statistics from other nodes are as recent as their last save.
+ */
+public class LoginStatsRegistry {
+
+    private static final Logger log = Logger.getLogger(LoginStatsRegistry.class);
+
+    static final long HOUR = 60 * 60 * 1000;
+    static final int DAY = 24;
+
+    private final ConcurrentMap<String, ConcurrentMap<BucketKey, Bucket>> realms = new ConcurrentHashMap<String, ConcurrentMap<BucketKey, Bucket>>();
+    private final ConcurrentMap<File, RemoteDay> remoteDays = new ConcurrentHashMap<File, RemoteDay>();
+    private final int hourlyRetention;
+    private final int dailyRetention;
+    private final File dir;
+    private final String nodeId;
+
+    public LoginStatsRegistry(int hourlyRetention, int dailyRetention, File dir, String nodeId) {
+        this.hourlyRetention = hourlyRetention;
+        this.dailyRetention = dailyRetention;
+        this.dir = dir;
+        this.nodeId = nodeId;
+    }
+
+    public void record(Event event) {
+        if (event.getRealmId() == null || event.getType() == null) {
+            return;
+        }
+
+        Bucket bucket = getBucket(realms, event.getRealmId(), new BucketKey(event.getClientId(), event.getTime() / HOUR, 1));
+        bucket.increment(event.getType().toString(), 1);
+        if (event.getUserId() != null && event.getError() == null) {
+            bucket.users.add(event.getUserId());
+        }
+        bucket.dirty = true;
+    }
+
+    public List<LoginStats> getHourlyStats(String realmId, String clientId, long fromTime, long toTime) {
+        Map<BucketKey, Aggregate> periods = new LinkedHashMap<BucketKey, Aggregate>();
+        for (Map.Entry<BucketKey, Bucket> e : getBuckets(realmId, clientId, fromTime, toTime)) {
+            BucketKey period = new BucketKey(null, e.getKey().hour, e.getKey().hours);
+            Aggregate aggregate = periods.get(period);
+            if (aggregate == null) {
+                aggregate = new Aggregate(clientId);
+                periods.put(period, aggregate);
+            }
+            aggregate.add(e.getKey(), e.getValue());
+        }
+
+        List<LoginStats> stats = new LinkedList<LoginStats>();
+        for (Aggregate aggregate : periods.values()) {
+            stats.add(aggregate.toStats(fromTime, toTime));
+        }
+        Collections.sort(stats, new Comparator<LoginStats>() {
+            @Override
+            public int compare(LoginStats o1, LoginStats o2) {
+                if (o1.getTime() != o2.getTime()) {
+                    return o1.getTime() < o2.getTime() ? -1 : 1;
+                }
+                return o1.getDuration() < o2.getDuration() ? 1 : (o1.getDuration() == o2.getDuration() ? 0 : -1);
+            }
+        });
+        return stats;
+    }
+
+    public LoginStats getStats(String realmId, String clientId, long fromTime, long toTime) {
+        Aggregate aggregate = new Aggregate(clientId);
+        for (Map.Entry<BucketKey, Bucket> e : getBuckets(realmId, clientId, fromTime, toTime)) {
+            aggregate.add(e.getKey(), e.getValue());
+        }
+        return aggregate.toStats(fromTime, toTime);
+    }
+
+    /**
+     * Merges the hours of days that ended more than hourlyRetention hours ago into one bucket per day
+     */
+    public void rollUp() {
+        long oldest = System.currentTimeMillis() / HOUR - hourlyRetention;
+        for (Map.Entry<String, ConcurrentMap<BucketKey, Bucket>> realm : realms.entrySet()) {
+            for (Map.Entry<BucketKey, Bucket> e : realm.getValue().entrySet()) {
+                BucketKey key = e.getKey();
+                if (key.hours == 1 && key.getDay() * DAY + DAY <= oldest && realm.getValue().remove(key, e.getValue())) {
+                    Bucket day = getBucket(realms, realm.getKey(), new BucketKey(key.clientId, key.getDay() * DAY, DAY));
+                    day.add(e.getValue());
+                    day.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards days older than dailyRetention days, including the days saved by this node
+     */
+    public void prune() {
+        long oldestDay = System.currentTimeMillis() / HOUR / DAY - dailyRetention;
+        for (ConcurrentMap<BucketKey, Bucket> buckets : realms.values()) {
+            Iterator<BucketKey> itr = buckets.keySet().iterator();
+            while (itr.hasNext()) {
+                if (itr.next().getDay() < oldestDay) {
+                    itr.remove();
+                }
+            }
+        }
+
+        Iterator<Map.Entry<File, RemoteDay>> itr = remoteDays.entrySet().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().getValue().day < oldestDay) {
+                itr.remove();
+            }
+        }
+
+        if (dir != null) {
+            for (File realmDir : listFiles(new File(dir, nodeId))) {
+                for (File dayFile : listFiles(realmDir)) {
+                    Long day = getDay(dayFile);
+                    if (day != null && day < oldestDay && !dayFile.delete()) {
+                        log.warnv("Failed to delete login statistics {0}", dayFile);
+                    }
+                }
+            }
+        }
+    }
+
+    public void load() {
+        if (dir == null) {
+            return;
+        }
+
+        for (File realmDir : listFiles(new File(dir, nodeId))) {
+            String realmId = decode(realmDir.getName());
+            for (File dayFile : listFiles(realmDir)) {
+                if (getDay(dayFile) == null) {
+                    continue;
+                }
+                try {
+                    for (PersistedBucket p : JsonSerialization.mapper.readValue(dayFile, PersistedBucket[].class)) {
+                        getBucket(realms, realmId, p.toKey()).add(p.toBucket());
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to load login statistics from " + dayFile, e);
+                }
+            }
+        }
+        rollUp();
+        prune();
+        log.debugv("Loaded login statistics from {0}", new File(dir, nodeId));
+    }
+
+    /**
+     * Writes the days that changed since the previous save
+     */
+    public void save() {
+        if (dir == null) {
+            return;
+        }
+
+        for (Map.Entry<String, ConcurrentMap<BucketKey, Bucket>> realm : realms.entrySet()) {
+            Set<Long> days = new HashSet<Long>();
+            for (Map.Entry<BucketKey, Bucket> e : realm.getValue().entrySet()) {
+                if (e.getValue().dirty) {
+                    e.getValue().dirty = false;
+                    days.add(e.getKey().getDay());
+                }
+            }
+
+            for (Long day : days) {
+                List<PersistedBucket> persisted = new LinkedList<PersistedBucket>();
+                List<Bucket> buckets = new LinkedList<Bucket>();
+                for (Map.Entry<BucketKey, Bucket> e : realm.getValue().entrySet()) {
+                    if (e.getKey().getDay() == day) {
+                        persisted.add(new PersistedBucket(realm.getKey(), e.getKey(), e.getValue()));
+                        buckets.add(e.getValue());
+                    }
+                }
+
+                File file = new File(new File(new File(dir, nodeId), encode(realm.getKey())), day + ".json");
+                if (!write(file, persisted)) {
+                    for (Bucket bucket : buckets) {
+                        bucket.dirty = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean write(File file, List<PersistedBucket> persisted) {
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            log.warnv("Failed to create directory {0}", file.getParentFile());
+            return false;
+        }
+
+        // Write to a temporary file first, so a crash while writing doesn't lose the previous statistics
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            JsonSerialization.mapper.writeValue(tmp, persisted);
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Failed to rename " + tmp + " to " + file);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to save login statistics to " + file, e);
+            return false;
+        }
+    }
+
+    private static Bucket getBucket(ConcurrentMap<String, ConcurrentMap<BucketKey, Bucket>> realms, String realmId, BucketKey key) {
+        ConcurrentMap<BucketKey, Bucket> buckets = realms.get(realmId);
+        if (buckets == null) {
+            buckets = new ConcurrentHashMap<BucketKey, Bucket>();
+            ConcurrentMap<BucketKey, Bucket> existing = realms.putIfAbsent(realmId, buckets);
+            if (existing != null) {
+                buckets = existing;
+            }
+        }
+
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            Bucket existing = buckets.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket;
+    }
+
+    private List<Map.Entry<BucketKey, Bucket>> getBuckets(String realmId, String clientId, long fromTime, long toTime) {
+        long fromHour = fromTime / HOUR;
+        long toHour = toTime / HOUR;
+
+        List<Map.Entry<BucketKey, Bucket>> result = new LinkedList<Map.Entry<BucketKey, Bucket>>();
+        ConcurrentMap<BucketKey, Bucket> buckets = realms.get(realmId);
+        if (buckets != null) {
+            addBuckets(buckets, clientId, fromHour, toHour, result);
+        }
+
+        if (dir != null) {
+            for (File nodeDir : listFiles(dir)) {
+                if (nodeDir.getName().equals(nodeId)) {
+                    continue;
+                }
+                for (File dayFile : listFiles(new File(nodeDir, encode(realmId)))) {
+                    Long day = getDay(dayFile);
+                    if (day != null && day >= fromHour / DAY && day <= toHour / DAY) {
+                        addBuckets(getRemoteDay(dayFile, day).buckets, clientId, fromHour, toHour, result);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addBuckets(Map<BucketKey, Bucket> buckets, String clientId, long fromHour, long toHour, List<Map.Entry<BucketKey, Bucket>> result) {
+        for (Map.Entry<BucketKey, Bucket> e : buckets.entrySet()) {
+            BucketKey key = e.getKey();
+            if (key.hour <= toHour && key.hour + key.hours > fromHour && (clientId == null || clientId.equals(key.clientId))) {
+                result.add(e);
+            }
+        }
+    }
+
+    private RemoteDay getRemoteDay(File file, long day) {
+        long modified = file.lastModified();
+        RemoteDay remote = remoteDays.get(file);
+        if (remote != null && remote.modified == modified) {
+            return remote;
+        }
+
+        remote = new RemoteDay(day, modified);
+        try {
+            for (PersistedBucket p : JsonSerialization.mapper.readValue(file, PersistedBucket[].class)) {
+                remote.buckets.put(p.toKey(), p.toBucket());
+            }
+        } catch (IOException e) {
+            // The other node may be replacing the file, use the previous version until the next query
+            log.debug("Failed to read login statistics from " + file, e);
+            RemoteDay previous = remoteDays.get(file);
+            return previous != null ? previous : remote;
+        }
+        remoteDays.put(file, remote);
+        return remote;
+    }
+
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private static Long getDay(File file) {
+        String name = file.getName();
+        if (!file.isFile() || !name.endsWith(".json")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - ".json".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String encode(String realmId) {
+        try {
+            return URLEncoder.encode(realmId, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Identifies a bucket of hours hours (1 or 24) starting at hour (hours since epoch)
+     */
+    private static class BucketKey {
+
+        private final String clientId;
+        private final long hour;
+        private final int hours;
+
+        private BucketKey(String clientId, long hour, int hours) {
+            this.clientId = clientId;
+            this.hour = hour;
+            this.hours = hours;
+        }
+
+        private long getDay() {
+            return hour / DAY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BucketKey)) return false;
+
+            BucketKey that = (BucketKey) o;
+            return hour == that.hour && hours == that.hours && (clientId != null ? clientId.equals(that.clientId) : that.clientId == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = clientId != null ? clientId.hashCode() : 0;
+            result = 31 * result + (int) (hour ^ (hour >>> 32));
+            return 31 * result + hours;
+        }
+
+    }
+
+    private static class Bucket {
+
+        private final ConcurrentMap<String, AtomicLong> counts = new ConcurrentHashMap<String, AtomicLong>();
+        private final HyperLogLog users;
+        private volatile boolean dirty;
+
+        private Bucket() {
+            this(new HyperLogLog());
+        }
+
+        private Bucket(HyperLogLog users) {
+            this.users = users;
+        }
+
+        private void increment(String type, long delta) {
+            AtomicLong count = counts.get(type);
+            if (count == null) {
+                count = new AtomicLong();
+                AtomicLong existing = counts.putIfAbsent(type, count);
+                if (existing != null) {
+                    count = existing;
+                }
+            }
+            count.addAndGet(delta);
+        }
+
+        private void add(Bucket other) {
+            for (Map.Entry<String, AtomicLong> c : other.counts.entrySet()) {
+                increment(c.getKey(), c.getValue().get());
+            }
+            users.merge(other.users);
+        }
+
+    }
+
+    private static class RemoteDay {
+
+        private final long day;
+        private final long modified;
+        private final Map<BucketKey, Bucket> buckets = new ConcurrentHashMap<BucketKey, Bucket>();
+
+        private RemoteDay(long day, long modified) {
+            this.day = day;
+            this.modified = modified;
+        }
+
+    }
+
+    private static class Aggregate {
+
+        private final LoginStats stats = new LoginStats();
+        private final HyperLogLog users = new HyperLogLog();
+        private long fromHour = Long.MAX_VALUE;
+        private long toHour = Long.MIN_VALUE;
+
+        private Aggregate(String clientId) {
+            stats.setClientId(clientId);
+        }
+
+        private void add(BucketKey key, Bucket bucket) {
+            for (Map.Entry<String, AtomicLong> c : bucket.counts.entrySet()) {
+                stats.add(c.getKey(), c.getValue().get());
+            }
+            users.merge(bucket.users);
+            fromHour = Math.min(fromHour, key.hour);
+            toHour = Math.max(toHour, key.hour + key.hours);
+        }
+
+        private LoginStats toStats(long fromTime, long toTime) {
+            if (fromHour <= toHour) {
+                // The whole hours (or days) that were counted
+                stats.setTime(fromHour * HOUR);
+                stats.setDuration((toHour - fromHour) * HOUR);
+            } else {
+                stats.setTime(fromTime);
+                stats.setDuration(toTime - fromTime);
+            }
+            stats.setActiveUsers(users.cardinality());
+            return stats;
+        }
+
+    }
+
+    public static class PersistedBucket {
+
+        private String realmId;
+        private String clientId;
+        private long hour;
+        private int hours;
+        private Map<String, Long> counts;
+        private byte[] users;
+
+        public PersistedBucket() {
+        }
+
+        private PersistedBucket(String realmId, BucketKey key, Bucket bucket) {
+            this.realmId = realmId;
+            this.clientId = key.clientId;
+            this.hour = key.hour;
+            this.hours = key.hours;
+            this.counts = new TreeMap<String, Long>();
+            for (Map.Entry<String, AtomicLong> c : bucket.counts.entrySet()) {
+                counts.put(c.getKey(), c.getValue().get());
+            }
+            this.users = bucket.users.toByteArray();
+        }
+
+        private BucketKey toKey() {
+            return new BucketKey(clientId, hour, hours > 0 ? hours : 1);
+        }
+
+        private Bucket toBucket() {
+            Bucket bucket = new Bucket(users != null ? new HyperLogLog(users) : new HyperLogLog());
+            if (counts != null) {
+                for (Map.Entry<String, Long> c : counts.entrySet()) {
+                    bucket.increment(c.getKey(), c.getValue());
+                }
+            }
+            return bucket;
+        }
+
+        public String getRealmId() {
+            return realmId;
+        }
+
+        public void setRealmId(String realmId) {
+            this.realmId = realmId;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public void setClientId(String clientId) {
+            this.clientId = clientId;
+        }
+
+        public long getHour() {
+            return hour;
+        }
+
+        public void setHour(long hour) {
+            this.hour = hour;
+        }
+
+        public int getHours() {
+            return hours;
+        }
+
+        public void setHours(int hours) {
+            this.hours = hours;
+        }
+
+        public Map<String, Long> getCounts() {
+            return counts;
+        }
+
+        public void setCounts(Map<String, Long> counts) {
+            this.counts = counts;
+        }
+
+        public byte[] getUsers() {
+            return users;
+        }
+
+        public void setUsers(byte[] users) {
+            this.users = users;
+        }
+
+    }
+
+}
@@ -0,0 +1,302 @@
+package org.keycloak.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.events.Event;
+import org.keycloak.events.EventType;
+import org.keycloak.events.stats.LoginStats;
+import org.keycloak.services.stats.HyperLogLog;
+import org.keycloak.services.stats.LoginStatsRegistry;
+
+import java.io.File;
+import java.util.List;
+
+public class LoginStatsRegistryTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long DAY = 24 * HOUR;
+
+    private File dir;
+
+    @Before
+    public void before() throws Exception {
+        dir = File.createTempFile("login-stats", "");
+        dir.delete();
+    }
+
+    @After
+    public void after() {
+        delete(dir);
+    }
+
+    @Test
+    public void testHyperLogLog() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            a.add("user-" + i);
+            a.add("user-" + i);
+            b.add("user-" + (i + 50000));
+        }
+
+        assertWithin(100000, a.cardinality(), 0.05);
+
+        a.merge(b);
+        assertWithin(150000, a.cardinality(), 0.05);
+
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            small.add("user-" + i);
+        }
+        Assert.assertEquals(10, small.cardinality());
+    }
+
+    @Test
+    public void testSparseHyperLogLog() {
+        HyperLogLog sparse = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sparse.add("user-" + i);
+        }
+        Assert.assertTrue(sparse.isSparse());
+        Assert.assertTrue(sparse.toByteArray().length < 100 * 3 + 1);
+        assertWithin(100, sparse.cardinality(), 0.05);
+
+        HyperLogLog copy = new HyperLogLog(sparse.toByteArray());
+        Assert.assertTrue(copy.isSparse());
+        Assert.assertEquals(sparse.cardinality(), copy.cardinality());
+
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 10000; i++) {
+            dense.add("user-" + i);
+        }
+        Assert.assertFalse(dense.isSparse());
+        Assert.assertEquals(2048, dense.toByteArray().length);
+        Assert.assertEquals(dense.cardinality(), new HyperLogLog(dense.toByteArray()).cardinality());
+
+        // Estimate is the same whether sparse or dense
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            a.add("user-" + i);
+            if (i < 200) {
+                b.add("user-" + i);
+            }
+        }
+        Assert.assertTrue(b.isSparse());
+        Assert.assertFalse(a.isSparse());
+        b.merge(a);
+        Assert.assertFalse(b.isSparse());
+        Assert.assertEquals(a.cardinality(), b.cardinality());
+
+        // Sparse merged into dense
+        HyperLogLog c = new HyperLogLog(a.toByteArray());
+        c.merge(sparse);
+        a.merge(sparse);
+        Assert.assertEquals(a.cardinality(), c.cardinality());
+    }
+
+    @Test
+    public void testStats() {
+        LoginStatsRegistry registry = new LoginStatsRegistry(24, 1, null, "node1");
+        long now = (System.currentTimeMillis() / HOUR) * HOUR;
+
+        registry.record(event(now - HOUR, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(now - HOUR, EventType.LOGIN, "app1", "user2", null));
+        registry.record(event(now, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(now, EventType.LOGIN, "app2", "user3", null));
+        registry.record(event(now, EventType.LOGIN_ERROR, "app2", "user3", "invalid_user_credentials"));
+        registry.record(event(now - 3 * DAY, EventType.LOGIN, "app1", "user4", null));
+
+        LoginStats stats = registry.getStats("realm", null, now - HOUR, now);
+        Assert.assertEquals(4, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(1, stats.getCount(EventType.LOGIN_ERROR));
+        Assert.assertEquals(0.2, stats.getLoginFailureRate(), 0.0001);
+        Assert.assertEquals(3, stats.getActiveUsers());
+
+        stats = registry.getStats("realm", "app1", now - HOUR, now);
+        Assert.assertEquals(3, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(2, stats.getActiveUsers());
+
+        List<LoginStats> hourly = registry.getHourlyStats("realm", null, now - HOUR, now);
+        Assert.assertEquals(2, hourly.size());
+        Assert.assertEquals(now - HOUR, hourly.get(0).getTime());
+        Assert.assertEquals(HOUR, hourly.get(0).getDuration());
+        Assert.assertEquals(2, hourly.get(0).getCount(EventType.LOGIN));
+        Assert.assertEquals(now, hourly.get(1).getTime());
+        Assert.assertEquals(2, hourly.get(1).getActiveUsers());
+
+        Assert.assertEquals(1, registry.getStats("realm", null, now - 3 * DAY, now - 3 * DAY).getCount(EventType.LOGIN));
+        registry.prune();
+        Assert.assertEquals(0, registry.getStats("realm", null, now - 3 * DAY, now - 3 * DAY).getCount(EventType.LOGIN));
+
+        Assert.assertEquals(0, registry.getStats("other", null, now - HOUR, now).getCount(EventType.LOGIN));
+    }
+
+    @Test
+    public void testPartialHours() {
+        LoginStatsRegistry registry = new LoginStatsRegistry(24, 1, null, "node1");
+        long hour = (System.currentTimeMillis() / HOUR) * HOUR - 2 * HOUR;
+
+        registry.record(event(hour + 10 * 60 * 1000, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(hour + 50 * 60 * 1000, EventType.LOGIN, "app1", "user2", null));
+
+        // Period is widened to the whole hour, and the response says so
+        LoginStats stats = registry.getStats("realm", null, hour + 30 * 60 * 1000, hour + 40 * 60 * 1000);
+        Assert.assertEquals(2, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(hour, stats.getTime());
+        Assert.assertEquals(HOUR, stats.getDuration());
+
+        // No events, so the period is as requested
+        stats = registry.getStats("realm", null, hour + HOUR + 1000, hour + HOUR + 2000);
+        Assert.assertEquals(0, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(hour + HOUR + 1000, stats.getTime());
+        Assert.assertEquals(1000, stats.getDuration());
+    }
+
+    @Test
+    public void testRollUp() {
+        LoginStatsRegistry registry = new LoginStatsRegistry(24, 30, null, "node1");
+        long day = (System.currentTimeMillis() / DAY - 3) * DAY;
+
+        registry.record(event(day + HOUR, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(day + 5 * HOUR, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(day + 5 * HOUR, EventType.LOGIN, "app1", "user2", null));
+        registry.record(event(day + 5 * HOUR, EventType.LOGIN, "app2", "user3", null));
+        registry.record(event(System.currentTimeMillis(), EventType.LOGIN, "app1", "user1", null));
+
+        Assert.assertEquals(2, registry.getHourlyStats("realm", null, day, day + DAY - 1).size());
+
+        registry.rollUp();
+
+        List<LoginStats> stats = registry.getHourlyStats("realm", null, day, day + DAY - 1);
+        Assert.assertEquals(1, stats.size());
+        Assert.assertEquals(day, stats.get(0).getTime());
+        Assert.assertEquals(DAY, stats.get(0).getDuration());
+        Assert.assertEquals(4, stats.get(0).getCount(EventType.LOGIN));
+        Assert.assertEquals(3, stats.get(0).getActiveUsers());
+
+        Assert.assertEquals(2, registry.getStats("realm", "app1", day + 5 * HOUR, day + 5 * HOUR).getActiveUsers());
+
+        // Recent hours are not rolled up
+        Assert.assertEquals(HOUR, registry.getHourlyStats("realm", null, System.currentTimeMillis(), System.currentTimeMillis()).get(0).getDuration());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        long now = System.currentTimeMillis();
+
+        LoginStatsRegistry registry = new LoginStatsRegistry(24, 30, dir, "node1");
+        registry.record(event(now, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(now, EventType.LOGIN, "app1", "user2", null));
+        registry.record(event(now - 5 * DAY, EventType.LOGIN, "app1", "user3", null));
+        registry.save();
+
+        LoginStatsRegistry loaded = new LoginStatsRegistry(24, 30, dir, "node1");
+        loaded.load();
+
+        LoginStats stats = loaded.getStats("realm", "app1", now, now);
+        Assert.assertEquals(2, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(2, stats.getActiveUsers());
+
+        // Loading rolls up old hours
+        stats = loaded.getHourlyStats("realm", "app1", now - 5 * DAY, now - 5 * DAY).get(0);
+        Assert.assertEquals(1, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(DAY, stats.getDuration());
+    }
+
+    @Test
+    public void testSaveOnlyChangedDays() throws Exception {
+        long now = System.currentTimeMillis();
+        long today = now / DAY;
+
+        LoginStatsRegistry registry = new LoginStatsRegistry(24, 30, dir, "node1");
+        registry.record(event(now, EventType.LOGIN, "app1", "user1", null));
+        registry.record(event(now - 2 * DAY, EventType.LOGIN, "app1", "user1", null));
+        registry.save();
+
+        File realmDir = new File(new File(dir, "node1"), "realm");
+        File todayFile = new File(realmDir, today + ".json");
+        File oldFile = new File(realmDir, (today - 2) + ".json");
+        Assert.assertTrue(todayFile.isFile());
+        Assert.assertTrue(oldFile.isFile());
+
+        todayFile.delete();
+        oldFile.delete();
+
+        registry.record(event(now, EventType.LOGIN, "app1", "user2", null));
+        registry.save();
+
+        Assert.assertTrue(todayFile.isFile());
+        Assert.assertFalse(oldFile.isFile());
+
+        // Pruned days are deleted
+        registry.record(event(now - 40 * DAY, EventType.LOGIN, "app1", "user1", null));
+        registry.save();
+        File expiredFile = new File(realmDir, (today - 40) + ".json");
+        Assert.assertTrue(expiredFile.isFile());
+        registry.prune();
+        Assert.assertFalse(expiredFile.isFile());
+        Assert.assertTrue(todayFile.isFile());
+    }
+
+    @Test
+    public void testMergeNodes() throws Exception {
+        long now = System.currentTimeMillis();
+
+        LoginStatsRegistry node1 = new LoginStatsRegistry(24, 30, dir, "node1");
+        LoginStatsRegistry node2 = new LoginStatsRegistry(24, 30, dir, "node2");
+
+        node1.record(event(now, EventType.LOGIN, "app1", "user1", null));
+        node1.record(event(now, EventType.LOGIN, "app1", "user2", null));
+        node2.record(event(now, EventType.LOGIN, "app1", "user2", null));
+        node2.record(event(now, EventType.LOGIN, "app1", "user3", null));
+
+        // Not saved yet, so each node only sees its own events
+        Assert.assertEquals(2, node1.getStats("realm", null, now, now).getCount(EventType.LOGIN));
+
+        node1.save();
+        node2.save();
+
+        LoginStats stats = node1.getStats("realm", null, now, now);
+        Assert.assertEquals(4, stats.getCount(EventType.LOGIN));
+        Assert.assertEquals(3, stats.getActiveUsers());
+        Assert.assertEquals(stats.getCount(EventType.LOGIN), node2.getStats("realm", null, now, now).getCount(EventType.LOGIN));
+
+        List<LoginStats> hourly = node2.getHourlyStats("realm", "app1", now, now);
+        Assert.assertEquals(1, hourly.size());
+        Assert.assertEquals(3, hourly.get(0).getActiveUsers());
+
+        // Local events are included without saving, other nodes as of their last save
+        node1.record(event(now, EventType.LOGIN, "app1", "user4", null));
+        Assert.assertEquals(5, node1.getStats("realm", null, now, now).getCount(EventType.LOGIN));
+        Assert.assertEquals(4, node2.getStats("realm", null, now, now).getCount(EventType.LOGIN));
+    }
+
+    private static void assertWithin(long expected, long actual, double error) {
+        Assert.assertTrue("Expected " + expected + " was " + actual, Math.abs(expected - actual) <= expected * error);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static Event event(long time, EventType type, String clientId, String userId, String error) {
+        Event event = new Event();
+        event.setTime(time);
+        event.setType(type);
+        event.setRealmId("realm");
+        event.setClientId(clientId);
+        event.setUserId(userId);
+        event.setError(error);
+        return event;
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.keycloak.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.services.metrics.MetricsRegistry;
+
+import java.util.Map;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCountersAndGauges() {
+        MetricsRegistry registry = new MetricsRegistry(4);
+        registry.add("counter", 1);
+        registry.add("counter", 2);
+        registry.gauge("gauge", 5);
+        registry.gauge("gauge", 3);
+
+        Map<String, Object> snapshot = registry.getSnapshot();
+        Assert.assertEquals(3L, snapshot.get("counter"));
+        Assert.assertEquals(3L, snapshot.get("gauge"));
+    }
+
+    @Test
+    public void testHistogram() {
+        MetricsRegistry registry = new MetricsRegistry(4);
+        for (int i = 1; i <= 100; i++) {
+            registry.record("histogram", i * 1000000L);
+        }
+
+        Map<String, Object> histogram = (Map<String, Object>) registry.getSnapshot().get("histogram");
+        Assert.assertEquals(100L, histogram.get("count"));
+        Assert.assertEquals(50.5, histogram.get("mean"));
+        Assert.assertEquals(100.0, histogram.get("max"));
+
+        // Percentiles are approximated by exponential buckets
+        double p50 = (Double) histogram.get("p50");
+        Assert.assertTrue(p50 >= 50.0 && p50 <= 100.0);
+        Assert.assertEquals(100.0, histogram.get("p99"));
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.keycloak.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.OAuthClientModel;
+import org.keycloak.models.RoleModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.protocol.oidc.TokenManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks the roles granted by {@link TokenManager#getAccess(String, ClientModel, UserModel)}, which expands the
+ * composites of the user's roles once, against checking each scope with {@link RoleModel#hasRole(RoleModel)}.
+ */
+public class TokenManagerScopeTest {
+
+    @Test
+    public void fullScopeAllowed() {
+        RoleModel a = role("a");
+        RoleModel b = role("b");
+        Assert.assertEquals(set(a, b), TokenManager.getAccess(null, client(true, set()), user(a, b)));
+    }
+
+    @Test
+    public void userCompositeContainsScope() {
+        RoleModel b = role("b");
+        RoleModel a = role("a", b);
+        Assert.assertEquals(set(b), TokenManager.getAccess(null, client(false, set(b)), user(a)));
+    }
+
+    @Test
+    public void scopeCompositeContainsUserRole() {
+        RoleModel b = role("b");
+        RoleModel c = role("c");
+        RoleModel a = role("a", b, c);
+        Assert.assertEquals(set(b), TokenManager.getAccess(null, client(false, set(a)), user(b)));
+    }
+
+    @Test
+    public void scopeNotGranted() {
+        RoleModel a = role("a");
+        RoleModel b = role("b");
+        Assert.assertTrue(TokenManager.getAccess(null, client(false, set(a)), user(b)).isEmpty());
+        Assert.assertTrue(TokenManager.getAccess(null, client(false, set()), user(a)).isEmpty());
+    }
+
+    @Test
+    public void applicationRolesInScope() {
+        RoleModel appRole = role("app-role");
+        RoleModel other = role("other");
+        ClientModel app = application(set(appRole), set());
+        Assert.assertEquals(set(appRole), TokenManager.getAccess(null, app, user(appRole, other)));
+    }
+
+    @Test
+    public void compositeCycle() {
+        RoleModel a = role("a");
+        RoleModel b = role("b", a);
+        RoleModel c = role("c");
+        composites(a).add(b);
+
+        Assert.assertEquals(set(a), TokenManager.getAccess(null, client(false, set(a)), user(b)));
+        Assert.assertTrue(TokenManager.getAccess(null, client(false, set(a)), user(c)).isEmpty());
+    }
+
+    @Test
+    public void sameAsHasRole() {
+        Random random = new Random(7);
+        for (int run = 0; run < 200; run++) {
+            List<RoleModel> roles = new ArrayList<RoleModel>();
+            for (int i = 0; i < 20; i++) {
+                roles.add(role("role-" + i));
+            }
+            for (RoleModel role : roles) {
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    composites(role).add(roles.get(random.nextInt(roles.size())));
+                }
+            }
+
+            Set<RoleModel> userRoles = pick(roles, random);
+            Set<RoleModel> scope = pick(roles, random);
+            Set<RoleModel> appRoles = pick(roles, random);
+
+            Assert.assertEquals(expected(userRoles, scope), TokenManager.getAccess(null, client(false, scope), user(userRoles.toArray(new RoleModel[0]))));
+
+            Set<RoleModel> appScope = new HashSet<RoleModel>(scope);
+            appScope.addAll(appRoles);
+            Assert.assertEquals(expected(userRoles, appScope), TokenManager.getAccess(null, application(appRoles, scope), user(userRoles.toArray(new RoleModel[0]))));
+        }
+    }
+
+    private static Set<RoleModel> expected(Set<RoleModel> userRoles, Set<RoleModel> scope) {
+        Set<RoleModel> requested = new HashSet<RoleModel>();
+        for (RoleModel role : userRoles) {
+            for (RoleModel desired : scope) {
+                TokenManager.applyScope(role, desired, new HashSet<RoleModel>(), requested);
+            }
+        }
+        return requested;
+    }
+
+    private static Set<RoleModel> pick(List<RoleModel> roles, Random random) {
+        Set<RoleModel> picked = new HashSet<RoleModel>();
+        for (int i = random.nextInt(5); i > 0; i--) {
+            picked.add(roles.get(random.nextInt(roles.size())));
+        }
+        return picked;
+    }
+
+    private static Set<RoleModel> set(RoleModel... roles) {
+        return new HashSet<RoleModel>(Arrays.asList(roles));
+    }
+
+    private static Set<RoleModel> composites(RoleModel role) {
+        return ((Handler) Proxy.getInvocationHandler(role)).composites;
+    }
+
+    private static RoleModel role(String name, RoleModel... composites) {
+        Handler handler = new Handler(name);
+        handler.composites.addAll(Arrays.asList(composites));
+        return proxy(RoleModel.class, handler);
+    }
+
+    private static ClientModel client(boolean fullScope, Set<RoleModel> scope) {
+        Handler handler = new Handler("client");
+        handler.fullScope = fullScope;
+        handler.scope = scope;
+        return proxy(OAuthClientModel.class, handler);
+    }
+
+    private static ClientModel application(Set<RoleModel> roles, Set<RoleModel> scope) {
+        Handler handler = new Handler("app");
+        handler.scope = scope;
+        handler.appRoles = roles;
+        return proxy(ApplicationModel.class, handler);
+    }
+
+    private static UserModel user(RoleModel... roles) {
+        Handler handler = new Handler("user");
+        handler.roleMappings = new HashSet<RoleModel>(Arrays.asList(roles));
+        return proxy(UserModel.class, handler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(TokenManagerScopeTest.class.getClassLoader(), new Class[] { type }, handler);
+    }
+
+    private static class Handler implements InvocationHandler {
+
+        private final String name;
+        private final Set<RoleModel> composites = new LinkedHashSet<RoleModel>();
+        private boolean fullScope;
+        private Set<RoleModel> scope = Collections.emptySet();
+        private Set<RoleModel> appRoles = Collections.emptySet();
+        private Set<RoleModel> roleMappings = Collections.emptySet();
+
+        private Handler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String m = method.getName();
+            if (m.equals("equals")) {
+                return proxy == args[0];
+            } else if (m.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (m.equals("toString") || m.equals("getName") || m.equals("getId")) {
+                return name;
+            } else if (m.equals("isComposite")) {
+                return !composites.isEmpty();
+            } else if (m.equals("getComposites")) {
+                return new HashSet<RoleModel>(composites);
+            } else if (m.equals("hasRole")) {
+                return hasRole((RoleModel) proxy, (RoleModel) args[0], new HashSet<RoleModel>());
+            } else if (m.equals("isFullScopeAllowed")) {
+                return fullScope;
+            } else if (m.equals("getScopeMappings")) {
+                return new HashSet<RoleModel>(scope);
+            } else if (m.equals("getRoles")) {
+                return new HashSet<RoleModel>(appRoles);
+            } else if (m.equals("getRoleMappings")) {
+                return new HashSet<RoleModel>(roleMappings);
+            }
+            throw new UnsupportedOperationException(m);
+        }
+
+        private static boolean hasRole(RoleModel role, RoleModel other, Set<RoleModel> visited) {
+            if (role == other) return true;
+            if (!visited.add(role)) return false;
+            for (RoleModel composite : composites(role)) {
+                if (hasRole(composite, other, visited)) return true;
+            }
+            return false;
+        }
+
+    }
+
+}
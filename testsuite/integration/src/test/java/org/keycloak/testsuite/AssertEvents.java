@@ -11,8 +11,8 @@ import org.keycloak.Config;
 import org.keycloak.events.Details;
 import org.keycloak.events.Event;
 import org.keycloak.events.EventListenerProvider;
-import org.keycloak.events.EventListenerProviderFactory;
 import org.keycloak.events.EventType;
+import org.keycloak.events.SynchronousEventListenerProviderFactory;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
@@ -35,7 +35,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class AssertEvents implements TestRule, EventListenerProviderFactory {
+public class AssertEvents implements TestRule, SynchronousEventListenerProviderFactory {
 
     public static String DEFAULT_CLIENT_ID = "test-app";
     public static String DEFAULT_REDIRECT_URI = "http://localhost:8081/app/auth";
@@ -116,7 +116,7 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
-        Assert.assertEquals(1, greenMail.getReceivedMessages().length);
+        Assert.assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -150,7 +150,7 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
-        Assert.assertEquals(1, greenMail.getReceivedMessages().length);
+        Assert.assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -179,7 +179,7 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
-        Assert.assertEquals(1, greenMail.getReceivedMessages().length);
+        Assert.assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         Event sendEvent = events.expectRequiredAction(EventType.SEND_VERIFY_EMAIL).detail("email", "test-user@localhost").assertEvent();
         String sessionId = sendEvent.getSessionId();
@@ -188,7 +188,7 @@ public class RequiredActionEmailVerificationTest {
 
         verifyEmailPage.clickResendEmail();
 
-        Assert.assertEquals(2, greenMail.getReceivedMessages().length);
+        Assert.assertEquals(2, greenMail.waitForReceivedMessages(2).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[1];
 
@@ -214,7 +214,7 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
-        Assert.assertEquals(1, greenMail.getReceivedMessages().length);
+        Assert.assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -5,13 +5,18 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.keycloak.admin.client.resource.IdentityProviderResource;
 import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.models.RealmModel;
 import org.keycloak.representations.idm.FederatedIdentityRepresentation;
 import org.keycloak.representations.idm.IdentityProviderRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
+import org.keycloak.services.managers.RealmManager;
+import org.keycloak.testsuite.rule.KeycloakRule;
 
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.core.Response;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -189,6 +194,40 @@ public class UserTest extends AbstractClientTest {
         assertEquals(9, users.size());
     }
 
+    @Test
+    public void searchMoreThanOnePage() {
+        keycloakRule.configure(new KeycloakRule.KeycloakSetup() {
+            @Override
+            public void config(RealmManager manager, RealmModel adminstrationRealm, RealmModel appRealm) {
+                RealmModel realm = manager.getRealmByName(REALM_NAME);
+                for (int i = 0; i < 250; i++) {
+                    manager.getSession().users().addUser(realm, String.format("paged%03d", i));
+                }
+            }
+        });
+
+        List<UserRepresentation> users = realm.users().search("paged", null, null);
+        assertEquals(250, users.size());
+
+        Set<String> usernames = new HashSet<String>();
+        for (UserRepresentation user : users) {
+            usernames.add(user.getUsername());
+        }
+        assertEquals(250, usernames.size());
+
+        users = realm.users().search("paged", 90, 120);
+        assertEquals(120, users.size());
+        assertEquals("paged090", users.get(0).getUsername());
+        assertEquals("paged209", users.get(119).getUsername());
+
+        users = realm.users().search("paged", 200, 100);
+        assertEquals(50, users.size());
+        assertEquals("paged249", users.get(49).getUsername());
+
+        users = realm.users().search(null, null, null, null, 0, 1000);
+        assertEquals(250, users.size());
+    }
+
     @Test
     public void getFederatedIdentities() {
         // Add sample identity provider
@@ -15,7 +15,10 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -173,6 +176,67 @@ public class EventStoreProviderTest {
         Assert.assertEquals(3, eventStore.createQuery().getResultList().size());
     }
 
+    @Test
+    public void clearOldDays() {
+        long day = 24 * 60 * 60 * 1000;
+        long now = System.currentTimeMillis();
+        eventStore.onEvent(create(now - 10 * day, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - 3 * day, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - day - 10000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - day + 10000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        eventStore.onEvent(create(now - 10 * day, EventType.LOGIN, "realmId2", "clientId", "userId", "127.0.0.1", "error"));
+
+        resetSession();
+
+        eventStore.clear("realmId", now - day);
+
+        Assert.assertEquals(2, eventStore.createQuery().realm("realmId").getResultList().size());
+        Assert.assertEquals(1, eventStore.createQuery().realm("realmId2").getResultList().size());
+    }
+
+    @Test
+    public void queryTime() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            eventStore.onEvent(create(now - i * 1000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        }
+        eventStore.onEvent(create(now - 3000, EventType.LOGOUT, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+
+        resetSession();
+
+        Assert.assertEquals(5, eventStore.createQuery().fromTime(now - 3000).getResultList().size());
+        Assert.assertEquals(3, eventStore.createQuery().fromTime(now - 3000).toTime(now - 2000).getResultList().size());
+
+    }
+
+    @Test
+    public void queryBefore() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            eventStore.onEvent(create(now - i * 1000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        }
+        for (int i = 0; i < 3; i++) {
+            eventStore.onEvent(create(now - 2000, EventType.LOGOUT, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        }
+
+        resetSession();
+
+        // Page through events using the time and id of the last event on the previous page, the page boundary is in the
+        // middle of the events with the same time
+        Set<String> ids = new HashSet<String>();
+        List<Event> page = eventStore.createQuery().realm("realmId").maxResults(3).getResultList();
+        while (!page.isEmpty()) {
+            for (Event e : page) {
+                Assert.assertTrue(ids.add(e.getId()));
+            }
+            Event last = page.get(page.size() - 1);
+            page = eventStore.createQuery().realm("realmId").before(last.getTime(), last.getId()).maxResults(3).getResultList();
+        }
+
+        Assert.assertEquals(8, ids.size());
+    }
+
     private Event create(EventType event, String realmId, String clientId, String userId, String ipAddress, String error) {
         return create(System.currentTimeMillis(), event, realmId, clientId, userId, ipAddress, error);
     }
@@ -25,7 +25,6 @@ import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.keycloak.events.Details;
-import org.keycloak.events.Errors;
 import org.keycloak.events.Event;
 import org.keycloak.events.EventType;
 import org.keycloak.models.PasswordPolicy;
@@ -144,7 +143,7 @@ public class ResetPasswordTest {
 
         events.expectLogin().user(userId).detail(Details.USERNAME, "login-test").assertEvent();
 
-        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -208,7 +207,7 @@ public class ResetPasswordTest {
 
         assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
 
-        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -276,7 +275,7 @@ public class ResetPasswordTest {
 
             assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
 
-            assertEquals(1, greenMail.getReceivedMessages().length);
+            assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
             MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -392,15 +391,16 @@ public class ResetPasswordTest {
 
             resetPasswordPage.changePassword("login-test");
 
-            errorPage.assertCurrent();
+            // Emails are sent in the background, so the user isn't told the email couldn't be sent
+            resetPasswordPage.assertCurrent();
 
-            assertEquals("Failed to send email, please try again later.", errorPage.getError());
+            assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
+
+            events.expectRequiredAction(EventType.SEND_RESET_PASSWORD).user(userId).detail(Details.USERNAME, "login-test").detail(Details.EMAIL, "login@test.com").assertEvent();
 
             Thread.sleep(1000);
 
             assertEquals(0, greenMail.getReceivedMessages().length);
-
-            events.expectRequiredAction(EventType.SEND_RESET_PASSWORD_ERROR).user(userId).detail(Details.USERNAME, "login-test").removeDetail(Details.CODE_ID).error(Errors.EMAIL_SEND_FAILED).assertEvent();
         } finally {
             keycloakRule.configure(new KeycloakRule.KeycloakSetup() {
                 @Override
@@ -431,7 +431,7 @@ public class ResetPasswordTest {
 
         assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
 
-        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -486,7 +486,7 @@ public class ResetPasswordTest {
 
         assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
 
-        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(1, greenMail.waitForReceivedMessages(1).length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
 
@@ -152,6 +152,52 @@ public class AdapterTest extends AbstractModelTest {
         realmModel.setPasswordPolicy( new PasswordPolicy("hashIterations(1)"));
     }
 
+    @Test
+    public void testRehashAlgorithmOnLogin() throws Exception {
+        test1CreateRealm();
+        UserProvider userProvider = realmManager.getSession().users();
+        UserModel user = userProvider.addUser(realmModel, "bburke");
+        user.updateCredential(UserCredentialModel.password("geheim"));
+        Assert.assertEquals(PasswordPolicy.HASH_ALGORITHM_DEFAULT, user.getCredentialsDirectly().get(0).getAlgorithm());
+
+        realmModel.setPasswordPolicy(new PasswordPolicy("hashAlgorithm(pbkdf2-sha256)"));
+        Assert.assertTrue(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+        UserCredentialValueModel cred = user.getCredentialsDirectly().get(0);
+        Assert.assertEquals("pbkdf2-sha256", cred.getAlgorithm());
+        Assert.assertEquals(1, cred.getHashIterations());
+        Assert.assertTrue(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+        Assert.assertFalse(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("invalid")));
+
+        // Not rehashed again if the password policy hasn't changed
+        Assert.assertEquals(cred.getValue(), user.getCredentialsDirectly().get(0).getValue());
+
+        realmModel.setPasswordPolicy(new PasswordPolicy("hashAlgorithm(pbkdf2-sha512) and hashIterations(2)"));
+        Assert.assertTrue(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+        cred = user.getCredentialsDirectly().get(0);
+        Assert.assertEquals("pbkdf2-sha512", cred.getAlgorithm());
+        Assert.assertEquals(2, cred.getHashIterations());
+        Assert.assertTrue(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+
+        // New passwords are hashed with the algorithm from the password policy
+        user.updateCredential(UserCredentialModel.password("geheim2"));
+        Assert.assertEquals("pbkdf2-sha512", user.getCredentialsDirectly().get(0).getAlgorithm());
+        Assert.assertTrue(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim2")));
+    }
+
+    @Test
+    public void testUnknownHashAlgorithm() throws Exception {
+        test1CreateRealm();
+        UserProvider userProvider = realmManager.getSession().users();
+        UserModel user = userProvider.addUser(realmModel, "bburke");
+        user.updateCredential(UserCredentialModel.password("geheim"));
+
+        UserCredentialValueModel cred = user.getCredentialsDirectly().get(0);
+        cred.setAlgorithm("unknown");
+        user.updateCredentialDirectly(cred);
+
+        Assert.assertFalse(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+    }
+
     @Test
     public void testOAuthClient() throws Exception {
         test1CreateRealm();
@@ -119,6 +119,14 @@ public class AuthenticationManagerTest extends AbstractModelTest {
         Assert.assertEquals(AuthenticationStatus.SUCCESS, status);
     }
 
+    @Test
+    public void authFormWithTotpReplayed() {
+        authFormWithTotp();
+
+        AuthenticationStatus status = am.authenticateForm(session, dummyConnection, realm, formData);
+        Assert.assertEquals(AuthenticationStatus.INVALID_CREDENTIALS, status);
+    }
+
     @Test
     public void authFormWithTotpInvalidPassword() {
         authFormWithTotp();
@@ -0,0 +1,117 @@
+package org.keycloak.testsuite.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.PasswordPolicy;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserCredentialModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.representations.idm.BulkUserResultRepresentation;
+import org.keycloak.services.managers.BulkUserImporter;
+
+import java.io.ByteArrayInputStream;
+
+public class BulkUserImporterTest extends AbstractModelTest {
+
+    @Test
+    public void importUsersWithInvalidPasswords() throws Exception {
+        RealmModel realm = realmManager.createRealm("original");
+        realm.setPasswordPolicy(new PasswordPolicy("length(8)"));
+        String realmId = realm.getId();
+        commit();
+
+        String users = "[" +
+                user("user-0", "password-0") + "," +
+                user("user-1", "short") + "," +
+                user("user-2", "password-2") + "," +
+                user("user-3", "password-3") + "," +
+                "{\"credentials\":[{\"type\":\"password\",\"value\":\"password-4\"}]}," +
+                user("user-5", "short") +
+                "]";
+
+        BulkUserImporter importer = new BulkUserImporter(session.getKeycloakSessionFactory(), realmId, 2, true);
+        BulkUserResultRepresentation result = importer.importUsers(new ByteArrayInputStream(users.getBytes("UTF-8")));
+
+        Assert.assertEquals(3, result.getAdded());
+        Assert.assertEquals(3, result.getFailed());
+        Assert.assertTrue(result.getErrors().isEmpty());
+        Assert.assertNull(result.getError());
+        Assert.assertNull(result.getErrorIndex());
+        Assert.assertEquals(3, result.getUserErrors().size());
+
+        BulkUserResultRepresentation.UserError error = result.getUserErrors().get(0);
+        Assert.assertEquals(1, error.getIndex());
+        Assert.assertEquals("user-1", error.getUsername());
+        Assert.assertEquals(PasswordPolicy.INVALID_PASSWORD_MIN_LENGTH_MESSAGE, error.getError());
+        Assert.assertEquals("8", error.getParameters().get(0));
+
+        error = result.getUserErrors().get(1);
+        Assert.assertEquals(4, error.getIndex());
+        Assert.assertNull(error.getUsername());
+        Assert.assertEquals("Username is missing", error.getError());
+
+        error = result.getUserErrors().get(2);
+        Assert.assertEquals(5, error.getIndex());
+        Assert.assertEquals("user-5", error.getUsername());
+        Assert.assertEquals(PasswordPolicy.INVALID_PASSWORD_MIN_LENGTH_MESSAGE, error.getError());
+
+        resetSession();
+        realm = model.getRealm(realmId);
+
+        for (String username : new String[] { "user-0", "user-2", "user-3" }) {
+            UserModel user = session.users().getUserByUsername(username, realm);
+            Assert.assertNotNull(user);
+            Assert.assertTrue(session.users().validCredentials(realm, user, UserCredentialModel.password("password-" + username.substring(5))));
+            Assert.assertFalse(session.users().validCredentials(realm, user, UserCredentialModel.password("invalid")));
+        }
+
+        Assert.assertNull(session.users().getUserByUsername("user-1", realm));
+        Assert.assertNull(session.users().getUserByUsername("user-5", realm));
+        Assert.assertEquals(3, session.users().getUsersCount(realm));
+    }
+
+    @Test
+    public void importUsersMalformed() throws Exception {
+        RealmModel realm = realmManager.createRealm("original");
+        String realmId = realm.getId();
+        commit();
+
+        String users = "[" +
+                user("user-0", "password-0") + "," +
+                user("user-1", "password-1") + "," +
+                user("user-2", "password-2") + "," +
+                "{\"username\":\"user-3\",\"enabled\":[]}," +
+                user("user-4", "password-4") +
+                "]";
+
+        BulkUserImporter importer = new BulkUserImporter(session.getKeycloakSessionFactory(), realmId, 2, true);
+        BulkUserResultRepresentation result = importer.importUsers(new ByteArrayInputStream(users.getBytes("UTF-8")));
+
+        // Users read before the malformed user are added, including the incomplete chunk
+        Assert.assertEquals(3, result.getAdded());
+        Assert.assertEquals(0, result.getFailed());
+        Assert.assertEquals(Integer.valueOf(3), result.getErrorIndex());
+        Assert.assertNotNull(result.getError());
+
+        result = importer.importUsers(new ByteArrayInputStream(("[" + user("user-5", "password-5") + ",{\"username\":").getBytes("UTF-8")));
+        Assert.assertEquals(1, result.getAdded());
+        Assert.assertEquals(Integer.valueOf(1), result.getErrorIndex());
+
+        result = importer.importUsers(new ByteArrayInputStream(user("user-6", "password-6").getBytes("UTF-8")));
+        Assert.assertEquals(0, result.getAdded());
+        Assert.assertEquals(Integer.valueOf(0), result.getErrorIndex());
+
+        resetSession();
+        realm = model.getRealm(realmId);
+
+        for (String username : new String[] { "user-0", "user-1", "user-2", "user-5" }) {
+            Assert.assertNotNull(session.users().getUserByUsername(username, realm));
+        }
+        Assert.assertEquals(4, session.users().getUsersCount(realm));
+    }
+
+    private static String user(String username, String password) {
+        return "{\"username\":\"" + username + "\",\"enabled\":true,\"credentials\":[{\"type\":\"password\",\"value\":\"" + password + "\"}]}";
+    }
+
+}
@@ -0,0 +1,225 @@
+package org.keycloak.testsuite.model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.models.ApplicationModel;
+import org.keycloak.models.IdentityProviderModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+
+/**
+ * Changes to applications, roles and identity providers made in one transaction are visible in the next, when the
+ * realm, roles, applications and identity providers were already cached.
+ */
+public class CacheInvalidationTest extends AbstractModelTest {
+
+    private String realmId;
+    private int applications;
+    private int roles;
+
+    @Before
+    public void before() throws Exception {
+        super.before();
+
+        RealmModel realm = realmManager.createRealm("original");
+        realm.addApplication("app").addRole("app-role");
+        realm.addRole("role");
+        realm.addIdentityProvider(identityProvider("idp"));
+        realmId = realm.getId();
+        commit();
+
+        // load up cache
+        realm = getRealm();
+        Assert.assertNotNull(realm.getApplicationByName("app"));
+        Assert.assertNotNull(realm.getApplicationByName("app").getRole("app-role"));
+        Assert.assertNotNull(realm.getRole("role"));
+        Assert.assertNotNull(realm.getIdentityProviderByAlias("idp"));
+        Assert.assertEquals(1, realm.getIdentityProviders().size());
+        applications = realm.getApplications().size();
+        roles = realm.getRoles().size();
+        commit();
+    }
+
+    @Test
+    public void addApplication() {
+        getRealm().addApplication("app2");
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNotNull(realm.getApplicationByName("app2"));
+        Assert.assertEquals(applications + 1, realm.getApplications().size());
+        Assert.assertEquals(applications + 1, realm.getApplicationNameMap().size());
+    }
+
+    @Test
+    public void renameApplication() {
+        getRealm().getApplicationByName("app").setName("renamed");
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNull(realm.getApplicationByName("app"));
+        Assert.assertNotNull(realm.getApplicationByName("renamed"));
+        Assert.assertTrue(realm.getApplicationNameMap().containsKey("renamed"));
+        Assert.assertFalse(realm.getApplicationNameMap().containsKey("app"));
+        Assert.assertEquals(applications, realm.getApplications().size());
+    }
+
+    @Test
+    public void removeApplication() {
+        RealmModel realm = getRealm();
+        realm.removeApplication(realm.getApplicationByName("app").getId());
+        commit();
+
+        realm = getRealm();
+        Assert.assertNull(realm.getApplicationByName("app"));
+        Assert.assertFalse(realm.getApplicationNameMap().containsKey("app"));
+        Assert.assertEquals(applications - 1, realm.getApplications().size());
+    }
+
+    @Test
+    public void addRole() {
+        getRealm().addRole("role2");
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNotNull(realm.getRole("role2"));
+        Assert.assertEquals(roles + 1, realm.getRoles().size());
+    }
+
+    @Test
+    public void renameRole() {
+        getRealm().getRole("role").setName("renamed");
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNull(realm.getRole("role"));
+        Assert.assertNotNull(realm.getRole("renamed"));
+        Assert.assertEquals(roles, realm.getRoles().size());
+    }
+
+    @Test
+    public void removeRole() {
+        RealmModel realm = getRealm();
+        realm.removeRole(realm.getRole("role"));
+        commit();
+
+        realm = getRealm();
+        Assert.assertNull(realm.getRole("role"));
+        Assert.assertEquals(roles - 1, realm.getRoles().size());
+    }
+
+    @Test
+    public void addApplicationRole() {
+        getRealm().getApplicationByName("app").addRole("app-role2");
+        commit();
+
+        ApplicationModel app = getRealm().getApplicationByName("app");
+        Assert.assertNotNull(app.getRole("app-role2"));
+        Assert.assertEquals(2, app.getRoles().size());
+    }
+
+    @Test
+    public void renameApplicationRole() {
+        getRealm().getApplicationByName("app").getRole("app-role").setName("renamed");
+        commit();
+
+        ApplicationModel app = getRealm().getApplicationByName("app");
+        Assert.assertNull(app.getRole("app-role"));
+        Assert.assertNotNull(app.getRole("renamed"));
+    }
+
+    @Test
+    public void removeApplicationRole() {
+        ApplicationModel app = getRealm().getApplicationByName("app");
+        app.removeRole(app.getRole("app-role"));
+        commit();
+
+        app = getRealm().getApplicationByName("app");
+        Assert.assertNull(app.getRole("app-role"));
+        Assert.assertTrue(app.getRoles().isEmpty());
+    }
+
+    @Test
+    public void addDefaultRoleCreatesRole() {
+        getRealm().addDefaultRole("default-role");
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNotNull(realm.getRole("default-role"));
+        Assert.assertEquals(roles + 1, realm.getRoles().size());
+        Assert.assertTrue(realm.getDefaultRoles().contains("default-role"));
+    }
+
+    @Test
+    public void updateDefaultRolesCreatesRoles() {
+        getRealm().updateDefaultRoles(new String[] { "role", "default-role" });
+        commit();
+
+        RealmModel realm = getRealm();
+        RoleModel role = realm.getRole("default-role");
+        Assert.assertNotNull(role);
+        Assert.assertEquals(role, realm.getRoleById(role.getId()));
+        Assert.assertEquals(roles + 1, realm.getRoles().size());
+        Assert.assertEquals(2, realm.getDefaultRoles().size());
+    }
+
+    @Test
+    public void addApplicationDefaultRoleCreatesRole() {
+        getRealm().getApplicationByName("app").addDefaultRole("default-role");
+        commit();
+
+        ApplicationModel app = getRealm().getApplicationByName("app");
+        Assert.assertNotNull(app.getRole("default-role"));
+        Assert.assertTrue(app.getDefaultRoles().contains("default-role"));
+    }
+
+    @Test
+    public void addIdentityProvider() {
+        getRealm().addIdentityProvider(identityProvider("idp2"));
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNotNull(realm.getIdentityProviderByAlias("idp2"));
+        Assert.assertEquals(2, realm.getIdentityProviders().size());
+    }
+
+    @Test
+    public void renameIdentityProvider() {
+        RealmModel realm = getRealm();
+        IdentityProviderModel identityProvider = new IdentityProviderModel(realm.getIdentityProviderByAlias("idp"));
+        identityProvider.setAlias("renamed");
+        realm.updateIdentityProvider(identityProvider);
+        commit();
+
+        realm = getRealm();
+        Assert.assertNull(realm.getIdentityProviderByAlias("idp"));
+        Assert.assertNotNull(realm.getIdentityProviderByAlias("renamed"));
+        Assert.assertEquals(1, realm.getIdentityProviders().size());
+    }
+
+    @Test
+    public void removeIdentityProvider() {
+        getRealm().removeIdentityProviderByAlias("idp");
+        commit();
+
+        RealmModel realm = getRealm();
+        Assert.assertNull(realm.getIdentityProviderByAlias("idp"));
+        Assert.assertTrue(realm.getIdentityProviders().isEmpty());
+    }
+
+    private RealmModel getRealm() {
+        RealmModel realm = model.getRealm(realmId);
+        Assert.assertTrue(realm instanceof org.keycloak.models.cache.RealmAdapter);
+        return realm;
+    }
+
+    private static IdentityProviderModel identityProvider(String alias) {
+        IdentityProviderModel identityProvider = new IdentityProviderModel();
+        identityProvider.setAlias(alias);
+        identityProvider.setProviderId("google");
+        identityProvider.setEnabled(true);
+        return identityProvider;
+    }
+
+}
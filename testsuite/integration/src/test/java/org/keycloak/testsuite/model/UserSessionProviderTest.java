@@ -10,6 +10,7 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.UserSessionVisitor;
 import org.keycloak.models.UsernameLoginFailureModel;
 import org.keycloak.protocol.oidc.OIDCLoginProtocol;
 import org.keycloak.services.managers.UserManager;
@@ -20,6 +21,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -412,6 +414,49 @@ public class UserSessionProviderTest {
         assertArrayEquals(expectedIps, actualIps);
     }
 
+    @Test
+    public void testVisitByClient() {
+        try {
+            for (int i = 0; i < 150; i++) {
+                Time.setOffset(i);
+                UserSessionModel userSession = session.sessions().createUserSession(realm, session.users().getUserByUsername("user1", realm), "user1", "127.0." + (i / 100) + "." + (i % 100), "form", false);
+                ClientSessionModel clientSession = session.sessions().createClientSession(realm, realm.findClient("test-app"));
+                clientSession.setUserSession(userSession);
+                clientSession.setRedirectUri("http://redirect");
+                clientSession.setRoles(new HashSet<String>());
+                clientSession.setTimestamp(userSession.getStarted());
+            }
+        } finally {
+            Time.setOffset(0);
+        }
+
+        resetSession();
+
+        assertVisitedSessions(realm, realm.findClient("test-app"), -1, -1, 0, 150);
+        assertVisitedSessions(realm, realm.findClient("test-app"), 50, -1, 50, 100);
+        assertVisitedSessions(realm, realm.findClient("test-app"), 90, 20, 90, 20);
+        assertVisitedSessions(realm, realm.findClient("test-app"), 140, 20, 140, 10);
+        assertVisitedSessions(realm, realm.findClient("test-app"), 200, 20, 200, 0);
+        assertVisitedSessions(realm, realm.findClient("third-party"), -1, -1, 0, 0);
+    }
+
+    private void assertVisitedSessions(RealmModel realm, ClientModel client, int first, int max, int expectedFirst, int expectedSize) {
+        final List<String> actualIps = new LinkedList<String>();
+        session.sessions().visitUserSessions(realm, client, first, max, new UserSessionVisitor() {
+            @Override
+            public void visit(UserSessionModel userSession) {
+                actualIps.add(userSession.getIpAddress());
+            }
+        });
+
+        List<String> expectedIps = new LinkedList<String>();
+        for (int i = expectedFirst; i < expectedFirst + expectedSize; i++) {
+            expectedIps.add("127.0." + (i / 100) + "." + (i % 100));
+        }
+
+        assertEquals(expectedIps, actualIps);
+    }
+
     @Test
     public void testGetCountByClient() {
         createSessions();
@@ -420,6 +465,24 @@ public class UserSessionProviderTest {
         assertEquals(1, session.sessions().getActiveUserSessions(realm, realm.findClient("third-party")));
     }
 
+    @Test
+    public void testGetStats() {
+        UserSessionModel[] sessions = createSessions();
+
+        Map<String, Integer> stats = session.sessions().getActiveUserSessionStats(realm);
+        assertEquals(2, stats.size());
+        assertEquals(3, stats.get(realm.findClient("test-app").getId()).intValue());
+        assertEquals(1, stats.get(realm.findClient("third-party").getId()).intValue());
+
+        session.sessions().removeUserSession(realm, session.sessions().getUserSession(realm, sessions[0].getId()));
+
+        resetSession();
+
+        stats = session.sessions().getActiveUserSessionStats(realm);
+        assertEquals(1, stats.size());
+        assertEquals(2, stats.get(realm.findClient("test-app").getId()).intValue());
+    }
+
     @Test
     public void loginFailures() {
         UsernameLoginFailureModel failure1 = session.sessions().addUserLoginFailure(realm, "user1");
@@ -0,0 +1,62 @@
+package org.keycloak.testsuite.perf;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.testsuite.OAuthClient;
+import org.keycloak.testsuite.OAuthClient.AccessTokenResponse;
+import org.keycloak.testsuite.rule.KeycloakRule;
+import org.keycloak.testsuite.rule.WebResource;
+import org.keycloak.testsuite.rule.WebRule;
+
+/**
+ * Measures the throughput of refresh token requests. Ignored as it takes too long for the default build, remove
+ * the @Ignore to run it.
+ */
+@Ignore
+public class RefreshTokenPerfTest {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    @ClassRule
+    public static KeycloakRule keycloakRule = new KeycloakRule();
+
+    @Rule
+    public WebRule webRule = new WebRule(this);
+
+    @WebResource
+    protected OAuthClient oauth;
+
+    @Test
+    public void refresh() {
+        oauth.doLogin("test-user@localhost", "password");
+        String code = oauth.getCurrentQuery().get(OAuth2Constants.CODE);
+
+        AccessTokenResponse response = oauth.doAccessTokenRequest(code, "password");
+        Assert.assertEquals(200, response.getStatusCode());
+        String refreshToken = response.getRefreshToken();
+
+        for (int i = 0; i < WARMUP; i++) {
+            refreshToken = refresh(refreshToken);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            refreshToken = refresh(refreshToken);
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println("refresh token: " + (ITERATIONS * 1000000000L / time) + " requests/s, " + (time / ITERATIONS / 1000) + " us/request");
+    }
+
+    private String refresh(String refreshToken) {
+        AccessTokenResponse response = oauth.doRefreshTokenRequest(refreshToken, "password");
+        Assert.assertEquals(200, response.getStatusCode());
+        return response.getRefreshToken();
+    }
+
+}
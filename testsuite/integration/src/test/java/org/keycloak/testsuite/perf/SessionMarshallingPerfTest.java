@@ -0,0 +1,190 @@
+package org.keycloak.testsuite.perf;
+
+import org.infinispan.commons.marshall.Externalizer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.sessions.infinispan.entities.ClientSessionEntity;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionDelta;
+import org.keycloak.models.sessions.infinispan.entities.UserSessionEntity;
+import org.keycloak.models.sessions.infinispan.marshalling.ClientSessionEntityExternalizer;
+import org.keycloak.models.sessions.infinispan.marshalling.UserSessionDeltaExternalizer;
+import org.keycloak.models.sessions.infinispan.marshalling.UserSessionEntityExternalizer;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares the size and speed of the session entity externalizers with default Java serialization
+ */
+public class SessionMarshallingPerfTest {
+
+    private static final int ITERATIONS = 20000;
+
+    @Test
+    public void userSession() throws Exception {
+        UserSessionEntity session = createUserSession();
+
+        UserSessionEntity copy = compare("user session", session, new UserSessionEntityExternalizer());
+        Assert.assertEquals(session.getId(), copy.getId());
+        Assert.assertEquals(session.getRealm(), copy.getRealm());
+        Assert.assertEquals(session.getUser(), copy.getUser());
+        Assert.assertEquals(session.getLoginUsername(), copy.getLoginUsername());
+        Assert.assertEquals(session.getIpAddress(), copy.getIpAddress());
+        Assert.assertEquals(session.getAuthMethod(), copy.getAuthMethod());
+        Assert.assertEquals(session.getStarted(), copy.getStarted());
+        Assert.assertEquals(session.getLastSessionRefresh(), copy.getLastSessionRefresh());
+        Assert.assertEquals(session.getClientSessions(), copy.getClientSessions());
+        Assert.assertEquals(session.getState(), copy.getState());
+        Assert.assertEquals(session.getNotes(), copy.getNotes());
+    }
+
+    @Test
+    public void userSessionRefreshDelta() throws Exception {
+        UserSessionEntity session = createUserSession();
+        UserSessionEntity remote = (UserSessionEntity) session.delta().merge(null);
+        session.commit();
+
+        session.setLastSessionRefresh(session.getLastSessionRefresh() + 60);
+        UserSessionDelta delta = (UserSessionDelta) session.delta();
+
+        int entitySize = externalize(session, new UserSessionEntityExternalizer()).length;
+        int deltaSize = externalize(delta, new UserSessionDeltaExternalizer()).length;
+        System.out.println("user session refresh: entity " + entitySize + " bytes, delta " + deltaSize + " bytes");
+        Assert.assertTrue(deltaSize < entitySize);
+
+        internalize(externalize(delta, new UserSessionDeltaExternalizer()), new UserSessionDeltaExternalizer()).merge(remote);
+        Assert.assertEquals(session.getLastSessionRefresh(), remote.getLastSessionRefresh());
+        Assert.assertEquals(session.getClientSessions(), remote.getClientSessions());
+        Assert.assertEquals(session.getNotes(), remote.getNotes());
+    }
+
+    @Test
+    public void clientSession() throws Exception {
+        ClientSessionEntity session = createClientSession();
+
+        ClientSessionEntity copy = compare("client session", session, new ClientSessionEntityExternalizer());
+        Assert.assertEquals(session.getId(), copy.getId());
+        Assert.assertEquals(session.getRealm(), copy.getRealm());
+        Assert.assertEquals(session.getClient(), copy.getClient());
+        Assert.assertEquals(session.getUserSession(), copy.getUserSession());
+        Assert.assertEquals(session.getRedirectUri(), copy.getRedirectUri());
+        Assert.assertEquals(session.getTimestamp(), copy.getTimestamp());
+        Assert.assertEquals(session.getAction(), copy.getAction());
+        Assert.assertEquals(session.getRoles(), copy.getRoles());
+        Assert.assertEquals(session.getNotes(), copy.getNotes());
+    }
+
+    private <T> T compare(String name, T entity, Externalizer<T> externalizer) throws Exception {
+        int javaSize = serialize(entity).length;
+        int compactSize = externalize(entity, externalizer).length;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            deserialize(serialize(entity));
+        }
+        long javaTime = System.nanoTime() - start;
+
+        T copy = null;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            copy = internalize(externalize(entity, externalizer), externalizer);
+        }
+        long compactTime = System.nanoTime() - start;
+
+        System.out.println(name + ": java serialization " + javaSize + " bytes, " + opsPerSecond(javaTime) + " round trips/s");
+        System.out.println(name + ": externalizer " + compactSize + " bytes, " + opsPerSecond(compactTime) + " round trips/s");
+
+        Assert.assertTrue(compactSize < javaSize);
+        return copy;
+    }
+
+    private static long opsPerSecond(long nanos) {
+        return ITERATIONS * 1000000000L / Math.max(1, nanos);
+    }
+
+    private static byte[] serialize(Object entity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream os = new ObjectOutputStream(bytes);
+        os.writeObject(entity);
+        os.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws Exception {
+        return new ObjectInputStream(new ByteArrayInputStream(data)).readObject();
+    }
+
+    private static <T> byte[] externalize(T entity, Externalizer<T> externalizer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream os = new ObjectOutputStream(bytes);
+        externalizer.writeObject(os, entity);
+        os.close();
+        return bytes.toByteArray();
+    }
+
+    private static <T> T internalize(byte[] data, Externalizer<T> externalizer) throws Exception {
+        return externalizer.readObject(new ObjectInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static UserSessionEntity createUserSession() {
+        UserSessionEntity session = new UserSessionEntity();
+        session.setId(KeycloakModelUtils.generateId());
+        session.setRealm("test");
+        session.setUser(KeycloakModelUtils.generateId());
+        session.setLoginUsername("test-user@localhost");
+        session.setIpAddress("127.0.0.1");
+        session.setAuthMethod("form");
+        session.setRememberMe(false);
+        session.setStarted(1420070400);
+        session.setLastSessionRefresh(1420070700);
+        session.setState(UserSessionModel.State.LOGGED_IN);
+
+        Set<String> clientSessions = new HashSet<String>();
+        for (int i = 0; i < 3; i++) {
+            clientSessions.add(KeycloakModelUtils.generateId());
+        }
+        session.setClientSessions(clientSessions);
+
+        Map<String, String> notes = new HashMap<String, String>();
+        notes.put("KEYCLOAK_LOGOUT_PROTOCOL", "openid-connect");
+        session.setNotes(notes);
+        return session;
+    }
+
+    private static ClientSessionEntity createClientSession() {
+        ClientSessionEntity session = new ClientSessionEntity();
+        session.setId(KeycloakModelUtils.generateId());
+        session.setRealm("test");
+        session.setClient(KeycloakModelUtils.generateId());
+        session.setUserSession(KeycloakModelUtils.generateId());
+        session.setAuthMethod("openid-connect");
+        session.setRedirectUri("http://localhost:8081/app/auth");
+        session.setTimestamp(1420070400);
+        session.setAction(ClientSessionModel.Action.CODE_TO_TOKEN);
+
+        Set<String> roles = new HashSet<String>();
+        for (int i = 0; i < 5; i++) {
+            roles.add(KeycloakModelUtils.generateId());
+        }
+        session.setRoles(roles);
+
+        Map<String, String> notes = new HashMap<String, String>();
+        notes.put("action_key", KeycloakModelUtils.generateId());
+        notes.put("response_type", "code");
+        notes.put("redirect_uri", "http://localhost:8081/app/auth");
+        notes.put("state", "a3f7e1b2-state");
+        session.setNotes(notes);
+        return session;
+    }
+
+}
@@ -67,4 +67,19 @@ public class GreenMailRule extends ExternalResource {
         return greenMail.getReceivedMessages();
     }
 
+    /**
+     * Emails are sent in the background, so waits up to 10 seconds for the expected number of emails to be received
+     *
+     * @param count
+     * @return the emails received
+     */
+    public MimeMessage[] waitForReceivedMessages(int count) {
+        try {
+            greenMail.waitForIncomingEmail(10000, count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return greenMail.getReceivedMessages();
+    }
+
 }
@@ -9,6 +9,16 @@ public interface TimerProvider extends Provider {
 
     public void schedule(Runnable runnable, long interval, String taskName);
 
+    /**
+     * Schedules a task that only needs to run on one node in a cluster, for example a task that removes expired data
+     * from the database. Implementations that aren't cluster aware run the task on all nodes.
+     *
+     * @param runnable
+     * @param interval
+     * @param taskName
+     */
+    public void scheduleClusterTask(Runnable runnable, long interval, String taskName);
+
     public void cancelTask(String taskName);
 
 }
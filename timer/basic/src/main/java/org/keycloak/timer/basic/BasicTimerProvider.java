@@ -40,6 +40,11 @@ public class BasicTimerProvider implements TimerProvider {
         timer.schedule(task, interval, interval);
     }
 
+    @Override
+    public void scheduleClusterTask(Runnable runnable, long interval, String taskName) {
+        schedule(runnable, interval, taskName);
+    }
+
     @Override
     public void cancelTask(String taskName) {
         TimerTask existingTask = factory.removeTask(taskName);
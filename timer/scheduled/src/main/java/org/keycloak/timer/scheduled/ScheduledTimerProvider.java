@@ -0,0 +1,33 @@
+package org.keycloak.timer.scheduled;
+
+import org.keycloak.timer.TimerProvider;
+
+public class ScheduledTimerProvider implements TimerProvider {
+
+    private final ScheduledTimerProviderFactory factory;
+
+    public ScheduledTimerProvider(ScheduledTimerProviderFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public void schedule(Runnable runnable, long interval, String taskName) {
+        factory.schedule(runnable, interval, taskName, false);
+    }
+
+    @Override
+    public void scheduleClusterTask(Runnable runnable, long interval, String taskName) {
+        factory.schedule(runnable, interval, taskName, true);
+    }
+
+    @Override
+    public void cancelTask(String taskName) {
+        factory.cancelTask(taskName);
+    }
+
+    @Override
+    public void close() {
+        // do nothing
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.keycloak.timer.scheduled;
+
+import org.infinispan.Cache;
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.connections.infinispan.InfinispanConnectionProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.timer.TimerProvider;
+import org.keycloak.timer.TimerProviderFactory;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer provider that runs tasks concurrently. A small scheduler pool triggers tasks at a fixed rate and hands them
+ * over to a worker pool, so a slow task (for example a full LDAP sync) doesn't delay other tasks. A task never runs
+ * concurrently with itself, if a task is still running when it's triggered again that run is skipped.
+ *
+ * The first run of a task is delayed by a random amount of up to jitter percent of the interval, so tasks scheduled at
+ * the same time, or on several nodes at the same time, don't all run at once.
+ *
+ * If clustered is enabled, tasks scheduled with {@link TimerProvider#scheduleClusterTask(Runnable, long, String)} only
+ * run on one node for each interval. Before running, a node claims the current interval in the Infinispan work cache,
+ * nodes that fail to claim it skip that run.
+ */
+public class ScheduledTimerProviderFactory implements TimerProviderFactory {
+
+    private static final Logger logger = Logger.getLogger(ScheduledTimerProviderFactory.class);
+
+    public static final String PROVIDER_ID = "scheduled";
+
+    private final ConcurrentMap<String, ScheduledTimerTask> scheduledTasks = new ConcurrentHashMap<String, ScheduledTimerTask>();
+
+    private final Random random = new Random();
+
+    private final String nodeId = KeycloakModelUtils.generateId();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+    private KeycloakSessionFactory sessionFactory;
+
+    private int jitter;
+    private boolean clustered;
+
+    @Override
+    public TimerProvider create(KeycloakSession session) {
+        return new ScheduledTimerProvider(this);
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        jitter = config.getInt("jitter", 10);
+        clustered = config.getBoolean("clustered", false);
+
+        scheduler = Executors.newScheduledThreadPool(config.getInt("threads", 1), new TimerThreadFactory("keycloak-timer"));
+        executor = Executors.newCachedThreadPool(new TimerThreadFactory("keycloak-timer-task"));
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        this.sessionFactory = factory;
+    }
+
+    @Override
+    public void close() {
+        for (ScheduledTimerTask task : scheduledTasks.values()) {
+            task.cancel();
+        }
+        scheduledTasks.clear();
+
+        scheduler.shutdownNow();
+        executor.shutdown();
+    }
+
+    @Override
+    public String getId() {
+        return PROVIDER_ID;
+    }
+
+    protected void schedule(Runnable runnable, long interval, String taskName, boolean clusterTask) {
+        ScheduledTimerTask task = new ScheduledTimerTask(this, taskName, runnable, interval, clusterTask);
+
+        ScheduledTimerTask existingTask = scheduledTasks.put(taskName, task);
+        if (existingTask != null) {
+            logger.debugf("Existing timer task '%s' found. Cancelling it", taskName);
+            existingTask.cancel();
+        }
+
+        long delay = interval + getJitter(interval);
+        logger.debugf("Starting task '%s' with interval '%d' and initial delay '%d'", taskName, interval, delay);
+        task.setFuture(scheduler.scheduleAtFixedRate(task, delay, interval, TimeUnit.MILLISECONDS));
+    }
+
+    protected void cancelTask(String taskName) {
+        ScheduledTimerTask existingTask = scheduledTasks.remove(taskName);
+        if (existingTask != null) {
+            logger.debugf("Cancelling task '%s'", taskName);
+            existingTask.cancel();
+        }
+    }
+
+    protected ExecutorService getExecutor() {
+        return executor;
+    }
+
+    protected KeycloakSessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * Claims the current interval of a cluster task for this node
+     *
+     * @param session
+     * @param task
+     * @return true if the task should run on this node
+     */
+    protected boolean claim(KeycloakSession session, ScheduledTimerTask task) {
+        if (!clustered || session == null) {
+            return true;
+        }
+
+        InfinispanConnectionProvider infinispan = session.getProvider(InfinispanConnectionProvider.class);
+        if (infinispan == null) {
+            return true;
+        }
+
+        Cache<String, String> cache = infinispan.getCache(InfinispanConnectionProvider.WORK_CACHE_NAME);
+        if (!cache.getCacheConfiguration().clustering().cacheMode().isClustered()) {
+            return true;
+        }
+
+        long slot = System.currentTimeMillis() / task.getInterval();
+        String key = "timer::" + task.getName() + "::" + slot;
+        String existing = cache.putIfAbsent(key, nodeId, task.getInterval() * 2, TimeUnit.MILLISECONDS);
+        return existing == null || existing.equals(nodeId);
+    }
+
+    private long getJitter(long interval) {
+        long maxJitter = interval * jitter / 100;
+        if (maxJitter <= 0) {
+            return 0;
+        }
+        synchronized (random) {
+            return (long) (random.nextDouble() * maxJitter);
+        }
+    }
+
+    private static class TimerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final String name;
+
+        private TimerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
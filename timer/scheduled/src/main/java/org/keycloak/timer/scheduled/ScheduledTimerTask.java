@@ -0,0 +1,141 @@
+package org.keycloak.timer.scheduled;
+
+import org.jboss.logging.Logger;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.MetricsProvider;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Triggered by the scheduler at a fixed rate. Submits the task to the worker pool unless the previous run is still in
+ * progress, in which case the run is skipped. Runs, skipped runs, failures and durations are recorded as
+ * timer.&lt;task name&gt;.* metrics.
+ */
+public class ScheduledTimerTask implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(ScheduledTimerTask.class);
+
+    private final ScheduledTimerProviderFactory factory;
+    private final String name;
+    private final Runnable runnable;
+    private final long interval;
+    private final boolean clusterTask;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private volatile ScheduledFuture<?> future;
+    private volatile boolean cancelled;
+
+    public ScheduledTimerTask(ScheduledTimerProviderFactory factory, String name, Runnable runnable, long interval, boolean clusterTask) {
+        this.factory = factory;
+        this.name = name;
+        this.runnable = runnable;
+        this.interval = interval;
+        this.clusterTask = clusterTask;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public void run() {
+        if (cancelled) {
+            return;
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            skipped.incrementAndGet();
+            logger.debugf("Task '%s' is still running, skipping", name);
+            return;
+        }
+
+        try {
+            factory.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        execute();
+                    } finally {
+                        running.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            logger.debugf("Task '%s' rejected, timer is shutting down", name);
+        }
+    }
+
+    protected void setFuture(ScheduledFuture<?> future) {
+        this.future = future;
+    }
+
+    protected void cancel() {
+        cancelled = true;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private void execute() {
+        KeycloakSessionFactory sessionFactory = factory.getSessionFactory();
+        KeycloakSession session = sessionFactory != null ? sessionFactory.create() : null;
+        try {
+            if (clusterTask && !claim(session)) {
+                logger.debugf("Task '%s' claimed by another node, skipping", name);
+                return;
+            }
+
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                failed = true;
+                logger.error("Failed to run task '" + name + "'", t);
+            }
+            long duration = System.nanoTime() - start;
+
+            MetricsProvider metrics = session != null ? session.getProvider(MetricsProvider.class) : null;
+            if (metrics != null) {
+                metrics.increment("timer." + name + ".run");
+                metrics.record("timer." + name + ".duration", duration);
+                if (failed) {
+                    metrics.increment("timer." + name + ".failed");
+                }
+                long skippedRuns = skipped.getAndSet(0);
+                if (skippedRuns > 0) {
+                    metrics.add("timer." + name + ".skipped", skippedRuns);
+                }
+            }
+        } finally {
+            if (session != null) {
+                try {
+                    session.close();
+                } catch (Throwable t) {
+                    logger.error("Failed to close ProviderSession", t);
+                }
+            }
+        }
+    }
+
+    private boolean claim(KeycloakSession session) {
+        try {
+            return factory.claim(session, this);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to claim task '" + name + "', running it on this node", e);
+            return true;
+        }
+    }
+
+}
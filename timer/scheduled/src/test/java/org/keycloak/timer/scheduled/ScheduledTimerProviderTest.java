@@ -0,0 +1,165 @@
+package org.keycloak.timer.scheduled;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.Config;
+import org.keycloak.timer.TimerProvider;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduledTimerProviderTest {
+
+    private ScheduledTimerProviderFactory factory;
+    private TimerProvider timer;
+
+    @Before
+    public void before() {
+        System.setProperty("keycloak.timer.scheduled.jitter", "0");
+
+        factory = new ScheduledTimerProviderFactory();
+        factory.init(new Config.SystemPropertiesScope("keycloak.timer.scheduled."));
+        timer = factory.create(null);
+    }
+
+    @After
+    public void after() {
+        factory.close();
+        System.clearProperty("keycloak.timer.scheduled.jitter");
+    }
+
+    @Test
+    public void slowTaskDoesNotDelayOtherTasks() throws Exception {
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch fastRuns = new CountDownLatch(3);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                slowStarted.countDown();
+                await(release);
+            }
+        }, 10, "slow");
+
+        assertTrue(slowStarted.await(1, TimeUnit.SECONDS));
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fastRuns.countDown();
+            }
+        }, 10, "fast");
+
+        assertTrue(fastRuns.await(1, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void taskNotRunConcurrently() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch runs = new CountDownLatch(3);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                int current = running.incrementAndGet();
+                if (current > maxRunning.get()) {
+                    maxRunning.set(current);
+                }
+                sleep(50);
+                running.decrementAndGet();
+                runs.countDown();
+            }
+        }, 5, "overrun");
+
+        assertTrue(runs.await(1, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void failingTaskKeepsRunning() throws Exception {
+        final CountDownLatch runs = new CountDownLatch(3);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.countDown();
+                throw new RuntimeException("Expected failure");
+            }
+        }, 10, "failing");
+
+        assertTrue(runs.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelTask() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                started.countDown();
+            }
+        }, 10, "cancel");
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        timer.cancelTask("cancel");
+        sleep(20);
+
+        int count = runs.get();
+        sleep(50);
+        assertEquals(count, runs.get());
+    }
+
+    @Test
+    public void rescheduleReplacesTask() throws Exception {
+        final AtomicInteger first = new AtomicInteger();
+        final CountDownLatch secondRuns = new CountDownLatch(2);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                first.incrementAndGet();
+            }
+        }, 10, "task");
+        sleep(30);
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                secondRuns.countDown();
+            }
+        }, 10, "task");
+        sleep(20);
+
+        int count = first.get();
+        assertTrue(secondRuns.await(1, TimeUnit.SECONDS));
+        assertEquals(count, first.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}